@@ -0,0 +1,94 @@
+package org.guide.gameboy.video.render;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and vector tile decoders over a frame's worth of tile rows. The vector decoder is only available
+ * when the benchmarks are built and run with {@code -PvectorApi} on a host that supports 256-bit vectors.
+ *
+ * @author Brendan Jones
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TileDecoderBenchmark {
+
+    /**
+     * The number of tile rows decoded for a frame, with one row of each of the 20 tiles across each scanline.
+     */
+    private static final int NUM_ROWS = 20 * 144;
+
+    /**
+     * The decoder that is benchmarked.
+     */
+    @Param({"scalar", "vector"})
+    public String decoder;
+
+    /**
+     * The low bytes of the tile rows.
+     */
+    private final int[] lows = new int[NUM_ROWS];
+
+    /**
+     * The high bytes of the tile rows.
+     */
+    private final int[] highs = new int[NUM_ROWS];
+
+    /**
+     * The 24-bit colors of the four shades.
+     */
+    private final int[] colors = {0xFFFFFF, 0xAAAAAA, 0x555555, 0x000000};
+
+    /**
+     * The color indices of the row being decoded.
+     */
+    private final int[] colorIndices = new int[TileDecoder.TILE_WIDTH];
+
+    /**
+     * The colors of the row being decoded.
+     */
+    private final int[] row = new int[TileDecoder.TILE_WIDTH];
+
+    /**
+     * The tile decoder.
+     */
+    private TileDecoder tileDecoder;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        tileDecoder = switch (decoder) {
+            case "scalar" -> new ScalarTileDecoder();
+            // The vector decoder is only built with -PvectorApi, so it cannot be referenced directly.
+            case "vector" -> (TileDecoder) Class.forName(TileDecoder.class.getPackageName() + ".VectorTileDecoder")
+                    .getDeclaredConstructor().newInstance();
+            default -> throw new IllegalArgumentException("Unknown decoder: " + decoder);
+        };
+
+        final var random = new Random(0);
+        for (var i = 0; i < NUM_ROWS; ++i) {
+            lows[i] = random.nextInt(0x100);
+            highs[i] = random.nextInt(0x100);
+        }
+    }
+
+    @Benchmark
+    public void decodeFrame(Blackhole blackhole) {
+        for (var i = 0; i < NUM_ROWS; ++i) {
+            tileDecoder.decodeRow(lows[i], highs[i], colorIndices);
+            tileDecoder.mapColors(colorIndices, 0xE4, colors, row, TileDecoder.TILE_WIDTH);
+            blackhole.consume(row);
+        }
+    }
+
+}
@@ -6,8 +6,20 @@ import org.guide.emulator.config.EmulatorConfig;
 import org.guide.emulator.event.*;
 import org.guide.emulator.input.GamepadManager;
 import org.guide.emulator.input.InputAction;
+import org.guide.emulator.library.RomFile;
+import org.guide.emulator.library.RomLibrary;
+import org.guide.gameboy.BootSnapshotCache;
+import org.guide.gameboy.BootSnapshotCache.Checkpoint;
 import org.guide.gameboy.GameBoy;
+import org.guide.gameboy.RewindBuffer;
+import org.guide.gameboy.SaveStateWriter;
+import org.guide.gameboy.audio.JavaSoundSink;
+import org.guide.gameboy.cartridge.hardware.RealTimeClock.TimeSource;
 import org.guide.gameboy.input.GameboyButton;
+import org.guide.gameboy.movie.InputMovie;
+import org.guide.gameboy.movie.MoviePlayer;
+import org.guide.gameboy.movie.MovieRecorder;
+import org.guide.gameboy.video.render.DeferredRenderer;
 import org.guide.util.delegate.EventDispatcher;
 import org.guide.util.delegate.EventDispatcherHandle;
 import org.guide.util.fps.FrameRateEvent;
@@ -15,6 +27,7 @@ import org.guide.util.fps.FrameRateTicker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sound.sampled.LineUnavailableException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
@@ -52,9 +65,39 @@ public class Emulator {
     public static final Path QUICK_SAVE_ROOT = Paths.get("config", "saves");
 
     /**
-     * The size of a quick save file.
+     * The directory to store boot snapshots in.
      */
-    private static final int QUICK_SAVE_SIZE = 1024 * 512;
+    public static final Path BOOT_SNAPSHOT_ROOT = Paths.get("config", "snapshots");
+
+    /**
+     * The path of the ROM library index.
+     */
+    public static final Path ROM_LIBRARY_INDEX = Paths.get("config", "library.dat");
+
+    /**
+     * The amount of memory used to store rewind snapshots, in bytes.
+     */
+    private static final int REWIND_BUDGET = 32 * 1024 * 1024;
+
+    /**
+     * The number of frames between rewind snapshots.
+     */
+    private static final int REWIND_CAPTURE_INTERVAL = 2;
+
+    /**
+     * The number of rewind snapshots between keyframes.
+     */
+    private static final int REWIND_KEYFRAME_INTERVAL = 30;
+
+    /**
+     * The maximum number of frames that can be run ahead.
+     */
+    public static final int MAX_RUN_AHEAD_FRAMES = 4;
+
+    /**
+     * The weight given to each new sample in the moving averages of the run-ahead overhead.
+     */
+    private static final double RUN_AHEAD_SMOOTHING = 0.05;
 
     /**
      * The dispatcher for cartridge load events.
@@ -76,6 +119,27 @@ public class Emulator {
      */
     private final GameBoy gameboy = new GameBoy();
 
+    /**
+     * The writer that saves quick save states to disk in the background.
+     */
+    private final SaveStateWriter saveStateWriter = new SaveStateWriter();
+
+    /**
+     * The cache of snapshots that cartridges are booted from when a boot checkpoint is set.
+     */
+    private final BootSnapshotCache bootSnapshotCache = new BootSnapshotCache(BOOT_SNAPSHOT_ROOT);
+
+    /**
+     * The index of the ROMs in the user's library directories.
+     */
+    private final RomLibrary romLibrary = new RomLibrary(ROM_LIBRARY_INDEX);
+
+    /**
+     * The recent states of the Game Boy that can be rewound to.
+     */
+    private final RewindBuffer rewindBuffer = new RewindBuffer(gameboy, REWIND_BUDGET, REWIND_CAPTURE_INTERVAL,
+            REWIND_KEYFRAME_INTERVAL);
+
     /**
      * The configuration of the emulator.
      */
@@ -122,6 +186,11 @@ public class Emulator {
      */
     private Path cartridgePath;
 
+    /**
+     * The name of the currently loaded cartridge in its zip archive, or null if it is not in a zip archive.
+     */
+    private String cartridgeMember;
+
     /**
      * Whether the cartridge is waiting to be loaded.
      */
@@ -152,6 +221,111 @@ public class Emulator {
      */
     private int emulatorTexture;
 
+    /**
+     * The strategy used to skip rendering frames that will not be displayed.
+     */
+    private FrameSkipMode frameSkipMode = FrameSkipMode.AUTO;
+
+    /**
+     * Whether frames are rasterized on a worker thread.
+     */
+    private boolean isDeferredRendering;
+
+    /**
+     * The factor that frames are upscaled by. Frames can only be upscaled when they are rasterized on a worker thread.
+     */
+    private int renderScale = 1;
+
+    /**
+     * The number of threads each frame is rasterized with when frames are rasterized on a worker thread.
+     */
+    private int renderParallelism = 1;
+
+    /**
+     * Whether the rendering settings have changed and need to be applied on the next tick.
+     */
+    private boolean isRendererDirty;
+
+    /**
+     * Whether audio is played through the default output device.
+     */
+    private boolean isAudioEnabled = true;
+
+    /**
+     * Whether the audio settings have changed and need to be applied on the next tick.
+     */
+    private boolean isAudioDirty = true;
+
+    /**
+     * The sink that audio is currently played through, or {@code null} if audio is disabled.
+     */
+    private JavaSoundSink audioSink;
+
+    /**
+     * Whether emulation is running backwards through the rewind buffer.
+     */
+    private boolean isRewinding;
+
+    /**
+     * The checkpoint that cartridges are booted to, or null to boot cartridges from power on.
+     */
+    private Checkpoint bootCheckpoint;
+
+    /**
+     * The SHA-1 hash of the currently loaded ROM.
+     */
+    private String cartridgeHash;
+
+    /**
+     * The recorder of the movie being recorded, or null if no movie is being recorded.
+     */
+    private MovieRecorder movieRecorder;
+
+    /**
+     * The path the movie being recorded is written to when recording ends.
+     */
+    private Path movieRecordingPath;
+
+    /**
+     * The player of the movie being replayed, or null if no movie is being replayed.
+     */
+    private MoviePlayer moviePlayer;
+
+    /**
+     * The path to record a movie to on the next tick, or null if no recording was requested.
+     */
+    private Path pendingMovieRecording;
+
+    /**
+     * The path of the movie to replay on the next tick, or null if no replay was requested.
+     */
+    private Path pendingMoviePlayback;
+
+    /**
+     * Whether the current movie should end on the next tick.
+     */
+    private boolean isEndingMovie;
+
+    /**
+     * The number of frames to run ahead of the displayed frame, or 0 to disable run-ahead.
+     */
+    private int runAheadFrames;
+
+    /**
+     * The buffer the state is saved into before running ahead, which is reused for every frame.
+     */
+    private ByteBuffer runAheadState;
+
+    /**
+     * The moving average of the time taken to save and restore the state when running ahead, in nanoseconds.
+     */
+    private double runAheadSnapshotTime;
+
+    /**
+     * The moving average of the time taken to run the frames ahead, in nanoseconds.
+     */
+    private double runAheadFrameTime;
+
     /**
      * Creates a new {@code EmulatorOLD} instance.
      */
@@ -172,6 +346,7 @@ public class Emulator {
         this.isPaused = new SimpleBooleanProperty(false);
 
         this.cartridgePath = null;
+        this.cartridgeMember = null;
         this.isLoadingCartridge = false;
         this.isCartridgeLoaded = false;
     }
@@ -231,6 +406,11 @@ public class Emulator {
      */
     private void shutdown() {
         LOGGER.info("Shutting down emulator");
+        gameboy.getVideo().setDeferredRendering(false);
+        endMovie();
+        closeAudioSink();
+        closeBattery();
+        saveStateWriter.close();
         window.destroy();
     }
 
@@ -255,12 +435,31 @@ public class Emulator {
             this.isQuickLoading = false;
         }
 
+        if (isEndingMovie || pendingMovieRecording != null || pendingMoviePlayback != null) {
+            updateMovie();
+        }
+
+        if (isRendererDirty) {
+            updateRenderer();
+            this.isRendererDirty = false;
+        }
+
+        if (isAudioDirty) {
+            updateAudio();
+            this.isAudioDirty = false;
+        }
+
         if (isViewportDirty) {
             recalculateViewport();
             this.isViewportDirty = false;
         }
 
         if (isCartridgeLoaded) {
+            final var battery = gameboy.getCartridge().getBattery();
+            if (battery != null) {
+                battery.update();
+            }
+
             final var currentTime = System.nanoTime();
             if (!isPaused.get() && (window.isFocused() || !config.getPauseOnFocusLost())) {
                 partialFrameTime += (currentTime - lastFrameTime);
@@ -270,26 +469,194 @@ public class Emulator {
             if (forceExecuteFrame) {
                 this.forceExecuteFrame = false;
                 this.forceExecuteTick = false;
-                gameboy.runFrame();
+                runFrame();
                 renderFrame();
             } else if (forceExecuteTick) {
                 this.forceExecuteTick = false;
+
+                // Movies are replayed a frame at a time, so stepping through instructions ends the replay.
+                if (moviePlayer != null) {
+                    endMovie();
+                }
+
                 if (gameboy.tick()) {
+                    if (movieRecorder != null) {
+                        movieRecorder.onFrame();
+                    }
                     renderFrame();
                 }
             } else if (partialFrameTime >= FULL_FRAME_TIME) {
-                // Run as many frames as necessary to catch up.
+                // Run as many frames as necessary to catch up. Frames that are immediately replaced by another frame
+                // will never be displayed, so there is no need to render them.
+                final var video = gameboy.getVideo();
                 while (partialFrameTime >= FULL_FRAME_TIME) {
                     partialFrameTime -= FULL_FRAME_TIME;
-                    gameboy.runFrame();
+
+                    // When running ahead, the displayed frame comes from the frames run ahead instead.
+                    final var isBehind = partialFrameTime >= FULL_FRAME_TIME;
+                    video.setRenderSuppressed(isRunningAhead() || (frameSkipMode == FrameSkipMode.AUTO && isBehind));
+                    runFrame();
+                }
+
+                if (isRunningAhead()) {
+                    runAhead();
                 }
 
                 // Render only the most recently processed frame to the display.
                 renderFrame();
+                video.setRenderSuppressed(false);
             }
         }
     }
 
+    /**
+     * Runs a single frame, or steps back to the previous snapshot in the rewind buffer while rewinding. The frame is
+     * replayed from the current movie if one is playing, and recorded into the current movie if one is recording.
+     */
+    private void runFrame() {
+        if (isRewinding) {
+            // A movie cannot reproduce a rewind, so rewinding ends it.
+            endMovie();
+            rewindBuffer.rewind();
+        } else {
+            if (moviePlayer != null && moviePlayer.isFinished()) {
+                endMovie();
+            }
+
+            if (moviePlayer != null) {
+                moviePlayer.runFrame();
+            } else {
+                gameboy.runFrame();
+            }
+
+            if (movieRecorder != null) {
+                movieRecorder.onFrame();
+            }
+            rewindBuffer.onFrame();
+        }
+    }
+
+    /**
+     * Checks whether the next frames should be run ahead. Rewinding and replaying a movie already show frames as soon
+     * as they are emulated, so they are never run ahead.
+     *
+     * @return Whether to run ahead.
+     */
+    private boolean isRunningAhead() {
+        return runAheadFrames > 0 && !isRewinding && moviePlayer == null;
+    }
+
+    /**
+     * Runs ahead of the current frame to show the result of the held buttons sooner, hiding the lag that games have
+     * between reading the buttons and drawing their response. The state is saved, the frames ahead are run with only
+     * the last of them rendered and without any sound, and then the state is restored so that the next frame carries
+     * on from where it would have without running ahead.
+     */
+    private void runAhead() {
+        // The size of the state varies from frame to frame, so the buffer only grows when it cannot fit the state.
+        final var size = gameboy.serializedSize();
+        if (runAheadState == null || runAheadState.capacity() < size) {
+            this.runAheadState = ByteBuffer.allocate(size);
+        }
+
+        final var startTime = System.nanoTime();
+        final var elapsedCycles = gameboy.getElapsedCycles();
+        runAheadState.clear();
+        gameboy.serialize(runAheadState);
+        final var savedTime = System.nanoTime();
+
+        final var video = gameboy.getVideo();
+        final var audio = gameboy.getAudio();
+        audio.suspendOutput();
+        try {
+            for (var frame = 1; frame <= runAheadFrames; ++frame) {
+                video.setRenderSuppressed(frame < runAheadFrames);
+                gameboy.runFrame();
+            }
+        } finally {
+            final var runTime = System.nanoTime();
+
+            // The last frame run ahead has to be rendered before it is rolled back.
+            renderFrame();
+
+            final var renderedTime = System.nanoTime();
+            runAheadState.flip();
+            gameboy.restoreSnapshot(runAheadState, elapsedCycles);
+            audio.resumeOutput();
+            final var endTime = System.nanoTime();
+
+            final var snapshotTime = (savedTime - startTime) + (endTime - renderedTime);
+            this.runAheadSnapshotTime += (snapshotTime - runAheadSnapshotTime) * RUN_AHEAD_SMOOTHING;
+            this.runAheadFrameTime += ((runTime - savedTime) - runAheadFrameTime) * RUN_AHEAD_SMOOTHING;
+        }
+    }
+
+    /**
+     * Ends the current movie and starts any movie that was requested.
+     */
+    private void updateMovie() {
+        final var recordingPath = pendingMovieRecording;
+        final var playbackPath = pendingMoviePlayback;
+        this.pendingMovieRecording = null;
+        this.pendingMoviePlayback = null;
+        this.isEndingMovie = false;
+
+        endMovie();
+        if (!isCartridgeLoaded) {
+            return;
+        }
+
+        // The real time clock counts emulated time during movies, so that it reads the same when they are replayed.
+        if (playbackPath != null) {
+            try {
+                final var movie = InputMovie.read(playbackPath);
+                gameboy.setClockTimeSource(TimeSource.EMULATED);
+                this.moviePlayer = new MoviePlayer(gameboy, movie, cartridgeHash);
+
+                // The replay must never overwrite the save file, so it stays closed until the cartridge is reloaded.
+                closeBattery();
+                rewindBuffer.clear();
+                LOGGER.info("Replaying movie " + playbackPath + " of " + movie.getNumFrames() + " frames");
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.error("Failed to replay movie " + playbackPath, e);
+                gameboy.setClockTimeSource(TimeSource.HOST);
+            }
+        } else if (recordingPath != null) {
+            gameboy.setClockTimeSource(TimeSource.EMULATED);
+            this.movieRecorder = new MovieRecorder(gameboy, cartridgeHash);
+            this.movieRecordingPath = recordingPath;
+            LOGGER.info("Recording movie to " + recordingPath);
+        }
+    }
+
+    /**
+     * Ends the current movie, if there is one. A movie being recorded is written to disk.
+     */
+    private void endMovie() {
+        if (movieRecorder == null && moviePlayer == null) {
+            return;
+        }
+
+        if (movieRecorder != null) {
+            final var movie = movieRecorder.toMovie();
+            try {
+                movie.write(movieRecordingPath);
+                LOGGER.info("Recorded movie " + movieRecordingPath + " of " + movie.getNumFrames() + " frames");
+            } catch (IOException e) {
+                LOGGER.error("Failed to write movie to " + movieRecordingPath, e);
+            }
+            this.movieRecorder = null;
+            this.movieRecordingPath = null;
+        }
+
+        if (moviePlayer != null) {
+            LOGGER.info("Finished replaying movie after " + moviePlayer.getFrame() + " frames");
+            this.moviePlayer = null;
+        }
+
+        gameboy.setClockTimeSource(TimeSource.HOST);
+    }
+
     /**
      * Queries input devices and dispatches input events.
      */
@@ -303,7 +670,9 @@ public class Emulator {
      */
     public void reset() {
         if (isCartridgeLoaded) {
+            endMovie();
             gameboy.reset();
+            rewindBuffer.clear();
         }
     }
 
@@ -331,6 +700,25 @@ public class Emulator {
         }
     }
 
+    /**
+     * Sets whether a Game Boy button is pressed. Buttons are recorded while a movie is recording, and ignored while a
+     * movie is replaying.
+     *
+     * @param button  The button.
+     * @param pressed Whether the button is pressed or released.
+     */
+    private void setButton(GameboyButton button, boolean pressed) {
+        if (moviePlayer != null) {
+            return;
+        }
+
+        if (movieRecorder != null) {
+            movieRecorder.setButton(button, pressed);
+        } else {
+            gameboy.getInput().setButton(button, pressed);
+        }
+    }
+
     /**
      * Called when the window closes.
      *
@@ -369,14 +757,14 @@ public class Emulator {
      */
     private void onInputStateChanged(InputAction action, boolean pressed) {
         switch (action) {
-            case GAMEBOY_A -> gameboy.getInput().setButton(GameboyButton.A, pressed);
-            case GAMEBOY_B -> gameboy.getInput().setButton(GameboyButton.B, pressed);
-            case GAMEBOY_START -> gameboy.getInput().setButton(GameboyButton.START, pressed);
-            case GAMEBOY_SELECT -> gameboy.getInput().setButton(GameboyButton.SELECT, pressed);
-            case GAMEBOY_UP -> gameboy.getInput().setButton(GameboyButton.UP, pressed);
-            case GAMEBOY_RIGHT -> gameboy.getInput().setButton(GameboyButton.RIGHT, pressed);
-            case GAMEBOY_DOWN -> gameboy.getInput().setButton(GameboyButton.DOWN, pressed);
-            case GAMEBOY_LEFT -> gameboy.getInput().setButton(GameboyButton.LEFT, pressed);
+            case GAMEBOY_A -> setButton(GameboyButton.A, pressed);
+            case GAMEBOY_B -> setButton(GameboyButton.B, pressed);
+            case GAMEBOY_START -> setButton(GameboyButton.START, pressed);
+            case GAMEBOY_SELECT -> setButton(GameboyButton.SELECT, pressed);
+            case GAMEBOY_UP -> setButton(GameboyButton.UP, pressed);
+            case GAMEBOY_RIGHT -> setButton(GameboyButton.RIGHT, pressed);
+            case GAMEBOY_DOWN -> setButton(GameboyButton.DOWN, pressed);
+            case GAMEBOY_LEFT -> setButton(GameboyButton.LEFT, pressed);
             case SYSTEM_PAUSE_RESUME -> {
                 if (pressed) {
                     setPaused(!isPaused());
@@ -424,7 +812,12 @@ public class Emulator {
         final var cart = gameboy.getCartridge();
         if (cart.isLoaded()) {
             final var cartTitle = cart.getHeader().getTitle();
-            window.setTitle(String.format("%s (%d fps)", cartTitle, e.fps()));
+            if (runAheadFrames > 0) {
+                final var overhead = (runAheadSnapshotTime + runAheadFrameTime) / 1_000_000.0;
+                window.setTitle(String.format("%s (%d fps, run-ahead %.2f ms)", cartTitle, e.fps(), overhead));
+            } else {
+                window.setTitle(String.format("%s (%d fps)", cartTitle, e.fps()));
+            }
         }
     }
 
@@ -437,30 +830,8 @@ public class Emulator {
             return;
         }
 
-        final var parent = path.getParent();
-        if (!Files.exists(parent)) {
-            try {
-                Files.createDirectories(parent);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return;
-            }
-        }
-
-        // Serialize the game boy state and write it to disk.
-        try {
-            final var buf = ByteBuffer.allocate(QUICK_SAVE_SIZE);
-            gameboy.serialize(buf);
-            buf.flip();
-
-            final var data = new byte[buf.limit()];
-            buf.get(data);
-
-            Files.write(path, data);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
+        // Capture the game boy state now, and leave compressing and writing it to disk to the background writer.
+        saveStateWriter.save(gameboy, path);
     }
 
     /**
@@ -472,12 +843,19 @@ public class Emulator {
             return;
         }
 
-        // Deserialize the game boy state from the loaded file.
+        // Deserialize the game boy state from the loaded file, once any pending save to it has been written.
+        try {
+            saveStateWriter.awaitPending();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
         if (Files.exists(path)) {
             try {
-                final var data = Files.readAllBytes(path);
-                final var buf = ByteBuffer.wrap(data);
-                gameboy.deserialize(buf);
+                endMovie();
+                gameboy.deserialize(SaveStateWriter.read(path));
+                rewindBuffer.clear();
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -511,9 +889,32 @@ public class Emulator {
 
         Exception err = null;
         try {
-            // Load the cartridge data into the Game Boy.
-            final var rom = Files.readAllBytes(cartridgePath);
+            // Load the cartridge data into the Game Boy, persisting the previous cartridge's RAM first. Compressed ROMs
+            // are decompressed straight into the ROM image.
+            final var rom = RomFile.read(cartridgePath, cartridgeMember);
+            endMovie();
+            closeBattery();
             gameboy.loadCartridge(rom);
+            rewindBuffer.clear();
+            this.cartridgeHash = BootSnapshotCache.hash(rom);
+
+            // Restore the cartridge RAM from its save file, which lives next to the ROM. This must happen before the
+            // game runs, so that it never sees the RAM change underneath it.
+            final var battery = gameboy.getCartridge().getBattery();
+            if (battery != null) {
+                battery.open(getSaveFilePath());
+            }
+
+            // Skip straight to the boot checkpoint, running to it silently the first time the ROM is booted. The
+            // snapshot is keyed by the save that was just loaded, so it holds the RAM the game would have reached.
+            if (bootCheckpoint != null) {
+                gameboy.getAudio().setSink(null);
+                try {
+                    bootSnapshotCache.boot(gameboy, cartridgeHash, bootCheckpoint);
+                } finally {
+                    gameboy.getAudio().setSink(audioSink);
+                }
+            }
 
             // Show the window now that we have a ROM to display.
             final var title = gameboy.getCartridge().getHeader().getTitle();
@@ -537,6 +938,80 @@ public class Emulator {
         cartridgeLoadedEvent.broadcast(new CartridgeLoadedEvent(cartridgePath, gameboy.getCartridge(), err));
     }
 
+    /**
+     * Gets the path to the save file of the current cartridge, which is the cartridge path with a {@code .sav}
+     * extension. The save file of a ROM in a zip archive is named after the ROM, and lives next to the archive.
+     *
+     * @return The path.
+     */
+    private Path getSaveFilePath() {
+        final var name = cartridgeMember != null
+                ? Path.of(cartridgeMember).getFileName().toString()
+                : cartridgePath.getFileName().toString();
+        final var extension = name.lastIndexOf('.');
+        return cartridgePath.resolveSibling((extension > 0 ? name.substring(0, extension) : name) + ".sav");
+    }
+
+    /**
+     * Flushes and closes the save file of the current cartridge, if it has one.
+     */
+    private void closeBattery() {
+        final var battery = gameboy.getCartridge().getBattery();
+        if (battery != null) {
+            try {
+                battery.close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to write the cartridge save file", e);
+            }
+        }
+    }
+
+    /**
+     * Applies the current rendering settings to the video hardware. The render texture is recreated because the size of
+     * the framebuffer changes with the scale factor.
+     */
+    private void updateRenderer() {
+        final var video = gameboy.getVideo();
+        if (isDeferredRendering) {
+            video.setDeferredRendering(renderScale, renderParallelism);
+        } else {
+            video.setDeferredRendering(false);
+        }
+
+        glDeleteTextures(emulatorTexture);
+        initializeTexture();
+        markViewportDirty();
+    }
+
+    /**
+     * Applies the current audio settings. If the output device cannot be opened, the emulator keeps running without
+     * audio.
+     */
+    private void updateAudio() {
+        closeAudioSink();
+
+        if (isAudioEnabled) {
+            try {
+                this.audioSink = new JavaSoundSink();
+            } catch (LineUnavailableException e) {
+                LOGGER.error("Failed to open the audio output device", e);
+            }
+        }
+
+        gameboy.getAudio().setSink(audioSink);
+    }
+
+    /**
+     * Closes the current audio sink, if there is one.
+     */
+    private void closeAudioSink() {
+        if (audioSink != null) {
+            gameboy.getAudio().setSink(null);
+            audioSink.close();
+            this.audioSink = null;
+        }
+    }
+
     /**
      * Creates and initializes the texture used to render the framebuffer onto the window.
      */
@@ -649,20 +1124,70 @@ public class Emulator {
     public void unloadCartridge() {
         this.isCartridgeLoaded = false;
         window.setVisible(false);
+        endMovie();
+        closeBattery();
 
         cartridgeUnloadedEvent.broadcast(new CartridgeUnloadedEvent());
     }
 
     /**
-     * Set the cartridge to load.
+     * Set the cartridge to load. If the path is of a zip archive, the first ROM in it is loaded.
      *
      * @param path The path to the cartridge.
      */
     public void setCartridge(Path path) {
+        setCartridge(path, null);
+    }
+
+    /**
+     * Set the cartridge to load from an archive.
+     *
+     * @param path   The path to the cartridge, which may be a raw ROM or a compressed archive.
+     * @param member The name of the ROM in the zip archive, or null to load the first ROM in it.
+     */
+    public void setCartridge(Path path, String member) {
         this.cartridgePath = requireNonNull(path);
+        this.cartridgeMember = member;
         this.isLoadingCartridge = true;
     }
 
+    /**
+     * Sets the checkpoint that cartridges are booted to, which takes effect the next time a cartridge is loaded.
+     *
+     * @param checkpoint The checkpoint, or null to boot cartridges from power on.
+     */
+    public void setBootCheckpoint(Checkpoint checkpoint) {
+        this.bootCheckpoint = checkpoint;
+    }
+
+    /**
+     * Requests that a movie of the buttons pressed from now on be recorded, ending any current movie. The movie is
+     * written when it ends, which happens when {@link #requestMovieEnd()} is called or when anything other than input
+     * changes the state of the system, such as a reset, a quick load or a rewind.
+     *
+     * @param path The path to write the movie to.
+     */
+    public void requestMovieRecording(Path path) {
+        this.pendingMovieRecording = requireNonNull(path);
+    }
+
+    /**
+     * Requests that a movie be replayed, ending any current movie. Input from the user is ignored until the replay
+     * ends, and the cartridge's save file is closed so the replay never overwrites it.
+     *
+     * @param path The path of the movie.
+     */
+    public void requestMoviePlayback(Path path) {
+        this.pendingMoviePlayback = requireNonNull(path);
+    }
+
+    /**
+     * Requests that the current movie end, writing it to disk if it is being recorded.
+     */
+    public void requestMovieEnd() {
+        this.isEndingMovie = true;
+    }
+
     /**
      * Requests that the emulator state be saved to the current quick slot.
      */
@@ -705,6 +1230,116 @@ public class Emulator {
         isPaused.set(paused);
     }
 
+    /**
+     * Sets the strategy used to skip rendering frames.
+     *
+     * @param mode  The frame skip mode.
+     * @param ratio The number of frames to skip between each rendered frame. Only used by {@link FrameSkipMode#FIXED}.
+     */
+    public void setFrameSkip(FrameSkipMode mode, int ratio) {
+        this.frameSkipMode = requireNonNull(mode);
+
+        final var video = gameboy.getVideo();
+        video.setFrameSkip(mode == FrameSkipMode.FIXED ? ratio : 0);
+        video.setRenderSuppressed(false);
+    }
+
+    /**
+     * Sets whether frames are rasterized on a worker thread while the next frame is being emulated.
+     *
+     * @param enabled Whether deferred rendering is enabled.
+     */
+    public void setDeferredRendering(boolean enabled) {
+        this.isDeferredRendering = enabled;
+        this.isRendererDirty = true;
+    }
+
+    /**
+     * Sets whether audio is played through the default output device.
+     *
+     * @param enabled Whether audio is enabled.
+     */
+    public void setAudioEnabled(boolean enabled) {
+        this.isAudioEnabled = enabled;
+        this.isAudioDirty = true;
+    }
+
+    /**
+     * Sets whether emulation runs backwards through recently captured states instead of forwards. Rewinding stops at
+     * the oldest state that is still held in the rewind buffer.
+     *
+     * @param rewinding Whether to rewind.
+     */
+    public void setRewinding(boolean rewinding) {
+        this.isRewinding = rewinding;
+    }
+
+    /**
+     * Sets the number of frames to run ahead of the displayed frame. Games usually take one or more frames to respond
+     * to a button press, and running ahead shows the response that many frames sooner, at the cost of emulating each
+     * frame that many extra times.
+     *
+     * @param frames The number of frames to run ahead, between 0 and {@link #MAX_RUN_AHEAD_FRAMES}. 0 disables
+     *               run-ahead.
+     */
+    public void setRunAheadFrames(int frames) {
+        if (frames < 0 || frames > MAX_RUN_AHEAD_FRAMES) {
+            throw new IllegalArgumentException("Invalid number of run-ahead frames: " + frames);
+        }
+
+        this.runAheadFrames = frames;
+        this.runAheadSnapshotTime = 0;
+        this.runAheadFrameTime = 0;
+    }
+
+    /**
+     * Gets the average time taken to save and restore the state for each displayed frame when running ahead.
+     *
+     * @return The time in nanoseconds, or 0 if run-ahead is disabled.
+     */
+    public double getRunAheadSnapshotTime() {
+        return runAheadFrames > 0 ? runAheadSnapshotTime : 0;
+    }
+
+    /**
+     * Gets the average time taken to run the frames ahead for each displayed frame.
+     *
+     * @return The time in nanoseconds, or 0 if run-ahead is disabled.
+     */
+    public double getRunAheadFrameTime() {
+        return runAheadFrames > 0 ? runAheadFrameTime : 0;
+    }
+
+    /**
+     * Sets how frames are upscaled when they are rasterized on a worker thread. Scanlines are rasterized in bands
+     * across several threads when the parallelism is greater than one.
+     *
+     * @param scale       The factor to upscale frames by, between 1 and 8.
+     * @param parallelism The number of threads to rasterize each frame with.
+     */
+    public void setRenderScale(int scale, int parallelism) {
+        if (scale < 1 || scale > DeferredRenderer.MAX_SCALE) {
+            throw new IllegalArgumentException("Invalid scale: " + scale);
+        }
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        this.renderScale = scale;
+        this.renderParallelism = parallelism;
+        this.isRendererDirty = true;
+    }
+
+    /**
+     * Gets the strategy used to skip rendering frames.
+     *
+     * @return The frame skip mode.
+     */
+    public FrameSkipMode getFrameSkipMode() {
+        return frameSkipMode;
+    }
+
     /**
      * Gets whether a cartridge is currently loaded.
      *
@@ -732,6 +1367,16 @@ public class Emulator {
         return config;
     }
 
+    /**
+     * Gets the index of the ROMs in the user's library directories. The library is not loaded or refreshed by the
+     * emulator, as refreshing can take a long time and should happen in the background.
+     *
+     * @return The ROM library.
+     */
+    public RomLibrary getRomLibrary() {
+        return romLibrary;
+    }
+
     /**
      * Gets the Game Boy being emulated.
      *
@@ -0,0 +1,26 @@
+package org.guide.emulator;
+
+/**
+ * Represents the strategies the emulator can use to skip rendering frames that will never be displayed.
+ *
+ * @author Brendan Jones
+ */
+public enum FrameSkipMode {
+
+    /**
+     * Every frame is rendered.
+     */
+    NONE,
+
+    /**
+     * Frames are only skipped when the emulator falls behind and has to run several frames to catch up. Only the most
+     * recent frame is rendered.
+     */
+    AUTO,
+
+    /**
+     * A fixed number of frames are skipped between each rendered frame.
+     */
+    FIXED
+
+}
@@ -0,0 +1,255 @@
+package org.guide.emulator.library;
+
+import org.guide.gameboy.cartridge.CartridgeException;
+import org.guide.gameboy.cartridge.CartridgeHeader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads ROM images from files, which can either be raw ROM files or ROMs compressed into {@code .zip} or {@code .gz}
+ * archives. Compressed ROMs are decompressed straight into the ROM image, without being extracted to disk.
+ *
+ * @author Brendan Jones
+ */
+public final class RomFile {
+
+    /**
+     * The number of bytes at the start of a ROM that contain the cartridge header.
+     */
+    static final int HEADER_SIZE = 0x150;
+
+    /**
+     * The size of the largest valid ROM, which has 512 banks of 16 KB. Larger images are rejected before they are read,
+     * so that a corrupt or malicious archive cannot claim an arbitrary amount of memory.
+     */
+    static final int MAX_ROM_SIZE = 512 * 0x4000;
+
+    /**
+     * The size of the buffers used to read compressed files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The extensions of raw ROM files, in lowercase.
+     */
+    private static final Set<String> ROM_EXTENSIONS = Set.of("gb", "gbc");
+
+    /**
+     * The extension of zip archives, which can contain any number of ROMs.
+     */
+    private static final String ZIP_EXTENSION = "zip";
+
+    /**
+     * The extension of gzip files, which contain a single ROM.
+     */
+    private static final String GZIP_EXTENSION = "gz";
+
+    /**
+     * Reads a single ROM that is stored in a file.
+     */
+    @FunctionalInterface
+    interface MemberReader {
+
+        /**
+         * Reads a ROM.
+         *
+         * @param member The name of the ROM in its archive, or {@code null} if the ROM is not in a zip archive.
+         * @param in     The stream of the uncompressed ROM.
+         * @throws IOException If the ROM could not be read.
+         */
+        void read(String member, InputStream in) throws IOException;
+
+    }
+
+    private RomFile() {
+    }
+
+    /**
+     * Checks whether a file has the extension of a raw ROM or of an archive that can contain ROMs.
+     *
+     * @param path The path of the file.
+     * @return Whether ROMs can be read from the file.
+     */
+    public static boolean isSupported(Path path) {
+        final var extension = getExtension(path.getFileName().toString());
+        return ROM_EXTENSIONS.contains(extension) || extension.equals(ZIP_EXTENSION)
+                || extension.equals(GZIP_EXTENSION);
+    }
+
+    /**
+     * Reads a ROM image from a file. If the file is a zip archive, the first ROM in it is read.
+     *
+     * @param path The path of the file.
+     * @return The ROM image.
+     * @throws IOException        If the file could not be read.
+     * @throws CartridgeException If a compressed ROM has an invalid header.
+     */
+    public static byte[] read(Path path) throws IOException, CartridgeException {
+        return read(path, null);
+    }
+
+    /**
+     * Reads a ROM image from a file.
+     *
+     * @param path   The path of the file.
+     * @param member The name of the ROM to read if the file is a zip archive, or {@code null} to read the first ROM in
+     *               the archive. This is ignored for other files.
+     * @return The ROM image.
+     * @throws IOException        If the file could not be read.
+     * @throws CartridgeException If a compressed ROM has an invalid header, or the ROM is larger than any valid ROM.
+     */
+    public static byte[] read(Path path, String member) throws IOException, CartridgeException {
+        switch (getExtension(path.getFileName().toString())) {
+            case ZIP_EXTENSION -> {
+                try (final var zip = new ZipFile(path.toFile())) {
+                    // The entries are listed from the central directory at the end of the archive, so finding the ROM
+                    // does not require reading through the other members.
+                    final var entry = member != null ? zip.getEntry(member) : zip.stream()
+                            .filter(e -> !e.isDirectory() && isROMName(e.getName()))
+                            .findFirst()
+                            .orElse(null);
+                    if (entry == null) {
+                        throw new NoSuchFileException(path.toString(), member, "Archive does not contain the ROM");
+                    }
+
+                    try (final var in = zip.getInputStream(entry)) {
+                        return readImage(in, entry.getSize());
+                    }
+                }
+            }
+            case GZIP_EXTENSION -> {
+                try (final var in = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+                    return readImage(in, -1);
+                }
+            }
+            default -> {
+                requireValidSize(Files.size(path));
+                return Files.readAllBytes(path);
+            }
+        }
+    }
+
+    /**
+     * Reads each ROM stored in a file. Raw ROM and gzip files contain a single ROM, while zip archives can contain any
+     * number of them.
+     *
+     * @param path   The path of the file.
+     * @param reader The reader to pass each ROM to.
+     * @throws IOException If the file could not be read.
+     */
+    static void readMembers(Path path, MemberReader reader) throws IOException {
+        switch (getExtension(path.getFileName().toString())) {
+            case ZIP_EXTENSION -> {
+                try (final var zip = new ZipFile(path.toFile())) {
+                    final var entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        final var entry = entries.nextElement();
+                        if (!entry.isDirectory() && isROMName(entry.getName())) {
+                            try (final var in = zip.getInputStream(entry)) {
+                                reader.read(entry.getName(), in);
+                            }
+                        }
+                    }
+                }
+            }
+            case GZIP_EXTENSION -> {
+                try (final var in = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+                    reader.read(null, in);
+                }
+            }
+            default -> {
+                try (final var in = Files.newInputStream(path)) {
+                    reader.read(null, in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an uncompressed ROM image from a stream into a buffer of its exact size. If the size is not known, the
+     * buffer is sized from the ROM size in the cartridge header, and only resized if the stream does not match it.
+     *
+     * @param in   The stream of the ROM.
+     * @param size The size of the ROM, or -1 if it is not known.
+     * @return The ROM image.
+     * @throws IOException        If the ROM could not be read.
+     * @throws CartridgeException If the size is not known and the ROM has an invalid header, or the ROM is larger than
+     *                            any valid ROM.
+     */
+    private static byte[] readImage(InputStream in, long size) throws IOException, CartridgeException {
+        requireValidSize(size);
+
+        final byte[] image;
+        if (size >= 0) {
+            image = new byte[(int) size];
+        } else {
+            final var header = in.readNBytes(HEADER_SIZE);
+            if (header.length < HEADER_SIZE) {
+                throw new CartridgeException("ROM is too small to contain a header: " + header.length + " bytes");
+            }
+            final var romSize = new CartridgeHeader(header).getROMSize();
+            requireValidSize(romSize);
+            image = Arrays.copyOf(header, Math.max(HEADER_SIZE, romSize));
+        }
+
+        final var offset = size >= 0 ? 0 : HEADER_SIZE;
+        final var length = offset + in.readNBytes(image, offset, image.length - offset);
+        if (length < image.length) {
+            return Arrays.copyOf(image, length);
+        }
+
+        // Overdumped ROMs can be larger than their header says, and archives can understate the size of a member, but
+        // only read one byte past the largest valid ROM to find out.
+        final var remaining = in.readNBytes(MAX_ROM_SIZE - image.length + 1);
+        requireValidSize((long) image.length + remaining.length);
+        if (remaining.length > 0) {
+            final var grown = Arrays.copyOf(image, image.length + remaining.length);
+            System.arraycopy(remaining, 0, grown, image.length, remaining.length);
+            return grown;
+        }
+        return image;
+    }
+
+    /**
+     * Checks that a ROM is no larger than the largest valid ROM.
+     *
+     * @param size The size of the ROM, or -1 if it is not known.
+     * @throws CartridgeException If the ROM is too large.
+     */
+    private static void requireValidSize(long size) throws CartridgeException {
+        if (size > MAX_ROM_SIZE) {
+            throw new CartridgeException("ROM is too large: " + size + " bytes");
+        }
+    }
+
+    /**
+     * Checks whether a file name has the extension of a raw ROM file.
+     *
+     * @param name The file name.
+     * @return Whether the name is of a raw ROM file.
+     */
+    private static boolean isROMName(String name) {
+        return ROM_EXTENSIONS.contains(getExtension(name));
+    }
+
+    /**
+     * Gets the extension of a file name in lowercase.
+     *
+     * @param name The file name.
+     * @return The extension, or an empty string if the name does not have one.
+     */
+    private static String getExtension(String name) {
+        final var extension = name.lastIndexOf('.');
+        return extension != -1 ? name.substring(extension + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+}
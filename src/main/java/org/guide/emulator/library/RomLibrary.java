@@ -0,0 +1,570 @@
+package org.guide.emulator.library;
+
+import org.guide.gameboy.cartridge.CartridgeException;
+import org.guide.gameboy.cartridge.CartridgeHeader;
+import org.guide.gameboy.cartridge.mbc.MBCType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps an index of the ROM files found in a set of library directories.
+ * <p>
+ * The index is stored on disk, so it is available as soon as it is loaded without reading any ROM files. Refreshing
+ * the library walks the directories in parallel, and only reads the files that are new or whose size or modification
+ * time has changed since they were last indexed. Each of those files is read once, to parse its cartridge header and
+ * hash its contents. ROMs compressed into {@code .zip} and {@code .gz} archives are indexed without being extracted,
+ * and the entries of ROMs in zip archives record the name of their member, so they can be loaded without searching the
+ * archive. Files that contain no valid ROMs are remembered too, so they are not read again until they change.
+ *
+ * @author Brendan Jones
+ */
+public class RomLibrary {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RomLibrary.class);
+
+    /**
+     * The magic number at the start of an index file ("GBLI").
+     */
+    private static final int MAGIC_NUMBER = 0x47424C49;
+
+    /**
+     * The version of the index file format. This must be incremented whenever the format changes.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * The size of the buffer used to hash ROM files.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of ROM files that are indexed by a single task.
+     */
+    private static final int FILES_PER_TASK = 16;
+
+    /**
+     * The minimum number of threads used to walk the library. Walking is bound by file system latency rather than
+     * processing, so more threads than processors are used.
+     */
+    private static final int MIN_WALKER_THREADS = 4;
+
+    /**
+     * The path of the index file.
+     */
+    private final Path indexPath;
+
+    /**
+     * The directories that are searched for ROM files.
+     */
+    private final Set<Path> directories = new LinkedHashSet<>();
+
+    /**
+     * The entries of the indexed ROMs, by the path of the file they are stored in. This map is replaced rather than
+     * modified, so it can be read from any thread.
+     */
+    private volatile Map<Path, List<RomLibraryEntry>> entries = Map.of();
+
+    /**
+     * The files that were read but contain no valid ROMs, by their path. This map is replaced rather than modified, so
+     * it can be read from any thread.
+     */
+    private volatile Map<Path, FileStamp> ignored = Map.of();
+
+    /**
+     * Creates a new RomLibrary instance. The library is empty until it is loaded or refreshed.
+     *
+     * @param indexPath The path of the index file.
+     */
+    public RomLibrary(Path indexPath) {
+        this.indexPath = requireNonNull(indexPath);
+    }
+
+    /**
+     * Loads the library from its index file. If the file does not exist or was written by an incompatible version,
+     * the library is left empty.
+     *
+     * @throws IOException If the index file could not be read.
+     */
+    public synchronized void load() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+
+        final var stream = new BufferedInputStream(Files.newInputStream(indexPath), READ_BUFFER_SIZE);
+        try (final var in = new DataInputStream(stream)) {
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != VERSION) {
+                LOGGER.warn("Ignoring incompatible ROM library index " + indexPath);
+                return;
+            }
+
+            final var numDirectories = in.readInt();
+            directories.clear();
+            for (var i = 0; i < numDirectories; ++i) {
+                directories.add(Path.of(in.readUTF()));
+            }
+
+            final var numEntries = in.readInt();
+            final var loaded = new HashMap<Path, List<RomLibraryEntry>>(numEntries * 2);
+            for (var i = 0; i < numEntries; ++i) {
+                final var entry = new RomLibraryEntry(
+                        Path.of(in.readUTF()), in.readBoolean() ? in.readUTF() : null, in.readLong(), in.readLong(),
+                        in.readUTF(), in.readBoolean(), MBCType.valueOf(in.readUTF()), in.readInt(), in.readInt(),
+                        in.readUTF()
+                );
+                loaded.computeIfAbsent(entry.path(), path -> new ArrayList<>()).add(entry);
+            }
+            loaded.replaceAll((path, pathEntries) -> List.copyOf(pathEntries));
+
+            final var numIgnored = in.readInt();
+            final var loadedIgnored = new HashMap<Path, FileStamp>(numIgnored * 2);
+            for (var i = 0; i < numIgnored; ++i) {
+                loadedIgnored.put(Path.of(in.readUTF()), new FileStamp(in.readLong(), in.readLong()));
+            }
+
+            this.entries = Collections.unmodifiableMap(loaded);
+            this.ignored = Collections.unmodifiableMap(loadedIgnored);
+        }
+    }
+
+    /**
+     * Writes the library to its index file. The index is written to a temporary file that then replaces the index file,
+     * so a crash never leaves a partially written index behind.
+     *
+     * @throws IOException If the index file could not be written.
+     */
+    public synchronized void save() throws IOException {
+        final var parent = indexPath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        final var temp = Files.createTempFile(parent, indexPath.getFileName().toString(), ".tmp");
+        try {
+            final var stream = new BufferedOutputStream(Files.newOutputStream(temp), READ_BUFFER_SIZE);
+            try (final var out = new DataOutputStream(stream)) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(VERSION);
+
+                out.writeInt(directories.size());
+                for (final var directory : directories) {
+                    out.writeUTF(directory.toString());
+                }
+
+                final var current = getEntries();
+                out.writeInt(current.size());
+                for (final var entry : current) {
+                    out.writeUTF(entry.path().toString());
+                    out.writeBoolean(entry.member() != null);
+                    if (entry.member() != null) {
+                        out.writeUTF(entry.member());
+                    }
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.lastModified());
+                    out.writeUTF(entry.title());
+                    out.writeBoolean(entry.isCGB());
+                    out.writeUTF(entry.mbcType().name());
+                    out.writeInt(entry.headerChecksum());
+                    out.writeInt(entry.globalChecksum());
+                    out.writeUTF(entry.hash());
+                }
+
+                final var currentIgnored = ignored;
+                out.writeInt(currentIgnored.size());
+                for (final var ignoredFile : currentIgnored.entrySet()) {
+                    out.writeUTF(ignoredFile.getKey().toString());
+                    out.writeLong(ignoredFile.getValue().size());
+                    out.writeLong(ignoredFile.getValue().lastModified());
+                }
+            }
+
+            try {
+                Files.move(temp, indexPath, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexPath, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds a directory to search for ROM files. The new files are not indexed until the library is refreshed.
+     *
+     * @param directory The directory.
+     */
+    public synchronized void addDirectory(Path directory) {
+        directories.add(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Removes a directory from the library. Its files are removed from the index when the library is refreshed.
+     *
+     * @param directory The directory.
+     */
+    public synchronized void removeDirectory(Path directory) {
+        directories.remove(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Gets the directories that are searched for ROM files.
+     *
+     * @return The directories.
+     */
+    public synchronized List<Path> getDirectories() {
+        return List.copyOf(directories);
+    }
+
+    /**
+     * Gets the indexed ROMs.
+     *
+     * @return The entries of the indexed ROMs.
+     */
+    public List<RomLibraryEntry> getEntries() {
+        final var current = entries;
+        final var all = new ArrayList<RomLibraryEntry>(current.size());
+        for (final var pathEntries : current.values()) {
+            all.addAll(pathEntries);
+        }
+        return all;
+    }
+
+    /**
+     * Gets the index entries for the ROMs stored in a file. Raw ROM and gzip files contain a single ROM, while zip
+     * archives can contain any number of them.
+     *
+     * @param path The path of the file.
+     * @return The entries, which are empty if the file is not indexed.
+     */
+    public List<RomLibraryEntry> getEntries(Path path) {
+        return entries.getOrDefault(path.toAbsolutePath().normalize(), List.of());
+    }
+
+    /**
+     * Walks the library directories and brings the index up to date, and then saves it. Files that have not changed
+     * since they were indexed are not read, including files that were found to contain no ROMs, and files that no
+     * longer exist are removed. This can take a long time for large libraries, so it should not be called from the
+     * user interface thread.
+     *
+     * @return The number of files that were read.
+     * @throws IOException If the index file could not be written.
+     */
+    public int refresh() throws IOException {
+        final var previous = entries;
+        final var found = new ConcurrentHashMap<Path, List<RomLibraryEntry>>(Math.max(16, previous.size() * 2));
+        final var previousIgnored = ignored;
+        final var foundIgnored = new ConcurrentHashMap<Path, FileStamp>(Math.max(16, previousIgnored.size() * 2));
+        final var numRead = new AtomicInteger();
+
+        final var parallelism = Math.max(MIN_WALKER_THREADS, Runtime.getRuntime().availableProcessors());
+        final var pool = new ForkJoinPool(parallelism);
+        try {
+            final var tasks = new ArrayList<RecursiveAction>();
+            for (final var directory : getDirectories()) {
+                tasks.add(new DirectoryTask(directory, previous, found, previousIgnored, foundIgnored, numRead));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } finally {
+            pool.shutdown();
+        }
+
+        this.entries = Collections.unmodifiableMap(new HashMap<>(found));
+        this.ignored = Collections.unmodifiableMap(new HashMap<>(foundIgnored));
+        save();
+
+        LOGGER.info("Indexed " + found.size() + " ROM files, " + numRead.get() + " of which were read");
+        return numRead.get();
+    }
+
+    /**
+     * Reads the cartridge header of each ROM stored in a file and hashes its contents. Compressed ROMs are hashed as
+     * they are decompressed, so the hash is of the uncompressed ROM. Invalid ROMs in an archive are skipped.
+     *
+     * @param path       The path of the file.
+     * @param attributes The attributes of the file.
+     * @return The index entries for the ROMs in the file.
+     * @throws IOException If the file could not be read.
+     */
+    private static List<RomLibraryEntry> readEntries(Path path, BasicFileAttributes attributes) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final var entries = new ArrayList<RomLibraryEntry>(1);
+        final var buffer = new byte[READ_BUFFER_SIZE];
+        RomFile.readMembers(path, (member, in) -> {
+            // The header is parsed from the first bytes of the ROM, which are then hashed along with the rest of it.
+            final var length = in.readNBytes(buffer, 0, buffer.length);
+            final CartridgeHeader header;
+            try {
+                if (length < RomFile.HEADER_SIZE) {
+                    throw new CartridgeException("ROM is too small to contain a header: " + length + " bytes");
+                }
+                header = new CartridgeHeader(buffer);
+            } catch (CartridgeException e) {
+                LOGGER.debug("Skipping invalid ROM " + path + (member != null ? "!" + member : ""), e);
+                return;
+            }
+
+            digest.reset();
+            digest.update(buffer, 0, length);
+            var size = (long) length;
+            for (var read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                size += read;
+                if (size > RomFile.MAX_ROM_SIZE) {
+                    LOGGER.debug("Skipping oversized ROM " + path + (member != null ? "!" + member : ""));
+                    return;
+                }
+                digest.update(buffer, 0, read);
+            }
+
+            entries.add(new RomLibraryEntry(
+                    path, member, attributes.size(), attributes.lastModifiedTime().toMillis(), header.getTitle(),
+                    header.isCGB(), header.getMBCType(), header.getHeaderChecksum(), header.getGlobalChecksum(),
+                    HexFormat.of().formatHex(digest.digest())
+            ));
+        });
+        return List.copyOf(entries);
+    }
+
+    /**
+     * Lists a directory, walking its subdirectories and indexing its ROM files in separate tasks.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = -3186220735260781926L;
+
+        /**
+         * The directory to list.
+         */
+        private final Path directory;
+
+        /**
+         * The entries of the index before it was refreshed.
+         */
+        private final Map<Path, List<RomLibraryEntry>> previous;
+
+        /**
+         * The entries of the ROM files that have been found.
+         */
+        private final Map<Path, List<RomLibraryEntry>> found;
+
+        /**
+         * The files that contained no ROMs before the index was refreshed.
+         */
+        private final Map<Path, FileStamp> previousIgnored;
+
+        /**
+         * The files that have been found to contain no ROMs.
+         */
+        private final Map<Path, FileStamp> foundIgnored;
+
+        /**
+         * The number of files that have been read.
+         */
+        private final AtomicInteger numRead;
+
+        /**
+         * Creates a new DirectoryTask instance.
+         *
+         * @param directory       The directory to list.
+         * @param previous        The entries of the index before it was refreshed.
+         * @param found           The entries of the ROM files that have been found.
+         * @param previousIgnored The files that contained no ROMs before the index was refreshed.
+         * @param foundIgnored    The files that have been found to contain no ROMs.
+         * @param numRead         The number of files that have been read.
+         */
+        DirectoryTask(Path directory, Map<Path, List<RomLibraryEntry>> previous,
+                      Map<Path, List<RomLibraryEntry>> found, Map<Path, FileStamp> previousIgnored,
+                      Map<Path, FileStamp> foundIgnored, AtomicInteger numRead) {
+            this.directory = directory;
+            this.previous = previous;
+            this.found = found;
+            this.previousIgnored = previousIgnored;
+            this.foundIgnored = foundIgnored;
+            this.numRead = numRead;
+        }
+
+        @Override
+        protected void compute() {
+            final var tasks = new ArrayList<RecursiveAction>();
+            var files = new ArrayList<Path>();
+            var attributes = new ArrayList<BasicFileAttributes>();
+
+            try (final var stream = Files.newDirectoryStream(directory)) {
+                for (final var path : stream) {
+                    // Symbolic links are not followed, so links cannot cause a directory to be walked forever.
+                    final var pathAttributes = Files.readAttributes(path, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+
+                    if (pathAttributes.isDirectory()) {
+                        tasks.add(new DirectoryTask(path, previous, found, previousIgnored, foundIgnored, numRead));
+                    } else if (pathAttributes.isRegularFile() && RomFile.isSupported(path)) {
+                        files.add(path);
+                        attributes.add(pathAttributes);
+
+                        if (files.size() == FILES_PER_TASK) {
+                            tasks.add(new FileTask(files, attributes, previous, found, previousIgnored, foundIgnored, numRead));
+                            files = new ArrayList<>();
+                            attributes = new ArrayList<>();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list ROM directory " + directory, e);
+            }
+
+            if (!files.isEmpty()) {
+                tasks.add(new FileTask(files, attributes, previous, found, previousIgnored, foundIgnored, numRead));
+            }
+            invokeAll(tasks);
+        }
+
+    }
+
+    /**
+     * Indexes a group of ROM files in the same directory.
+     */
+    private static class FileTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 6754027315894861130L;
+
+        /**
+         * The paths of the files.
+         */
+        private final List<Path> files;
+
+        /**
+         * The attributes of each file.
+         */
+        private final List<BasicFileAttributes> attributes;
+
+        /**
+         * The entries of the index before it was refreshed.
+         */
+        private final Map<Path, List<RomLibraryEntry>> previous;
+
+        /**
+         * The entries of the ROM files that have been found.
+         */
+        private final Map<Path, List<RomLibraryEntry>> found;
+
+        /**
+         * The files that contained no ROMs before the index was refreshed.
+         */
+        private final Map<Path, FileStamp> previousIgnored;
+
+        /**
+         * The files that have been found to contain no ROMs.
+         */
+        private final Map<Path, FileStamp> foundIgnored;
+
+        /**
+         * The number of files that have been read.
+         */
+        private final AtomicInteger numRead;
+
+        /**
+         * Creates a new FileTask instance.
+         *
+         * @param files           The paths of the files.
+         * @param attributes      The attributes of each file.
+         * @param previous        The entries of the index before it was refreshed.
+         * @param found           The entries of the ROM files that have been found.
+         * @param previousIgnored The files that contained no ROMs before the index was refreshed.
+         * @param foundIgnored    The files that have been found to contain no ROMs.
+         * @param numRead         The number of files that have been read.
+         */
+        FileTask(List<Path> files, List<BasicFileAttributes> attributes, Map<Path, List<RomLibraryEntry>> previous,
+                 Map<Path, List<RomLibraryEntry>> found, Map<Path, FileStamp> previousIgnored,
+                 Map<Path, FileStamp> foundIgnored, AtomicInteger numRead) {
+            this.files = files;
+            this.attributes = attributes;
+            this.previous = previous;
+            this.found = found;
+            this.previousIgnored = previousIgnored;
+            this.foundIgnored = foundIgnored;
+            this.numRead = numRead;
+        }
+
+        @Override
+        protected void compute() {
+            for (var i = 0; i < files.size(); ++i) {
+                final var path = files.get(i);
+                final var fileAttributes = attributes.get(i);
+                final var stamp = new FileStamp(fileAttributes.size(), fileAttributes.lastModifiedTime().toMillis());
+
+                // Files that have not changed since they were indexed are not read again, including every ROM in an
+                // unchanged archive.
+                final var pathEntries = previous.get(path);
+                if (pathEntries != null && !pathEntries.isEmpty() && pathEntries.get(0).size() == stamp.size()
+                        && pathEntries.get(0).lastModified() == stamp.lastModified()) {
+                    found.put(path, pathEntries);
+                    continue;
+                }
+
+                // Neither are files that had no ROMs in them, such as unrelated archives.
+                if (stamp.equals(previousIgnored.get(path))) {
+                    foundIgnored.put(path, stamp);
+                    continue;
+                }
+
+                try {
+                    final var read = readEntries(path, fileAttributes);
+                    numRead.incrementAndGet();
+                    if (read.isEmpty()) {
+                        foundIgnored.put(path, stamp);
+                    } else {
+                        found.put(path, read);
+                    }
+                } catch (IOException e) {
+                    LOGGER.debug("Skipping unreadable ROM file " + path, e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The size and modification time of a file, which together identify whether it has changed since it was read.
+     *
+     * @param size         The size of the file in bytes.
+     * @param lastModified The time the file was last modified, in milliseconds since the epoch.
+     */
+    private record FileStamp(long size, long lastModified) {
+    }
+
+}
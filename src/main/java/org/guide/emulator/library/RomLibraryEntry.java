@@ -0,0 +1,24 @@
+package org.guide.emulator.library;
+
+import org.guide.gameboy.cartridge.mbc.MBCType;
+
+import java.nio.file.Path;
+
+/**
+ * A ROM in the library, along with the details read from its cartridge header.
+ *
+ * @param path           The absolute path of the file the ROM is stored in.
+ * @param member         The name of the ROM in its zip archive, or {@code null} if the ROM is not in a zip archive.
+ * @param size           The size of the file in bytes.
+ * @param lastModified   The time the file was last modified, in milliseconds since the epoch.
+ * @param title          The title of the game.
+ * @param isCGB          Whether the game supports the Game Boy Color.
+ * @param mbcType        The memory bank controller of the cartridge.
+ * @param headerChecksum The header checksum.
+ * @param globalChecksum The global checksum.
+ * @param hash           The SHA-1 hash of the uncompressed ROM, as a lowercase hexadecimal string.
+ * @author Brendan Jones
+ */
+public record RomLibraryEntry(Path path, String member, long size, long lastModified, String title, boolean isCGB,
+                              MBCType mbcType, int headerChecksum, int globalChecksum, String hash) {
+}
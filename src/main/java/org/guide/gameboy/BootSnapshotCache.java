@@ -0,0 +1,297 @@
+package org.guide.gameboy;
+
+import org.guide.gameboy.input.Input;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Caches snapshots of the system at named checkpoints after boot, so that runs which boot the same ROM can skip
+ * straight past its intro.
+ * <p>
+ * A checkpoint is reached by running a number of frames from power on while an input script presses buttons. The
+ * state at the checkpoint is stored uncompressed under the SHA-1 hash of the ROM, so it only ever applies to the exact
+ * ROM it was recorded from, and restoring it takes a single read. Snapshots that no longer restore the complete system,
+ * such as those recorded before a component's save state format changed, are recorded again.
+ * <p>
+ * A game's progress to a checkpoint can depend on its saved data, so the snapshots of cartridges with a battery are
+ * also keyed by the SHA-1 hash of the RAM and clock registers loaded at power on. Restoring one is then the same as
+ * running to the checkpoint from that save, and only the snapshot of the most recent save is kept for each
+ * checkpoint. A running clock changes the key every second, so those cartridges rarely restore a snapshot.
+ *
+ * @author Brendan Jones
+ */
+public class BootSnapshotCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BootSnapshotCache.class);
+
+    /**
+     * The characters that checkpoint names can contain, so that they can be used in file names.
+     */
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    /**
+     * The characters of a ROM or battery hash.
+     */
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]+");
+
+    /**
+     * The extension of snapshot files.
+     */
+    private static final String EXTENSION = ".state";
+
+    /**
+     * An input script that never presses any buttons.
+     */
+    public static final InputScript NO_INPUT = (input, frame) -> {
+    };
+
+    /**
+     * Sets the buttons that are held during each frame on the way to a checkpoint.
+     */
+    @FunctionalInterface
+    public interface InputScript {
+
+        /**
+         * Sets the buttons that are held during a frame. Buttons stay held until they are released.
+         *
+         * @param input The input component.
+         * @param frame The number of frames that have been run since power on.
+         */
+        void apply(Input input, int frame);
+
+    }
+
+    /**
+     * A point in a game that is reached by running a number of frames from power on with an input script.
+     *
+     * @param name      The name of the checkpoint, which identifies its input script. Scripts that press different
+     *                  buttons must use different names.
+     * @param numFrames The number of frames to run from power on.
+     * @param script    The input script.
+     */
+    public record Checkpoint(String name, int numFrames, InputScript script) {
+
+        /**
+         * Creates a new Checkpoint instance.
+         */
+        public Checkpoint {
+            if (!CHECKPOINT_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid checkpoint name: " + name);
+            }
+
+            if (numFrames < 0) {
+                throw new IllegalArgumentException("Invalid number of frames: " + numFrames);
+            }
+
+            requireNonNull(script);
+        }
+
+    }
+
+    /**
+     * The directory that snapshots are stored in.
+     */
+    private final Path directory;
+
+    /**
+     * Creates a new BootSnapshotCache instance.
+     *
+     * @param directory The directory that snapshots are stored in. It is created when the first snapshot is stored.
+     */
+    public BootSnapshotCache(Path directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    /**
+     * Hashes a ROM image to get the key its snapshots are stored under.
+     *
+     * @param rom The ROM image.
+     * @return The SHA-1 hash of the ROM, as a lowercase hexadecimal string.
+     */
+    public static String hash(byte[] rom) {
+        final var digest = createDigest();
+        return HexFormat.of().formatHex(digest.digest(rom));
+    }
+
+    /**
+     * Hashes the contents of the battery of the loaded cartridge, to get the key that snapshots of its current save
+     * are stored under. The contents are only what the game can observe, so reloading the same save from a file gives
+     * the same hash.
+     *
+     * @param gameboy The Game Boy, which must have the ROM loaded.
+     * @return The SHA-1 hash of the RAM and clock registers, as a lowercase hexadecimal string, or {@code null} if the
+     * cartridge has no battery.
+     */
+    public static String hashBattery(GameBoy gameboy) {
+        final var battery = gameboy.getCartridge().getBattery();
+        if (battery == null) {
+            return null;
+        }
+
+        final var digest = createDigest();
+        battery.digest(digest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Brings a system that has just loaded a cartridge to a checkpoint. The snapshot of the checkpoint is restored if
+     * it is cached, and otherwise the checkpoint is run to and its snapshot is stored.
+     *
+     * @param gameboy    The Game Boy, which must be in its power on state, with the save of the cartridge loaded.
+     * @param romHash    The hash of the loaded ROM.
+     * @param checkpoint The checkpoint.
+     * @return Whether the snapshot was restored from the cache.
+     * @throws IOException If the snapshot could not be read or stored.
+     */
+    public boolean boot(GameBoy gameboy, String romHash, Checkpoint checkpoint) throws IOException {
+        final var batteryHash = hashBattery(gameboy);
+        if (restore(gameboy, romHash, batteryHash, checkpoint)) {
+            return true;
+        }
+
+        final var input = gameboy.getInput();
+        for (var frame = 0; frame < checkpoint.numFrames(); ++frame) {
+            checkpoint.script().apply(input, frame);
+            gameboy.runFrame();
+        }
+
+        store(gameboy, romHash, batteryHash, checkpoint);
+        return false;
+    }
+
+    /**
+     * Restores the snapshot of a checkpoint, if it is cached.
+     *
+     * @param gameboy    The Game Boy, which must have the ROM loaded.
+     * @param romHash     The hash of the loaded ROM.
+     * @param batteryHash The hash of the battery contents at power on, from {@link #hashBattery(GameBoy)}.
+     * @param checkpoint  The checkpoint.
+     * @return Whether the snapshot was cached and restored. The system is left untouched if it was not.
+     * @throws IOException If the snapshot could not be read.
+     */
+    public boolean restore(GameBoy gameboy, String romHash, String batteryHash, Checkpoint checkpoint)
+            throws IOException {
+        final var path = getPath(romHash, batteryHash, checkpoint);
+
+        final ByteBuffer state;
+        try {
+            state = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        if (!gameboy.isCompleteState(state)) {
+            LOGGER.info("Ignoring outdated boot snapshot " + path);
+            return false;
+        }
+
+        gameboy.deserialize(state);
+        return true;
+    }
+
+    /**
+     * Stores a snapshot of the current state of the system as a checkpoint. The snapshot is written to a temporary
+     * file that then replaces the snapshot file, so runs that share the cache never see a partially written snapshot.
+     * Snapshots of the same checkpoint from other saves are deleted.
+     *
+     * @param gameboy     The Game Boy, which must have the ROM loaded.
+     * @param romHash     The hash of the loaded ROM.
+     * @param batteryHash The hash of the battery contents at power on, from {@link #hashBattery(GameBoy)}.
+     * @param checkpoint  The checkpoint.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public void store(GameBoy gameboy, String romHash, String batteryHash, Checkpoint checkpoint) throws IOException {
+        final var path = getPath(romHash, batteryHash, checkpoint);
+        final var parent = path.getParent();
+        Files.createDirectories(parent);
+
+        final var temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (final var channel = Files.newByteChannel(temp, WRITE)) {
+                gameboy.serialize(channel);
+            }
+
+            try {
+                Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (batteryHash != null) {
+            final var saves = Pattern.compile(Pattern.quote(getFileName(null, checkpoint) + "-") + HASH.pattern()
+                    + Pattern.quote(EXTENSION));
+            try (final var files = Files.newDirectoryStream(parent)) {
+                for (final var file : files) {
+                    if (!file.equals(path) && saves.matcher(file.getFileName().toString()).matches()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a new SHA-1 digest.
+     *
+     * @return The digest.
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the path of the snapshot file of a checkpoint.
+     *
+     * @param romHash     The hash of the ROM.
+     * @param batteryHash The hash of the battery contents, or {@code null} if the cartridge has no battery.
+     * @param checkpoint  The checkpoint.
+     * @return The path.
+     */
+    private Path getPath(String romHash, String batteryHash, Checkpoint checkpoint) {
+        if (!HASH.matcher(romHash).matches()) {
+            throw new IllegalArgumentException("Invalid ROM hash: " + romHash);
+        }
+
+        if (batteryHash != null && !HASH.matcher(batteryHash).matches()) {
+            throw new IllegalArgumentException("Invalid battery hash: " + batteryHash);
+        }
+
+        return directory.resolve(romHash).resolve(getFileName(batteryHash, checkpoint) + EXTENSION);
+    }
+
+    /**
+     * Gets the name of the snapshot file of a checkpoint, without its extension.
+     *
+     * @param batteryHash The hash of the battery contents, or {@code null} if the cartridge has no battery.
+     * @param checkpoint  The checkpoint.
+     * @return The name.
+     */
+    private static String getFileName(String batteryHash, Checkpoint checkpoint) {
+        final var name = checkpoint.name() + "-" + checkpoint.numFrames();
+        return batteryHash != null ? name + "-" + batteryHash : name;
+    }
+
+}
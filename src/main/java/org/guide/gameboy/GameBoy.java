@@ -1,7 +1,9 @@
 package org.guide.gameboy;
 
+import org.guide.gameboy.SaveStateSerializer.Chunk;
 import org.guide.gameboy.audio.Audio;
 import org.guide.gameboy.cartridge.Cartridge;
+import org.guide.gameboy.cartridge.hardware.RealTimeClock.TimeSource;
 import org.guide.gameboy.input.Input;
 import org.guide.gameboy.processor.CPUStatusMode;
 import org.guide.gameboy.processor.Processor;
@@ -12,14 +14,19 @@ import org.guide.gameboy.serial.Serial;
 import org.guide.gameboy.timer.Timer;
 import org.guide.gameboy.video.Video;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Implements the Game Boy system in its entirety.
  *
  * @author Brendan Jones
  */
-public class GameBoy implements SerializableComponent {
+public class GameBoy implements IncrementalComponent {
 
     /**
      * The memory component.
@@ -71,13 +78,30 @@ public class GameBoy implements SerializableComponent {
      */
     private final HDMAController hdma;
 
+    /**
+     * The serializer for save states of the loaded cartridge. This is recreated whenever a cartridge is loaded, since
+     * each cartridge has its own memory bank controller.
+     */
+    private SaveStateSerializer stateSerializer;
+
+    /**
+     * The number of cycles the system has run for, not counting the extra cycles run in double speed mode.
+     */
+    private long elapsedCycles;
+
+    /**
+     * The source of time counted by the real time clock of loaded cartridges.
+     */
+    private TimeSource clockTimeSource;
+
     /**
      * <p>Creates a new {@code GameBoy} instance.</p>
      */
     public GameBoy() {
         this.memory = new Memory();
         this.processor = new Processor(memory);
-        this.cartridge = new Cartridge(memory);
+        this.cartridge = new Cartridge(memory, () -> elapsedCycles);
+        this.clockTimeSource = TimeSource.HOST;
         this.audio = new Audio(memory);
 
         final var interrupts = processor.getInterrupts();
@@ -87,7 +111,7 @@ public class GameBoy implements SerializableComponent {
         this.serial = new Serial(memory, interrupts);
 
         this.dma = new DMAController(memory);
-        this.hdma = new HDMAController(memory, video);
+        this.hdma = new HDMAController(memory, processor, video);
     }
 
     /**
@@ -110,6 +134,10 @@ public class GameBoy implements SerializableComponent {
         final var cycles = processor.tick();
         final var status = processor.getStatus();
 
+        // Video and audio hardware is not affected by double processor speed.
+        final var normalizedCycles = processor.isDoubleSpeed() ? cycles >> 1 : cycles;
+        this.elapsedCycles += normalizedCycles;
+
         serial.tick(cycles);
         input.tick();
 
@@ -123,10 +151,7 @@ public class GameBoy implements SerializableComponent {
 
         timer.tick(cycles);
 
-        // Video and audio hardware is not affected by double processor speed.
-        final var normalizedCycles = processor.isDoubleSpeed() ? cycles >> 1 : cycles;
-
-        // TODO audio.tick(normalizedCycles)
+        audio.tick(normalizedCycles);
         return video.tick(status, normalizedCycles);
     }
 
@@ -138,27 +163,43 @@ public class GameBoy implements SerializableComponent {
      */
     public void loadCartridge(byte[] data) throws Exception {
         // Load the new cartridge data.
-        cartridge.load(data);
+        cartridge.load(data, clockTimeSource);
+        this.stateSerializer = createStateSerializer();
 
         // Reset the emulator to its initial state.
         reset();
     }
 
+    @Override
+    public int serializedSize() {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        return stateSerializer.serializedSize();
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         if (!cartridge.isLoaded()) {
             throw new IllegalStateException("Game Boy is not running.");
         }
 
-        cartridge.getMBC().serialize(out);
-        memory.serialize(out);
-        processor.serialize(out);
-        serial.serialize(out);
-        timer.serialize(out);
-        dma.serialize(out);
-        hdma.serialize(out);
-        video.serialize(out);
-        audio.serialize(out);
+        stateSerializer.serialize(out);
+    }
+
+    /**
+     * Serializes the system and streams its data to the provided channel, without first copying it to the heap.
+     *
+     * @param channel The channel to write to.
+     * @throws IOException If the data could not be written.
+     */
+    public void serialize(WritableByteChannel channel) throws IOException {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        stateSerializer.serialize(channel);
     }
 
     @Override
@@ -168,20 +209,136 @@ public class GameBoy implements SerializableComponent {
         }
 
         reset();
+        stateSerializer.deserialize(in);
+
+        memory.broadcastGlobalMemoryChangedEvent();
+    }
 
-        cartridge.getMBC().deserialize(in);
-        memory.deserialize(in);
-        processor.deserialize(in);
-        serial.deserialize(in);
-        timer.deserialize(in);
-        dma.deserialize(in);
-        hdma.deserialize(in);
-        video.deserialize(in);
-        audio.deserialize(in);
+    /**
+     * Restores a snapshot of the system that was taken with {@link #serialize(ByteBuffer)} since the cartridge was
+     * loaded. Unlike {@link #deserialize(ByteBuffer)}, the system is not reset first, so state that belongs to the host
+     * rather than the snapshot, such as which buttons are held, is kept. This makes it suitable for rolling back frames
+     * that were only run speculatively. The cycle counter is not part of the snapshot, so it is set back to the value
+     * it had when the snapshot was taken, which keeps anything timed against it, such as a movie being recorded, in
+     * step with the rolled back system.
+     *
+     * @param in            The buffer containing the snapshot.
+     * @param elapsedCycles The value of {@link #getElapsedCycles()} when the snapshot was taken.
+     */
+    public void restoreSnapshot(ByteBuffer in, long elapsedCycles) {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        stateSerializer.deserialize(in);
+        this.elapsedCycles = elapsedCycles;
 
         memory.broadcastGlobalMemoryChangedEvent();
     }
 
+    /**
+     * Checks whether a save state restores every component of the system for the loaded cartridge. States written by
+     * older versions of the emulator can be missing components, which are left in their reset state when loaded.
+     *
+     * @param in The buffer containing the save state. Its position is not changed.
+     * @return Whether the save state is complete.
+     */
+    public boolean isCompleteState(ByteBuffer in) {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        return stateSerializer.isComplete(in);
+    }
+
+    /**
+     * Marks the current state as the base that incremental snapshots are recorded against. This is usually done right
+     * after the state is serialized in full, as that save state must be restored before any incremental snapshot
+     * recorded against it.
+     */
+    @Override
+    public void markBase() {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        stateSerializer.markBase();
+    }
+
+    @Override
+    public int changesSize() {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        return stateSerializer.changesSize();
+    }
+
+    /**
+     * Writes an incremental snapshot containing the memory pages that have been modified since the base state was
+     * marked, along with the full state of the components that do not track their changes.
+     *
+     * @param out The buffer to write to.
+     */
+    @Override
+    public void serializeChanges(ByteBuffer out) {
+        if (!cartridge.isLoaded()) {
+            throw new IllegalStateException("Game Boy is not running.");
+        }
+
+        stateSerializer.serializeChanges(out);
+    }
+
+    /**
+     * Applies an incremental snapshot. The system must be in the base state the snapshot was recorded against, which
+     * is restored by deserializing the full save state written when the base was marked, and then marking the base
+     * again.
+     *
+     * @param in The buffer to read from.
+     */
+    @Override
+    public void deserializeChanges(ByteBuffer in) {
+        if (!cartridge.isLoaded()) {
+            return;
+        }
+
+        stateSerializer.deserializeChanges(in);
+
+        memory.broadcastGlobalMemoryChangedEvent();
+    }
+
+    /**
+     * Creates the serializer for save states of the loaded cartridge. Each component is stored in its own chunk, and
+     * the version of a chunk must be incremented whenever the component's serialized data changes.
+     *
+     * @return The save state serializer.
+     */
+    private SaveStateSerializer createStateSerializer() {
+        // The memory banks and framebuffer are kept in chunks of their own, so that incremental snapshots only need to
+        // contain their changes.
+        final var chunks = new ArrayList<Chunk>();
+        chunks.add(new Chunk("MBC ", 2, cartridge.getMBC()));
+        if (cartridge.getMBC().getRAMBanks() != null) {
+            chunks.add(new Chunk("SRAM", 1, cartridge.getMBC().getRAMBanks()));
+        }
+        if (cartridge.getRTC() != null) {
+            chunks.add(new Chunk("RTC ", 1, cartridge.getRTC()));
+        }
+        chunks.add(new Chunk("MEM ", 2, memory));
+        chunks.add(new Chunk("WRAM", 1, memory.getWorkRAM()));
+        chunks.add(new Chunk("CPU ", 1, processor));
+        chunks.add(new Chunk("SIO ", 1, serial));
+        chunks.add(new Chunk("TIMR", 1, timer));
+        chunks.add(new Chunk("DMA ", 1, dma));
+        chunks.add(new Chunk("HDMA", 1, hdma));
+        chunks.add(new Chunk("PPU ", 2, video));
+        chunks.add(new Chunk("VRAM", 1, video.getVideoMemory()));
+        chunks.add(new Chunk("LCD ", 1, video.getLCDFramebuffer()));
+        chunks.add(new Chunk("APU ", 1, audio));
+        chunks.add(new Chunk("JOYP", 1, input));
+        return new SaveStateSerializer(chunks.toArray(Chunk[]::new));
+    }
+
     /**
      * Resets the system to its initial boot state.
      */
@@ -204,6 +361,30 @@ public class GameBoy implements SerializableComponent {
         serial.reset();
         dma.reset();
         hdma.reset(isCGB);
+        audio.reset(isCGB);
+    }
+
+    /**
+     * Sets the source of time counted by the real time clock of cartridges. Emulated time keeps the clock in step with
+     * the system when it runs faster or slower than real time, such as when fast-forwarding or running headless.
+     *
+     * @param timeSource The source of time.
+     */
+    public void setClockTimeSource(TimeSource timeSource) {
+        this.clockTimeSource = requireNonNull(timeSource);
+        if (cartridge.getRTC() != null) {
+            cartridge.getRTC().setTimeSource(timeSource);
+        }
+    }
+
+    /**
+     * Gets the number of cycles the system has run for, not counting the extra cycles run in double speed mode. This
+     * is not part of the save state, so it keeps counting up when a state is restored.
+     *
+     * @return The number of cycles.
+     */
+    public long getElapsedCycles() {
+        return elapsedCycles;
     }
 
     /**
@@ -0,0 +1,43 @@
+package org.guide.gameboy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental component is a {@link SerializableComponent} that can also record just the parts of its state that
+ * have changed since a base state. This allows components that hold large amounts of memory to be captured frequently
+ * at the cost of only the memory that was actually modified.
+ *
+ * @author Brendan Jones
+ */
+public interface IncrementalComponent extends SerializableComponent {
+
+    /**
+     * Marks the current state as the base state that changes are recorded against.
+     */
+    void markBase();
+
+    /**
+     * Gets the exact number of bytes that {@link #serializeChanges(ByteBuffer)} writes for the current state of this
+     * component.
+     *
+     * @return The size of the changes in bytes.
+     */
+    int changesSize();
+
+    /**
+     * Writes the parts of the state that have changed since the base state was marked to the provided buffer.
+     *
+     * @param out The buffer to write to.
+     */
+    void serializeChanges(ByteBuffer out);
+
+    /**
+     * Reads changes written by {@link #serializeChanges(ByteBuffer)} and applies them. The component must be in the
+     * base state the changes were recorded against. Afterwards, the applied changes are considered to have been made
+     * since the base state, so later changes are still recorded against the same base.
+     *
+     * @param in The buffer to read from.
+     */
+    void deserializeChanges(ByteBuffer in);
+
+}
@@ -0,0 +1,499 @@
+package org.guide.gameboy;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records recent states of a {@link GameBoy} so that emulation can be stepped backwards.
+ * <p>
+ * A snapshot is captured every few frames and stored in a preallocated off-heap arena, which is used as a ring buffer
+ * so that the oldest snapshots are discarded once the memory budget is reached. Consecutive snapshots are almost
+ * identical, so most are stored as deltas against the most recent keyframe: the snapshot is XORed with the keyframe,
+ * which leaves runs of zeros wherever the two match, and only the runs of non-zero bytes are stored. Keyframes are
+ * stored the same way against an empty state. Since every delta depends only on its keyframe, restoring a snapshot
+ * decodes at most two entries, and the keyframe is kept decoded between steps so that stepping back repeatedly only
+ * decodes one.
+ * <p>
+ * Each entry in the arena starts with a header containing the length of the entry, the offsets of the previous and
+ * next entries, and the offset of the keyframe the entry depends on. The encoded data consists of pairs of run
+ * lengths, each stored as a variable-length integer: the number of bytes that match the keyframe, followed by the
+ * number of bytes that differ, which are stored XORed with the keyframe. Runs are measured in whole 8-byte words
+ * except at the end of the state.
+ *
+ * @author Brendan Jones
+ */
+public class RewindBuffer {
+
+    /**
+     * The size of each entry header in bytes.
+     */
+    private static final int ENTRY_HEADER_SIZE = 16;
+
+    /**
+     * The offset of the entry length within an entry header.
+     */
+    private static final int ENTRY_LENGTH = 0;
+
+    /**
+     * The offset of the previous entry's offset within an entry header.
+     */
+    private static final int ENTRY_PREVIOUS = 4;
+
+    /**
+     * The offset of the next entry's offset within an entry header.
+     */
+    private static final int ENTRY_NEXT = 8;
+
+    /**
+     * The offset of the keyframe's offset within an entry header.
+     */
+    private static final int ENTRY_KEYFRAME = 12;
+
+    /**
+     * The value used in place of an offset when there is no entry.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The amount of space reserved beyond the current state size when the state buffers are allocated, so that small
+     * changes in the size of the state do not require them to be reallocated.
+     */
+    private static final int STATE_SLACK = 4096;
+
+    /**
+     * The Game Boy whose state is recorded.
+     */
+    private final GameBoy gameboy;
+
+    /**
+     * The number of frames between snapshots.
+     */
+    private final int captureInterval;
+
+    /**
+     * The number of snapshots between keyframes.
+     */
+    private final int keyframeInterval;
+
+    /**
+     * The arena that encoded snapshots are stored in.
+     */
+    private final ByteBuffer arena;
+
+    /**
+     * The buffer that states are serialized into and restored from.
+     */
+    private ByteBuffer state;
+
+    /**
+     * The decoded state of the keyframe at {@link #baseOffset}.
+     */
+    private ByteBuffer base;
+
+    /**
+     * The buffer that snapshots are encoded into before they are copied into the arena.
+     */
+    private ByteBuffer encoded;
+
+    /**
+     * The offset of the keyframe that is decoded in {@link #base}, or {@link #NONE} if it is not a stored keyframe.
+     */
+    private int baseOffset = NONE;
+
+    /**
+     * The size of the state decoded in {@link #base}.
+     */
+    private int baseSize;
+
+    /**
+     * The offset of the oldest entry, or {@link #NONE} if the buffer is empty.
+     */
+    private int head = NONE;
+
+    /**
+     * The offset of the newest entry, or {@link #NONE} if the buffer is empty.
+     */
+    private int tail = NONE;
+
+    /**
+     * The offset in the arena that the next entry is written to.
+     */
+    private int writeOffset;
+
+    /**
+     * The number of frames remaining until the next snapshot is captured.
+     */
+    private int framesUntilCapture;
+
+    /**
+     * The number of snapshots that have been captured since the last keyframe.
+     */
+    private int capturesSinceKeyframe;
+
+    /**
+     * Creates a new RewindBuffer instance.
+     *
+     * @param gameboy          The Game Boy whose state is recorded.
+     * @param budget           The size of the arena that snapshots are stored in, in bytes.
+     * @param captureInterval  The number of frames between snapshots.
+     * @param keyframeInterval The number of snapshots between keyframes. Deltas grow as the state drifts away from the
+     *                         keyframe, so a shorter interval favors smaller deltas over fewer keyframes.
+     */
+    public RewindBuffer(GameBoy gameboy, int budget, int captureInterval, int keyframeInterval) {
+        if (budget <= ENTRY_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid budget: " + budget);
+        }
+
+        if (captureInterval <= 0) {
+            throw new IllegalArgumentException("Invalid capture interval: " + captureInterval);
+        }
+
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+        }
+
+        this.gameboy = requireNonNull(gameboy);
+        this.captureInterval = captureInterval;
+        this.keyframeInterval = keyframeInterval;
+        this.arena = ByteBuffer.allocateDirect(budget);
+    }
+
+    /**
+     * Discards all snapshots. This should be called whenever the state is replaced by anything other than
+     * {@link #rewind()}, such as when a cartridge or save state is loaded.
+     */
+    public void clear() {
+        this.head = NONE;
+        this.tail = NONE;
+        this.writeOffset = 0;
+        this.baseOffset = NONE;
+        this.framesUntilCapture = 0;
+    }
+
+    /**
+     * Notifies the buffer that a frame has been emulated, and captures a snapshot if one is due.
+     *
+     * @return Whether a snapshot was captured.
+     */
+    public boolean onFrame() {
+        if (framesUntilCapture > 0) {
+            --framesUntilCapture;
+            return false;
+        }
+
+        this.framesUntilCapture = captureInterval - 1;
+        return capture();
+    }
+
+    /**
+     * Captures a snapshot of the current state.
+     *
+     * @return Whether the snapshot was stored. This is only {@code false} if a single keyframe does not fit within the
+     * memory budget.
+     */
+    public boolean capture() {
+        final var size = gameboy.serializedSize();
+        ensureCapacity(size);
+
+        state.clear();
+        gameboy.serialize(state);
+
+        var isKeyframe = baseOffset == NONE || baseSize != size || capturesSinceKeyframe >= keyframeInterval;
+        var length = encode(isKeyframe ? null : base, size);
+
+        var offset = allocate(ENTRY_HEADER_SIZE + length);
+        if (!isKeyframe && baseOffset == NONE) {
+            // Making room evicted the keyframe that the snapshot was encoded against.
+            isKeyframe = true;
+            length = encode(null, size);
+            offset = allocate(ENTRY_HEADER_SIZE + length);
+        }
+
+        if (offset == NONE) {
+            return false;
+        }
+
+        arena.put(offset + ENTRY_HEADER_SIZE, encoded, 0, length);
+        arena.putInt(offset + ENTRY_LENGTH, ENTRY_HEADER_SIZE + length);
+        arena.putInt(offset + ENTRY_PREVIOUS, tail);
+        arena.putInt(offset + ENTRY_NEXT, NONE);
+        arena.putInt(offset + ENTRY_KEYFRAME, isKeyframe ? offset : baseOffset);
+
+        if (tail != NONE) {
+            arena.putInt(tail + ENTRY_NEXT, offset);
+        } else {
+            this.head = offset;
+        }
+        this.tail = offset;
+        this.writeOffset = offset + ENTRY_HEADER_SIZE + length;
+
+        if (isKeyframe) {
+            // The state that was just captured becomes the base for the following deltas.
+            final var previous = base;
+            this.base = state;
+            this.state = previous;
+            this.baseOffset = offset;
+            this.baseSize = size;
+            this.capturesSinceKeyframe = 0;
+        } else {
+            ++capturesSinceKeyframe;
+        }
+
+        return true;
+    }
+
+    /**
+     * Restores the most recent snapshot and discards it, so that calling this repeatedly steps further back in time.
+     *
+     * @return Whether a snapshot was restored. This is {@code false} if there are no snapshots left.
+     */
+    public boolean rewind() {
+        if (tail == NONE) {
+            return false;
+        }
+
+        final var entry = tail;
+        final var keyframe = arena.getInt(entry + ENTRY_KEYFRAME);
+
+        if (keyframe != baseOffset) {
+            this.baseSize = decode(keyframe, null, base);
+            this.baseOffset = keyframe;
+        }
+
+        final ByteBuffer restored;
+        if (entry == keyframe) {
+            restored = base;
+        } else {
+            decode(entry, base, state);
+            restored = state;
+        }
+        // The snapshot holds the complete system, so there is no need to reset it first. Resetting would reload
+        // battery-backed RAM from its save file on every step.
+        gameboy.restoreSnapshot(restored.clear().limit(baseSize), gameboy.getElapsedCycles());
+
+        // Discard the entry, freeing its space for the next snapshot.
+        this.tail = arena.getInt(entry + ENTRY_PREVIOUS);
+        if (tail != NONE) {
+            arena.putInt(tail + ENTRY_NEXT, NONE);
+        } else {
+            this.head = NONE;
+        }
+        this.writeOffset = entry;
+
+        if (entry == keyframe) {
+            this.baseOffset = NONE;
+        }
+        this.framesUntilCapture = captureInterval - 1;
+        return true;
+    }
+
+    /**
+     * Gets whether there are any snapshots to rewind to.
+     *
+     * @return Whether the buffer is empty.
+     */
+    public boolean isEmpty() {
+        return tail == NONE;
+    }
+
+    /**
+     * Gets the number of bytes of the arena that are used by the stored snapshots.
+     *
+     * @return The number of bytes.
+     */
+    public int getUsedBytes() {
+        if (head == NONE) {
+            return 0;
+        }
+        return head < writeOffset ? writeOffset - head : arena.capacity() - head + writeOffset;
+    }
+
+    /**
+     * Ensures the state buffers can hold a state of the specified size.
+     *
+     * @param size The size of the state.
+     */
+    private void ensureCapacity(int size) {
+        if (state != null && state.capacity() >= size) {
+            return;
+        }
+
+        final var capacity = size + STATE_SLACK;
+        this.state = ByteBuffer.allocateDirect(capacity);
+        this.base = ByteBuffer.allocateDirect(capacity);
+
+        // In the worst case, every other word differs, which costs up to two bytes of run lengths per 16 bytes.
+        this.encoded = ByteBuffer.allocateDirect(capacity + capacity / 4 + 16);
+        this.baseOffset = NONE;
+    }
+
+    /**
+     * Finds space in the arena for a new entry, evicting the oldest entries as necessary.
+     *
+     * @param length The length of the entry.
+     * @return The offset of the space, or {@link #NONE} if the entry is larger than the arena.
+     */
+    private int allocate(int length) {
+        if (length > arena.capacity()) {
+            return NONE;
+        }
+
+        var offset = writeOffset;
+        if (offset + length > arena.capacity()) {
+            // The space at the end of the arena is too small, so it is abandoned along with the oldest entries in it.
+            while (head != NONE && head >= writeOffset) {
+                evictOldest();
+            }
+            offset = 0;
+        }
+
+        while (head != NONE && head < offset + length && offset < head + arena.getInt(head + ENTRY_LENGTH)) {
+            evictOldest();
+        }
+        return offset;
+    }
+
+    /**
+     * Evicts the oldest entry. If the entry is a keyframe, the deltas that depend on it are evicted as well.
+     */
+    private void evictOldest() {
+        final var evicted = head;
+        final var isKeyframe = arena.getInt(evicted + ENTRY_KEYFRAME) == evicted;
+
+        this.head = arena.getInt(evicted + ENTRY_NEXT);
+        while (isKeyframe && head != NONE && arena.getInt(head + ENTRY_KEYFRAME) == evicted) {
+            this.head = arena.getInt(head + ENTRY_NEXT);
+        }
+
+        if (head == NONE) {
+            this.tail = NONE;
+            this.writeOffset = 0;
+        } else {
+            arena.putInt(head + ENTRY_PREVIOUS, NONE);
+        }
+
+        if (isKeyframe && evicted == baseOffset) {
+            this.baseOffset = NONE;
+        }
+    }
+
+    /**
+     * Encodes the current state into {@link #encoded}.
+     *
+     * @param reference The state to encode against, or {@code null} to encode against an empty state.
+     * @param size      The size of the state.
+     * @return The length of the encoded data.
+     */
+    private int encode(ByteBuffer reference, int size) {
+        final var numWords = size & ~0x7;
+        encoded.clear();
+
+        var position = 0;
+        while (position < size) {
+            // Measure the run of matching words.
+            final var matchStart = position;
+            while (position < numWords && (state.getLong(position) ^ getLong(reference, position)) == 0) {
+                position += 8;
+            }
+            putVarInt(position - matchStart);
+
+            // Measure the run of differing words. Any bytes past the last whole word are always stored.
+            final var differStart = position;
+            while (position < numWords && (state.getLong(position) ^ getLong(reference, position)) != 0) {
+                position += 8;
+            }
+            if (position == numWords) {
+                position = size;
+            }
+            putVarInt(position - differStart);
+
+            var index = differStart;
+            for (; index + 8 <= position; index += 8) {
+                encoded.putLong(state.getLong(index) ^ getLong(reference, index));
+            }
+            for (; index < position; ++index) {
+                encoded.put((byte) (state.get(index) ^ (reference != null ? reference.get(index) : 0)));
+            }
+        }
+
+        return encoded.position();
+    }
+
+    /**
+     * Decodes an entry in the arena.
+     *
+     * @param entry     The offset of the entry.
+     * @param reference The state the entry was encoded against, or {@code null} if it was encoded against an empty
+     *                  state.
+     * @param out       The buffer to write the decoded state to.
+     * @return The size of the decoded state.
+     */
+    private int decode(int entry, ByteBuffer reference, ByteBuffer out) {
+        var input = entry + ENTRY_HEADER_SIZE;
+        final var end = entry + arena.getInt(entry + ENTRY_LENGTH);
+
+        var position = 0;
+        while (input < end) {
+            // Copy the matching bytes from the reference.
+            var length = arena.get(input++);
+            var matching = length & 0x7F;
+            for (var shift = 7; length < 0; shift += 7) {
+                length = arena.get(input++);
+                matching |= (length & 0x7F) << shift;
+            }
+
+            if (reference != null) {
+                out.put(position, reference, position, matching);
+            } else {
+                for (var i = 0; i < matching; i += 8) {
+                    out.putLong(position + i, 0);
+                }
+            }
+            position += matching;
+
+            // Restore the differing bytes.
+            length = arena.get(input++);
+            var differing = length & 0x7F;
+            for (var shift = 7; length < 0; shift += 7) {
+                length = arena.get(input++);
+                differing |= (length & 0x7F) << shift;
+            }
+
+            final var differEnd = position + differing;
+            for (; position + 8 <= differEnd; position += 8, input += 8) {
+                out.putLong(position, arena.getLong(input) ^ getLong(reference, position));
+            }
+            for (; position < differEnd; ++position, ++input) {
+                out.put(position, (byte) (arena.get(input) ^ (reference != null ? reference.get(position) : 0)));
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Writes a variable-length integer to {@link #encoded}, 7 bits at a time.
+     *
+     * @param value The value.
+     */
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            encoded.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        encoded.put((byte) value);
+    }
+
+    /**
+     * Reads a word from a reference state.
+     *
+     * @param reference The reference state, or {@code null} for an empty state.
+     * @param index     The index of the word.
+     * @return The word.
+     */
+    private static long getLong(ByteBuffer reference, int index) {
+        return reference != null ? reference.getLong(index) : 0;
+    }
+
+}
@@ -0,0 +1,432 @@
+package org.guide.gameboy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads and writes save states made up of the serialized state of several components.
+ * <p>
+ * A save state starts with an 8-byte header, consisting of the magic number {@code GBST}, the format version as a
+ * 16-bit value and the number of chunks as a 16-bit value. Each component is then written as a chunk, which starts with
+ * a 10-byte header consisting of the component's 4-character tag, the version of the component's own format as a
+ * 16-bit value, and the length of the data that follows as a 32-bit value. All values are big-endian.
+ * <p>
+ * Since every chunk records its own length, loading a state skips any chunk that has an unknown tag or a version that
+ * does not match the component's current version. The affected component is left in its reset state, which allows
+ * states to keep loading as components are added and their formats evolve.
+ * <p>
+ * Incremental snapshots use the same layout with their own magic number, {@code GBSI}. The chunks of
+ * {@link IncrementalComponent}s contain only the changes since the base state was marked, while all other components
+ * are small enough to be written in full. An incremental snapshot is restored by first restoring the full save state
+ * that was written when the base was marked.
+ *
+ * @author Brendan Jones
+ */
+public class SaveStateSerializer {
+
+    /**
+     * The magic number that every save state starts with.
+     */
+    public static final int MAGIC_NUMBER = 0x47425354;
+
+    /**
+     * The magic number that every incremental snapshot starts with.
+     */
+    public static final int INCREMENTAL_MAGIC_NUMBER = 0x47425349;
+
+    /**
+     * The version of the save state format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The size of the save state header in bytes.
+     */
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * The size of each chunk header in bytes.
+     */
+    public static final int CHUNK_HEADER_SIZE = 10;
+
+    /**
+     * The minimum size of the buffer that chunks are gathered into before they are written to a channel.
+     */
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A component that is stored in its own chunk.
+     *
+     * @param tag       The 4-character tag that identifies the chunk.
+     * @param version   The version of the component's format. This must be incremented whenever the data written by
+     *                  the component changes.
+     * @param component The component.
+     */
+    public record Chunk(String tag, int version, SerializableComponent component) {
+
+        /**
+         * Creates a new Chunk instance.
+         */
+        public Chunk {
+            if (tag.length() != 4 || tag.chars().anyMatch(c -> c < 0x20 || c > 0x7E)) {
+                throw new IllegalArgumentException("Invalid chunk tag: " + tag);
+            }
+
+            if (version < 0 || version > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid chunk version: " + version);
+            }
+
+            requireNonNull(component);
+        }
+
+    }
+
+    /**
+     * The chunks that make up a save state, in the order they are written.
+     */
+    private final Chunk[] chunks;
+
+    /**
+     * The tag of each chunk, encoded as it is stored.
+     */
+    private final int[] tags;
+
+    /**
+     * The direct buffer that chunks are gathered into before they are written to a channel. This is reused between
+     * save states and grows to fit the largest chunk.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a new SaveStateSerializer instance.
+     *
+     * @param chunks The chunks that make up a save state, in the order they are written.
+     */
+    public SaveStateSerializer(Chunk... chunks) {
+        if (chunks.length > 0xFFFF) {
+            throw new IllegalArgumentException("Too many chunks: " + chunks.length);
+        }
+
+        this.chunks = chunks.clone();
+        this.tags = new int[chunks.length];
+        for (var i = 0; i < chunks.length; ++i) {
+            this.tags[i] = ByteBuffer.wrap(chunks[i].tag().getBytes(StandardCharsets.US_ASCII)).getInt();
+            for (var j = 0; j < i; ++j) {
+                if (tags[i] == tags[j]) {
+                    throw new IllegalArgumentException("Duplicate chunk tag: " + chunks[i].tag());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the exact number of bytes that a save state of the current state of the components occupies.
+     *
+     * @return The size in bytes.
+     */
+    public int serializedSize() {
+        var size = HEADER_SIZE;
+        for (var chunk : chunks) {
+            size += CHUNK_HEADER_SIZE + chunk.component().serializedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes a save state to a buffer.
+     *
+     * @param out The buffer to write to. This must have at least {@link #serializedSize()} bytes remaining.
+     */
+    public void serialize(ByteBuffer out) {
+        writeHeader(out, MAGIC_NUMBER);
+        for (var i = 0; i < chunks.length; ++i) {
+            writeChunk(out, i, chunks[i].component().serializedSize(), false);
+        }
+    }
+
+    /**
+     * Marks the current state of every {@link IncrementalComponent} as the base state that incremental snapshots are
+     * recorded against.
+     */
+    public void markBase() {
+        for (var chunk : chunks) {
+            if (chunk.component() instanceof IncrementalComponent component) {
+                component.markBase();
+            }
+        }
+    }
+
+    /**
+     * Gets the exact number of bytes that an incremental snapshot of the current state of the components occupies.
+     *
+     * @return The size in bytes.
+     */
+    public int changesSize() {
+        var size = HEADER_SIZE;
+        for (var chunk : chunks) {
+            size += CHUNK_HEADER_SIZE + getChangesSize(chunk);
+        }
+        return size;
+    }
+
+    /**
+     * Writes an incremental snapshot of the changes since the base state was marked to a buffer.
+     *
+     * @param out The buffer to write to. This must have at least {@link #changesSize()} bytes remaining.
+     */
+    public void serializeChanges(ByteBuffer out) {
+        writeHeader(out, INCREMENTAL_MAGIC_NUMBER);
+        for (var i = 0; i < chunks.length; ++i) {
+            writeChunk(out, i, getChangesSize(chunks[i]), true);
+        }
+    }
+
+    /**
+     * Writes a save state to a channel. Chunks are gathered into a reusable direct buffer and written straight from
+     * it, so the state is never copied through the heap.
+     *
+     * @param channel The channel to write to.
+     * @throws IOException If the state could not be written.
+     */
+    public void serialize(WritableByteChannel channel) throws IOException {
+        if (buffer == null) {
+            this.buffer = ByteBuffer.allocateDirect(MIN_BUFFER_SIZE);
+        }
+
+        buffer.clear();
+        writeHeader(buffer, MAGIC_NUMBER);
+
+        for (var i = 0; i < chunks.length; ++i) {
+            final var size = chunks[i].component().serializedSize();
+            final var chunkSize = CHUNK_HEADER_SIZE + size;
+
+            // Small chunks are batched together, and only written once the buffer cannot fit the next one.
+            if (buffer.remaining() < chunkSize) {
+                flush(channel);
+                if (buffer.capacity() < chunkSize) {
+                    this.buffer = ByteBuffer.allocateDirect(chunkSize);
+                }
+            }
+
+            writeChunk(buffer, i, size, false);
+        }
+
+        flush(channel);
+    }
+
+    /**
+     * Reads a save state from a buffer and restores the state of the components. Components should be reset
+     * beforehand, as the components of any chunks that are missing or skipped are left untouched.
+     *
+     * @param in The buffer to read from.
+     */
+    public void deserialize(ByteBuffer in) {
+        if (in.getInt() != MAGIC_NUMBER) {
+            throw new IllegalStateException("Not a save state");
+        }
+        readChunks(in, false);
+    }
+
+    /**
+     * Checks whether a save state contains a chunk for every component, at the component's current version. Only such
+     * a state restores the system exactly, as loading any other state leaves some components in their reset state.
+     * The buffer's position is not changed.
+     *
+     * @param in The buffer containing the save state.
+     * @return Whether the save state is complete.
+     */
+    public boolean isComplete(ByteBuffer in) {
+        final var state = in.duplicate().order(in.order());
+        if (state.remaining() < HEADER_SIZE || state.getInt() != MAGIC_NUMBER
+                || (state.getShort() & 0xFFFF) > FORMAT_VERSION) {
+            return false;
+        }
+
+        final var found = new boolean[chunks.length];
+        final var numChunks = state.getShort() & 0xFFFF;
+        for (var i = 0; i < numChunks; ++i) {
+            if (state.remaining() < CHUNK_HEADER_SIZE) {
+                return false;
+            }
+
+            final var index = indexOf(state.getInt());
+            final var chunkVersion = state.getShort() & 0xFFFF;
+            final var length = state.getInt();
+            if (length < 0 || length > state.remaining()) {
+                return false;
+            }
+
+            if (index != -1 && chunks[index].version() == chunkVersion) {
+                found[index] = true;
+            }
+            state.position(state.position() + length);
+        }
+
+        for (final var isFound : found) {
+            if (!isFound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads an incremental snapshot from a buffer and applies its changes. The components must be in the base state
+     * that the snapshot was recorded against, which is usually done by restoring the full save state written when the
+     * base was marked and then marking it again.
+     *
+     * @param in The buffer to read from.
+     */
+    public void deserializeChanges(ByteBuffer in) {
+        if (in.getInt() != INCREMENTAL_MAGIC_NUMBER) {
+            throw new IllegalStateException("Not an incremental snapshot");
+        }
+        readChunks(in, true);
+    }
+
+    /**
+     * Reads the chunks that follow the magic number and passes them to their components.
+     *
+     * @param in        The buffer to read from.
+     * @param isChanges Whether the chunks of incremental components contain only their changes.
+     */
+    private void readChunks(ByteBuffer in, boolean isChanges) {
+        final var version = in.getShort() & 0xFFFF;
+        if (version > FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported save state version: " + version);
+        }
+
+        final var numChunks = in.getShort() & 0xFFFF;
+        for (var i = 0; i < numChunks; ++i) {
+            final var tag = in.getInt();
+            final var chunkVersion = in.getShort() & 0xFFFF;
+            final var length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalStateException("Invalid length for chunk '" + getTagName(tag) + "': " + length);
+            }
+
+            final var index = indexOf(tag);
+            final var end = in.position() + length;
+            if (index != -1 && chunks[index].version() == chunkVersion) {
+                // The buffer is limited to the chunk's own data while the component reads it, so it cannot read into
+                // the following chunk. This avoids creating a view of each chunk, so loading a state does not allocate.
+                final var limit = in.limit();
+                in.limit(end);
+                try {
+                    if (isChanges && chunks[index].component() instanceof IncrementalComponent component) {
+                        component.deserializeChanges(in);
+                    } else {
+                        chunks[index].component().deserialize(in);
+                    }
+
+                    if (in.hasRemaining()) {
+                        throw new IllegalStateException("Chunk '" + getTagName(tag) + "' has " + in.remaining()
+                                + " unread bytes");
+                    }
+                } finally {
+                    in.limit(limit);
+                }
+            }
+
+            in.position(end);
+        }
+    }
+
+    /**
+     * Writes the save state header.
+     *
+     * @param out   The buffer to write to.
+     * @param magic The magic number to start with.
+     */
+    private void writeHeader(ByteBuffer out, int magic) {
+        out.putInt(magic);
+        out.putShort((short) FORMAT_VERSION);
+        out.putShort((short) chunks.length);
+    }
+
+    /**
+     * Writes a single chunk, and verifies that the component wrote exactly as many bytes as it said it would.
+     *
+     * @param out       The buffer to write to.
+     * @param index     The index of the chunk.
+     * @param size      The serialized size of the chunk's component.
+     * @param isChanges Whether to write only the changes of an incremental component.
+     */
+    private void writeChunk(ByteBuffer out, int index, int size, boolean isChanges) {
+        final var chunk = chunks[index];
+        out.putInt(tags[index]);
+        out.putShort((short) chunk.version());
+        out.putInt(size);
+
+        final var start = out.position();
+        if (isChanges && chunk.component() instanceof IncrementalComponent component) {
+            component.serializeChanges(out);
+        } else {
+            chunk.component().serialize(out);
+        }
+
+        final var written = out.position() - start;
+        if (written != size) {
+            throw new IllegalStateException("Chunk '" + chunk.tag() + "' wrote " + written + " bytes, expected "
+                    + size);
+        }
+    }
+
+    /**
+     * Writes the contents of the buffer to a channel, and clears the buffer.
+     *
+     * @param channel The channel to write to.
+     * @throws IOException If the data could not be written.
+     */
+    private void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Gets the size of a chunk's data in an incremental snapshot.
+     *
+     * @param chunk The chunk.
+     * @return The size of the component's changes if it is incremental, otherwise its full serialized size.
+     */
+    private static int getChangesSize(Chunk chunk) {
+        if (chunk.component() instanceof IncrementalComponent component) {
+            return component.changesSize();
+        }
+        return chunk.component().serializedSize();
+    }
+
+    /**
+     * Gets the index of the chunk with the specified tag.
+     *
+     * @param tag The encoded tag.
+     * @return The index of the chunk, or -1 if there is no chunk with the tag.
+     */
+    private int indexOf(int tag) {
+        for (var i = 0; i < tags.length; ++i) {
+            if (tags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a chunk tag for use in error messages.
+     *
+     * @param tag The encoded tag.
+     * @return The tag.
+     */
+    private static String getTagName(int tag) {
+        final var bytes = ByteBuffer.allocate(4).putInt(tag).array();
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+}
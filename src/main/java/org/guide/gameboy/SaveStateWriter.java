@@ -0,0 +1,241 @@
+package org.guide.gameboy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes save states to disk without stalling emulation.
+ * <p>
+ * Saving a state only serializes the system into a pooled buffer, which takes a fraction of a millisecond. The buffer
+ * is then handed to a background thread that compresses it and writes it to disk. Each state is written to a temporary
+ * file that is flushed to the storage device before it replaces the target file, so a crash, power loss or full disk
+ * never leaves a partially written save state behind.
+ *
+ * @author Brendan Jones
+ */
+public class SaveStateWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaveStateWriter.class);
+
+    /**
+     * The number of buffers kept for reuse. Additional buffers are allocated if states are saved faster than they can
+     * be written.
+     */
+    private static final int NUM_POOLED_BUFFERS = 2;
+
+    /**
+     * The first two bytes of a GZIP stream.
+     */
+    private static final int GZIP_MAGIC_NUMBER = 0x1F8B;
+
+    /**
+     * A save state that is waiting to be written.
+     *
+     * @param state The serialized state.
+     * @param path  The path of the file to write the state to.
+     */
+    private record Job(ByteBuffer state, Path path) {
+    }
+
+    /**
+     * The job that is queued to tell the writer thread to stop.
+     */
+    private static final Job END_OF_QUEUE = new Job(ByteBuffer.allocate(0), Path.of(""));
+
+    /**
+     * The buffers that are ready to be serialized into.
+     */
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(NUM_POOLED_BUFFERS);
+
+    /**
+     * The states that are waiting to be written, in order.
+     */
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread that writes states to disk.
+     */
+    private final Thread writerThread;
+
+    /**
+     * The number of states that have been queued but not yet written. This is guarded by {@link #jobs}.
+     */
+    private int numPendingJobs;
+
+    /**
+     * Whether the writer has been closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Creates a new SaveStateWriter instance and starts its writer thread.
+     */
+    public SaveStateWriter() {
+        this.writerThread = new Thread(this::runWriter, "Save State Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Captures the current state of the system and queues it to be written to a file. This should be called between
+     * frames, and returns as soon as the state has been captured.
+     *
+     * @param gameboy The Game Boy to save the state of.
+     * @param path    The path of the file to write the state to. Its parent directories are created if necessary.
+     */
+    public void save(GameBoy gameboy, Path path) {
+        requireNonNull(path);
+        if (isClosed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+
+        final var size = gameboy.serializedSize();
+
+        var buffer = freeBuffers.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+
+        buffer.clear();
+        gameboy.serialize(buffer);
+        buffer.flip();
+
+        synchronized (jobs) {
+            ++numPendingJobs;
+        }
+        jobs.add(new Job(buffer, path));
+    }
+
+    /**
+     * Waits until every queued state has been written.
+     *
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public void awaitPending() throws InterruptedException {
+        synchronized (jobs) {
+            while (numPendingJobs > 0) {
+                jobs.wait();
+            }
+        }
+    }
+
+    /**
+     * Writes any queued states and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (isClosed) {
+            return;
+        }
+        this.isClosed = true;
+
+        jobs.add(END_OF_QUEUE);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads a save state file into a buffer. Files written by this class are decompressed, and uncompressed save
+     * states are read as they are.
+     *
+     * @param path The path of the file.
+     * @return The save state.
+     * @throws IOException If the file could not be read.
+     */
+    public static ByteBuffer read(Path path) throws IOException {
+        final var data = Files.readAllBytes(path);
+        if (data.length < 2 || ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) != GZIP_MAGIC_NUMBER) {
+            return ByteBuffer.wrap(data);
+        }
+
+        try (final var in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Writes queued states until the end of the queue is reached.
+     */
+    private void runWriter() {
+        try {
+            while (true) {
+                final var job = jobs.take();
+                if (job == END_OF_QUEUE) {
+                    return;
+                }
+
+                // Any failure is logged rather than allowed to stop the thread, as threads waiting for pending states
+                // would otherwise wait forever.
+                try {
+                    write(job.state(), job.path());
+                } catch (Exception e) {
+                    LOGGER.error("Failed to write save state to " + job.path(), e);
+                } finally {
+                    freeBuffers.offer(job.state());
+                    synchronized (jobs) {
+                        --numPendingJobs;
+                        jobs.notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compresses a state into a temporary file next to the target file, forces it to the storage device, and then
+     * replaces the target file with it.
+     *
+     * @param state The serialized state.
+     * @param path  The path of the file to write the state to.
+     * @throws IOException If the state could not be written.
+     */
+    private static void write(ByteBuffer state, Path path) throws IOException {
+        final var parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        final var temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (final var channel = FileChannel.open(temp, WRITE);
+                 final var out = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024)) {
+                out.write(state.array(), state.arrayOffset() + state.position(), state.remaining());
+                out.finish();
+
+                // Make sure the contents are on disk before the file replaces the previous state.
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+}
@@ -15,6 +15,13 @@ public interface SerializableComponent {
      */
     int SECTION_MAGIC_NUMBER = 0xFEEDBEEF;
 
+    /**
+     * Gets the exact number of bytes that {@link #serialize(ByteBuffer)} writes for the current state of this component.
+     *
+     * @return The serialized size in bytes.
+     */
+    int serializedSize();
+
     /**
      * Serializes this component and writes its data to the provided buffer.
      *
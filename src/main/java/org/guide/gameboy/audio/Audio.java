@@ -4,16 +4,36 @@ import org.guide.gameboy.SerializableComponent;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
 import org.guide.gameboy.processor.interrupts.memory.space.AddressSpace;
 import org.guide.util.AddressUtils;
+import org.guide.util.BitUtils;
 
 import java.nio.ByteBuffer;
 
 /**
  * The Audio component of the Game Boy is responsible for producing and playing audio.
+ * <p>
+ * Sound is synthesized lazily. Ticking the component only advances its clock, and writes to the sound registers are
+ * logged along with the cycle they occurred on. The channels are only caught up when the end of a block is reached or
+ * when software reads state that depends on them, at which point the logged writes are replayed at their original
+ * timestamps while the channels are run in a single pass.
+ * <p>
+ * When there is no sink, or the APU is powered off, no waveforms are generated and nothing is mixed or resampled. The
+ * logged writes and frame sequencer steps are still replayed, and each channel's waveform position is advanced over
+ * the skipped time in a single step, so the state of the APU is exactly the same as it would be with a sink.
  *
  * @author Brendan Jones
  */
 public class Audio extends AddressSpace implements SerializableComponent {
 
+    /**
+     * The rate the APU is clocked at, in Hz. This is not affected by double speed mode.
+     */
+    public static final int CLOCK_RATE = 4194304;
+
+    /**
+     * The sample rate used when no sink is attached.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 44100;
+
     /**
      * The starting address for audio RAM.
      */
@@ -22,7 +42,162 @@ public class Audio extends AddressSpace implements SerializableComponent {
     /**
      * The ending address for audio RAM.
      */
-    private static final int ADDRESS_RAM_END = 0xFF40;
+    private static final int ADDRESS_RAM_END = 0xFF3F;
+
+    /**
+     * The number of cycles synthesized in each block.
+     */
+    private static final int BLOCK_CYCLES = 16384;
+
+    /**
+     * The maximum number of cycles a block can overrun by, which is bounded by the length of the longest instruction.
+     */
+    private static final int MAX_BLOCK_OVERRUN = 256;
+
+    /**
+     * The number of cycles between each step of the frame sequencer, which runs at 512 Hz.
+     */
+    private static final int FRAME_SEQUENCER_CYCLES = 8192;
+
+    /**
+     * The maximum number of writes that are logged before the channels are caught up.
+     */
+    private static final int MAX_PENDING_WRITES = 512;
+
+    /**
+     * The bits that always read back as 1 for each register from NR10 to NR51, in addition to the unused bits already
+     * applied by system memory. These are the bits that are write-only.
+     */
+    private static final int[] WRITE_ONLY_BIT_MASKS = {
+            // 0     1     2     3     4     5     6     7     8     9     A     B     C     D     E     F
+            0x00, 0x3F, 0x00, 0xFF, 0xBF, 0x00, 0x3F, 0x00, 0xFF, 0xBF, 0x00, 0xFF, 0x00, 0xFF, 0xBF, 0x00, // 10
+            0xFF, 0x00, 0x00, 0xBF, 0x00, 0x00                                                              // 20
+    };
+
+    /**
+     * The register values after the boot ROM has finished running, from NR10 to NR51.
+     */
+    private static final int[] BOOT_REGISTER_VALUES = {
+            // 0     1     2     3     4     5     6     7     8     9     A     B     C     D     E     F
+            0x80, 0xBF, 0xF3, 0xFF, 0xBF, 0xFF, 0x3F, 0x00, 0xFF, 0xBF, 0x7F, 0xFF, 0x9F, 0xFF, 0xBF, 0xFF, // 10
+            0xFF, 0x00, 0x00, 0xBF, 0x77, 0xF3                                                              // 20
+    };
+
+    /**
+     * The first square channel, which has a frequency sweep unit.
+     */
+    private final SquareChannel square1;
+
+    /**
+     * The second square channel.
+     */
+    private final SquareChannel square2;
+
+    /**
+     * The wave channel.
+     */
+    private final WaveChannel wave;
+
+    /**
+     * The noise channel.
+     */
+    private final NoiseChannel noise;
+
+    /**
+     * All sound channels, in the order of their status bits in NR52.
+     */
+    private final SoundChannel[] channels;
+
+    /**
+     * The mixer.
+     */
+    private final Mixer mixer;
+
+    /**
+     * The log of writes that have not yet been applied to the channels. Each entry holds the time of the write in the
+     * upper bits, and the low byte of the address and the value in the lower 16 bits.
+     */
+    private final long[] pendingWrites;
+
+    /**
+     * The number of entries in the write log.
+     */
+    private int numPendingWrites;
+
+    /**
+     * The buffer that the mixed output is written to, or {@code null} if there is no sink.
+     */
+    private SampleBuffer buffer;
+
+    /**
+     * The samples produced by the most recent block, or {@code null} if there is no sink.
+     */
+    private short[] samples;
+
+    /**
+     * The sink that samples are written to, or {@code null} if there is none.
+     */
+    private AudioSink sink;
+
+    /**
+     * The sink that output was suspended from, or {@code null} if output is not suspended or there was no sink.
+     */
+    private AudioSink suspendedSink;
+
+    /**
+     * Whether output is suspended.
+     */
+    private boolean isOutputSuspended;
+
+    /**
+     * Whether the state has been restored since output was suspended.
+     */
+    private boolean isRestoredWhileSuspended;
+
+    /**
+     * The time within the current block that output was suspended at.
+     */
+    private int suspendedTime;
+
+    /**
+     * Whether the APU is powered on. This reflects the state of the registers, which can run ahead of the channels.
+     */
+    private boolean isPowered;
+
+    /**
+     * The number of cycles that have elapsed in the current block.
+     */
+    private int time;
+
+    /**
+     * The time that the channels have been synthesized up to.
+     */
+    private int synthesizedTime;
+
+    /**
+     * The time of the next frame sequencer step.
+     */
+    private int frameSequencerTime;
+
+    /**
+     * The current frame sequencer step, from 0 to 7.
+     */
+    private int frameSequencerStep;
+
+    /**
+     * The value of NR50 as seen by the channels.
+     */
+    private int nr50;
+
+    /**
+     * The value of NR51 as seen by the channels.
+     */
+    private int nr51;
+
+    /**
+     * Whether the APU is powered on as seen by the channels.
+     */
+    private boolean isChannelPowered;
 
     /**
      * Creates a new Audio component.
@@ -32,6 +207,14 @@ public class Audio extends AddressSpace implements SerializableComponent {
     public Audio(Memory memory) {
         super(memory);
 
+        this.mixer = new Mixer();
+        this.square1 = new SquareChannel(mixer, 0, true);
+        this.square2 = new SquareChannel(mixer, 1, false);
+        this.wave = new WaveChannel(mixer, 2);
+        this.noise = new NoiseChannel(mixer, 3);
+        this.channels = new SoundChannel[]{square1, square2, wave, noise};
+        this.pendingWrites = new long[MAX_PENDING_WRITES];
+
         // Register this address space for all sound registers.
         memory.setAddressSpace(this, AddressUtils.NR10);
         memory.setAddressSpace(this, AddressUtils.NR11);
@@ -58,28 +241,434 @@ public class Audio extends AddressSpace implements SerializableComponent {
         memory.setAddressSpace(this, ADDRESS_RAM_START, ADDRESS_RAM_END);
     }
 
+    /**
+     * Resets the audio hardware to the state it is left in by the boot ROM.
+     *
+     * @param isCGB Whether the system is running in CGB mode.
+     */
+    public void reset(boolean isCGB) {
+        for (var channel : channels) {
+            channel.reset();
+        }
+        mixer.reset();
+        if (buffer != null) {
+            buffer.clear();
+        }
+
+        this.numPendingWrites = 0;
+        this.time = 0;
+        this.synthesizedTime = 0;
+        this.frameSequencerTime = FRAME_SEQUENCER_CYCLES;
+        this.frameSequencerStep = 0;
+        this.nr50 = 0;
+        this.nr51 = 0;
+
+        this.isPowered = true;
+        this.isChannelPowered = true;
+        memory.set(AddressUtils.NR52, 0x80);
+
+        // The boot ROM leaves the registers in a known state. The trigger bits are masked out so that no channels
+        // start playing as a result.
+        for (var address = AddressUtils.NR10; address <= AddressUtils.NR51; ++address) {
+            final var value = BOOT_REGISTER_VALUES[address - AddressUtils.NR10];
+            if (isSoundRegister(address)) {
+                memory.set(address, value);
+                applyWrite(0, address, value & 0x7F);
+            }
+        }
+
+        for (var address = ADDRESS_RAM_START; address <= ADDRESS_RAM_END; ++address) {
+            memory.set(address, 0);
+            wave.writeWaveRam(address - ADDRESS_RAM_START, 0);
+        }
+    }
+
     @Override
     public void write(int address, int value) {
+        if (address >= ADDRESS_RAM_START && address <= ADDRESS_RAM_END) {
+            // Wave RAM is accessible regardless of whether the APU is powered.
+            memory.set(address, value);
+            logWrite(address, value);
+            return;
+        }
+
         if (address == AddressUtils.NR52) {
-            // FIXME Temporary workaround to get around certain games relying on audio timing to work.
-            value &= 0x70;
+            final var isPowered = BitUtils.isSet(value, 7);
+            if (this.isPowered && !isPowered) {
+                // Powering off the APU clears all of the sound registers.
+                for (var register = AddressUtils.NR10; register <= AddressUtils.NR51; ++register) {
+                    if (isSoundRegister(register)) {
+                        memory.set(register, 0);
+                    }
+                }
+            }
+
+            this.isPowered = isPowered;
+            memory.set(address, value & 0x80);
+            logWrite(address, value);
+            return;
+        }
+
+        // The sound registers cannot be written to while the APU is powered off.
+        if (!isPowered) {
+            return;
         }
+
         memory.set(address, value);
+        logWrite(address, value);
     }
 
     @Override
     public int read(int address) {
-        return memory.get(address);
+        if (address == AddressUtils.NR52) {
+            // The channel status bits depend on the length counters and sweep unit, so the channels must be caught up.
+            synthesize(time);
+
+            var status = 0;
+            for (var i = 0; i < channels.length; ++i) {
+                if (channels[i].isEnabled()) {
+                    status |= 1 << i;
+                }
+            }
+            return (memory.getUnsigned(address) & 0x80) | 0x70 | status;
+        }
+
+        if (address >= AddressUtils.NR10 && address <= AddressUtils.NR51) {
+            return memory.getUnsigned(address) | WRITE_ONLY_BIT_MASKS[address - AddressUtils.NR10];
+        }
+
+        return memory.getUnsigned(address);
+    }
+
+    @Override
+    public int serializedSize() {
+        // The integrity check, followed by the power, frame sequencer and mixer state.
+        var size = 4 + 8;
+        for (var channel : channels) {
+            size += channel.serializedSize();
+        }
+        return size;
     }
 
     @Override
     public void serialize(ByteBuffer out) {
-        // TODO
+        // Apply any pending writes so that only the channel state needs to be stored.
+        synthesize(time);
+
+        SerializableComponent.writeIntegrityCheck(out);
+
+        out.put((byte) (isPowered ? 1 : 0));
+        out.putInt(frameSequencerTime - time);
+        out.put((byte) frameSequencerStep);
+        out.put((byte) nr50);
+        out.put((byte) nr51);
+
+        for (var channel : channels) {
+            channel.serialize(out);
+        }
     }
 
     @Override
     public void deserialize(ByteBuffer in) {
-        // TODO
+        SerializableComponent.verifyIntegrityCheck(in, "Audio::Start");
+
+        this.isPowered = in.get() == 1;
+        this.isChannelPowered = isPowered;
+        this.frameSequencerTime = in.getInt();
+        this.frameSequencerStep = in.get() & 0xFF;
+        this.nr50 = in.get() & 0xFF;
+        this.nr51 = in.get() & 0xFF;
+
+        this.numPendingWrites = 0;
+        this.time = 0;
+        this.synthesizedTime = 0;
+
+        // While output is suspended, the buffer holds the samples from before the state was saved and is kept.
+        if (buffer != null && !isOutputSuspended) {
+            buffer.clear();
+        }
+        this.isRestoredWhileSuspended = isOutputSuspended;
+        mixer.reset();
+        mixer.setVolume(0, nr50, nr51);
+
+        for (var channel : channels) {
+            channel.deserialize(in);
+        }
+    }
+
+    /**
+     * Advances the audio hardware's clock. No sound is synthesized until the end of the current block is reached.
+     *
+     * @param cycles The number of cycles that elapsed.
+     */
+    public void tick(int cycles) {
+        this.time += cycles;
+        if (time >= BLOCK_CYCLES) {
+            endBlock();
+        }
+    }
+
+    /**
+     * Sets the sink that samples are written to.
+     *
+     * @param sink The audio sink, or {@code null} to stop synthesizing sound.
+     */
+    public void setSink(AudioSink sink) {
+        if (isOutputSuspended) {
+            throw new IllegalStateException("Audio output is suspended");
+        }
+
+        // Bring the channels up to date so that the change takes effect from the current time.
+        synthesize(time);
+        this.sink = sink;
+
+        if (sink == null) {
+            this.buffer = null;
+            this.samples = null;
+            mixer.setBuffer(null, time);
+        } else if (buffer == null || buffer.getSampleRate() != sink.getSampleRate()) {
+            final var maxBlockCycles = BLOCK_CYCLES + MAX_BLOCK_OVERRUN;
+            this.buffer = new SampleBuffer(CLOCK_RATE, sink.getSampleRate(), maxBlockCycles);
+            this.samples = new short[buffer.getMaxSamples(maxBlockCycles) * 2];
+            mixer.setBuffer(buffer, time);
+        }
+    }
+
+    /**
+     * Gets the sink that samples are written to.
+     *
+     * @return The audio sink, or {@code null} if there is none.
+     */
+    public AudioSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Suspends output to the sink, so that the system can run ahead and then be restored to its current state without
+     * the sound of the frames that are rolled back being heard. No waveforms are generated while output is suspended.
+     * The state must be saved before output is suspended and restored before it is resumed.
+     */
+    public void suspendOutput() {
+        if (isOutputSuspended) {
+            throw new IllegalStateException("Audio output is already suspended");
+        }
+
+        synthesize(time);
+        mixer.setBuffer(null, time);
+
+        this.suspendedSink = sink;
+        this.suspendedTime = time;
+        this.sink = null;
+        this.isOutputSuspended = true;
+        this.isRestoredWhileSuspended = false;
+    }
+
+    /**
+     * Resumes output to the sink after the state has been restored to the state it was in when output was suspended.
+     * The buffer carries on exactly where it left off, so the output is seamless.
+     */
+    public void resumeOutput() {
+        if (!isOutputSuspended) {
+            throw new IllegalStateException("Audio output is not suspended");
+        }
+
+        if (!isRestoredWhileSuspended) {
+            throw new IllegalStateException("State was not restored while audio output was suspended");
+        }
+
+        // Restoring the state starts a new block, so move it back to the point in the block the buffer is at.
+        this.frameSequencerTime += suspendedTime;
+        this.synthesizedTime = suspendedTime;
+        this.time = suspendedTime;
+
+        this.sink = suspendedSink;
+        this.suspendedSink = null;
+        this.isOutputSuspended = false;
+        if (sink != null) {
+            mixer.setBuffer(buffer, time);
+        }
+    }
+
+    /**
+     * Synthesizes the remainder of the current block and passes the resulting samples to the sink.
+     */
+    private void endBlock() {
+        synthesize(time);
+
+        if (sink != null) {
+            final var numSamples = buffer.endBlock(time, samples);
+            if (numSamples > 0) {
+                sink.write(samples, 0, numSamples * 2);
+            }
+            buffer.setRateAdjustment(sink.getRateAdjustment());
+        }
+
+        // All times are relative to the start of the block.
+        this.frameSequencerTime -= time;
+        this.synthesizedTime = 0;
+        this.time = 0;
+    }
+
+    /**
+     * Logs a write to a sound register so that it can be applied when the channels are next caught up.
+     *
+     * @param address The address that was written to.
+     * @param value   The value that was written.
+     */
+    private void logWrite(int address, int value) {
+        if (numPendingWrites == pendingWrites.length) {
+            synthesize(time);
+        }
+        pendingWrites[numPendingWrites++] = ((long) time << 16) | ((address & 0xFF) << 8) | (value & 0xFF);
+    }
+
+    /**
+     * Catches up the channels to the specified time. Logged writes and frame sequencer steps are applied at the time
+     * they occurred, and the channels are run in between.
+     *
+     * @param until The time to synthesize up to.
+     */
+    private void synthesize(int until) {
+        var writeIndex = 0;
+        while (true) {
+            // Apply all writes that occurred up to the current time.
+            while (writeIndex < numPendingWrites && (int) (pendingWrites[writeIndex] >>> 16) <= synthesizedTime) {
+                final var entry = pendingWrites[writeIndex++];
+                applyWrite(synthesizedTime, 0xFF00 | ((int) entry >> 8) & 0xFF, (int) entry & 0xFF);
+            }
+
+            if (synthesizedTime == frameSequencerTime) {
+                stepFrameSequencer(synthesizedTime);
+                frameSequencerTime += FRAME_SEQUENCER_CYCLES;
+            }
+
+            if (synthesizedTime >= until) {
+                break;
+            }
+
+            var end = Math.min(until, frameSequencerTime);
+            if (writeIndex < numPendingWrites) {
+                end = Math.min(end, (int) (pendingWrites[writeIndex] >>> 16));
+            }
+
+            // The waveforms are only generated when they can be heard. Otherwise the channels are only advanced to
+            // where they would be, so that the state does not depend on whether there is a sink.
+            if (sink != null && isChannelPowered) {
+                for (var channel : channels) {
+                    channel.run(synthesizedTime, end);
+                }
+            } else {
+                for (var channel : channels) {
+                    channel.skip(synthesizedTime, end);
+                }
+            }
+            this.synthesizedTime = end;
+        }
+
+        this.numPendingWrites = 0;
+    }
+
+    /**
+     * Applies a write to the channels.
+     *
+     * @param time    The time of the write.
+     * @param address The address that was written to.
+     * @param value   The value that was written.
+     */
+    private void applyWrite(int time, int address, int value) {
+        if (address >= ADDRESS_RAM_START) {
+            wave.writeWaveRam(address - ADDRESS_RAM_START, value);
+            return;
+        }
+
+        if (address == AddressUtils.NR52) {
+            setChannelPowered(time, BitUtils.isSet(value, 7));
+            return;
+        }
+
+        if (!isChannelPowered) {
+            return;
+        }
+
+        if (address <= AddressUtils.NR14) {
+            square1.write(time, address - AddressUtils.NR10, value);
+        } else if (address <= AddressUtils.NR24) {
+            square2.write(time, address - AddressUtils.NR21 + 1, value);
+        } else if (address <= AddressUtils.NR34) {
+            wave.write(time, address - AddressUtils.NR30, value);
+        } else if (address <= AddressUtils.NR44) {
+            noise.write(time, address - AddressUtils.NR41 + 1, value);
+        } else if (address == AddressUtils.NR50) {
+            this.nr50 = value;
+            mixer.setVolume(time, nr50, nr51);
+        } else if (address == AddressUtils.NR51) {
+            this.nr51 = value;
+            mixer.setVolume(time, nr50, nr51);
+        }
+    }
+
+    /**
+     * Powers the channels on or off.
+     *
+     * @param time      The time of the change.
+     * @param isPowered Whether the APU is powered on.
+     */
+    private void setChannelPowered(int time, boolean isPowered) {
+        if (isChannelPowered == isPowered) {
+            return;
+        }
+
+        if (!isPowered) {
+            // Powering off clears every register, which silences and disables all channels.
+            for (var address = AddressUtils.NR10; address <= AddressUtils.NR51; ++address) {
+                if (isSoundRegister(address)) {
+                    applyWrite(time, address, 0);
+                }
+            }
+        } else {
+            // The frame sequencer restarts from its first step when the APU is powered on.
+            this.frameSequencerStep = 0;
+        }
+
+        this.isChannelPowered = isPowered;
+    }
+
+    /**
+     * Steps the frame sequencer, which clocks the length counters, the sweep unit and the volume envelopes.
+     *
+     * @param time The time of the step.
+     */
+    private void stepFrameSequencer(int time) {
+        if (!isChannelPowered) {
+            return;
+        }
+
+        if ((frameSequencerStep & 0x1) == 0) {
+            for (var channel : channels) {
+                channel.clockLength(time);
+            }
+
+            if (frameSequencerStep == 2 || frameSequencerStep == 6) {
+                square1.clockSweep(time);
+            }
+        } else if (frameSequencerStep == 7) {
+            square1.clockEnvelope(time);
+            square2.clockEnvelope(time);
+            noise.clockEnvelope(time);
+        }
+
+        this.frameSequencerStep = (frameSequencerStep + 1) & 0x7;
+    }
+
+    /**
+     * Gets whether an address between NR10 and NR51 is a sound register.
+     *
+     * @param address The address.
+     * @return Whether the address is a sound register.
+     */
+    private static boolean isSoundRegister(int address) {
+        // The addresses preceding NR21 and NR41 are unused.
+        return address != AddressUtils.NR21 - 1 && address != AddressUtils.NR41 - 1;
     }
 
 }
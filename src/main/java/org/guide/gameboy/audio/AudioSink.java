@@ -0,0 +1,38 @@
+package org.guide.gameboy.audio;
+
+/**
+ * An audio sink receives the mixed stereo samples produced by the {@link Audio} component.
+ *
+ * @author Brendan Jones
+ */
+public interface AudioSink {
+
+    /**
+     * Gets the sample rate that this sink expects samples to be produced at.
+     *
+     * @return The sample rate in Hz.
+     */
+    int getSampleRate();
+
+    /**
+     * Writes a block of samples to the sink. Samples are signed 16-bit values with the left and right channels
+     * interleaved. Implementations must not hold onto the provided array after returning.
+     *
+     * @param samples The sample data.
+     * @param offset  The offset of the first sample in the array.
+     * @param length  The number of values to write. This is always a multiple of two.
+     */
+    void write(short[] samples, int offset, int length);
+
+    /**
+     * Gets the factor that the number of samples produced per emulated second should be adjusted by. Sinks that play
+     * samples back in real time can use this to keep their buffers from running dry or overflowing when the emulator
+     * runs slightly faster or slower than the audio device. This is queried once per block of samples.
+     *
+     * @return The rate adjustment, which is 1 for no adjustment.
+     */
+    default double getRateAdjustment() {
+        return 1.0;
+    }
+
+}
@@ -0,0 +1,211 @@
+package org.guide.gameboy.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An audio sink that plays samples through the default {@code javax.sound.sampled} output device.
+ * <p>
+ * Samples are handed from the emulator thread to a dedicated output thread through a {@link SampleRingBuffer}, so the
+ * emulator never blocks on the audio device. The emulator is paced by the display rather than by the audio device,
+ * and the two clocks inevitably drift apart. To compensate, the sink asks for slightly more samples when its buffer is
+ * below its target fill and slightly fewer when it is above it, by up to half a percent. The target fill is half of
+ * the requested latency, regardless of how far the ring buffer's capacity is rounded up. The change in pitch is
+ * inaudible, and in normal operation the buffer stays centered on its target. Samples are only dropped if the emulator
+ * gets far enough ahead to fill the ring buffer completely, such as when running faster than real time.
+ * <p>
+ * Whenever the buffer runs dry, such as when the emulator is paused, playback waits until the buffer reaches its target
+ * fill again before resuming so that it does not immediately run dry again.
+ *
+ * @author Brendan Jones
+ */
+public class JavaSoundSink implements AudioSink, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaSoundSink.class);
+
+    /**
+     * The default sample rate.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 48000;
+
+    /**
+     * The default amount of audio to buffer, in milliseconds.
+     */
+    public static final int DEFAULT_LATENCY = 60;
+
+    /**
+     * The maximum amount the sample rate is adjusted by to keep the buffer centered.
+     */
+    private static final double MAX_RATE_ADJUSTMENT = 0.005;
+
+    /**
+     * The number of values the output thread moves from the ring buffer to the device at a time.
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * The amount of time the output thread waits for when the ring buffer is empty.
+     */
+    private static final long IDLE_WAIT_NANOS = 1000000L;
+
+    /**
+     * The sample rate that samples are produced at.
+     */
+    private final int sampleRate;
+
+    /**
+     * The output device.
+     */
+    private final SourceDataLine line;
+
+    /**
+     * The buffer that samples are passed to the output thread through.
+     */
+    private final SampleRingBuffer samples;
+
+    /**
+     * The number of values the ring buffer is kept filled to, which is half of the requested latency.
+     */
+    private final int targetFill;
+
+    /**
+     * The thread that writes samples to the output device.
+     */
+    private final Thread outputThread;
+
+    /**
+     * Whether the output thread should keep running.
+     */
+    private volatile boolean isRunning;
+
+    /**
+     * Creates a new JavaSoundSink instance using the default sample rate and latency.
+     *
+     * @throws LineUnavailableException If the output device could not be opened.
+     */
+    public JavaSoundSink() throws LineUnavailableException {
+        this(DEFAULT_SAMPLE_RATE, DEFAULT_LATENCY);
+    }
+
+    /**
+     * Creates a new JavaSoundSink instance and starts playback.
+     *
+     * @param sampleRate The sample rate to play samples at.
+     * @param latency    The amount of audio to buffer, in milliseconds. Half of this is buffered by the ring buffer and
+     *                   half by the output device.
+     * @throws LineUnavailableException If the output device could not be opened.
+     */
+    public JavaSoundSink(int sampleRate, int latency) throws LineUnavailableException {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+
+        if (latency <= 0) {
+            throw new IllegalArgumentException("Invalid latency: " + latency);
+        }
+
+        this.sampleRate = sampleRate;
+
+        // The number of values that make up the full latency, as each stereo sample consists of two values. The ring
+        // buffer is kept filled to half of this size, so it holds half of the latency.
+        final var bufferSize = Math.max(CHUNK_SIZE, (int) ((long) sampleRate * latency / 1000) * 2);
+        this.samples = new SampleRingBuffer(bufferSize);
+
+        // The capacity of the ring buffer is rounded up to a power of two, so the target is taken from the requested
+        // size rather than the capacity to avoid adding latency. It is kept to whole stereo pairs.
+        this.targetFill = (bufferSize / 2) & ~0x1;
+
+        // Each value is written to the device as two bytes, so a buffer of the same number of bytes holds the other
+        // half of the latency.
+        final var format = new AudioFormat(sampleRate, 16, 2, true, false);
+        try {
+            this.line = AudioSystem.getSourceDataLine(format);
+        } catch (IllegalArgumentException e) {
+            // This is thrown rather than LineUnavailableException when there is no output device at all.
+            throw new LineUnavailableException("No output device supports the format: " + format);
+        }
+        line.open(format, bufferSize);
+        line.start();
+
+        this.isRunning = true;
+        this.outputThread = new Thread(this::runOutput, "Audio Output");
+        outputThread.setDaemon(true);
+        outputThread.start();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) {
+        // If the emulator gets far enough ahead that the buffer fills up, the excess samples are dropped.
+        this.samples.write(samples, offset, length);
+    }
+
+    @Override
+    public double getRateAdjustment() {
+        final var fill = (double) samples.size() / targetFill;
+        final var error = Math.max(-1.0, Math.min(1.0, 1.0 - fill));
+        return 1.0 + MAX_RATE_ADJUSTMENT * error;
+    }
+
+    @Override
+    public void close() {
+        this.isRunning = false;
+
+        // Stopping and flushing the line releases the output thread if it is blocked on the device.
+        line.stop();
+        line.flush();
+
+        try {
+            outputThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        line.close();
+    }
+
+    /**
+     * Moves samples from the ring buffer to the output device until the sink is closed.
+     */
+    private void runOutput() {
+        final var chunk = new short[CHUNK_SIZE];
+        final var bytes = new byte[CHUNK_SIZE * 2];
+
+        var isFilling = true;
+        try {
+            while (isRunning) {
+                if (isFilling && samples.size() < targetFill) {
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    continue;
+                }
+
+                final var count = samples.read(chunk, 0, chunk.length);
+                isFilling = count == 0;
+                if (isFilling) {
+                    continue;
+                }
+
+                for (var i = 0; i < count; ++i) {
+                    bytes[i * 2] = (byte) chunk[i];
+                    bytes[i * 2 + 1] = (byte) (chunk[i] >> 8);
+                }
+
+                // This blocks until the device has room for the samples, which paces the output thread.
+                line.write(bytes, 0, count * 2);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Audio output stopped unexpectedly", e);
+        }
+    }
+
+}
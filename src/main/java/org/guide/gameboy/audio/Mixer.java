@@ -0,0 +1,129 @@
+package org.guide.gameboy.audio;
+
+import org.guide.util.BitUtils;
+
+import java.util.Arrays;
+
+/**
+ * Mixes the output of the sound channels into the left and right output terminals. Since mixing is linear, a change in
+ * a channel's output can be forwarded to the {@link SampleBuffer} as a delta without having to know the output of the
+ * other channels.
+ *
+ * @author Brendan Jones
+ */
+public class Mixer {
+
+    /**
+     * The number of sound channels.
+     */
+    public static final int NUM_CHANNELS = 4;
+
+    /**
+     * The current output of each channel.
+     */
+    private final int[] outputs = new int[NUM_CHANNELS];
+
+    /**
+     * The gain applied to each channel for the left terminal.
+     */
+    private final int[] leftGains = new int[NUM_CHANNELS];
+
+    /**
+     * The gain applied to each channel for the right terminal.
+     */
+    private final int[] rightGains = new int[NUM_CHANNELS];
+
+    /**
+     * The buffer that mixed deltas are written to, or {@code null} if only the channel outputs are being tracked.
+     */
+    private SampleBuffer buffer;
+
+    /**
+     * Resets the mixer. All channels are treated as silent and muted.
+     */
+    public void reset() {
+        Arrays.fill(outputs, 0);
+        Arrays.fill(leftGains, 0);
+        Arrays.fill(rightGains, 0);
+    }
+
+    /**
+     * Sets the buffer that mixed deltas are written to. The buffer is expected to be silent, so the current mixed
+     * output is written to it as a single step. The previous buffer is stepped back down to silence, so that it can be
+     * attached again later.
+     *
+     * @param buffer The sample buffer, or {@code null} to only track the channel outputs.
+     * @param time   The clock cycle within the current block that the buffer is attached on.
+     */
+    public void setBuffer(SampleBuffer buffer, int time) {
+        addMixedOutput(this.buffer, time, -1);
+        this.buffer = buffer;
+        addMixedOutput(buffer, time, 1);
+    }
+
+    /**
+     * Writes the current mixed output to a buffer as a single step.
+     *
+     * @param buffer The sample buffer, or {@code null} to do nothing.
+     * @param time   The clock cycle within the current block to write the step on.
+     * @param sign   1 to step up to the mixed output, or -1 to step down from it.
+     */
+    private void addMixedOutput(SampleBuffer buffer, int time, int sign) {
+        if (buffer == null) {
+            return;
+        }
+
+        var left = 0;
+        var right = 0;
+        for (var channel = 0; channel < NUM_CHANNELS; ++channel) {
+            left += outputs[channel] * leftGains[channel];
+            right += outputs[channel] * rightGains[channel];
+        }
+
+        if (left != 0 || right != 0) {
+            buffer.addDelta(time, left * sign, right * sign);
+        }
+    }
+
+    /**
+     * Records a change in the output of a channel.
+     *
+     * @param channel The channel index.
+     * @param time    The clock cycle within the current block that the change occurred on.
+     * @param delta   The change in the channel's output.
+     */
+    public void addDelta(int channel, int time, int delta) {
+        outputs[channel] += delta;
+        if (buffer != null) {
+            buffer.addDelta(time, delta * leftGains[channel], delta * rightGains[channel]);
+        }
+    }
+
+    /**
+     * Updates the volume and panning of each channel.
+     *
+     * @param time The clock cycle within the current block that the change occurred on.
+     * @param nr50 The value of the master volume register.
+     * @param nr51 The value of the panning register.
+     */
+    public void setVolume(int time, int nr50, int nr51) {
+        final var leftVolume = ((nr50 >> 4) & 0x7) + 1;
+        final var rightVolume = (nr50 & 0x7) + 1;
+
+        for (var channel = 0; channel < NUM_CHANNELS; ++channel) {
+            final var leftGain = BitUtils.isSet(nr51, channel + 4) ? leftVolume : 0;
+            final var rightGain = BitUtils.isSet(nr51, channel) ? rightVolume : 0;
+
+            final var output = outputs[channel];
+            if (output != 0 && buffer != null) {
+                final var leftDelta = output * (leftGain - leftGains[channel]);
+                final var rightDelta = output * (rightGain - rightGains[channel]);
+                buffer.addDelta(time, leftDelta, rightDelta);
+            }
+
+            leftGains[channel] = leftGain;
+            rightGains[channel] = rightGain;
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package org.guide.gameboy.audio;
+
+import org.guide.util.BitUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the noise channel of the APU, which outputs pseudo-random noise generated by a linear feedback shift
+ * register.
+ *
+ * @author Brendan Jones
+ */
+public class NoiseChannel extends SoundChannel {
+
+    /**
+     * The base number of cycles between each shift of the LFSR for each divisor code.
+     */
+    private static final int[] DIVISORS = {8, 16, 32, 48, 64, 80, 96, 112};
+
+    /**
+     * The LFSR is not clocked at all when the clock shift is this value or higher.
+     */
+    private static final int MAX_CLOCK_SHIFT = 14;
+
+    /**
+     * The volume envelope.
+     */
+    private final VolumeEnvelope envelope = new VolumeEnvelope();
+
+    /**
+     * The value of the polynomial counter register (NR43).
+     */
+    private int polynomialRegister;
+
+    /**
+     * The linear feedback shift register.
+     */
+    private int lfsr;
+
+    /**
+     * Creates a new NoiseChannel instance.
+     *
+     * @param mixer The mixer that changes in output are forwarded to.
+     * @param index The index of this channel in the mixer.
+     */
+    public NoiseChannel(Mixer mixer, int index) {
+        super(mixer, index, 64);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        envelope.reset();
+
+        this.polynomialRegister = 0;
+        this.lfsr = 0;
+    }
+
+    @Override
+    public int serializedSize() {
+        return envelope.serializedSize() + 3 + super.serializedSize();
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        envelope.serialize(out);
+
+        out.put((byte) polynomialRegister);
+        out.putShort((short) lfsr);
+
+        super.serialize(out);
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        envelope.deserialize(in);
+
+        this.polynomialRegister = in.get() & 0xFF;
+        this.lfsr = in.getShort() & 0xFFFF;
+
+        super.deserialize(in);
+    }
+
+    @Override
+    public void write(int time, int register, int value) {
+        switch (register) {
+            case 1 -> setLength(value & 0x3F);
+            case 2 -> {
+                envelope.write(value);
+                setDacEnabled(time, envelope.isDacEnabled());
+            }
+            case 3 -> this.polynomialRegister = value & 0xFF;
+            case 4 -> writeControl(time, value);
+            default -> throw new IllegalArgumentException("Invalid register: " + register);
+        }
+    }
+
+    /**
+     * Clocks the volume envelope.
+     *
+     * @param time The time of the clock.
+     */
+    public void clockEnvelope(int time) {
+        if (envelope.clock()) {
+            updateOutput(time);
+        }
+    }
+
+    @Override
+    protected int getPeriod() {
+        return DIVISORS[polynomialRegister & 0x7] << Math.min(getClockShift(), MAX_CLOCK_SHIFT);
+    }
+
+    @Override
+    protected void step() {
+        if (getClockShift() >= MAX_CLOCK_SHIFT) {
+            return;
+        }
+
+        final var feedback = (lfsr ^ (lfsr >> 1)) & 0x1;
+        this.lfsr = (lfsr >> 1) | (feedback << 14);
+
+        // In 7-bit mode, the feedback bit is also copied into bit 6, producing a shorter and more tonal sequence.
+        if (BitUtils.isSet(polynomialRegister, 3)) {
+            this.lfsr = (lfsr & ~0x40) | (feedback << 6);
+        }
+    }
+
+    @Override
+    protected int getAmplitude() {
+        return (lfsr & 0x1) == 0 ? envelope.getVolume() : 0;
+    }
+
+    @Override
+    protected void trigger(int time) {
+        super.trigger(time);
+        envelope.trigger();
+        this.lfsr = 0x7FFF;
+    }
+
+    /**
+     * Gets the amount the divisor is shifted by to determine the LFSR's clock period.
+     *
+     * @return The clock shift.
+     */
+    private int getClockShift() {
+        return polynomialRegister >> 4;
+    }
+
+}
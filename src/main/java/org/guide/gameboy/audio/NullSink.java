@@ -0,0 +1,59 @@
+package org.guide.gameboy.audio;
+
+/**
+ * An audio sink that discards all samples. This is useful for headless runs and tests where audio needs to be
+ * synthesized but not played.
+ *
+ * @author Brendan Jones
+ */
+public class NullSink implements AudioSink {
+
+    /**
+     * The sample rate that samples are produced at.
+     */
+    private final int sampleRate;
+
+    /**
+     * The total number of stereo samples that have been written to the sink.
+     */
+    private long numSamplesWritten;
+
+    /**
+     * Creates a new NullSink instance that uses the default sample rate.
+     */
+    public NullSink() {
+        this(Audio.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Creates a new NullSink instance.
+     *
+     * @param sampleRate The sample rate that samples are produced at.
+     */
+    public NullSink(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) {
+        numSamplesWritten += length / 2;
+    }
+
+    /**
+     * Gets the total number of stereo samples that have been written to the sink.
+     *
+     * @return The number of samples.
+     */
+    public long getNumSamplesWritten() {
+        return numSamplesWritten;
+    }
+
+}
@@ -0,0 +1,339 @@
+package org.guide.gameboy.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An audio sink that streams samples to a file as 16-bit signed little-endian stereo PCM, either as a WAV file or as
+ * raw sample data. Raw sample data can also be streamed to a named pipe. This does not need an audio device, so it can
+ * be used to record audio from headless runs.
+ * <p>
+ * Samples are gathered into large direct buffers on the emulator thread, and full buffers are handed to a background
+ * thread that writes them out, so the emulator never waits on the disk. The emulator only blocks if the disk falls so
+ * far behind that every buffer is waiting to be written, in which case it waits rather than dropping audio.
+ *
+ * @author Brendan Jones
+ */
+public class PcmFileSink implements AudioSink, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PcmFileSink.class);
+
+    /**
+     * The formats that samples can be written in.
+     */
+    public enum Format {
+
+        /**
+         * A WAV file, consisting of a RIFF header followed by the sample data.
+         */
+        WAVE,
+
+        /**
+         * Raw sample data with no header.
+         */
+        RAW
+
+    }
+
+    /**
+     * The size of each buffer in bytes, which holds a little under a second and a half of audio at 44100Hz.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The number of buffers that samples are gathered into.
+     */
+    private static final int NUM_BUFFERS = 8;
+
+    /**
+     * The size of the WAV file header in bytes.
+     */
+    private static final int WAVE_HEADER_SIZE = 44;
+
+    /**
+     * The number of channels that are written.
+     */
+    private static final int NUM_CHANNELS = 2;
+
+    /**
+     * The number of bytes each sample value is written as.
+     */
+    private static final int BYTES_PER_VALUE = 2;
+
+    /**
+     * The sample rate that samples are produced at.
+     */
+    private final int sampleRate;
+
+    /**
+     * The format that samples are written in.
+     */
+    private final Format format;
+
+    /**
+     * The path of the output file.
+     */
+    private final Path path;
+
+    /**
+     * The channel that samples are written to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The buffers that are ready to be filled with samples.
+     */
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(NUM_BUFFERS);
+
+    /**
+     * The buffers that are waiting to be written to the channel, in order.
+     */
+    private final BlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+
+    /**
+     * The empty buffer that is queued to tell the writer thread to stop.
+     */
+    private final ByteBuffer endOfStream = ByteBuffer.allocate(0);
+
+    /**
+     * The thread that writes buffers to the channel.
+     */
+    private final Thread writerThread;
+
+    /**
+     * The buffer samples are currently being gathered into.
+     */
+    private ByteBuffer current;
+
+    /**
+     * The total number of bytes of sample data that have been written to the channel. Only the writer thread accesses
+     * this until it has stopped.
+     */
+    private long dataSize;
+
+    /**
+     * The error that stopped the writer thread, or {@code null} if there has not been one.
+     */
+    private volatile IOException error;
+
+    /**
+     * Whether the sink has been closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Creates a new PcmFileSink instance that uses the default sample rate. The file is created if it does not exist,
+     * and replaced if it does.
+     *
+     * @param path   The path of the output file.
+     * @param format The format to write samples in.
+     * @throws IOException If the file could not be opened.
+     */
+    public PcmFileSink(Path path, Format format) throws IOException {
+        this(path, format, Audio.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Creates a new PcmFileSink instance. The file is created if it does not exist, and replaced if it does. If the path
+     * refers to a named pipe, this blocks until the other end of the pipe has been opened.
+     *
+     * @param path       The path of the output file.
+     * @param format     The format to write samples in.
+     * @param sampleRate The sample rate to produce samples at.
+     * @throws IOException If the file could not be opened.
+     */
+    public PcmFileSink(Path path, Format format, int sampleRate) throws IOException {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+
+        this.path = requireNonNull(path);
+        this.format = requireNonNull(format);
+        this.sampleRate = sampleRate;
+
+        for (var i = 0; i < NUM_BUFFERS; ++i) {
+            freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        this.current = freeBuffers.remove();
+
+        this.channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        if (format == Format.WAVE) {
+            // The sizes are not known until the sink is closed, so the largest possible sizes are written for now. These
+            // are also what programs reading a WAV file from a pipe expect.
+            writeWaveHeader(current, 0xFFFFFFFFL);
+        }
+
+        this.writerThread = new Thread(this::runWriter, "Audio Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) {
+        if (isClosed) {
+            throw new IllegalStateException("Sink is closed");
+        }
+
+        final var end = offset + length;
+        for (var i = offset; i < end; ++i) {
+            if (!current.hasRemaining()) {
+                submitCurrent();
+            }
+            current.putShort(samples[i]);
+        }
+    }
+
+    /**
+     * Gets the path of the output file.
+     *
+     * @return The path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the format that samples are written in.
+     *
+     * @return The format.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes any buffered samples, waits for the writer thread to finish, and closes the file. For WAV files written to
+     * a regular file, the header is updated with the final sizes.
+     *
+     * @throws IOException If any samples could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        this.isClosed = true;
+
+        try {
+            if (current.position() > 0) {
+                submitCurrent();
+            }
+            fullBuffers.put(endOfStream);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+            channel.close();
+            throw new InterruptedIOException("Interrupted while writing the remaining samples");
+        }
+
+        try (channel) {
+            if (error != null) {
+                throw error;
+            }
+
+            // Named pipes cannot be rewound, so their header keeps the sizes it was written with.
+            if (format == Format.WAVE && Files.isRegularFile(path)) {
+                final var header = ByteBuffer.allocate(WAVE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                writeWaveHeader(header, dataSize - WAVE_HEADER_SIZE);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the current buffer to the writer thread and takes the next free buffer.
+     */
+    private void submitCurrent() {
+        try {
+            current.flip();
+            fullBuffers.put(current);
+            this.current = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free buffer", e);
+        }
+    }
+
+    /**
+     * Writes full buffers to the channel until the end of the stream is reached. If writing fails, the remaining
+     * buffers are recycled without being written so that the emulator thread never waits on them.
+     */
+    private void runWriter() {
+        try {
+            while (true) {
+                final var buffer = fullBuffers.take();
+                if (buffer == endOfStream) {
+                    return;
+                }
+
+                if (error == null) {
+                    try {
+                        while (buffer.hasRemaining()) {
+                            dataSize += channel.write(buffer);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.error("Failed to write samples to " + path, e);
+                        this.error = e;
+                    }
+                }
+
+                buffer.clear();
+                freeBuffers.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a WAV file header describing 16-bit stereo PCM data.
+     *
+     * @param buffer   The buffer to write the header to.
+     * @param dataSize The size of the sample data in bytes. This is clamped to the largest size a WAV file can hold.
+     */
+    private void writeWaveHeader(ByteBuffer buffer, long dataSize) {
+        final var blockAlign = NUM_CHANNELS * BYTES_PER_VALUE;
+        final var chunkSize = Math.min(dataSize + WAVE_HEADER_SIZE - 8, 0xFFFFFFFFL);
+
+        buffer.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+        buffer.putInt((int) chunkSize);
+        buffer.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+
+        buffer.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+        buffer.putInt(16);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) NUM_CHANNELS);
+        buffer.putInt(sampleRate);
+        buffer.putInt(sampleRate * blockAlign);
+        buffer.putShort((short) blockAlign);
+        buffer.putShort((short) (BYTES_PER_VALUE * 8));
+
+        buffer.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+        buffer.putInt((int) Math.min(dataSize, 0xFFFFFFFFL));
+    }
+
+}
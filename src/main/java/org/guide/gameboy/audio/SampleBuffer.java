@@ -0,0 +1,337 @@
+package org.guide.gameboy.audio;
+
+import java.util.Arrays;
+
+/**
+ * Converts the amplitude changes produced by the sound channels into output samples. Rather than being sampled at
+ * regular intervals, the mixed output is described as a series of deltas that are recorded at the clock cycle they
+ * occurred on. At the end of each block, every delta is convolved with a band-limited {@link StepKernel} in a single
+ * pass, and the result is integrated into samples at the output sample rate. This avoids the aliasing that would
+ * otherwise be caused by decimating the 4 MHz clock, without having to filter every output sample.
+ * <p>
+ * Since each step is spread over the samples following it, the output lags the input by half the kernel width.
+ * <p>
+ * The output is passed through a high-pass filter to remove the DC offset, similar to the capacitor found on the
+ * hardware's audio output.
+ *
+ * @author Brendan Jones
+ */
+public class SampleBuffer {
+
+    /**
+     * The number of fractional bits used for sample positions.
+     */
+    private static final int FRACTION_BITS = 32;
+
+    /**
+     * The amount a sample position is shifted right by to get the index of its phase in the delta buffers.
+     */
+    private static final int PHASE_SHIFT = FRACTION_BITS - StepKernel.PHASE_BITS;
+
+    /**
+     * The factor used to scale the mixed amplitude to the range of a signed 16-bit sample.
+     */
+    private static final int VOLUME_SCALE = 64;
+
+    /**
+     * The rate at which the capacitor on the hardware's audio output charges each clock cycle.
+     */
+    private static final double CAPACITOR_CHARGE_RATE = 0.999958;
+
+    /**
+     * The maximum amount the output sample rate can be adjusted by, as a fraction of the nominal rate.
+     */
+    public static final double MAX_RATE_ADJUSTMENT = 0.01;
+
+    /**
+     * The output sample rate.
+     */
+    private final int sampleRate;
+
+    /**
+     * The nominal number of output samples per clock cycle, as a fixed-point value.
+     */
+    private final long nominalSamplesPerCycle;
+
+    /**
+     * The largest number of output samples per clock cycle that the rate adjustment allows, as a fixed-point value.
+     */
+    private final long maxSamplesPerCycle;
+
+    /**
+     * The number of output samples per clock cycle after the rate adjustment is applied, as a fixed-point value.
+     */
+    private long samplesPerCycle;
+
+    /**
+     * The amount of charge the high-pass filter retains between each output sample.
+     */
+    private final double capacitorCharge;
+
+    /**
+     * The deltas for the left channel, indexed by output sample and then by phase.
+     */
+    private final int[] leftDeltas;
+
+    /**
+     * The deltas for the right channel, indexed by output sample and then by phase.
+     */
+    private final int[] rightDeltas;
+
+    /**
+     * The band-limited steps of the left channel, indexed by output sample. The kernel extends past the end of the
+     * block, so this holds enough room for the steps that carry over into the next block.
+     */
+    private final int[] leftSteps;
+
+    /**
+     * The band-limited steps of the right channel, indexed by output sample.
+     */
+    private final int[] rightSteps;
+
+    /**
+     * The fractional sample position of the start of the current block.
+     */
+    private long blockOffset;
+
+    /**
+     * The running amplitude of the left channel.
+     */
+    private int leftAmplitude;
+
+    /**
+     * The running amplitude of the right channel.
+     */
+    private int rightAmplitude;
+
+    /**
+     * The charge of the left channel's high-pass filter.
+     */
+    private double leftCapacitor;
+
+    /**
+     * The charge of the right channel's high-pass filter.
+     */
+    private double rightCapacitor;
+
+    /**
+     * Whether any deltas have been recorded during the current block.
+     */
+    private boolean hasDeltas;
+
+    /**
+     * Whether the output has settled at silence, with nothing carried over into the current block from previous ones.
+     */
+    private boolean isSettled = true;
+
+    /**
+     * Creates a new SampleBuffer instance.
+     *
+     * @param clockRate      The rate that deltas are clocked at.
+     * @param sampleRate     The output sample rate.
+     * @param maxBlockCycles The maximum number of clock cycles in a single block.
+     */
+    public SampleBuffer(int clockRate, int sampleRate, int maxBlockCycles) {
+        if (sampleRate <= 0 || sampleRate > clockRate) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+
+        this.sampleRate = sampleRate;
+        this.nominalSamplesPerCycle = ((long) sampleRate << FRACTION_BITS) / clockRate;
+        this.maxSamplesPerCycle = Math.round(nominalSamplesPerCycle * (1 + MAX_RATE_ADJUSTMENT));
+        this.samplesPerCycle = nominalSamplesPerCycle;
+        this.capacitorCharge = Math.pow(CAPACITOR_CHARGE_RATE, (double) clockRate / sampleRate);
+
+        final var maxSamples = getMaxSamples(maxBlockCycles);
+        this.leftDeltas = new int[(maxSamples + 1) * StepKernel.NUM_PHASES];
+        this.rightDeltas = new int[(maxSamples + 1) * StepKernel.NUM_PHASES];
+        this.leftSteps = new int[maxSamples + StepKernel.WIDTH];
+        this.rightSteps = new int[maxSamples + StepKernel.WIDTH];
+    }
+
+    /**
+     * Resets the buffer, discarding any pending deltas and the current amplitude.
+     */
+    public void clear() {
+        Arrays.fill(leftDeltas, 0);
+        Arrays.fill(rightDeltas, 0);
+        Arrays.fill(leftSteps, 0);
+        Arrays.fill(rightSteps, 0);
+
+        this.blockOffset = 0;
+        this.leftAmplitude = 0;
+        this.rightAmplitude = 0;
+        this.leftCapacitor = 0;
+        this.rightCapacitor = 0;
+        this.hasDeltas = false;
+        this.isSettled = true;
+    }
+
+    /**
+     * Records a change in amplitude.
+     *
+     * @param time  The clock cycle within the current block that the change occurred on.
+     * @param left  The change in amplitude of the left channel.
+     * @param right The change in amplitude of the right channel.
+     */
+    public void addDelta(int time, int left, int right) {
+        final var index = (int) ((blockOffset + time * samplesPerCycle) >>> PHASE_SHIFT);
+        leftDeltas[index] += left;
+        rightDeltas[index] += right;
+        this.hasDeltas = true;
+    }
+
+    /**
+     * Ends the current block and converts its deltas into samples.
+     *
+     * @param cycles  The number of clock cycles in the block.
+     * @param samples The array to write the interleaved stereo samples to. This must be able to hold at least
+     *                {@link #getMaxSamples(int)} stereo samples.
+     * @return The number of stereo samples that were written.
+     */
+    public int endBlock(int cycles, short[] samples) {
+        final var blockEnd = blockOffset + cycles * samplesPerCycle;
+        final var numSamples = (int) (blockEnd >>> FRACTION_BITS);
+        final var numDeltas = numSamples * StepKernel.NUM_PHASES;
+        this.blockOffset = blockEnd & ((1L << FRACTION_BITS) - 1);
+
+        // When nothing is playing, the whole block is silent and there is nothing to convolve or filter.
+        if (isSettled && !hasDeltas) {
+            Arrays.fill(samples, 0, numSamples * 2, (short) 0);
+            return numSamples;
+        }
+
+        convolve(leftDeltas, leftSteps, numDeltas);
+        convolve(rightDeltas, rightSteps, numDeltas);
+
+        for (var i = 0; i < numSamples; ++i) {
+            leftAmplitude += leftSteps[i];
+            rightAmplitude += rightSteps[i];
+
+            final var leftInput = (double) leftAmplitude / StepKernel.SCALE;
+            final var rightInput = (double) rightAmplitude / StepKernel.SCALE;
+
+            final var left = leftInput - leftCapacitor;
+            final var right = rightInput - rightCapacitor;
+            leftCapacitor = leftInput - left * capacitorCharge;
+            rightCapacitor = rightInput - right * capacitorCharge;
+
+            samples[i * 2] = clamp(left * VOLUME_SCALE);
+            samples[i * 2 + 1] = clamp(right * VOLUME_SCALE);
+        }
+
+        // Any deltas that fall on the sample following the end of the block belong to the next block, as do the parts
+        // of the steps that extend past it.
+        carry(leftDeltas, numDeltas, StepKernel.NUM_PHASES);
+        carry(rightDeltas, numDeltas, StepKernel.NUM_PHASES);
+        carry(leftSteps, numSamples, StepKernel.WIDTH);
+        carry(rightSteps, numSamples, StepKernel.WIDTH);
+
+        // Once the filter's charge is too small to affect the output, it can be discarded without changing the samples
+        // that would have been produced.
+        this.hasDeltas = false;
+        this.isSettled = leftAmplitude == 0 && rightAmplitude == 0
+                && Math.abs(leftCapacitor * VOLUME_SCALE) < 1 && Math.abs(rightCapacitor * VOLUME_SCALE) < 1
+                && isZero(leftDeltas, StepKernel.NUM_PHASES) && isZero(rightDeltas, StepKernel.NUM_PHASES)
+                && isZero(leftSteps, StepKernel.WIDTH) && isZero(rightSteps, StepKernel.WIDTH);
+        if (isSettled) {
+            this.leftCapacitor = 0;
+            this.rightCapacitor = 0;
+        }
+
+        return numSamples;
+    }
+
+    /**
+     * Adjusts the number of samples produced per clock cycle. This must only be called between blocks.
+     *
+     * @param adjustment The factor to multiply the nominal sample rate by.
+     */
+    public void setRateAdjustment(double adjustment) {
+        if (Math.abs(adjustment - 1) > MAX_RATE_ADJUSTMENT) {
+            throw new IllegalArgumentException("Invalid rate adjustment: " + adjustment);
+        }
+        this.samplesPerCycle = Math.round(nominalSamplesPerCycle * adjustment);
+    }
+
+    /**
+     * Gets the maximum number of samples that a block of the specified length can produce.
+     *
+     * @param cycles The number of clock cycles in the block.
+     * @return The maximum number of stereo samples.
+     */
+    public int getMaxSamples(int cycles) {
+        return (int) ((((1L << FRACTION_BITS) - 1) + cycles * maxSamplesPerCycle) >>> FRACTION_BITS) + 1;
+    }
+
+    /**
+     * Gets the output sample rate.
+     *
+     * @return The sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Convolves the deltas of a block with the step kernel. Only deltas that are non-zero contribute, so the cost of the
+     * pass mostly depends on how often the channel outputs change rather than on the length of the block.
+     *
+     * @param deltas    The deltas, indexed by output sample and then by phase.
+     * @param steps     The band-limited steps to add the convolved deltas to.
+     * @param numDeltas The number of deltas in the block.
+     */
+    private static void convolve(int[] deltas, int[] steps, int numDeltas) {
+        for (var i = 0; i < numDeltas; ++i) {
+            final var delta = deltas[i];
+            if (delta == 0) {
+                continue;
+            }
+
+            final var kernel = StepKernel.get(i & (StepKernel.NUM_PHASES - 1));
+            final var sample = i >> StepKernel.PHASE_BITS;
+            for (var tap = 0; tap < StepKernel.WIDTH; ++tap) {
+                steps[sample + tap] += delta * kernel[tap];
+            }
+        }
+    }
+
+    /**
+     * Moves the values following the end of a block to the start of the array, and clears the rest of the block.
+     *
+     * @param values The array.
+     * @param end    The index of the end of the block.
+     * @param length The number of values following the end of the block that carry over.
+     */
+    private static void carry(int[] values, int end, int length) {
+        System.arraycopy(values, end, values, 0, length);
+        Arrays.fill(values, length, end + length, 0);
+    }
+
+    /**
+     * Gets whether the first values of an array are all zero.
+     *
+     * @param values The array.
+     * @param length The number of values to check.
+     * @return Whether the values are all zero.
+     */
+    private static boolean isZero(int[] values, int length) {
+        for (var i = 0; i < length; ++i) {
+            if (values[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clamps a value to the range of a signed 16-bit sample.
+     *
+     * @param value The value to clamp.
+     * @return The clamped value.
+     */
+    private static short clamp(double value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, (int) value));
+    }
+
+}
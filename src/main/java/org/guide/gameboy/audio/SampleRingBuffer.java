@@ -0,0 +1,126 @@
+package org.guide.gameboy.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of interleaved stereo samples. The buffer is safe to use with exactly one thread writing
+ * samples and one thread reading them, which allows the emulator thread to hand samples to an audio output thread
+ * without either of them ever blocking on the other.
+ * <p>
+ * Samples are always written and read in whole stereo pairs, so the left and right channels can never be swapped.
+ *
+ * @author Brendan Jones
+ */
+public class SampleRingBuffer {
+
+    /**
+     * The sample storage. The length is always a power of two.
+     */
+    private final short[] buffer;
+
+    /**
+     * The mask used to wrap positions to an index in the buffer.
+     */
+    private final int mask;
+
+    /**
+     * The total number of values that have been written. Only the writing thread modifies this.
+     */
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /**
+     * The total number of values that have been read. Only the reading thread modifies this.
+     */
+    private final AtomicLong readPosition = new AtomicLong();
+
+    /**
+     * Creates a new SampleRingBuffer instance.
+     *
+     * @param minCapacity The minimum number of values the buffer must hold. This is rounded up to a power of two.
+     */
+    public SampleRingBuffer(int minCapacity) {
+        if (minCapacity < 2 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + minCapacity);
+        }
+
+        final var capacity = Integer.highestOneBit(minCapacity - 1) << 1;
+        this.buffer = new short[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Writes samples to the buffer. If there is not enough space for all of the samples, only as many whole stereo
+     * pairs as will fit are written and the rest are dropped. This must only be called from the writing thread.
+     *
+     * @param samples The sample data.
+     * @param offset  The offset of the first sample in the array.
+     * @param length  The number of values to write.
+     * @return The number of values that were written.
+     */
+    public int write(short[] samples, int offset, int length) {
+        final var write = writePosition.get();
+        final var free = buffer.length - (int) (write - readPosition.get());
+        final var count = Math.min(length, free) & ~0x1;
+
+        final var start = (int) (write & mask);
+        final var first = Math.min(count, buffer.length - start);
+        System.arraycopy(samples, offset, buffer, start, first);
+        System.arraycopy(samples, offset + first, buffer, 0, count - first);
+
+        // Publish the samples to the reading thread only once they have been copied.
+        writePosition.lazySet(write + count);
+        return count;
+    }
+
+    /**
+     * Reads samples from the buffer. This must only be called from the reading thread.
+     *
+     * @param samples The array to read samples into.
+     * @param offset  The offset in the array to start writing samples to.
+     * @param length  The maximum number of values to read.
+     * @return The number of values that were read.
+     */
+    public int read(short[] samples, int offset, int length) {
+        final var read = readPosition.get();
+        final var available = (int) (writePosition.get() - read);
+        final var count = Math.min(length, available) & ~0x1;
+
+        final var start = (int) (read & mask);
+        final var first = Math.min(count, buffer.length - start);
+        System.arraycopy(buffer, start, samples, offset, first);
+        System.arraycopy(buffer, 0, samples, offset + first, count - first);
+
+        // Release the space back to the writing thread only once the samples have been copied out.
+        readPosition.lazySet(read + count);
+        return count;
+    }
+
+    /**
+     * Discards all samples in the buffer. This must only be called from the reading thread.
+     */
+    public void clear() {
+        readPosition.lazySet(writePosition.get());
+    }
+
+    /**
+     * Gets the number of values currently held in the buffer. The result may be out of date by the time it is used if
+     * the other thread is active.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+        // The read position is loaded first so that the result can never be negative.
+        final var read = readPosition.get();
+        return (int) (writePosition.get() - read);
+    }
+
+    /**
+     * Gets the maximum number of values the buffer can hold.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+}
@@ -0,0 +1,301 @@
+package org.guide.gameboy.audio;
+
+import org.guide.gameboy.SerializableComponent;
+import org.guide.util.BitUtils;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The base class for the sound channels of the APU. This implements the functionality shared by all channels, which
+ * includes the length counter, the DAC and the frequency timer that steps the channel's waveform.
+ * <p>
+ * All times are measured in clock cycles relative to the start of the block being synthesized.
+ *
+ * @author Brendan Jones
+ */
+public abstract class SoundChannel implements SerializableComponent {
+
+    /**
+     * The mixer that changes in output are forwarded to.
+     */
+    private final Mixer mixer;
+
+    /**
+     * The index of this channel in the mixer.
+     */
+    private final int index;
+
+    /**
+     * The value that the length counter is loaded with when the channel is triggered with an expired length.
+     */
+    private final int maxLength;
+
+    /**
+     * Whether the channel is enabled. This is reflected in the status bits of the NR52 register.
+     */
+    private boolean isEnabled;
+
+    /**
+     * Whether the channel's DAC is powered. The channel cannot be enabled while its DAC is off.
+     */
+    private boolean isDacEnabled;
+
+    /**
+     * The number of length clocks remaining before the channel is disabled.
+     */
+    private int lengthCounter;
+
+    /**
+     * Whether the length counter is enabled.
+     */
+    private boolean isLengthEnabled;
+
+    /**
+     * The number of cycles remaining until the waveform is stepped.
+     */
+    private int timer;
+
+    /**
+     * The current output of the channel, which is a value from 0 to 15.
+     */
+    private int output;
+
+    /**
+     * Creates a new SoundChannel instance.
+     *
+     * @param mixer     The mixer that changes in output are forwarded to.
+     * @param index     The index of this channel in the mixer.
+     * @param maxLength The maximum value of the length counter.
+     */
+    protected SoundChannel(Mixer mixer, int index, int maxLength) {
+        this.mixer = requireNonNull(mixer);
+        this.index = index;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Resets the channel to its default state. The channel's output is assumed to already be accounted for by the
+     * mixer, so this must be followed by a reset of the mixer.
+     */
+    public void reset() {
+        this.isEnabled = false;
+        this.isDacEnabled = false;
+        this.lengthCounter = 0;
+        this.isLengthEnabled = false;
+        this.timer = 0;
+        this.output = 0;
+    }
+
+    @Override
+    public int serializedSize() {
+        return 9;
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        out.put((byte) (isEnabled ? 1 : 0));
+        out.put((byte) (isDacEnabled ? 1 : 0));
+        out.putShort((short) lengthCounter);
+        out.put((byte) (isLengthEnabled ? 1 : 0));
+        out.putInt(timer);
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        this.isEnabled = in.get() == 1;
+        this.isDacEnabled = in.get() == 1;
+        this.lengthCounter = in.getShort() & 0xFFFF;
+        this.isLengthEnabled = in.get() == 1;
+        this.timer = in.getInt();
+
+        // The mixer is reset when the system is restored, so the output needs to be reapplied.
+        this.output = 0;
+        updateOutput(0);
+    }
+
+    /**
+     * Handles a write to one of the channel's registers.
+     *
+     * @param time     The time of the write.
+     * @param register The register that was written to, from 0 (NRx0) to 4 (NRx4).
+     * @param value    The value that was written.
+     */
+    public abstract void write(int time, int register, int value);
+
+    /**
+     * Runs the channel's frequency timer, stepping the waveform and updating the output each time it expires.
+     *
+     * @param from The time to run from.
+     * @param to   The time to run to.
+     */
+    public void run(int from, int to) {
+        if (!isEnabled) {
+            return;
+        }
+
+        final var period = getPeriod();
+
+        var time = from + timer;
+        while (time < to) {
+            step();
+            updateOutput(time);
+            time += period;
+        }
+
+        this.timer = time - to;
+    }
+
+    /**
+     * Runs the channel's frequency timer without generating a waveform. The waveform is advanced by the number of times
+     * the timer would have expired, leaving the channel in the same state as {@link #run(int, int)} would.
+     *
+     * @param from The time to run from.
+     * @param to   The time to run to.
+     */
+    public void skip(int from, int to) {
+        if (!isEnabled) {
+            return;
+        }
+
+        final var period = getPeriod();
+
+        final var time = from + timer;
+        if (time >= to) {
+            this.timer = time - to;
+            return;
+        }
+
+        final var steps = (to - time - 1) / period + 1;
+        step(steps);
+        this.timer = time + steps * period - to;
+
+        // Keep the mixer's view of the output current, so that it is correct when a sink is attached again.
+        updateOutput(to);
+    }
+
+    /**
+     * Clocks the length counter, disabling the channel once it expires.
+     *
+     * @param time The time of the clock.
+     */
+    public void clockLength(int time) {
+        if (isLengthEnabled && lengthCounter > 0 && --lengthCounter == 0) {
+            disable(time);
+        }
+    }
+
+    /**
+     * Gets whether the channel is enabled.
+     *
+     * @return Whether the channel is enabled.
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Gets the number of cycles between each step of the waveform.
+     *
+     * @return The timer period.
+     */
+    protected abstract int getPeriod();
+
+    /**
+     * Steps the waveform to its next position.
+     */
+    protected abstract void step();
+
+    /**
+     * Steps the waveform forward by a number of positions. Channels whose waveform can be advanced directly should
+     * override this.
+     *
+     * @param steps The number of positions to step by.
+     */
+    protected void step(int steps) {
+        for (var i = 0; i < steps; ++i) {
+            step();
+        }
+    }
+
+    /**
+     * Gets the current amplitude of the waveform, which is a value from 0 to 15.
+     *
+     * @return The amplitude.
+     */
+    protected abstract int getAmplitude();
+
+    /**
+     * Triggers the channel, restarting playback.
+     *
+     * @param time The time of the trigger.
+     */
+    protected void trigger(int time) {
+        this.isEnabled = isDacEnabled;
+        if (lengthCounter == 0) {
+            this.lengthCounter = maxLength;
+        }
+        this.timer = getPeriod();
+    }
+
+    /**
+     * Handles a write to the NRx4 register, which is shared by all channels.
+     *
+     * @param time  The time of the write.
+     * @param value The value that was written.
+     */
+    protected void writeControl(int time, int value) {
+        this.isLengthEnabled = BitUtils.isSet(value, 6);
+        if (BitUtils.isSet(value, 7)) {
+            trigger(time);
+        }
+        updateOutput(time);
+    }
+
+    /**
+     * Loads the length counter.
+     *
+     * @param length The length value written to the channel's length register.
+     */
+    protected void setLength(int length) {
+        this.lengthCounter = maxLength - length;
+    }
+
+    /**
+     * Powers the channel's DAC on or off. Powering off the DAC also disables the channel.
+     *
+     * @param time      The time of the change.
+     * @param isEnabled Whether the DAC is powered.
+     */
+    protected void setDacEnabled(int time, boolean isEnabled) {
+        this.isDacEnabled = isEnabled;
+        if (!isEnabled) {
+            disable(time);
+        }
+    }
+
+    /**
+     * Disables the channel.
+     *
+     * @param time The time the channel was disabled.
+     */
+    protected void disable(int time) {
+        this.isEnabled = false;
+        updateOutput(time);
+    }
+
+    /**
+     * Updates the output of the channel, forwarding any change to the mixer.
+     *
+     * @param time The time of the change.
+     */
+    protected void updateOutput(int time) {
+        final var amplitude = isEnabled ? getAmplitude() : 0;
+        if (amplitude != output) {
+            mixer.addDelta(index, time, amplitude - output);
+            this.output = amplitude;
+        }
+    }
+
+}
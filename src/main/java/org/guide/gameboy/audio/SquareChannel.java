@@ -0,0 +1,263 @@
+package org.guide.gameboy.audio;
+
+import org.guide.util.BitUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the square wave channels of the APU. Channel 1 additionally has a frequency sweep unit, which channel 2
+ * lacks.
+ *
+ * @author Brendan Jones
+ */
+public class SquareChannel extends SoundChannel {
+
+    /**
+     * The waveforms for each duty cycle, where bit {@code n} is the output at step {@code n} of the waveform.
+     */
+    private static final int[] DUTY_WAVEFORMS = {0x80, 0x81, 0xE1, 0x7E};
+
+    /**
+     * The highest frequency value that the channel can play. The channel is disabled if a sweep exceeds this.
+     */
+    private static final int MAX_FREQUENCY = 0x7FF;
+
+    /**
+     * Whether the channel has a frequency sweep unit.
+     */
+    private final boolean hasSweep;
+
+    /**
+     * The volume envelope.
+     */
+    private final VolumeEnvelope envelope = new VolumeEnvelope();
+
+    /**
+     * The selected duty cycle.
+     */
+    private int duty;
+
+    /**
+     * The current step within the duty waveform.
+     */
+    private int dutyStep;
+
+    /**
+     * The 11-bit frequency value.
+     */
+    private int frequency;
+
+    /**
+     * The value of the sweep register (NR10).
+     */
+    private int sweepRegister;
+
+    /**
+     * The number of sweep clocks remaining until the frequency is next swept.
+     */
+    private int sweepTimer;
+
+    /**
+     * The frequency that the sweep unit calculates new frequencies from.
+     */
+    private int shadowFrequency;
+
+    /**
+     * Whether the sweep unit is active.
+     */
+    private boolean isSweepEnabled;
+
+    /**
+     * Creates a new SquareChannel instance.
+     *
+     * @param mixer    The mixer that changes in output are forwarded to.
+     * @param index    The index of this channel in the mixer.
+     * @param hasSweep Whether the channel has a frequency sweep unit.
+     */
+    public SquareChannel(Mixer mixer, int index, boolean hasSweep) {
+        super(mixer, index, 64);
+        this.hasSweep = hasSweep;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        envelope.reset();
+
+        this.duty = 0;
+        this.dutyStep = 0;
+        this.frequency = 0;
+        this.sweepRegister = 0;
+        this.sweepTimer = 0;
+        this.shadowFrequency = 0;
+        this.isSweepEnabled = false;
+    }
+
+    @Override
+    public int serializedSize() {
+        return envelope.serializedSize() + 9 + super.serializedSize();
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        envelope.serialize(out);
+
+        out.put((byte) duty);
+        out.put((byte) dutyStep);
+        out.putShort((short) frequency);
+        out.put((byte) sweepRegister);
+        out.put((byte) sweepTimer);
+        out.putShort((short) shadowFrequency);
+        out.put((byte) (isSweepEnabled ? 1 : 0));
+
+        super.serialize(out);
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        envelope.deserialize(in);
+
+        this.duty = in.get() & 0xFF;
+        this.dutyStep = in.get() & 0xFF;
+        this.frequency = in.getShort() & 0xFFFF;
+        this.sweepRegister = in.get() & 0xFF;
+        this.sweepTimer = in.get() & 0xFF;
+        this.shadowFrequency = in.getShort() & 0xFFFF;
+        this.isSweepEnabled = in.get() == 1;
+
+        super.deserialize(in);
+    }
+
+    @Override
+    public void write(int time, int register, int value) {
+        switch (register) {
+            case 0 -> this.sweepRegister = value & 0x7F;
+            case 1 -> {
+                this.duty = (value >> 6) & 0x3;
+                setLength(value & 0x3F);
+                updateOutput(time);
+            }
+            case 2 -> {
+                envelope.write(value);
+                setDacEnabled(time, envelope.isDacEnabled());
+            }
+            case 3 -> this.frequency = (frequency & 0x700) | (value & 0xFF);
+            case 4 -> {
+                this.frequency = (frequency & 0xFF) | ((value & 0x7) << 8);
+                writeControl(time, value);
+            }
+            default -> throw new IllegalArgumentException("Invalid register: " + register);
+        }
+    }
+
+    /**
+     * Clocks the volume envelope.
+     *
+     * @param time The time of the clock.
+     */
+    public void clockEnvelope(int time) {
+        if (envelope.clock()) {
+            updateOutput(time);
+        }
+    }
+
+    /**
+     * Clocks the frequency sweep unit.
+     *
+     * @param time The time of the clock.
+     */
+    public void clockSweep(int time) {
+        if (!hasSweep || --sweepTimer > 0) {
+            return;
+        }
+
+        final var period = getSweepPeriod();
+        this.sweepTimer = period == 0 ? 8 : period;
+
+        if (isSweepEnabled && period != 0) {
+            final var newFrequency = calculateSweep(time);
+            if (newFrequency <= MAX_FREQUENCY && getSweepShift() != 0) {
+                this.shadowFrequency = newFrequency;
+                this.frequency = newFrequency;
+
+                // The new frequency is immediately run through the overflow check again.
+                calculateSweep(time);
+            }
+        }
+    }
+
+    @Override
+    protected int getPeriod() {
+        return (2048 - frequency) * 4;
+    }
+
+    @Override
+    protected void step() {
+        this.dutyStep = (dutyStep + 1) & 0x7;
+    }
+
+    @Override
+    protected void step(int steps) {
+        this.dutyStep = (dutyStep + steps) & 0x7;
+    }
+
+    @Override
+    protected int getAmplitude() {
+        return BitUtils.isSet(DUTY_WAVEFORMS[duty], dutyStep) ? envelope.getVolume() : 0;
+    }
+
+    @Override
+    protected void trigger(int time) {
+        super.trigger(time);
+        envelope.trigger();
+
+        if (hasSweep) {
+            final var period = getSweepPeriod();
+
+            this.shadowFrequency = frequency;
+            this.sweepTimer = period == 0 ? 8 : period;
+            this.isSweepEnabled = period != 0 || getSweepShift() != 0;
+
+            if (getSweepShift() != 0) {
+                calculateSweep(time);
+            }
+        }
+    }
+
+    /**
+     * Calculates the next frequency of the sweep, disabling the channel if it overflows.
+     *
+     * @param time The time of the calculation.
+     * @return The new frequency.
+     */
+    private int calculateSweep(int time) {
+        final var offset = shadowFrequency >> getSweepShift();
+        final var newFrequency = BitUtils.isSet(sweepRegister, 3)
+                ? shadowFrequency - offset
+                : shadowFrequency + offset;
+
+        if (newFrequency > MAX_FREQUENCY) {
+            disable(time);
+        }
+        return newFrequency;
+    }
+
+    /**
+     * Gets the number of sweep clocks between each frequency change.
+     *
+     * @return The sweep period.
+     */
+    private int getSweepPeriod() {
+        return (sweepRegister >> 4) & 0x7;
+    }
+
+    /**
+     * Gets the amount the shadow frequency is shifted by when calculating the next frequency.
+     *
+     * @return The sweep shift.
+     */
+    private int getSweepShift() {
+        return sweepRegister & 0x7;
+    }
+
+}
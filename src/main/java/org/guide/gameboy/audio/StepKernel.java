@@ -0,0 +1,100 @@
+package org.guide.gameboy.audio;
+
+/**
+ * A table of band-limited step kernels. An ideal step in amplitude contains frequencies far above what can be
+ * represented at the output sample rate, so writing it directly into the output causes aliasing. Instead, each step
+ * is spread over several output samples using a windowed sinc impulse, which removes everything above the output's
+ * Nyquist frequency.
+ * <p>
+ * A step can fall anywhere between two output samples, so the kernel is precomputed for a fixed number of fractional
+ * offsets (phases).
+ *
+ * @author Brendan Jones
+ */
+public final class StepKernel {
+
+    /**
+     * The number of bits of fractional sample position that select a phase.
+     */
+    public static final int PHASE_BITS = 6;
+
+    /**
+     * The number of phases the kernel is computed for.
+     */
+    public static final int NUM_PHASES = 1 << PHASE_BITS;
+
+    /**
+     * The number of output samples each step is spread over.
+     */
+    public static final int WIDTH = 16;
+
+    /**
+     * The fixed-point scale of the kernel values. The taps for each phase sum to exactly this value.
+     */
+    public static final int SCALE = 1 << 15;
+
+    /**
+     * The cutoff frequency of the kernel, relative to the output's Nyquist frequency. This is kept below 1 so that the
+     * kernel's transition band does not extend past the Nyquist frequency.
+     */
+    private static final double CUTOFF = 0.8;
+
+    /**
+     * The kernel taps, indexed by phase and then by tap.
+     */
+    private static final int[][] KERNEL = createKernel();
+
+    /**
+     * This class cannot be instantiated.
+     */
+    private StepKernel() {
+    }
+
+    /**
+     * Gets the kernel taps for the specified phase.
+     *
+     * @param phase The phase, from 0 to {@link #NUM_PHASES} - 1.
+     * @return The kernel taps. The returned array must not be modified.
+     */
+    public static int[] get(int phase) {
+        return KERNEL[phase];
+    }
+
+    /**
+     * Computes the kernel taps for every phase.
+     *
+     * @return The kernel table.
+     */
+    private static int[][] createKernel() {
+        final var kernel = new int[NUM_PHASES][WIDTH];
+        final var taps = new double[WIDTH];
+
+        for (var phase = 0; phase < NUM_PHASES; ++phase) {
+            final var offset = (double) phase / NUM_PHASES;
+
+            // Sample a Blackman-windowed sinc centered on the step's position.
+            var sum = 0.0;
+            for (var tap = 0; tap < WIDTH; ++tap) {
+                final var x = tap - (WIDTH / 2 - 1) - offset;
+                final var sinc = x == 0 ? 1.0 : Math.sin(Math.PI * CUTOFF * x) / (Math.PI * CUTOFF * x);
+                final var n = (x + WIDTH / 2.0) / WIDTH;
+                final var window = 0.42 - 0.5 * Math.cos(2 * Math.PI * n) + 0.08 * Math.cos(4 * Math.PI * n);
+
+                taps[tap] = sinc * window;
+                sum += taps[tap];
+            }
+
+            // Normalize the taps so that integrating them reproduces the full height of the step, and give any
+            // rounding error to the center tap.
+            var total = 0;
+            for (var tap = 0; tap < WIDTH; ++tap) {
+                kernel[phase][tap] = (int) Math.round(taps[tap] / sum * SCALE);
+                total += kernel[phase][tap];
+            }
+            kernel[phase][WIDTH / 2 - 1] += SCALE - total;
+        }
+
+        return kernel;
+    }
+
+}
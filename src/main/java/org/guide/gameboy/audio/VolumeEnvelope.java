@@ -0,0 +1,134 @@
+package org.guide.gameboy.audio;
+
+import org.guide.gameboy.SerializableComponent;
+import org.guide.util.BitUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the volume envelope used by the square and noise channels. The envelope periodically raises or lowers
+ * the channel's volume when clocked by the frame sequencer.
+ *
+ * @author Brendan Jones
+ */
+public class VolumeEnvelope implements SerializableComponent {
+
+    /**
+     * The value of the envelope register (NRx2). Changes only take effect when the channel is next triggered.
+     */
+    private int register;
+
+    /**
+     * The current volume, from 0 to 15.
+     */
+    private int volume;
+
+    /**
+     * The number of envelope clocks remaining until the volume is next adjusted.
+     */
+    private int timer;
+
+    /**
+     * The period of the envelope that was loaded when the channel was triggered.
+     */
+    private int period;
+
+    /**
+     * Whether the volume increases or decreases, as loaded when the channel was triggered.
+     */
+    private boolean isIncreasing;
+
+    /**
+     * Resets the envelope to its default state.
+     */
+    public void reset() {
+        this.register = 0;
+        this.volume = 0;
+        this.timer = 0;
+        this.period = 0;
+        this.isIncreasing = false;
+    }
+
+    @Override
+    public int serializedSize() {
+        return 5;
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        out.put((byte) register);
+        out.put((byte) volume);
+        out.put((byte) timer);
+        out.put((byte) period);
+        out.put((byte) (isIncreasing ? 1 : 0));
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        this.register = in.get() & 0xFF;
+        this.volume = in.get() & 0xFF;
+        this.timer = in.get() & 0xFF;
+        this.period = in.get() & 0xFF;
+        this.isIncreasing = in.get() == 1;
+    }
+
+    /**
+     * Sets the value of the envelope register.
+     *
+     * @param value The value written to NRx2.
+     */
+    public void write(int value) {
+        this.register = value & 0xFF;
+    }
+
+    /**
+     * Gets whether the channel's DAC is powered. The DAC is powered off when the upper five bits of the envelope
+     * register are all cleared.
+     *
+     * @return Whether the DAC is powered.
+     */
+    public boolean isDacEnabled() {
+        return (register & 0xF8) != 0;
+    }
+
+    /**
+     * Reloads the envelope from the envelope register.
+     */
+    public void trigger() {
+        this.volume = register >> 4;
+        this.isIncreasing = BitUtils.isSet(register, 3);
+        this.period = register & 0x7;
+        this.timer = period == 0 ? 8 : period;
+    }
+
+    /**
+     * Clocks the envelope.
+     *
+     * @return Whether the volume changed.
+     */
+    public boolean clock() {
+        if (period == 0 || --timer > 0) {
+            return false;
+        }
+
+        this.timer = period;
+        if (isIncreasing && volume < 15) {
+            ++volume;
+            return true;
+        } else if (!isIncreasing && volume > 0) {
+            --volume;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the current volume.
+     *
+     * @return The volume, from 0 to 15.
+     */
+    public int getVolume() {
+        return volume;
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.guide.gameboy.audio;
+
+import org.guide.util.BitUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the wave channel of the APU, which plays back 32 4-bit samples stored in wave RAM.
+ *
+ * @author Brendan Jones
+ */
+public class WaveChannel extends SoundChannel {
+
+    /**
+     * The number of bytes of wave RAM.
+     */
+    public static final int WAVE_RAM_SIZE = 0x10;
+
+    /**
+     * The amount each sample is shifted right by for each output level.
+     */
+    private static final int[] VOLUME_SHIFTS = {4, 0, 1, 2};
+
+    /**
+     * The channel's copy of wave RAM. This is kept separately from system memory so that writes made while the channel
+     * is playing take effect at the time they were made.
+     */
+    private final byte[] waveRam = new byte[WAVE_RAM_SIZE];
+
+    /**
+     * The selected output level.
+     */
+    private int volumeCode;
+
+    /**
+     * The 11-bit frequency value.
+     */
+    private int frequency;
+
+    /**
+     * The position of the current sample within wave RAM.
+     */
+    private int position;
+
+    /**
+     * The sample that was most recently read from wave RAM.
+     */
+    private int sample;
+
+    /**
+     * Creates a new WaveChannel instance.
+     *
+     * @param mixer The mixer that changes in output are forwarded to.
+     * @param index The index of this channel in the mixer.
+     */
+    public WaveChannel(Mixer mixer, int index) {
+        super(mixer, index, 256);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+
+        this.volumeCode = 0;
+        this.frequency = 0;
+        this.position = 0;
+        this.sample = 0;
+    }
+
+    @Override
+    public int serializedSize() {
+        return waveRam.length + 5 + super.serializedSize();
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        out.put(waveRam);
+        out.put((byte) volumeCode);
+        out.putShort((short) frequency);
+        out.put((byte) position);
+        out.put((byte) sample);
+
+        super.serialize(out);
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        in.get(waveRam);
+        this.volumeCode = in.get() & 0xFF;
+        this.frequency = in.getShort() & 0xFFFF;
+        this.position = in.get() & 0xFF;
+        this.sample = in.get() & 0xFF;
+
+        super.deserialize(in);
+    }
+
+    @Override
+    public void write(int time, int register, int value) {
+        switch (register) {
+            case 0 -> setDacEnabled(time, BitUtils.isSet(value, 7));
+            case 1 -> setLength(value & 0xFF);
+            case 2 -> {
+                this.volumeCode = (value >> 5) & 0x3;
+                updateOutput(time);
+            }
+            case 3 -> this.frequency = (frequency & 0x700) | (value & 0xFF);
+            case 4 -> {
+                this.frequency = (frequency & 0xFF) | ((value & 0x7) << 8);
+                writeControl(time, value);
+            }
+            default -> throw new IllegalArgumentException("Invalid register: " + register);
+        }
+    }
+
+    /**
+     * Handles a write to wave RAM.
+     *
+     * @param index The index of the byte within wave RAM.
+     * @param value The value that was written.
+     */
+    public void writeWaveRam(int index, int value) {
+        waveRam[index] = (byte) value;
+    }
+
+    @Override
+    protected int getPeriod() {
+        return (2048 - frequency) * 2;
+    }
+
+    @Override
+    protected void step() {
+        step(1);
+    }
+
+    @Override
+    protected void step(int steps) {
+        this.position = (position + steps) & 0x1F;
+
+        // Each byte of wave RAM holds two samples, with the first sample in the upper four bits.
+        final var data = waveRam[position >> 1];
+        this.sample = (position & 0x1) == 0 ? (data >> 4) & 0xF : data & 0xF;
+    }
+
+    @Override
+    protected int getAmplitude() {
+        return sample >> VOLUME_SHIFTS[volumeCode];
+    }
+
+    @Override
+    protected void trigger(int time) {
+        super.trigger(time);
+        this.position = 0;
+    }
+
+}
@@ -2,6 +2,7 @@ package org.guide.gameboy.cartridge;
 
 import org.guide.gameboy.cartridge.hardware.Battery;
 import org.guide.gameboy.cartridge.hardware.RealTimeClock;
+import org.guide.gameboy.cartridge.hardware.RealTimeClock.TimeSource;
 import org.guide.gameboy.cartridge.hardware.Rumble;
 import org.guide.gameboy.cartridge.mbc.*;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
@@ -9,6 +10,7 @@ import org.guide.gameboy.processor.interrupts.memory.space.AddressSpace;
 import org.guide.util.AddressUtils;
 
 import java.util.Objects;
+import java.util.function.LongSupplier;
 
 /**
  * Represents a game pak that can be loaded into the system. A cartridge contains metadata about the game, and is
@@ -43,13 +45,21 @@ public class Cartridge extends AddressSpace {
      */
     private Rumble rumble;
 
+    /**
+     * The number of cycles the system has run for, which is counted by real time clocks using emulated time.
+     */
+    private final LongSupplier cycleCounter;
+
     /**
      * Creates a new Cartridge instance.
      *
-     * @param memory The game boy's memory component.
+     * @param memory       The game boy's memory component.
+     * @param cycleCounter The number of cycles the system has run for, not counting the extra cycles run in double
+     *                     speed mode.
      */
-    public Cartridge(Memory memory) {
+    public Cartridge(Memory memory, LongSupplier cycleCounter) {
         super(memory);
+        this.cycleCounter = Objects.requireNonNull(cycleCounter);
 
         memory.setAddressSpace(this, AddressUtils.CROM_ADDRESS_START, AddressUtils.CROM_ADDRESS_END);
         memory.setAddressSpace(this, AddressUtils.CRAM_ADDRESS_START, AddressUtils.CRAM_ADDRESS_END);
@@ -87,15 +97,20 @@ public class Cartridge extends AddressSpace {
     /**
      * Loads the cartridge with the specified RAM data. This will initialize any cartridge-specific  any specific cartridge hardware.
      *
-     * @param data The cartridge ROM.
+     * @param data            The cartridge ROM.
+     * @param clockTimeSource The source of time counted by the real time clock, if the cartridge has one.
      * @throws Exception If {@code data} is not a valid cartridge ROM.
      */
-    public void load(byte[] data) throws CartridgeException, NoSuchMethodException {
+    public void load(byte[] data, TimeSource clockTimeSource) throws CartridgeException, NoSuchMethodException {
         Objects.requireNonNull(data, "Cartridge data cannot be null.");
 
         // Parse and extract the cartridge header.
         this.header = new CartridgeHeader(data);
 
+        // Create the hardware components of the cartridge. These must exist before the controller that uses them.
+        this.rtc = header.hasRTC() ? new RealTimeClock(cycleCounter, clockTimeSource) : null;
+        this.rumble = header.hasRumble() ? new Rumble() : null;
+
         // Create the new memory bank controller.
         final var type = header.getMBCType();
         this.mbc = switch (type) {
@@ -105,11 +120,7 @@ public class Cartridge extends AddressSpace {
             case Type3 -> new MBC3(memory, this, data);
             case Type5 -> new MBC5(memory, this, data);
         };
-
-        // Create the hardware components of the cartridge.
-        this.battery = header.hasBattery() ? new Battery() : null;
-        this.rtc = header.hasRTC() ? new RealTimeClock() : null;
-        this.rumble = header.hasRumble() ? new Rumble() : null;
+        this.battery = mbc.getBattery();
     }
 
     /**
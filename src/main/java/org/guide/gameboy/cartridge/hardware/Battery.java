@@ -1,10 +1,298 @@
 package org.guide.gameboy.cartridge.hardware;
 
+import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
 /**
- * Represents the battery component present on some game cartridges.
+ * Represents the battery component present on some game cartridges, which keeps the contents of the cartridge RAM
+ * and the real time clock running when the system is turned off.
+ * <p>
+ * The RAM is persisted to a save file that is mapped into memory. The active RAM bank lives in the system memory map
+ * while the game is running, so the RAM is copied to the mapped file in pages, and only the pages that differ from the
+ * file are written. The operating system writes modified pages of the file back to disk on its own, and the file is
+ * only forced to disk when the game disables the RAM after changing it, which it does once it is done saving, on a
+ * timer while the RAM or clock has changes, and when the battery is closed. The state of the real time clock is stored
+ * after the RAM. It changes every second, so changes to it are only forced to disk by the timer and on close.
  *
  * @author Brendan Jones
  */
-public class Battery {
+public class Battery implements AutoCloseable {
+
+    /**
+     * The minimum amount of time between flushes of the save file on a timer, in nanoseconds.
+     */
+    private static final long FLUSH_INTERVAL = 1000000000L;
+
+    /**
+     * The RAM banks that are kept by the battery, or {@code null} if the cartridge has no RAM.
+     */
+    private final MemoryBank ram;
+
+    /**
+     * The real time clock that is kept by the battery, or {@code null} if the cartridge has no clock.
+     */
+    private final RealTimeClock clock;
+
+    /**
+     * The current state of the real time clock, used to compare against the save file.
+     */
+    private final ByteBuffer footer;
+
+    /**
+     * The size of each RAM bank.
+     */
+    private final int bankSize;
+
+    /**
+     * The size of the RAM, and of the mapped region of the save file.
+     */
+    private final int size;
+
+    /**
+     * The current contents of a single RAM bank, used to compare against the save file.
+     */
+    private final byte[] bankData;
+
+    /**
+     * The channel of the save file, or {@code null} if no save file is open.
+     */
+    private FileChannel channel;
+
+    /**
+     * The contents of the save file, mapped into memory.
+     */
+    private MappedByteBuffer image;
+
+    /**
+     * Whether RAM pages have been written to the mapped save file since it was last forced to disk.
+     */
+    private boolean hasUnflushedChanges;
+
+    /**
+     * Whether the state of the clock has been written to the mapped save file since it was last forced to disk.
+     */
+    private boolean hasUnflushedClockChanges;
+
+    /**
+     * The time the save file was last flushed, in nanoseconds.
+     */
+    private long lastFlushTime;
+
+    /**
+     * Creates a new Battery instance.
+     *
+     * @param ram      The RAM banks that are kept by the battery, or {@code null} if the cartridge has no RAM.
+     * @param bankSize The size of each RAM bank.
+     * @param clock    The real time clock that is kept by the battery, or {@code null} if the cartridge has no clock.
+     */
+    public Battery(MemoryBank ram, int bankSize, RealTimeClock clock) {
+        if (ram == null && clock == null) {
+            throw new IllegalArgumentException("Battery must keep RAM or a clock");
+        }
+
+        this.ram = ram;
+        this.clock = clock;
+        this.bankSize = bankSize;
+        this.size = ram != null ? ram.getNumBanks() * bankSize : 0;
+        this.bankData = new byte[bankSize];
+        this.footer = ByteBuffer.allocate(RealTimeClock.FOOTER_SIZE);
+    }
+
+    /**
+     * Opens a save file and loads its contents into the RAM and clock. The file is created if it does not exist, and
+     * grown to the size of the saved data if it is smaller. A clock keeps its current time if the file does not contain
+     * clock data. Any data past the saved data is left untouched. This should be called right after the cartridge is
+     * loaded.
+     *
+     * @param path The path of the save file.
+     * @throws IOException If the file could not be opened.
+     */
+    public void open(Path path) throws IOException {
+        close();
+
+        final var channel = FileChannel.open(path, CREATE, READ, WRITE);
+        final long fileSize;
+        try {
+            fileSize = channel.size();
+            this.image = channel.map(FileChannel.MapMode.READ_WRITE, 0, size + (clock != null ? footer.capacity() : 0));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+        this.lastFlushTime = System.nanoTime();
+
+        if (ram != null) {
+            final var contents = new byte[size];
+            image.get(0, contents);
+            ram.reset(contents);
+        }
+        if (clock != null && fileSize >= size + footer.capacity()) {
+            clock.deserializeFooter(image.slice(size, footer.capacity()));
+        }
+    }
+
+    /**
+     * Checks whether a save file is open.
+     *
+     * @return Whether a save file is open.
+     */
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Copies the pages of RAM that differ from the save file into it, along with the state of the clock. This does not
+     * wait for the pages to be written to disk.
+     */
+    public void sync() {
+        if (!isOpen()) {
+            return;
+        }
+
+        // The clock data changes every second, so it is written to the file but does not force a flush on its own.
+        if (clock != null) {
+            clock.serializeFooter(footer.clear());
+            if (footer.flip().mismatch(image.slice(size, footer.capacity())) != -1) {
+                image.put(size, footer.array());
+                this.hasUnflushedClockChanges = true;
+            }
+        }
+
+        if (ram == null) {
+            return;
+        }
+
+        final var current = ByteBuffer.wrap(bankData);
+        for (var bank = 0; bank < ram.getNumBanks(); ++bank) {
+            ram.copyBankData(bank, bankData);
+
+            // Find each page that differs from the file, and skip straight past the pages that match.
+            final var base = bank * bankSize;
+            var offset = 0;
+            while (offset < bankSize) {
+                final var index = current.slice(offset, bankSize - offset)
+                        .mismatch(image.slice(base + offset, bankSize - offset));
+                if (index == -1) {
+                    break;
+                }
+
+                final var page = (offset + index) / Memory.PAGE_SIZE * Memory.PAGE_SIZE;
+                image.put(base + page, bankData, page, Memory.PAGE_SIZE);
+
+                this.hasUnflushedChanges = true;
+                offset = page + Memory.PAGE_SIZE;
+            }
+        }
+    }
+
+    /**
+     * Copies any changes to the RAM and clock into the save file, and forces the file to disk if the RAM changed.
+     * Changes to the clock alone are left to {@link #update()} and {@link #close()}, as games disable the RAM every
+     * time they read the clock.
+     */
+    public void flush() {
+        if (!isOpen()) {
+            return;
+        }
+
+        sync();
+        force(false);
+    }
+
+    /**
+     * Flushes the changes to the RAM and clock if enough time has passed since the save file was last flushed. This is
+     * cheap to call every frame.
+     */
+    public void update() {
+        if (isOpen() && System.nanoTime() - lastFlushTime >= FLUSH_INTERVAL) {
+            sync();
+            force(true);
+        }
+    }
+
+    /**
+     * Forces the save file to disk if it has changes that have not been forced yet.
+     *
+     * @param includeClock Whether changes to the state of the clock alone cause the file to be forced.
+     */
+    private void force(boolean includeClock) {
+        if (hasUnflushedChanges || (includeClock && hasUnflushedClockChanges)) {
+            image.force();
+            this.hasUnflushedChanges = false;
+            this.hasUnflushedClockChanges = false;
+        }
+        this.lastFlushTime = System.nanoTime();
+    }
+
+    /**
+     * Feeds the current contents of the RAM and the registers of the clock into a digest. The host time that the save
+     * file stores alongside the clock is left out, so the digest only depends on what the game can observe.
+     *
+     * @param digest The digest to update.
+     */
+    public void digest(MessageDigest digest) {
+        if (ram != null) {
+            for (var bank = 0; bank < ram.getNumBanks(); ++bank) {
+                ram.copyBankData(bank, bankData);
+                digest.update(bankData);
+            }
+        }
+
+        if (clock != null) {
+            clock.serializeFooter(footer.clear());
+            digest.update(footer.array(), 0, RealTimeClock.FOOTER_SIZE - Long.BYTES);
+        }
+    }
+
+    /**
+     * Gets the contents of the save file, after copying any changes to the RAM into it.
+     *
+     * @return The contents of the save file, or {@code null} if no save file is open or the cartridge has no RAM.
+     */
+    public byte[] load() {
+        if (!isOpen() || ram == null) {
+            return null;
+        }
+
+        sync();
+
+        final var contents = new byte[size];
+        image.get(0, contents);
+        return contents;
+    }
+
+    /**
+     * Flushes and closes the save file. The RAM keeps its contents, but is no longer persisted.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isOpen()) {
+            return;
+        }
+
+        try {
+            sync();
+            force(true);
+        } finally {
+            channel.close();
+            this.channel = null;
+            this.image = null;
+        }
+    }
 
 }
@@ -1,11 +1,88 @@
 package org.guide.gameboy.cartridge.hardware;
 
+import org.guide.gameboy.SerializableComponent;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
 /**
  * Represents the real time clock component present on some game cartridges.
+ * <p>
+ * The clock is never ticked by the emulator. Instead, the registers hold the time at a reference point, and are only
+ * brought up to date when software accesses the clock, by adding the number of whole seconds that have passed on the
+ * time source since the reference point.
  *
  * @author Brendan Jones
  */
-public class RealTimeClock {
+public class RealTimeClock implements SerializableComponent {
+
+    /**
+     * The sources of time that the clock can count.
+     */
+    public enum TimeSource {
+
+        /**
+         * The clock counts the time of the host system, so it keeps running when the emulator is paused, fast-forwarded
+         * or closed, like the clock in a real cartridge.
+         */
+        HOST,
+
+        /**
+         * The clock counts emulated time, so it runs at the speed of the emulated system and produces the same results
+         * on every run.
+         */
+        EMULATED
+
+    }
+
+    /**
+     * The size of the clock data appended to save files, which matches the format used by other emulators.
+     */
+    public static final int FOOTER_SIZE = 48;
+
+    /**
+     * The first register of the clock that is mapped into cartridge RAM.
+     */
+    public static final int FIRST_REGISTER = 0x08;
+
+    /**
+     * The last register of the clock that is mapped into cartridge RAM.
+     */
+    public static final int LAST_REGISTER = 0x0C;
+
+    /**
+     * The bits of each register that are implemented.
+     */
+    private static final int[] REGISTER_MASKS = {0x3F, 0x3F, 0x1F, 0xFF, 0xC1};
+
+    /**
+     * The number of ticks of the host time source per second.
+     */
+    private static final long HOST_TICKS_PER_SECOND = 1000000000L;
+
+    /**
+     * The number of cycles the emulated system runs per second, which is the number of ticks of the emulated time
+     * source per second.
+     */
+    private static final long CYCLES_PER_SECOND = 4194304;
+
+    /**
+     * The number of seconds in a day.
+     */
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /**
+     * The number of cycles the emulated system has run for.
+     */
+    private final LongSupplier cycleCounter;
+
+    /**
+     * The register values captured by the most recent latch, in register order.
+     */
+    private final int[] latchedRegisters = new int[LAST_REGISTER - FIRST_REGISTER + 1];
 
     /**
      * The current seconds of the clock (0-59). This is mapped to register $08.
@@ -36,8 +113,355 @@ public class RealTimeClock {
      */
     private int flags;
 
-    public RealTimeClock() {
+    /**
+     * The source of time the clock counts.
+     */
+    private TimeSource timeSource;
+
+    /**
+     * The time on the time source at which the registers were last exact.
+     */
+    private long referenceTime;
+
+    /**
+     * The ticks of the time source that had passed towards the next second when the clock was halted.
+     */
+    private long haltedTicks;
+
+    /**
+     * The last value written to the latch register.
+     */
+    private int latchValue;
+
+    /**
+     * Creates a new RealTimeClock instance. The clock starts at the beginning of a second, so a clock that counts
+     * emulated time starts in the same state on every run.
+     *
+     * @param cycleCounter The number of cycles the emulated system has run for, not counting the extra cycles run in
+     *                     double speed mode.
+     * @param timeSource   The source of time the clock counts.
+     */
+    public RealTimeClock(LongSupplier cycleCounter, TimeSource timeSource) {
+        this.cycleCounter = requireNonNull(cycleCounter);
+        this.timeSource = requireNonNull(timeSource);
+        this.latchValue = 0xFF;
+        this.referenceTime = now();
+    }
+
+    /**
+     * Sets the source of time the clock counts. Any time that passed on the previous source is counted first.
+     *
+     * @param timeSource The source of time.
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        requireNonNull(timeSource);
+        if (timeSource != this.timeSource) {
+            update();
+
+            // Carry the progress towards the next second over to the new source.
+            final var fraction = toNanos(isHalted() ? haltedTicks : now() - referenceTime);
+            this.timeSource = timeSource;
+            this.haltedTicks = fromNanos(fraction);
+            this.referenceTime = now() - haltedTicks;
+        }
+    }
+
+    /**
+     * Gets the source of time the clock counts.
+     *
+     * @return The source of time.
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Handles a write to the latch register. Writing 0 and then 1 copies the current time into the registers that
+     * software reads.
+     *
+     * @param value The value written.
+     */
+    public void latch(int value) {
+        if (latchValue == 0x00 && value == 0x01) {
+            update();
+            latchedRegisters[0] = seconds;
+            latchedRegisters[1] = minutes;
+            latchedRegisters[2] = hours;
+            latchedRegisters[3] = day & 0xFF;
+            latchedRegisters[4] = flags | (day >> 8);
+        }
+        this.latchValue = value;
+    }
+
+    /**
+     * Reads a latched register of the clock.
+     *
+     * @param register The register, from {@link #FIRST_REGISTER} to {@link #LAST_REGISTER}.
+     * @return The value of the register when it was last latched.
+     */
+    public int read(int register) {
+        return latchedRegisters[register - FIRST_REGISTER];
+    }
+
+    /**
+     * Writes a register of the clock.
+     *
+     * @param register The register, from {@link #FIRST_REGISTER} to {@link #LAST_REGISTER}.
+     * @param value    The value to write.
+     */
+    public void write(int register, int value) {
+        final var now = update();
+        final var wasHalted = isHalted();
+
+        value &= REGISTER_MASKS[register - FIRST_REGISTER];
+        switch (register) {
+            case 0x08 -> {
+                // Writing the seconds resets the progress towards the next second.
+                this.seconds = value;
+                this.referenceTime = now;
+                this.haltedTicks = 0;
+            }
+            case 0x09 -> this.minutes = value;
+            case 0x0A -> this.hours = value;
+            case 0x0B -> this.day = (day & 0x100) | value;
+            case 0x0C -> {
+                this.day = (day & 0xFF) | ((value & 0x1) << 8);
+                this.flags = value & 0xC0;
+            }
+            default -> throw new IllegalArgumentException("Invalid RTC register: " + register);
+        }
+
+        if (!wasHalted && isHalted()) {
+            this.haltedTicks = now - referenceTime;
+        } else if (wasHalted && !isHalted()) {
+            this.referenceTime = now - haltedTicks;
+        }
+    }
+
+    @Override
+    public int serializedSize() {
+        return 4 + 5 + latchedRegisters.length + 1 + 8;
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        update();
 
+        SerializableComponent.writeIntegrityCheck(out);
+
+        out.put((byte) seconds);
+        out.put((byte) minutes);
+        out.put((byte) hours);
+        out.put((byte) day);
+        out.put((byte) (flags | (day >> 8)));
+        for (final var register : latchedRegisters) {
+            out.put((byte) register);
+        }
+        out.put((byte) latchValue);
+
+        // The progress towards the next second is stored in nanoseconds, so the state does not depend on the source.
+        out.putLong(toNanos(isHalted() ? haltedTicks : now() - referenceTime));
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        SerializableComponent.verifyIntegrityCheck(in, "RTC::Start");
+
+        this.seconds = in.get() & 0xFF;
+        this.minutes = in.get() & 0xFF;
+        this.hours = in.get() & 0xFF;
+        this.day = in.get() & 0xFF;
+
+        final var value = in.get() & 0xFF;
+        this.day |= (value & 0x1) << 8;
+        this.flags = value & 0xC0;
+
+        for (var i = 0; i < latchedRegisters.length; ++i) {
+            latchedRegisters[i] = in.get() & 0xFF;
+        }
+        this.latchValue = in.get() & 0xFF;
+
+        this.haltedTicks = fromNanos(in.getLong());
+        this.referenceTime = now() - haltedTicks;
+    }
+
+    /**
+     * Writes the clock data that is appended to save files. This stores the current and latched registers along with
+     * the current host time, so that the time that passes while the emulator is closed can be counted when it is read.
+     *
+     * @param out The buffer to write to.
+     */
+    public void serializeFooter(ByteBuffer out) {
+        update();
+
+        final var footer = out.slice(out.position(), FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(seconds);
+        footer.putInt(minutes);
+        footer.putInt(hours);
+        footer.putInt(day & 0xFF);
+        footer.putInt(flags | (day >> 8));
+        for (final var register : latchedRegisters) {
+            footer.putInt(register);
+        }
+        footer.putLong(System.currentTimeMillis() / 1000);
+
+        out.position(out.position() + FOOTER_SIZE);
+    }
+
+    /**
+     * Reads the clock data written by {@link #serializeFooter(ByteBuffer)}. When counting host time, the time that has
+     * passed since the data was written is added to the clock.
+     *
+     * @param in The buffer to read from.
+     */
+    public void deserializeFooter(ByteBuffer in) {
+        final var footer = in.slice(in.position(), FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.seconds = footer.getInt() & REGISTER_MASKS[0];
+        this.minutes = footer.getInt() & REGISTER_MASKS[1];
+        this.hours = footer.getInt() & REGISTER_MASKS[2];
+        this.day = footer.getInt() & REGISTER_MASKS[3];
+
+        final var value = footer.getInt() & REGISTER_MASKS[4];
+        this.day |= (value & 0x1) << 8;
+        this.flags = value & 0xC0;
+
+        for (var i = 0; i < latchedRegisters.length; ++i) {
+            latchedRegisters[i] = footer.getInt() & REGISTER_MASKS[i];
+        }
+        final var timestamp = footer.getLong();
+
+        this.haltedTicks = 0;
+        this.referenceTime = now();
+        if (timeSource == TimeSource.HOST && !isHalted()) {
+            advance(Math.max(0, System.currentTimeMillis() / 1000 - timestamp));
+        }
+
+        in.position(in.position() + FOOTER_SIZE);
+    }
+
+    /**
+     * Brings the registers up to date by counting the whole seconds that have passed since the reference time.
+     *
+     * @return The current time on the time source.
+     */
+    private long update() {
+        final var now = now();
+        if (isHalted()) {
+            this.referenceTime = now - haltedTicks;
+            return now;
+        }
+
+        final var ticksPerSecond = getTicksPerSecond();
+        final var elapsed = (now - referenceTime) / ticksPerSecond;
+        if (elapsed > 0) {
+            this.referenceTime += elapsed * ticksPerSecond;
+            advance(elapsed);
+        }
+        return now;
+    }
+
+    /**
+     * Advances the registers by a number of seconds.
+     *
+     * @param elapsed The number of seconds.
+     */
+    private void advance(long elapsed) {
+        // Registers that were written with out of range values count up until they wrap around without a carry, which
+        // is stepped through a second at a time before the rest is added at once.
+        while (elapsed > 0 && (seconds >= 60 || minutes >= 60 || hours >= 24)) {
+            tick();
+            --elapsed;
+        }
+        if (elapsed == 0) {
+            return;
+        }
+
+        final var time = seconds + minutes * 60L + hours * 3600L + elapsed;
+        this.seconds = (int) (time % 60);
+        this.minutes = (int) (time / 60 % 60);
+        this.hours = (int) (time / 3600 % 24);
+
+        final var days = day + time / SECONDS_PER_DAY;
+        if (days > 0x1FF) {
+            this.flags |= 0x80;
+        }
+        this.day = (int) (days & 0x1FF);
+    }
+
+    /**
+     * Advances the registers by a single second.
+     */
+    private void tick() {
+        this.seconds = (seconds + 1) & REGISTER_MASKS[0];
+        if (seconds != 60) {
+            return;
+        }
+        this.seconds = 0;
+
+        this.minutes = (minutes + 1) & REGISTER_MASKS[1];
+        if (minutes != 60) {
+            return;
+        }
+        this.minutes = 0;
+
+        this.hours = (hours + 1) & REGISTER_MASKS[2];
+        if (hours != 24) {
+            return;
+        }
+        this.hours = 0;
+
+        this.day = (day + 1) & 0x1FF;
+        if (day == 0) {
+            this.flags |= 0x80;
+        }
+    }
+
+    /**
+     * Checks whether the clock is halted.
+     *
+     * @return Whether the clock is halted.
+     */
+    private boolean isHalted() {
+        return (flags & 0x40) != 0;
+    }
+
+    /**
+     * Gets the current time on the time source.
+     *
+     * @return The time, in ticks of the time source.
+     */
+    private long now() {
+        return timeSource == TimeSource.HOST ? System.nanoTime() : cycleCounter.getAsLong();
+    }
+
+    /**
+     * Gets the number of ticks of the time source per second.
+     *
+     * @return The number of ticks.
+     */
+    private long getTicksPerSecond() {
+        return timeSource == TimeSource.HOST ? HOST_TICKS_PER_SECOND : CYCLES_PER_SECOND;
+    }
+
+    /**
+     * Converts a number of ticks of the time source that is less than a second into nanoseconds.
+     *
+     * @param ticks The number of ticks.
+     * @return The number of nanoseconds.
+     */
+    private long toNanos(long ticks) {
+        return ticks * HOST_TICKS_PER_SECOND / getTicksPerSecond();
+    }
+
+    /**
+     * Converts a number of nanoseconds that is less than a second into ticks of the time source. This rounds up, so
+     * that it exactly reverses {@link #toNanos(long)} and restoring a state does not lose a tick.
+     *
+     * @param nanos The number of nanoseconds.
+     * @return The number of ticks.
+     */
+    private long fromNanos(long nanos) {
+        return (nanos * getTicksPerSecond() + HOST_TICKS_PER_SECOND - 1) / HOST_TICKS_PER_SECOND;
     }
 
 }
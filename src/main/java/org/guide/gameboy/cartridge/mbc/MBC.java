@@ -3,6 +3,7 @@ package org.guide.gameboy.cartridge.mbc;
 import org.guide.gameboy.SerializableComponent;
 import org.guide.gameboy.cartridge.Cartridge;
 import org.guide.gameboy.cartridge.CartridgeHeader;
+import org.guide.gameboy.cartridge.hardware.Battery;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
 import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
 import org.guide.gameboy.processor.interrupts.memory.space.AddressSpace;
@@ -10,11 +11,16 @@ import org.guide.util.AddressUtils;
 
 import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.function.IntConsumer;
 
 /**
  * A Memory Bank Controller is an optional piece of hardware present on game cartridges. It is responsible for swapping
  * sections of the cartridge into and out of system memory, and can support optional components such as batteries,
  * rumble motors, and real time clocks.
+ * <p>
+ * The cartridge ROM, and the cartridge RAM while it is enabled, are read directly from the memory map. Writes to the
+ * ROM address range are bound to the handler of the control register at each address, and controllers register their
+ * own handlers when they are created.
  *
  * @author Brendan Jones
  */
@@ -42,6 +48,11 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
      */
     protected final MemoryBank ramBanks;
 
+    /**
+     * The battery that keeps the RAM banks, or {@code null} if the cartridge has no battery-backed RAM.
+     */
+    private final Battery battery;
+
     /**
      * The ROM data being loaded.
      */
@@ -65,6 +76,15 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
 
         this.romBanks = new MemoryBank(memory, false, false, AddressUtils.CROM_ADDRESS_START, rom.length / ROM_BANK_SIZE, ROM_BANK_SIZE);
         this.ramBanks = createRamBanks(memory, cart.getHeader());
+        this.battery = cart.getHeader().hasBattery() && (ramBanks != null || cart.getRTC() != null)
+                ? new Battery(ramBanks, RAM_BANK_SIZE, cart.getRTC())
+                : null;
+
+        // Writes to addresses without a control register are ignored.
+        mapRegister(AddressUtils.CROM_ADDRESS_START, AddressUtils.CROM_ADDRESS_END, value -> {});
+        mapRegister(0x0000, 0x1FFF, this::onWriteRAMEnable);
+        memory.setAddressSpace(this, AddressUtils.CRAM_ADDRESS_START, AddressUtils.CRAM_ADDRESS_END);
+        memory.setDirectRead(AddressUtils.CROM_ADDRESS_START, AddressUtils.CROM_ADDRESS_END, true);
     }
 
     /**
@@ -72,29 +92,35 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
      */
     public void reset() {
         this.isRAMEnabled = false;
+        updateRAMMapping();
 
         romBanks.reset(rom);
         if (ramBanks != null) {
-            ramBanks.reset(null);
+            // Battery-backed RAM keeps its contents across a reset.
+            ramBanks.reset(battery != null ? battery.load() : null);
         }
     }
 
+    /**
+     * Writes to the cartridge RAM. Writes to the control registers are handled by the registers bound with
+     * {@link #mapRegister(int, int, IntConsumer)}.
+     *
+     * @param address The address to write to.
+     * @param value   The value to write.
+     */
     @Override
     public void write(int address, int value) {
-        switch (address & 0xE000) {
-            case 0x0000:
-                if (ramBanks != null) {
-                    this.isRAMEnabled = (value & 0xF) == 0xA;
-                }
-                break;
-            case 0xA000:
-                if (isRAMEnabled) {
-                    memory.set(address, value);
-                }
-                break;
+        if (isRAMEnabled && AddressUtils.isAddressCRAM(address)) {
+            memory.set(address, value);
         }
     }
 
+    /**
+     * Reads from the cartridge RAM while it is not read directly from the memory map.
+     *
+     * @param address The address to read from.
+     * @return The value that was read.
+     */
     @Override
     public int read(int address) {
         if (!isRAMEnabled && AddressUtils.isAddressCRAM(address)) {
@@ -103,6 +129,11 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
         return memory.get(address);
     }
 
+    @Override
+    public int serializedSize() {
+        return 4 + 1 + romBanks.serializedSize();
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         SerializableComponent.writeIntegrityCheck(out);
@@ -110,9 +141,6 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
         out.put((byte) (isRAMEnabled ? 1 : 0));
 
         romBanks.serialize(out);
-        if (ramBanks != null) {
-            ramBanks.serialize(out);
-        }
     }
 
     @Override
@@ -120,11 +148,27 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
         SerializableComponent.verifyIntegrityCheck(in, "MBC::Start");
 
         this.isRAMEnabled = (in.get() & 0xFF) == 1;
+        updateRAMMapping();
 
         romBanks.deserialize(in);
-        if (ramBanks != null) {
-            ramBanks.deserialize(in);
-        }
+    }
+
+    /**
+     * Gets the cartridge RAM banks. These are serialized separately from the rest of the controller.
+     *
+     * @return The RAM banks, or {@code null} if the cartridge has no RAM.
+     */
+    public MemoryBank getRAMBanks() {
+        return ramBanks;
+    }
+
+    /**
+     * Gets the battery that keeps the cartridge RAM banks.
+     *
+     * @return The battery, or {@code null} if the cartridge has no battery-backed RAM.
+     */
+    public Battery getBattery() {
+        return battery;
     }
 
     /**
@@ -142,6 +186,15 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
         return new MemoryBank(memory, true, true, AddressUtils.CRAM_ADDRESS_START, size / RAM_BANK_SIZE, RAM_BANK_SIZE);
     }
 
+    /**
+     * Checks whether the cartridge has anything mapped to the RAM address range that can be enabled.
+     *
+     * @return {@code true} if the cartridge has RAM, {@code false} otherwise.
+     */
+    protected boolean hasRAM() {
+        return ramBanks != null;
+    }
+
     /**
      * Checks whether {@code RAM} is currently enabled for reading and writing.
      *
@@ -151,4 +204,90 @@ public abstract class MBC extends AddressSpace implements SerializableComponent
         return isRAMEnabled;
     }
 
+    /**
+     * Enables or disables access to the cartridge RAM.
+     *
+     * @param isRAMEnabled Whether RAM is enabled.
+     */
+    protected void setRAMEnabled(boolean isRAMEnabled) {
+        final var wasRAMEnabled = this.isRAMEnabled;
+        this.isRAMEnabled = isRAMEnabled;
+        updateRAMMapping();
+
+        // Games disable the RAM once they are done writing to it, so this is the time to persist it.
+        if (wasRAMEnabled && !isRAMEnabled && battery != null) {
+            battery.flush();
+        }
+    }
+
+    /**
+     * Checks whether a RAM bank, rather than some other hardware, is selected to be mapped to the cartridge RAM address
+     * range.
+     *
+     * @return {@code true} if a RAM bank is selected, {@code false} otherwise.
+     */
+    protected boolean isRAMBankSelected() {
+        return true;
+    }
+
+    /**
+     * Updates whether the cartridge RAM is read directly from the memory map. This must be called whenever RAM is
+     * enabled or disabled, or a change is made to what is selected by {@link #isRAMBankSelected()}.
+     */
+    protected void updateRAMMapping() {
+        final var isDirect = isRAMEnabled && ramBanks != null && isRAMBankSelected();
+        memory.setDirectRead(AddressUtils.CRAM_ADDRESS_START, AddressUtils.CRAM_ADDRESS_END, isDirect);
+    }
+
+    /**
+     * Binds the handler of a control register to an address range. Writes to the range are passed straight to the
+     * handler, replacing any handler that was previously bound to the addresses.
+     *
+     * @param rangeStart The start address in the range (inclusive).
+     * @param rangeEnd   The end address in the range (inclusive).
+     * @param handler    The handler that receives the values written to the register.
+     */
+    protected void mapRegister(int rangeStart, int rangeEnd, IntConsumer handler) {
+        memory.setAddressSpace(new ControlRegister(memory, handler), rangeStart, rangeEnd);
+    }
+
+    /**
+     * Enables or disables access to the cartridge RAM. Only a value of {@code $A} in the lower 4 bits enables RAM.
+     *
+     * @param value The value written to the register.
+     */
+    private void onWriteRAMEnable(int value) {
+        if (hasRAM()) {
+            setRAMEnabled((value & 0xF) == 0xA);
+        }
+    }
+
+    /**
+     * An address space that passes the values written to it to the handler of a control register.
+     */
+    private static class ControlRegister extends AddressSpace {
+
+        /**
+         * The handler of the register.
+         */
+        private final IntConsumer handler;
+
+        /**
+         * Creates a new ControlRegister instance.
+         *
+         * @param memory  The memory component.
+         * @param handler The handler of the register.
+         */
+        ControlRegister(Memory memory, IntConsumer handler) {
+            super(memory);
+            this.handler = Objects.requireNonNull(handler);
+        }
+
+        @Override
+        public void write(int address, int value) {
+            handler.accept(value);
+        }
+
+    }
+
 }
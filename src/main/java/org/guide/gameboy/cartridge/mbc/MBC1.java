@@ -31,6 +31,10 @@ public class MBC1 extends MBC {
 
     public MBC1(Memory memory, Cartridge cart, byte[] rom) {
         super(memory, cart, rom);
+
+        mapRegister(0x2000, 0x3FFF, this::onWriteROMBank);
+        mapRegister(0x4000, 0x5FFF, this::onWriteMemoryBank);
+        mapRegister(0x6000, 0x7FFF, this::onWriteMemoryMode);
     }
 
     @Override
@@ -42,13 +46,8 @@ public class MBC1 extends MBC {
     }
 
     @Override
-    public void write(int address, int value) {
-        switch (address & 0xE000) {
-            case 0x2000 -> onWriteROMBank(value);
-            case 0x4000 -> onWriteMemoryBank(value);
-            case 0x6000 -> onWriteMemoryMode(value);
-            default -> super.write(address, value);
-        }
+    public int serializedSize() {
+        return super.serializedSize() + 2;
     }
 
     @Override
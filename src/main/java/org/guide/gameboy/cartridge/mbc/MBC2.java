@@ -2,6 +2,7 @@ package org.guide.gameboy.cartridge.mbc;
 
 import org.guide.gameboy.cartridge.Cartridge;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.util.AddressUtils;
 
 import java.nio.ByteBuffer;
 
@@ -17,6 +18,15 @@ public class MBC2 extends MBC {
 
     public MBC2(Memory memory, Cartridge cart, byte[] rom) {
         super(memory, cart, rom);
+
+        mapRegister(AddressUtils.CROM_ADDRESS_START, AddressUtils.CROM_ADDRESS_END, value -> {
+            throw new UnsupportedOperationException("MBC2 functionality is not yet implemented.");
+        });
+    }
+
+    @Override
+    public int serializedSize() {
+        throw new UnsupportedOperationException("MBC2 functionality is not yet implemented.");
     }
 
     @Override
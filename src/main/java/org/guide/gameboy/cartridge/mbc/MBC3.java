@@ -38,49 +38,42 @@ public class MBC3 extends MBC implements SerializableComponent {
     public MBC3(Memory memory, Cartridge cart, byte[] rom) {
         super(memory, cart, rom);
         this.clock = cart.getRTC();
+
+        mapRegister(0x2000, 0x3FFF, this::onWriteROMBank);
+        mapRegister(0x4000, 0x5FFF, this::onWriteRAMTimerRegister);
+        mapRegister(0x6000, 0x7FFF, this::onWriteLatchClockData);
     }
 
     @Override
     public void reset() {
         super.reset();
         this.currentRAMBank = 0;
+        updateRAMMapping();
     }
 
     @Override
     public void write(int address, int value) {
-        switch (address & 0xE000) {
-            case 0x2000:
-                onWriteROMBank(value);
-                break;
-            case 0x4000:
-                onWriteRAMTimerRegister(value);
-                break;
-            case 0x6000:
-                onWriteLatchClockData(value);
-                break;
-            case 0xA000:
-                if (!isRTCRegister(address)) {
-                    super.write(address, value);
-                } else {
-                    // TODO Implement real time clock
-                }
-                break;
-            default:
-                super.write(address, value);
-                break;
+        if (!isRTCRegister(address)) {
+            super.write(address, value);
+        } else if (isRAMEnabled() && isClockRegisterSelected()) {
+            clock.write(currentRAMBank, value);
         }
     }
 
     @Override
     public int read(int address) {
         if (isRTCRegister(address)) {
-            // TODO Implement RTC
-            return 0;
+            return isRAMEnabled() && isClockRegisterSelected() ? clock.read(currentRAMBank) : 0xFF;
         } else {
             return super.read(address);
         }
     }
 
+    @Override
+    public int serializedSize() {
+        return super.serializedSize() + 1;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         super.serialize(out);
@@ -93,6 +86,7 @@ public class MBC3 extends MBC implements SerializableComponent {
         super.deserialize(in);
 
         this.currentRAMBank = in.get() & 0xFF;
+        updateRAMMapping();
     }
 
     private void onWriteROMBank(int value) {
@@ -107,21 +101,44 @@ public class MBC3 extends MBC implements SerializableComponent {
      */
     private void onWriteRAMTimerRegister(int value) {
         this.currentRAMBank = (value & 0xFF);
-        if (value < 0x8) {
-            if (ramBanks != null) {
-                ramBanks.setActiveBank(currentRAMBank);
-            }
-        } else {
-            // TODO Implement RTC.
+        if (value < 0x8 && ramBanks != null) {
+            ramBanks.setActiveBank(currentRAMBank);
         }
+        updateRAMMapping();
     }
 
+    /**
+     * Latches the current time into the clock registers when 0 and then 1 are written.
+     *
+     * @param value The value written.
+     */
     private void onWriteLatchClockData(int value) {
-        // TODO Implement RTC.
+        if (clock != null) {
+            clock.latch(value & 0xFF);
+        }
     }
 
     private boolean isRTCRegister(int address) {
         return currentRAMBank >= 0x08 && AddressUtils.isAddressCRAM(address);
     }
 
+    /**
+     * Checks whether a register of an installed real time clock is selected.
+     *
+     * @return Whether a clock register is selected.
+     */
+    private boolean isClockRegisterSelected() {
+        return clock != null && currentRAMBank <= RealTimeClock.LAST_REGISTER;
+    }
+
+    @Override
+    protected boolean isRAMBankSelected() {
+        return currentRAMBank < 0x08;
+    }
+
+    @Override
+    protected boolean hasRAM() {
+        return super.hasRAM() || clock != null;
+    }
+
 }
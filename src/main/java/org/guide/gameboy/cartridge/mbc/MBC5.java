@@ -36,6 +36,10 @@ public class MBC5 extends MBC implements SerializableComponent {
     public MBC5(Memory memory, Cartridge cart, byte[] rom) {
         super(memory, cart, rom);
         this.hasRumble = cart.getHeader().hasRumble();
+
+        mapRegister(0x2000, 0x2FFF, this::onWriteROMBankLow);
+        mapRegister(0x3000, 0x3FFF, this::onWriteROMBankHigh);
+        mapRegister(0x4000, 0x5FFF, this::onWriteRamBankRumble);
     }
 
     @Override
@@ -45,13 +49,8 @@ public class MBC5 extends MBC implements SerializableComponent {
     }
 
     @Override
-    public void write(int address, int value) {
-        switch (address & 0xF000) {
-            case 0x2000 -> onWriteROMBankLow(value);
-            case 0x3000 -> onWriteROMBankHigh(value);
-            case 0x4000, 0x5000 -> onWriteRamBankRumble(value);
-            default -> super.write(address, value);
-        }
+    public int serializedSize() {
+        return super.serializedSize() + 2;
     }
 
     @Override
@@ -2,7 +2,6 @@ package org.guide.gameboy.cartridge.mbc;
 
 import org.guide.gameboy.cartridge.Cartridge;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
-import org.guide.util.AddressUtils;
 
 /**
  * Represents a memory controller that does not require ROM banking. A specification for this controller can be found
@@ -23,13 +22,17 @@ public class MBCNone extends MBC {
      */
     public MBCNone(Memory memory, Cartridge cart, byte[] rom) {
         super(memory, cart, rom);
+
+        // There is no register to enable the RAM, so writes to the ROM must not disable it.
+        mapRegister(0x0000, 0x1FFF, value -> {});
     }
 
     @Override
-    public void write(int address, int value) {
-        if (ramBanks != null && AddressUtils.isAddressCRAM(address)) {
-            memory.set(address, value);
-        }
+    public void reset() {
+        super.reset();
+
+        // There is no register to enable the RAM, so it is always accessible.
+        setRAMEnabled(ramBanks != null);
     }
 
 }
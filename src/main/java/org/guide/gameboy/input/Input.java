@@ -61,14 +61,21 @@ public class Input extends AddressSpace implements SerializableComponent {
         super.write(address, value);
     }
 
+    @Override
+    public int serializedSize() {
+        return 1;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
-        // Probably no point in serializing the input state.
+        // The button state is driven by the host, so it is not stored. Restoring it would leave buttons held down
+        // until the host next reports them.
+        out.put((byte) (irqSignal ? 1 : 0));
     }
 
     @Override
     public void deserialize(ByteBuffer in) {
-        // Probably no point in serializing the input state.
+        this.irqSignal = in.get() == 1;
     }
 
     /**
@@ -85,6 +92,16 @@ public class Input extends AddressSpace implements SerializableComponent {
         }
     }
 
+    /**
+     * Checks whether a button is pressed.
+     *
+     * @param button The button to check.
+     * @return Whether the button is pressed.
+     */
+    public boolean isButtonPressed(GameboyButton button) {
+        return !BitUtils.isSet(inputState, button.ordinal());
+    }
+
     public void tick() {
         // TODO The signal should only be triggered when the input line changes.
         boolean oldSignal = irqSignal;
@@ -0,0 +1,330 @@
+package org.guide.gameboy.movie;
+
+import org.guide.gameboy.input.GameboyButton;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A recording of the buttons pressed during a play session, which can be replayed to reproduce the session exactly.
+ * <p>
+ * A movie starts from a save state, and records each change to a button along with the frame it happened in and the
+ * number of cycles into that frame it happened at. The hash of the ROM it was recorded with is stored so that it is
+ * never replayed against a different ROM.
+ * <p>
+ * Movie files are compressed with GZIP. The uncompressed data starts with the magic number {@code GBMV} and the format
+ * version as a 16-bit value, followed by the ROM hash, the buttons held at the start as a bitmask, the length of the
+ * save state as a 32-bit value followed by the state itself, the number of frames as a 32-bit value, and the number of
+ * button changes as a 32-bit value. Each change is then stored as the number of frames since the previous change and
+ * its cycle offset, both as variable-length integers, followed by a byte holding the button in its lower bits and
+ * whether it was pressed in its top bit. All values are big-endian.
+ *
+ * @author Brendan Jones
+ */
+public class InputMovie {
+
+    /**
+     * The magic number at the start of a movie file.
+     */
+    private static final int MAGIC_NUMBER = 0x47424D56;
+
+    /**
+     * The version of the movie file format. This must be incremented whenever the format changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The bit of a button change that is set if the button was pressed.
+     */
+    private static final int PRESSED_BIT = 0x80;
+
+    /**
+     * The size of the buffers used to read and write movie files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The largest start state a movie file may contain. This is far larger than any save state, and only exists so a
+     * corrupt length can't allocate an arbitrary amount of memory.
+     */
+    private static final int MAX_STATE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The most events that are allocated for up front when reading a movie. Longer movies grow the list as their
+     * events are read, so a corrupt event count can't allocate more memory than the file actually contains.
+     */
+    private static final int MAX_INITIAL_EVENTS = 4096;
+
+    /**
+     * A change to the state of a button.
+     *
+     * @param frame   The frame the change happened in, counted from the start of the movie.
+     * @param cycle   The number of cycles into the frame the change happened at.
+     * @param button  The button.
+     * @param pressed Whether the button was pressed or released.
+     */
+    public record Event(int frame, int cycle, GameboyButton button, boolean pressed) {
+
+        /**
+         * Creates a new Event instance.
+         */
+        public Event {
+            if (frame < 0 || cycle < 0) {
+                throw new IllegalArgumentException("Invalid event time: frame " + frame + ", cycle " + cycle);
+            }
+
+            requireNonNull(button);
+        }
+
+    }
+
+    /**
+     * The SHA-1 hash of the ROM the movie was recorded with, as a lowercase hexadecimal string.
+     */
+    private final String romHash;
+
+    /**
+     * The save state the movie starts from.
+     */
+    private final byte[] startState;
+
+    /**
+     * The buttons held at the start of the movie. Each bit is set if the button with that ordinal is held.
+     */
+    private final int startButtons;
+
+    /**
+     * The number of frames in the movie.
+     */
+    private final int numFrames;
+
+    /**
+     * The button changes, in the order they happened.
+     */
+    private final List<Event> events;
+
+    /**
+     * Creates a new InputMovie instance.
+     *
+     * @param romHash      The SHA-1 hash of the ROM the movie was recorded with.
+     * @param startState   The save state the movie starts from.
+     * @param startButtons The buttons held at the start of the movie, as a bitmask of button ordinals.
+     * @param numFrames    The number of frames in the movie.
+     * @param events       The button changes, in the order they happened.
+     */
+    public InputMovie(String romHash, byte[] startState, int startButtons, int numFrames, List<Event> events) {
+        this.romHash = requireNonNull(romHash);
+        this.startState = requireNonNull(startState);
+        this.startButtons = startButtons;
+        this.numFrames = numFrames;
+        this.events = List.copyOf(events);
+
+        for (var i = 0; i < this.events.size(); ++i) {
+            final var event = this.events.get(i);
+            if (event.frame() >= numFrames || (i > 0 && event.frame() < this.events.get(i - 1).frame())) {
+                throw new IllegalArgumentException("Event out of order: " + event);
+            }
+        }
+    }
+
+    /**
+     * Reads a movie from a file.
+     *
+     * @param path The path of the file.
+     * @return The movie.
+     * @throws IOException If the file could not be read, or is not a movie file.
+     */
+    public static InputMovie read(Path path) throws IOException {
+        final var stream = new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try (final var in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC_NUMBER) {
+                throw new IOException("Not a movie file: " + path);
+            }
+
+            final var version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported movie version: " + version);
+            }
+
+            final var romHash = in.readUTF();
+            final var startButtons = in.readUnsignedByte();
+            final var stateSize = in.readInt();
+            if (stateSize < 0 || stateSize > MAX_STATE_SIZE) {
+                throw new IOException("Invalid start state size in movie: " + stateSize);
+            }
+
+            final var startState = new byte[stateSize];
+            in.readFully(startState);
+            final var numFrames = in.readInt();
+            if (numFrames < 0) {
+                throw new IOException("Invalid frame count in movie: " + numFrames);
+            }
+
+            final var buttons = GameboyButton.values();
+            final var numEvents = in.readInt();
+            if (numEvents < 0) {
+                throw new IOException("Invalid event count in movie: " + numEvents);
+            }
+
+            final var events = new ArrayList<Event>(Math.min(numEvents, MAX_INITIAL_EVENTS));
+            var frame = 0;
+            for (var i = 0; i < numEvents; ++i) {
+                frame += readVarInt(in);
+                final var cycle = readVarInt(in);
+                final var value = in.readUnsignedByte();
+                final var button = value & ~PRESSED_BIT;
+                if (button >= buttons.length) {
+                    throw new IOException("Invalid button in movie: " + button);
+                }
+                events.add(new Event(frame, cycle, buttons[button], (value & PRESSED_BIT) != 0));
+            }
+
+            try {
+                return new InputMovie(romHash, startState, startButtons, numFrames, events);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid movie file: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the movie to a file. The movie is written to a temporary file that then replaces the target file, so a
+     * crash never leaves a partially written movie behind.
+     *
+     * @param path The path of the file. Its parent directories are created if necessary.
+     * @throws IOException If the file could not be written.
+     */
+    public void write(Path path) throws IOException {
+        final var parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        final var temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (final var out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeShort(VERSION);
+                out.writeUTF(romHash);
+                out.writeByte(startButtons);
+                out.writeInt(startState.length);
+                out.write(startState);
+                out.writeInt(numFrames);
+
+                out.writeInt(events.size());
+                var frame = 0;
+                for (final var event : events) {
+                    writeVarInt(out, event.frame() - frame);
+                    writeVarInt(out, event.cycle());
+                    out.writeByte(event.button().ordinal() | (event.pressed() ? PRESSED_BIT : 0));
+                    frame = event.frame();
+                }
+            }
+
+            try {
+                Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gets the hash of the ROM the movie was recorded with.
+     *
+     * @return The SHA-1 hash of the ROM, as a lowercase hexadecimal string.
+     */
+    public String getROMHash() {
+        return romHash;
+    }
+
+    /**
+     * Gets the save state the movie starts from. The returned array must not be modified.
+     *
+     * @return The save state.
+     */
+    public byte[] getStartState() {
+        return startState;
+    }
+
+    /**
+     * Gets the buttons held at the start of the movie.
+     *
+     * @return The buttons, as a bitmask where each bit is set if the button with that ordinal is held.
+     */
+    public int getStartButtons() {
+        return startButtons;
+    }
+
+    /**
+     * Gets the number of frames in the movie.
+     *
+     * @return The number of frames.
+     */
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * Gets the button changes, in the order they happened.
+     *
+     * @return The button changes.
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Writes a non-negative integer using as few bytes as possible, 7 bits at a time with the top bit of each byte set
+     * if more bytes follow.
+     *
+     * @param out   The output to write to.
+     * @param value The value.
+     * @throws IOException If the value could not be written.
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a non-negative integer written by {@link #writeVarInt(DataOutput, int)}.
+     *
+     * @param in The input to read from.
+     * @return The value.
+     * @throws IOException If the value could not be read.
+     */
+    private static int readVarInt(DataInput in) throws IOException {
+        var value = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            final var b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length integer");
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.guide.gameboy.movie;
+
+import org.guide.gameboy.GameBoy;
+import org.guide.gameboy.input.GameboyButton;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays an {@link InputMovie}, pressing each button at the exact cycle it was pressed at when it was recorded.
+ * <p>
+ * Playback is not tied to real time, so a movie can be replayed as fast as the host allows by calling
+ * {@link #play()}. Playback is deterministic as long as the real time clock of the cartridge counts emulated time,
+ * both while recording and while replaying.
+ *
+ * @author Brendan Jones
+ */
+public class MoviePlayer {
+
+    /**
+     * The Game Boy the movie is replayed on.
+     */
+    private final GameBoy gameboy;
+
+    /**
+     * The movie being replayed.
+     */
+    private final InputMovie movie;
+
+    /**
+     * The number of frames that have been replayed.
+     */
+    private int frame;
+
+    /**
+     * The index of the next button change to apply.
+     */
+    private int nextEvent;
+
+    /**
+     * Creates a new MoviePlayer instance, and restores the state the movie starts from.
+     *
+     * @param gameboy The Game Boy to replay the movie on, which must have the movie's ROM loaded.
+     * @param movie   The movie.
+     * @param romHash The SHA-1 hash of the loaded ROM.
+     */
+    public MoviePlayer(GameBoy gameboy, InputMovie movie, String romHash) {
+        this.gameboy = requireNonNull(gameboy);
+        this.movie = requireNonNull(movie);
+        if (!movie.getROMHash().equals(romHash)) {
+            throw new IllegalArgumentException("Movie was recorded with a different ROM: " + movie.getROMHash());
+        }
+
+        final var state = ByteBuffer.wrap(movie.getStartState());
+        if (!gameboy.isCompleteState(state)) {
+            throw new IllegalArgumentException("Movie starts from an incompatible save state");
+        }
+        gameboy.deserialize(state);
+
+        final var input = gameboy.getInput();
+        for (final var button : GameboyButton.values()) {
+            input.setButton(button, (movie.getStartButtons() & (1 << button.ordinal())) != 0);
+        }
+    }
+
+    /**
+     * Replays the next frame of the movie.
+     *
+     * @return Whether a frame was replayed, which is false once the movie has finished.
+     */
+    public boolean runFrame() {
+        if (isFinished()) {
+            return false;
+        }
+
+        final var events = movie.getEvents();
+        final var input = gameboy.getInput();
+        final var frameStartCycles = gameboy.getElapsedCycles();
+
+        // Run up to each of the frame's button changes in turn, and then through to the end of the frame.
+        var isEndOfFrame = false;
+        while (nextEvent < events.size() && events.get(nextEvent).frame() == frame) {
+            final var event = events.get(nextEvent++);
+            while (!isEndOfFrame && gameboy.getElapsedCycles() - frameStartCycles < event.cycle()) {
+                isEndOfFrame = gameboy.tick();
+            }
+            input.setButton(event.button(), event.pressed());
+        }
+
+        while (!isEndOfFrame) {
+            isEndOfFrame = gameboy.tick();
+        }
+
+        ++frame;
+        return true;
+    }
+
+    /**
+     * Replays the rest of the movie as fast as possible.
+     *
+     * @return The number of frames that were replayed.
+     */
+    public int play() {
+        final var startFrame = frame;
+        while (runFrame()) ;
+        return frame - startFrame;
+    }
+
+    /**
+     * Checks whether every frame of the movie has been replayed.
+     *
+     * @return Whether the movie has finished.
+     */
+    public boolean isFinished() {
+        return frame >= movie.getNumFrames();
+    }
+
+    /**
+     * Gets the number of frames that have been replayed.
+     *
+     * @return The number of frames.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.guide.gameboy.movie;
+
+import org.guide.gameboy.GameBoy;
+import org.guide.gameboy.input.GameboyButton;
+import org.guide.gameboy.movie.InputMovie.Event;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records the buttons pressed while the system runs into an {@link InputMovie}.
+ * <p>
+ * Buttons must be set through the recorder rather than on the input component directly, and the recorder must be
+ * told when each frame ends. Each change is recorded with the number of cycles into the frame it was made at, so
+ * changes made between frames and changes made while stepping through single instructions are both replayed exactly.
+ *
+ * @author Brendan Jones
+ */
+public class MovieRecorder {
+
+    /**
+     * The Game Boy being recorded.
+     */
+    private final GameBoy gameboy;
+
+    /**
+     * The hash of the loaded ROM.
+     */
+    private final String romHash;
+
+    /**
+     * The save state the recording started from.
+     */
+    private final byte[] startState;
+
+    /**
+     * The buttons held when the recording started, as a bitmask of button ordinals.
+     */
+    private final int startButtons;
+
+    /**
+     * The button changes that have been recorded.
+     */
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * The number of frames that have been completed since the recording started.
+     */
+    private int numFrames;
+
+    /**
+     * The value of the system's cycle counter when the current frame started.
+     */
+    private long frameStartCycles;
+
+    /**
+     * Creates a new MovieRecorder instance, and starts recording from the current state of the system. This should be
+     * called between frames.
+     *
+     * @param gameboy The Game Boy to record, which must have a cartridge loaded.
+     * @param romHash The SHA-1 hash of the loaded ROM.
+     */
+    public MovieRecorder(GameBoy gameboy, String romHash) {
+        this.gameboy = requireNonNull(gameboy);
+        this.romHash = requireNonNull(romHash);
+
+        final var state = ByteBuffer.allocate(gameboy.serializedSize());
+        gameboy.serialize(state);
+        this.startState = state.array();
+
+        final var input = gameboy.getInput();
+        var buttons = 0;
+        for (final var button : GameboyButton.values()) {
+            if (input.isButtonPressed(button)) {
+                buttons |= 1 << button.ordinal();
+            }
+        }
+        this.startButtons = buttons;
+        this.frameStartCycles = gameboy.getElapsedCycles();
+    }
+
+    /**
+     * Sets whether a button is pressed, and records the change if it changes the state of the button.
+     *
+     * @param button  The button to set.
+     * @param pressed Whether the button is pressed or released.
+     */
+    public void setButton(GameboyButton button, boolean pressed) {
+        final var input = gameboy.getInput();
+        if (input.isButtonPressed(button) == pressed) {
+            return;
+        }
+
+        input.setButton(button, pressed);
+        events.add(new Event(numFrames, (int) (gameboy.getElapsedCycles() - frameStartCycles), button, pressed));
+    }
+
+    /**
+     * Marks the end of a frame. This must be called each time the system completes a frame.
+     */
+    public void onFrame() {
+        ++numFrames;
+        this.frameStartCycles = gameboy.getElapsedCycles();
+    }
+
+    /**
+     * Gets the number of frames that have been recorded.
+     *
+     * @return The number of frames.
+     */
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * Creates a movie of everything recorded so far. Changes made during the current frame are not included, as the
+     * frame has not been completed.
+     *
+     * @return The movie.
+     */
+    public InputMovie toMovie() {
+        var numEvents = events.size();
+        while (numEvents > 0 && events.get(numEvents - 1).frame() >= numFrames) {
+            --numEvents;
+        }
+        return new InputMovie(romHash, startState, startButtons, numFrames, events.subList(0, numEvents));
+    }
+
+}
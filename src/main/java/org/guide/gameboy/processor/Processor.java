@@ -96,6 +96,12 @@ public class Processor extends AddressSpace implements SerializableComponent {
      */
     private int unhaltCycles;
 
+    /**
+     * The number of remaining cycles that the processor is stalled for while another component has control of the
+     * memory bus.
+     */
+    private int stallCycles;
+
     /**
      * The current state of instruction processing.
      */
@@ -126,6 +132,12 @@ public class Processor extends AddressSpace implements SerializableComponent {
         memory.setAddressSpace(this, AddressUtils.RP);
     }
 
+    @Override
+    public int serializedSize() {
+        // The six register pairs, the status bytes and the stall cycles.
+        return 6 * 2 + 4 + 2 + interrupts.serializedSize();
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.putShort((short) regAF.read());
@@ -139,6 +151,7 @@ public class Processor extends AddressSpace implements SerializableComponent {
         out.put((byte) (hasHaltBug ? 1 : 0));
         out.put((byte) unhaltCycles);
         out.put((byte) currentInstructionState);
+        out.putShort((short) stallCycles);
 
         interrupts.serialize(out);
     }
@@ -156,6 +169,7 @@ public class Processor extends AddressSpace implements SerializableComponent {
         this.hasHaltBug = (in.get() & 0xFF) == 1;
         this.unhaltCycles = in.get() & 0xFF;
         this.currentInstructionState = in.get() & 0xFF;
+        this.stallCycles = in.getShort() & 0xFFFF;
 
         interrupts.deserialize(in);
     }
@@ -205,6 +219,20 @@ public class Processor extends AddressSpace implements SerializableComponent {
 
         this.status = CPUStatusMode.RUNNING;
         this.currentInstructionState = 0;
+        this.stallCycles = 0;
+    }
+
+    /**
+     * Stalls the processor for the specified number of cycles. The processor will not execute any instructions until
+     * the stall has elapsed, but the rest of the hardware continues to run.
+     *
+     * @param cycles The number of processor cycles to stall for.
+     */
+    public void stall(int cycles) {
+        if (cycles < 0) {
+            throw new IllegalArgumentException("Invalid stall cycles: " + cycles);
+        }
+        this.stallCycles += cycles;
     }
 
     /**
@@ -213,6 +241,16 @@ public class Processor extends AddressSpace implements SerializableComponent {
      * @return The number of processor cycles that elapsed during the tick.
      */
     public int tick() {
+        // The processor is stalled while another component has control of the memory bus. The stall is consumed in
+        // small steps so the rest of the hardware sees time elapse at the same rate as when executing instructions.
+        if (stallCycles > 0) {
+            final var elapsedCycles = Math.min(stallCycles, 4);
+            stallCycles -= elapsedCycles;
+
+            interrupts.tick(elapsedCycles);
+            return elapsedCycles;
+        }
+
         var elapsedCycles = 0;
 
         // The processor is currently halted.
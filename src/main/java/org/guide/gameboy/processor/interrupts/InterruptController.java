@@ -50,6 +50,11 @@ public class InterruptController extends AddressSpace implements SerializableCom
         memory.setAddressSpace(this, AddressUtils.IE);
     }
 
+    @Override
+    public int serializedSize() {
+        return 4 + 2 + delayCycles.length;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         SerializableComponent.writeIntegrityCheck(out);
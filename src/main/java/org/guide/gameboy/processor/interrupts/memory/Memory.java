@@ -9,6 +9,7 @@ import org.guide.util.delegate.EventDispatcher;
 import org.guide.util.delegate.EventDispatcherHandle;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
@@ -23,6 +24,11 @@ public class Memory implements SerializableComponent {
      */
     public static final int MEMORY_MAP_SIZE = 0x10000;
 
+    /**
+     * The size of the pages that changes to system memory are tracked in.
+     */
+    public static final int PAGE_SIZE = 0x100;
+
     /**
      * The dispatcher for memory changed events.
      */
@@ -39,6 +45,17 @@ public class Memory implements SerializableComponent {
      */
     private final AddressSpace[] spaces = new AddressSpace[MEMORY_MAP_SIZE];
 
+    /**
+     * A bit set of the pages that are read directly from the memory map instead of through their address spaces, with
+     * one bit per page.
+     */
+    private final long[] directReadPages = new long[MEMORY_MAP_SIZE / PAGE_SIZE / 64];
+
+    /**
+     * A bit set of the pages that have been modified since they were last cleared, with one bit per page.
+     */
+    private final long[] dirtyPages = new long[MEMORY_MAP_SIZE / PAGE_SIZE / 64];
+
     /**
      * The Work RAM address space.
      */
@@ -107,22 +124,36 @@ public class Memory implements SerializableComponent {
             }
         }
 
+        Arrays.fill(dirtyPages, -1L);
         memoryChangedEvent.broadcast(new MemoryChangedEvent(this, 0, MEMORY_MAP_SIZE));
 
         wram.reset(isCGB);
         unused.reset();
     }
 
+    @Override
+    public int serializedSize() {
+        return 0x200;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
-        wram.serialize(out);
         out.put(memory, AddressUtils.OAM_ADDRESS_START, 0x200);
     }
 
     @Override
     public void deserialize(ByteBuffer in) {
-        wram.deserialize(in);
         in.get(memory, AddressUtils.OAM_ADDRESS_START, 0x200);
+        markDirty(AddressUtils.OAM_ADDRESS_START, 0x200);
+    }
+
+    /**
+     * Gets the Work RAM banks. These are serialized separately from the rest of system memory.
+     *
+     * @return The Work RAM banks.
+     */
+    public MemoryBank getWorkRAM() {
+        return wram.getBanks();
     }
 
     /**
@@ -139,7 +170,9 @@ public class Memory implements SerializableComponent {
      * Forces a memory changed event to be broadcast which includes the entire memory map.
      */
     public void broadcastGlobalMemoryChangedEvent() {
-        memoryChangedEvent.broadcast(new MemoryChangedEvent(this, 0, MEMORY_MAP_SIZE));
+        if (memoryChangedEvent.hasCallbacks()) {
+            memoryChangedEvent.broadcast(new MemoryChangedEvent(this, 0, MEMORY_MAP_SIZE));
+        }
     }
 
     /**
@@ -169,6 +202,31 @@ public class Memory implements SerializableComponent {
         setAddressSpace(space, address, address);
     }
 
+    /**
+     * Sets whether reads from an address range bypass the bound address spaces and return the contents of the memory
+     * map directly. This allows ranges whose reads have no side effects, such as the cartridge ROM, to be read without
+     * dispatching to their address space. Writes are always dispatched to the bound address spaces.
+     *
+     * @param rangeStart The start address in the range (inclusive). This must be aligned to {@link #PAGE_SIZE}.
+     * @param rangeEnd   The end address in the range (inclusive). This must be the last address of a page.
+     * @param isDirect   Whether reads from the range are direct.
+     */
+    public void setDirectRead(int rangeStart, int rangeEnd, boolean isDirect) {
+        if (rangeStart % PAGE_SIZE != 0 || (rangeEnd + 1) % PAGE_SIZE != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Range is not page aligned: $%04X-$%04X", rangeStart, rangeEnd)
+            );
+        }
+
+        for (var page = rangeStart / PAGE_SIZE; page <= rangeEnd / PAGE_SIZE; ++page) {
+            if (isDirect) {
+                directReadPages[page >>> 6] |= 1L << page;
+            } else {
+                directReadPages[page >>> 6] &= ~(1L << page);
+            }
+        }
+    }
+
     /**
      * Applies the IO "write" for the specified address to the provided value. If the address is not an I/O register,
      * no mask will be applied and the original value will be returned.
@@ -231,10 +289,11 @@ public class Memory implements SerializableComponent {
     }
 
     /**
-     * Reads a signed 8-bit value from the specified memory address. This method does not directly read from the
-     * underlying memory map, but instead passes the request to the appropriate address space bound to the target
-     * address to give it an opportunity to perform custom logic before returning the result. If no address space
-     * is bound to the target address, then {@code $FF} is returned.
+     * Reads a signed 8-bit value from the specified memory address. Addresses on pages marked with
+     * {@link Memory#setDirectRead(int, int, boolean)} are read straight from the underlying memory map. Otherwise, the
+     * request is passed to the appropriate address space bound to the target address to give it an opportunity to
+     * perform custom logic before returning the result. If no address space is bound to the target address, then
+     * {@code $FF} is returned.
      * <p>
      * This is intended to be used by the CPU when processing instructions from the loaded cartridge. Hardware
      * components should instead use {@link Memory#get(int)} to read system memory directly.
@@ -244,6 +303,9 @@ public class Memory implements SerializableComponent {
      */
     public int read(int address) {
         address &= 0xFFFF;
+        if ((directReadPages[address >>> 14] & 1L << (address >>> 8)) != 0) {
+            return memory[address];
+        }
 
         var value = 0xFF;
         if (spaces[address] != null) {
@@ -253,10 +315,11 @@ public class Memory implements SerializableComponent {
     }
 
     /**
-     * Reads an unsigned 8-bit value from the specified memory address. This method does not directly read from the
-     * underlying memory map, but instead passes the request to the appropriate address space bound to the target
-     * address to give it an opportunity to perform custom logic before returning the result. If no address space
-     * is bound to the target address, then {@code $FF} is returned.
+     * Reads an unsigned 8-bit value from the specified memory address. Addresses on pages marked with
+     * {@link Memory#setDirectRead(int, int, boolean)} are read straight from the underlying memory map. Otherwise, the
+     * request is passed to the appropriate address space bound to the target address to give it an opportunity to
+     * perform custom logic before returning the result. If no address space is bound to the target address, then
+     * {@code $FF} is returned.
      * <p>
      * This is intended to be used by the CPU when processing instructions from the loaded cartridge. Hardware
      * components should instead use {@link Memory#getUnsigned(int)} to read system memory directly.
@@ -269,10 +332,11 @@ public class Memory implements SerializableComponent {
     }
 
     /**
-     * Reads a signed 16-bit value from the specified memory address. This method does not directly read from the
-     * underlying memory map, but instead passes the request to the address space bound to the target address to
-     * give it an opportunity to perform custom logic before returning the result. If no address space is bound to
-     * either of the addresses, then {@code $FF} is returned for that byte.
+     * Reads a signed 16-bit value from the specified memory address. Addresses on pages marked with
+     * {@link Memory#setDirectRead(int, int, boolean)} are read straight from the underlying memory map. Otherwise, the
+     * request is passed to the address space bound to the target address to give it an opportunity to perform custom
+     * logic before returning the result. If no address space is bound to either of the addresses, then {@code $FF} is
+     * returned for that byte.
      * <p>
      * This is intended to be used by the CPU when processing instructions from a loaded cartridge. Hardware
      * components should instead use {@link Memory#getShort(int)} to read system memory directly.
@@ -287,10 +351,11 @@ public class Memory implements SerializableComponent {
     }
 
     /**
-     * Reads an unsigned 16-bit value from the specified memory address. This method does not directly read from the
-     * underlying memory map, but instead passes the request to the address space bound to the target address to
-     * give it an opportunity to perform custom logic before returning the result. If no address space is bound to
-     * either of the addresses, then {@code $FF} is returned for that byte.
+     * Reads an unsigned 16-bit value from the specified memory address. Addresses on pages marked with
+     * {@link Memory#setDirectRead(int, int, boolean)} are read straight from the underlying memory map. Otherwise, the
+     * request is passed to the address space bound to the target address to give it an opportunity to perform custom
+     * logic before returning the result. If no address space is bound to either of the addresses, then {@code $FF} is
+     * returned for that byte.
      * <p>
      * This is intended to be used by the CPU when processing instructions from a loaded cartridge. Hardware
      * components should instead use {@link Memory#getShort(int)} to read system memory directly.
@@ -317,7 +382,11 @@ public class Memory implements SerializableComponent {
         int normalizedAddress = address & 0xFFFF;
 
         memory[normalizedAddress] = (byte) value;
-        memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, 1));
+        dirtyPages[normalizedAddress >>> 14] |= 1L << (normalizedAddress >>> 8);
+
+        if (memoryChangedEvent.hasCallbacks()) {
+            memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, 1));
+        }
     }
 
     /**
@@ -339,8 +408,11 @@ public class Memory implements SerializableComponent {
 
         memory[normalizedAddress] = (byte) low;
         memory[normalizedAddress + 1] = (byte) high;
+        markDirty(normalizedAddress, 2);
 
-        memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, 2));
+        if (memoryChangedEvent.hasCallbacks()) {
+            memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, 2));
+        }
     }
 
     /**
@@ -360,8 +432,11 @@ public class Memory implements SerializableComponent {
         final var normalizedAddress = address & 0xFFFF;
 
         System.arraycopy(values, offset, memory, normalizedAddress, length);
+        markDirty(normalizedAddress, length);
 
-        memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, length));
+        if (memoryChangedEvent.hasCallbacks()) {
+            memoryChangedEvent.broadcast(new MemoryChangedEvent(this, normalizedAddress, length));
+        }
     }
 
     /**
@@ -470,6 +545,70 @@ public class Memory implements SerializableComponent {
         getBytes(baseAddress, data, 0, data.length);
     }
 
+    /**
+     * Gets which pages in a range of memory have been modified since they were last cleared.
+     *
+     * @param address The start address of the range. This must be aligned to {@link #PAGE_SIZE}.
+     * @param length  The length of the range. This must be a multiple of {@link #PAGE_SIZE}, and span at most 64 pages.
+     * @return A bit set of the modified pages in the range, where bit 0 is the first page in the range.
+     */
+    public long getDirtyPages(int address, int length) {
+        final var page = address / PAGE_SIZE;
+        final var word = page >>> 6;
+        final var shift = page & 0x3F;
+
+        var pages = dirtyPages[word] >>> shift;
+        if (shift + length / PAGE_SIZE > 64) {
+            pages |= dirtyPages[word + 1] << (64 - shift);
+        }
+        return pages & getPageMask(length);
+    }
+
+    /**
+     * Sets which pages in a range of memory are considered to have been modified. This is used by memory banks to
+     * carry the modified pages of each bank along with it as it is swapped in and out of the memory map.
+     *
+     * @param address The start address of the range. This must be aligned to {@link #PAGE_SIZE}.
+     * @param length  The length of the range. This must be a multiple of {@link #PAGE_SIZE}, and span at most 64 pages.
+     * @param pages   A bit set of the modified pages in the range, where bit 0 is the first page in the range.
+     */
+    public void setDirtyPages(int address, int length, long pages) {
+        final var page = address / PAGE_SIZE;
+        final var word = page >>> 6;
+        final var shift = page & 0x3F;
+        final var mask = getPageMask(length);
+
+        pages &= mask;
+        dirtyPages[word] = (dirtyPages[word] & ~(mask << shift)) | (pages << shift);
+        if (shift + length / PAGE_SIZE > 64) {
+            dirtyPages[word + 1] = (dirtyPages[word + 1] & ~(mask >>> (64 - shift))) | (pages >>> (64 - shift));
+        }
+    }
+
+    /**
+     * Marks every page that overlaps a range of memory as modified.
+     *
+     * @param address The start address of the range.
+     * @param length  The length of the range.
+     */
+    private void markDirty(int address, int length) {
+        final var last = Math.min(address + length, MEMORY_MAP_SIZE) - 1;
+        for (var page = address / PAGE_SIZE; page <= last / PAGE_SIZE; ++page) {
+            dirtyPages[page >>> 6] |= 1L << page;
+        }
+    }
+
+    /**
+     * Gets a mask of the bits that represent a range of pages.
+     *
+     * @param length The length of the range.
+     * @return The mask.
+     */
+    private static long getPageMask(int length) {
+        final var numPages = length / PAGE_SIZE;
+        return numPages >= 64 ? -1L : (1L << numPages) - 1;
+    }
+
     /**
      * Gets the underlying memory map managed by this memory component.
      *
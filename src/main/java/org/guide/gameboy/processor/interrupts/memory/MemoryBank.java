@@ -1,5 +1,6 @@
 package org.guide.gameboy.processor.interrupts.memory;
 
+import org.guide.gameboy.IncrementalComponent;
 import org.guide.gameboy.SerializableComponent;
 
 import java.nio.ByteBuffer;
@@ -9,10 +10,14 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * A memory bank is an area of memory consisting of several banks that can be swapped into system memory.
+ * <p>
+ * Changes to mutable banks are tracked in pages of {@link Memory#PAGE_SIZE} bytes. The pages of banks that are mapped
+ * into system memory are tracked by the memory map itself, and are carried along with the bank whenever it is swapped
+ * out, so that only modified pages need to be written by {@link #serializeChanges(ByteBuffer)}.
  *
  * @author Brendan Jones
  */
-public class MemoryBank implements SerializableComponent {
+public class MemoryBank implements IncrementalComponent {
 
     /**
      * The memory component this bank belongs to.
@@ -56,6 +61,12 @@ public class MemoryBank implements SerializableComponent {
      */
     private final byte[][] banks;
 
+    /**
+     * The pages of each bank that have been modified since the base state was marked, with one bit per page. The
+     * pages of a bank that is mapped into system memory are instead tracked by the memory map until it is swapped out.
+     */
+    private final long[] changedPages;
+
     /**
      * The currently selected bank.
      */
@@ -82,6 +93,11 @@ public class MemoryBank implements SerializableComponent {
         this.numBanks = numBanks;
         this.bankSize = bankSize;
         this.banks = new byte[numBanks][bankSize];
+        this.changedPages = new long[numBanks];
+
+        if (isMutable && (bankSize % Memory.PAGE_SIZE != 0 || bankSize / Memory.PAGE_SIZE > 64)) {
+            throw new IllegalArgumentException("Bank size cannot be tracked in pages: " + bankSize);
+        }
     }
 
     /**
@@ -111,6 +127,11 @@ public class MemoryBank implements SerializableComponent {
         }
     }
 
+    @Override
+    public int serializedSize() {
+        return 4 + 2 + (isMutable ? banks.length * bankSize : 0);
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         // Ensure that the memory banks are up-to-date.
@@ -137,6 +158,7 @@ public class MemoryBank implements SerializableComponent {
             for (byte[] bank : banks) {
                 in.get(bank);
             }
+            Arrays.fill(changedPages, -1L);
 
             updateMemoryMap(true);
         } else {
@@ -144,6 +166,81 @@ public class MemoryBank implements SerializableComponent {
         }
     }
 
+    @Override
+    public void markBase() {
+        Arrays.fill(changedPages, 0);
+        if (isMutable) {
+            for (var bank = 0; bank < numBanks; ++bank) {
+                if (isBankMapped(bank)) {
+                    memory.setDirtyPages(getBankBaseAddress(bank), bankSize, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int changesSize() {
+        var size = 4 + 2;
+        if (isMutable) {
+            for (var bank = 0; bank < numBanks; ++bank) {
+                size += 8 + Long.bitCount(getChangedPages(bank)) * Memory.PAGE_SIZE;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void serializeChanges(ByteBuffer out) {
+        synchronizeMemoryBanks(true);
+
+        SerializableComponent.writeIntegrityCheck(out);
+
+        out.putShort((short) activeBank);
+        if (isMutable) {
+            for (var bank = 0; bank < numBanks; ++bank) {
+                final var pages = getChangedPages(bank);
+                out.putLong(pages);
+                for (var remaining = pages; remaining != 0; remaining &= remaining - 1) {
+                    final var page = Long.numberOfTrailingZeros(remaining);
+                    out.put(banks[bank], page * Memory.PAGE_SIZE, Memory.PAGE_SIZE);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deserializeChanges(ByteBuffer in) {
+        SerializableComponent.verifyIntegrityCheck(in, "MemoryBank::Changes");
+
+        final var active = in.getShort() & 0xFFFF;
+        if (isMutable) {
+            // The mapped banks are copied back into the memory map afterwards, so they must be up-to-date.
+            synchronizeMemoryBanks(true);
+            changedPages[activeBank] = getChangedPages(activeBank);
+            this.activeBank = active;
+
+            for (var bank = 0; bank < numBanks; ++bank) {
+                final var pages = in.getLong();
+                for (var remaining = pages; remaining != 0; remaining &= remaining - 1) {
+                    final var page = Long.numberOfTrailingZeros(remaining);
+                    in.get(banks[bank], page * Memory.PAGE_SIZE, Memory.PAGE_SIZE);
+                }
+                changedPages[bank] |= pages;
+            }
+
+            updateMemoryMap(true);
+
+            // Copying the banks into the memory map marks every page as modified, so restore the actual changes.
+            for (var bank = 0; bank < numBanks; ++bank) {
+                if (isBankMapped(bank)) {
+                    memory.setDirtyPages(getBankBaseAddress(bank), bankSize, changedPages[bank]);
+                }
+            }
+        } else {
+            setActiveBank(active);
+        }
+    }
+
     /**
      * Sets the data for all managed banks. The provided data will be split into bank-length sections and copied into
      * each of the underlying banks in order. If no data is provided, then the banks will have their data zeroed out.
@@ -169,6 +266,7 @@ public class MemoryBank implements SerializableComponent {
                 Arrays.fill(bank, (byte) 0);
             }
         }
+        Arrays.fill(changedPages, -1L);
     }
 
     /**
@@ -187,12 +285,19 @@ public class MemoryBank implements SerializableComponent {
         }
 
         synchronizeMemoryBanks(false);
+        if (isMutable) {
+            // The memory map tracks the changes to whichever bank is mapped, so take the changes along with the bank.
+            changedPages[activeBank] = getChangedPages(activeBank);
+        }
 
         // Switch the active bank.
         this.activeBank = bank;
 
         // Swap banks on the memory map.
         updateMemoryMap(false);
+        if (isMutable) {
+            memory.setDirtyPages(getBankBaseAddress(bank), bankSize, changedPages[bank]);
+        }
     }
 
     /**
@@ -226,6 +331,63 @@ public class MemoryBank implements SerializableComponent {
         return banks[bank];
     }
 
+    /**
+     * Copies the contents of the specified bank into the provided buffer. Unlike {@link MemoryBank#getBankData(int)},
+     * the copied data is always up-to-date, even if the bank is currently loaded into main memory.
+     *
+     * @param bank The bank number.
+     * @param data The buffer to copy the bank data into.
+     */
+    public void copyBankData(int bank, byte[] data) {
+        copyBankData(bank, 0, data, bankSize);
+    }
+
+    /**
+     * Copies part of the specified bank into the provided buffer. Like {@link MemoryBank#copyBankData(int, byte[])},
+     * the copied data is always up-to-date.
+     *
+     * @param bank   The bank number.
+     * @param offset The offset within the bank to start copying from.
+     * @param data   The buffer to copy the data into.
+     * @param length The number of bytes to copy.
+     */
+    public void copyBankData(int bank, int offset, byte[] data, int length) {
+        if (!isUnified && bank == 0 || bank == activeBank) {
+            memory.getBytes(getBankBaseAddress(bank) + offset, data, 0, length);
+        } else {
+            System.arraycopy(banks[bank], offset, data, 0, length);
+        }
+    }
+
+    /**
+     * Copies a range of data into the specified bank. If the bank is currently loaded into main memory then the data is
+     * written to the memory map, otherwise it is written directly to the bank's backing array.
+     *
+     * @param bank    The bank number.
+     * @param address The memory address to start writing data to.
+     * @param data    The data source.
+     * @param offset  The offset into the data source to start copying from.
+     * @param length  The number of bytes to copy.
+     */
+    public void setBytes(int bank, int address, byte[] data, int offset, int length) {
+        final var bankAddress = address - getBankBaseAddress(bank);
+        if (bankAddress < 0 || bankAddress + length > bankSize) {
+            throw new IllegalArgumentException(
+                    String.format("Range out of bounds: address=%04X, length=%s", address, length)
+            );
+        }
+
+        if (!isUnified && bank == 0 || bank == activeBank) {
+            memory.setBytes(address, data, offset, length);
+        } else {
+            System.arraycopy(data, offset, banks[bank], bankAddress, length);
+            final var lastPage = (bankAddress + length - 1) / Memory.PAGE_SIZE;
+            for (var page = bankAddress / Memory.PAGE_SIZE; page <= lastPage; ++page) {
+                changedPages[bank] |= 1L << page;
+            }
+        }
+    }
+
     /**
      * Gets the signed 8-bit value for the specified address within the specified bank.
      *
@@ -255,6 +417,29 @@ public class MemoryBank implements SerializableComponent {
         return get(bank, address) & 0xFF;
     }
 
+    /**
+     * Gets whether the specified bank is currently mapped into system memory.
+     *
+     * @param bank The bank number.
+     * @return Whether the bank is mapped.
+     */
+    private boolean isBankMapped(int bank) {
+        return !isUnified && bank == 0 || bank == activeBank;
+    }
+
+    /**
+     * Gets the pages of the specified bank that have been modified since the base state was marked.
+     *
+     * @param bank The bank number.
+     * @return A bit set of the modified pages, with one bit per page.
+     */
+    private long getChangedPages(int bank) {
+        if (isBankMapped(bank)) {
+            return changedPages[bank] | memory.getDirtyPages(getBankBaseAddress(bank), bankSize);
+        }
+        return changedPages[bank];
+    }
+
     /**
      * Gets the base address for the specified bank.
      *
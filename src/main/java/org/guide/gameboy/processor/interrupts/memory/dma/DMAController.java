@@ -66,9 +66,14 @@ public class DMAController extends AddressSpace implements SerializableComponent
         this.readValue = 0;
     }
 
+    @Override
+    public int serializedSize() {
+        return 4;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
-        out.putShort((byte) sourceAddress);
+        out.putShort((short) sourceAddress);
         out.put((byte) currentCycle);
         out.put((byte) readValue);
     }
@@ -1,16 +1,18 @@
 package org.guide.gameboy.processor.interrupts.memory.dma;
 
 import org.guide.gameboy.SerializableComponent;
+import org.guide.gameboy.processor.Processor;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
 import org.guide.gameboy.processor.interrupts.memory.space.AddressSpace;
 import org.guide.gameboy.video.LCDMode;
 import org.guide.gameboy.video.Video;
-import org.guide.gameboy.video.event.VideoModeEvent;
 import org.guide.util.AddressUtils;
 import org.guide.util.BitUtils;
 
 import java.nio.ByteBuffer;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Implements the HDMA controller of the Game Boy. This functionality is only present on the Color Game Boy systems. The
  * specification for this controller can be found
@@ -27,6 +29,27 @@ public class HDMAController extends AddressSpace implements SerializableComponen
      */
     public static final int BLOCK_SIZE = 0x10;
 
+    /**
+     * The number of processor cycles the CPU is stalled for while a single block is transferred in normal speed mode.
+     * The transfer takes the same amount of real time in double speed mode, so the stall is doubled there.
+     */
+    public static final int BLOCK_CYCLES = 32;
+
+    /**
+     * The address immediately following the end of VRAM. Transfers stop once the destination reaches this address.
+     */
+    private static final int DESTINATION_END_ADDRESS = 0xA000;
+
+    /**
+     * The processor component, which is stalled while blocks are being transferred.
+     */
+    private final Processor processor;
+
+    /**
+     * The video component.
+     */
+    private final Video video;
+
     /**
      * Whether the hardware is currently operating in CGB mode.
      */
@@ -59,16 +82,19 @@ public class HDMAController extends AddressSpace implements SerializableComponen
     /**
      * Creates a new HDMA controller instance.
      *
-     * @param memory The memory component.
-     * @param video  The video component.
+     * @param memory    The memory component.
+     * @param processor The processor component.
+     * @param video     The video component.
      */
-    public HDMAController(Memory memory, Video video) {
+    public HDMAController(Memory memory, Processor processor, Video video) {
         super(memory);
+        this.processor = requireNonNull(processor);
+        this.video = requireNonNull(video);
 
         this.transferMode = HDMAMode.NONE;
         this.numBlocksRemaining = 0;
 
-        video.bindVideoModeEvent(this::onVideoModeChanged);
+        video.addModeListener(this::onVideoModeChanged);
 
         memory.setAddressSpace(this, AddressUtils.HDMA1);
         memory.setAddressSpace(this, AddressUtils.HDMA2);
@@ -84,34 +110,35 @@ public class HDMAController extends AddressSpace implements SerializableComponen
      */
     public void reset(boolean isCGB) {
         this.isCGB = isCGB;
+        this.transferMode = HDMAMode.NONE;
+        this.numBlocksRemaining = 0;
     }
 
     @Override
     public void write(int address, int value) {
-        if (address == AddressUtils.HDMA5) {
-            switch (transferMode) {
-                case NONE -> {
-                    startTransfer(value);
-                    value &= 0x7F;
-                }
-                case HDMA -> {
-                    if (BitUtils.isSet(value, 7)) {
-                        // Attempting to start HDMA while an HDMA transfer is in progress will restart the transfer.
-                        numBlocksRemaining = (value & 0x3F) + 1;
-                    } else {
-                        // Attempting to start GDMA while an HDMA transfer is in progress will stop the transfer.
-                        value |= 0x80;
-                        numBlocksRemaining = 0;
-                        transferMode = HDMAMode.NONE;
-                    }
-                }
-                case GDMA -> {
-                    // TODO Implement GDMA
-                }
-            }
+        if (address != AddressUtils.HDMA5) {
+            super.write(address, value);
+            return;
         }
 
-        super.write(address, value);
+        // GDMA transfers complete before the processor executes another instruction, so only an HDMA transfer can be
+        // in progress when HDMA5 is written to.
+        if (transferMode == HDMAMode.HDMA) {
+            if (BitUtils.isSet(value, 7)) {
+                // Attempting to start HDMA while an HDMA transfer is in progress will restart the transfer.
+                numBlocksRemaining = (value & 0x7F) + 1;
+                super.write(address, value & 0x7F);
+            } else {
+                // Attempting to start GDMA while an HDMA transfer is in progress will stop the transfer. The
+                // remaining length can still be read back from HDMA5.
+                numBlocksRemaining = 0;
+                transferMode = HDMAMode.NONE;
+                super.write(address, value | 0x80);
+            }
+        } else {
+            super.write(address, value & 0x7F);
+            startTransfer(value);
+        }
     }
 
     @Override
@@ -126,6 +153,11 @@ public class HDMAController extends AddressSpace implements SerializableComponen
         return super.read(address);
     }
 
+    @Override
+    public int serializedSize() {
+        return 6;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.putShort((short) sourceAddress);
@@ -142,12 +174,23 @@ public class HDMAController extends AddressSpace implements SerializableComponen
         this.transferMode = HDMAMode.values()[in.get() & 0xFF];
     }
 
-    private void onVideoModeChanged(VideoModeEvent e) {
-        if (e.mode() == LCDMode.HBLANK && transferMode == HDMAMode.HDMA) {
-            transferDataBlock();
+    /**
+     * Transfers a block of data at the start of each h-blank period while an HDMA transfer is active.
+     *
+     * @param mode  The new LCD mode.
+     * @param cycle The number of cycles that had elapsed on the current scanline.
+     */
+    private void onVideoModeChanged(LCDMode mode, int cycle) {
+        if (mode == LCDMode.HBLANK && transferMode == HDMAMode.HDMA) {
+            transferDataBlocks(1);
         }
     }
 
+    /**
+     * Starts a new transfer.
+     *
+     * @param hdma5 The value written to the HDMA5 register.
+     */
     private void startTransfer(int hdma5) {
         // The source address registers.
         final var hdma1 = memory.getUnsigned(AddressUtils.HDMA1);
@@ -169,36 +212,52 @@ public class HDMAController extends AddressSpace implements SerializableComponen
             // A single block is immediately transferred in HDMA mode if the LCD is in H_BLANK mode.
             final var mode = LCDMode.get(memory.getUnsigned(AddressUtils.STAT));
             if (mode == LCDMode.HBLANK) {
-                transferDataBlock();
+                transferDataBlocks(1);
             }
         } else {
-            // The entire transfer is processed in one go.
-            final var data = memory.getMemoryMap();
-            memory.setBytes(destinationAddress, data, sourceAddress, numBlocksRemaining * BLOCK_SIZE);
-
-            // Transfer is complete.
-            numBlocksRemaining = 0;
-            transferMode = HDMAMode.NONE;
+            // The entire transfer is processed in one go, and the processor is stalled until it would have completed.
+            transferDataBlocks(numBlocksRemaining);
         }
     }
 
     /**
-     * Transfers a single block of data from the source address to the destination address.
+     * Transfers blocks of data from the source address to the destination address, and stalls the processor for the
+     * time the transfer takes. Consecutive blocks are copied in bulk rather than one at a time.
+     *
+     * @param numBlocks The number of blocks to transfer.
      */
-    private void transferDataBlock() {
-        if (numBlocksRemaining == 0) {
-            throw new IllegalStateException("Attempted to transfer a block while transfer is inactive.");
+    private void transferDataBlocks(int numBlocks) {
+        if (numBlocks <= 0 || numBlocks > numBlocksRemaining) {
+            throw new IllegalStateException("Attempted to transfer more blocks than remain: " + numBlocks);
         }
 
-        // Copy a single block of memory.
         final var data = memory.getMemoryMap();
-        System.arraycopy(data, sourceAddress, data, destinationAddress, BLOCK_SIZE);
 
-        sourceAddress += BLOCK_SIZE;
-        destinationAddress += BLOCK_SIZE;
+        var remainingBytes = numBlocks * BLOCK_SIZE;
+        var transferredBlocks = 0;
+        while (remainingBytes > 0 && destinationAddress < DESTINATION_END_ADDRESS) {
+            // The source wraps around at the end of the address space, so copy each contiguous run separately.
+            final var length = Math.min(remainingBytes,
+                    Math.min(data.length - sourceAddress, DESTINATION_END_ADDRESS - destinationAddress));
+            video.writeVideoMemory(destinationAddress, data, sourceAddress, length);
+
+            sourceAddress = (sourceAddress + length) & 0xFFFF;
+            destinationAddress += length;
+            remainingBytes -= length;
+            transferredBlocks += length / BLOCK_SIZE;
+        }
+
+        final var blockCycles = processor.isDoubleSpeed() ? BLOCK_CYCLES * 2 : BLOCK_CYCLES;
+        processor.stall(transferredBlocks * blockCycles);
 
-        if (--numBlocksRemaining == 0) {
+        // The transfer ends early if the destination runs past the end of VRAM.
+        numBlocksRemaining = destinationAddress < DESTINATION_END_ADDRESS ? numBlocksRemaining - numBlocks : 0;
+        if (numBlocksRemaining == 0) {
             transferMode = HDMAMode.NONE;
+            memory.set(AddressUtils.HDMA5, 0xFF);
+        } else {
+            // While a transfer is active, HDMA5 holds the number of blocks remaining minus one.
+            memory.set(AddressUtils.HDMA5, numBlocksRemaining - 1);
         }
     }
 
@@ -1,18 +1,15 @@
 package org.guide.gameboy.processor.interrupts.memory.space;
 
-import org.guide.gameboy.SerializableComponent;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
 import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
 import org.guide.util.AddressUtils;
 
-import java.nio.ByteBuffer;
-
 /**
  * An address space that manages the "Work RAM" section of system memory. This section of memory
  *
  * @author Brendan Jones
  */
-public class WRAMAddressSpace extends AddressSpace implements SerializableComponent {
+public class WRAMAddressSpace extends AddressSpace {
 
     /**
      * The starting address for work RAM.
@@ -81,14 +78,13 @@ public class WRAMAddressSpace extends AddressSpace implements SerializableCompon
         memory.set(AddressUtils.SVBK, isCGB ? 0xF9 : 0xFF);
     }
 
-    @Override
-    public void serialize(ByteBuffer out) {
-        banks.serialize(out);
-    }
-
-    @Override
-    public void deserialize(ByteBuffer in) {
-        banks.deserialize(in);
+    /**
+     * Gets the switchable RAM banks.
+     *
+     * @return The RAM banks.
+     */
+    public MemoryBank getBanks() {
+        return banks;
     }
 
     @Override
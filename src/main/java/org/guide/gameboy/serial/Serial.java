@@ -42,6 +42,11 @@ public class Serial extends AddressSpace implements SerializableComponent {
         memory.setAddressSpace(this, AddressUtils.SC);
     }
 
+    @Override
+    public int serializedSize() {
+        return 3;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.putShort((short) serialCycles);
@@ -75,6 +75,11 @@ public class Timer extends AddressSpace implements SerializableComponent {
         }
     }
 
+    @Override
+    public int serializedSize() {
+        return 3;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.putShort((short) clock);
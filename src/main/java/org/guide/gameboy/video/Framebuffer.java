@@ -1,15 +1,19 @@
 package org.guide.gameboy.video;
 
+import org.guide.gameboy.IncrementalComponent;
 import org.lwjgl.BufferUtils;
 
 import java.nio.ByteBuffer;
 
 /**
  * Implements a simple framebuffer that manages the pixel data for a frame.
+ * <p>
+ * Every row is usually redrawn each frame, even when its pixels do not change, so changes are found by comparing each
+ * row against a copy of the base state rather than by tracking writes.
  *
  * @author Brendan Jones
  */
-public class Framebuffer {
+public class Framebuffer implements IncrementalComponent {
 
     /**
      * The width of the framebuffer.
@@ -26,6 +30,11 @@ public class Framebuffer {
      */
     private final ByteBuffer pixels;
 
+    /**
+     * A copy of the pixel data when the base state was marked, or {@code null} if it has not been marked.
+     */
+    private ByteBuffer basePixels;
+
     /**
      * Creates a new Framebuffer instance.
      *
@@ -38,6 +47,93 @@ public class Framebuffer {
         this.pixels = BufferUtils.createByteBuffer(width * height * 3);
     }
 
+    @Override
+    public int serializedSize() {
+        return pixels.capacity();
+    }
+
+    @Override
+    public void serialize(ByteBuffer out) {
+        out.put(out.position(), pixels, 0, pixels.capacity());
+        out.position(out.position() + pixels.capacity());
+    }
+
+    @Override
+    public void deserialize(ByteBuffer in) {
+        pixels.put(0, in, in.position(), pixels.capacity());
+        in.position(in.position() + pixels.capacity());
+    }
+
+    @Override
+    public void markBase() {
+        if (basePixels == null) {
+            this.basePixels = ByteBuffer.allocateDirect(pixels.capacity());
+        }
+        basePixels.put(0, pixels, 0, pixels.capacity());
+    }
+
+    @Override
+    public int changesSize() {
+        var numRows = 0;
+        for (var y = findChangedRow(0); y != -1; y = findChangedRow(y + 1)) {
+            ++numRows;
+        }
+        return 2 + numRows * (2 + width * 3);
+    }
+
+    @Override
+    public void serializeChanges(ByteBuffer out) {
+        final var countPosition = out.position();
+        out.putShort((short) 0);
+
+        var numRows = 0;
+        final var rowSize = width * 3;
+        for (var y = findChangedRow(0); y != -1; y = findChangedRow(y + 1)) {
+            out.putShort((short) y);
+            out.put(pixels.slice(y * rowSize, rowSize));
+            ++numRows;
+        }
+        out.putShort(countPosition, (short) numRows);
+    }
+
+    @Override
+    public void deserializeChanges(ByteBuffer in) {
+        final var numRows = in.getShort() & 0xFFFF;
+        final var rowSize = width * 3;
+        for (var i = 0; i < numRows; ++i) {
+            final var y = in.getShort() & 0xFFFF;
+            if (y >= height) {
+                throw new IllegalStateException("Invalid row: " + y);
+            }
+
+            pixels.put(y * rowSize, in, in.position(), rowSize);
+            in.position(in.position() + rowSize);
+        }
+    }
+
+    /**
+     * Finds the next row that differs from the base state. The remaining rows are compared in a single pass, so
+     * unchanged rows cost very little to skip.
+     *
+     * @param y The y coordinate of the row to start searching from.
+     * @return The y coordinate of the changed row, or -1 if none of the remaining rows have changed. Every row is
+     * considered changed if the base state has not been marked.
+     */
+    private int findChangedRow(int y) {
+        if (y >= height) {
+            return -1;
+        } else if (basePixels == null) {
+            return y;
+        }
+
+        final var rowSize = width * 3;
+        final var start = y * rowSize;
+        final var length = pixels.capacity() - start;
+
+        final var index = pixels.slice(start, length).mismatch(basePixels.slice(start, length));
+        return index == -1 ? -1 : y + index / rowSize;
+    }
+
     /**
      * Sets the color of all pixels.
      *
@@ -84,6 +180,26 @@ public class Framebuffer {
         setPixel(x, y, color.getColor24());
     }
 
+    /**
+     * Sets the color of every pixel in a single row.
+     *
+     * @param y   The y coordinate of the row.
+     * @param rgb The colors of the pixels in the row. Must contain at least {@code width} elements.
+     */
+    public void setRow(int y, int[] rgb) {
+        if (y < 0 || y >= height) {
+            throw new RuntimeException("Invalid row: " + y);
+        }
+
+        var index = y * width * 3;
+        for (var x = 0; x < width; ++x) {
+            final var color = rgb[x];
+            pixels.put(index++, (byte) ((color >> 16) & 0xFF));
+            pixels.put(index++, (byte) ((color >> 8) & 0xFF));
+            pixels.put(index++, (byte) (color & 0xFF));
+        }
+    }
+
     /**
      * Gets the width of the framebuffer.
      *
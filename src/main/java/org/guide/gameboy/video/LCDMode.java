@@ -30,6 +30,12 @@ public enum LCDMode {
      */
     TRANSFER(false, false, false);
 
+    /**
+     * The LCD modes indexed by their STAT register value. This is cached because {@link #values()} creates a new array
+     * on every call, and the STAT register is decoded several times per scanline.
+     */
+    private static final LCDMode[] VALUES = values();
+
     /**
      * Whether the VRAM address space is accessible while the LCD Controller is operating in this mode.
      */
@@ -101,7 +107,7 @@ public enum LCDMode {
      * @return The LCD mode.
      */
     public static LCDMode get(int stat) {
-        return LCDMode.values()[stat & 0x3];
+        return VALUES[stat & 0x3];
     }
 
 }
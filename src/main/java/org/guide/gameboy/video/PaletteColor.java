@@ -74,12 +74,12 @@ public class PaletteColor {
     }
 
     /**
-     * Sets this color to the specified 15-bit color.
+     * Sets this color to the specified color data, as returned by {@link #getColor15()}.
      *
-     * @param data The color data. Only the lowest 15 bits will be used.
+     * @param data The color data. Only the lowest 16 bits will be used.
      */
     public void set(int data) {
-        this.color15 = 0x8000 | (data & 0xFFFF);
+        this.color15 = data & 0xFFFF;
         this.needCalculateColor24 = true;
     }
 
@@ -0,0 +1,127 @@
+package org.guide.gameboy.video;
+
+import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.util.AddressUtils;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks which sprites occupy each visible scanline. Each scanline has a bitset of sprite IDs, where bit {@code n} is
+ * set if sprite {@code n} overlaps the scanline and would be considered during the OAM search period.
+ * <p>
+ * The index is rebuilt lazily the first time it is queried after the position of a sprite changes in OAM or after the
+ * sprite height changes, so the OAM search period only needs to visit the sprites that are actually on the scanline.
+ *
+ * @author Brendan Jones
+ */
+public class SpriteIndex {
+
+    /**
+     * The number of sprites that can be loaded into OAM memory.
+     */
+    private static final int MAX_SPRITES = 40;
+
+    /**
+     * The memory component containing OAM.
+     */
+    private final Memory memory;
+
+    /**
+     * The bitset of sprites occupying each visible scanline.
+     */
+    private final long[] scanlines = new long[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The sprite height that the index was built with.
+     */
+    private int spriteHeight;
+
+    /**
+     * Whether the position of a sprite changed since the index was built.
+     */
+    private boolean isDirty;
+
+    /**
+     * Creates a new SpriteIndex instance.
+     *
+     * @param memory The memory component containing OAM.
+     */
+    public SpriteIndex(Memory memory) {
+        this.memory = requireNonNull(memory);
+        this.isDirty = true;
+    }
+
+    /**
+     * Notifies the index that a byte of OAM was written to. Only writes to the Y or X coordinate of a sprite affect
+     * which scanlines it occupies.
+     *
+     * @param address The OAM address that was written to.
+     */
+    public void onWrite(int address) {
+        if (((address - AddressUtils.OAM_ADDRESS_START) & 0x3) < 2) {
+            this.isDirty = true;
+        }
+    }
+
+    /**
+     * Forces the index to be rebuilt the next time it is queried. This must be called whenever OAM is modified without
+     * going through {@link #onWrite(int)}.
+     */
+    public void invalidate() {
+        this.isDirty = true;
+    }
+
+    /**
+     * Gets the sprites that occupy a scanline.
+     *
+     * @param ly           The scanline.
+     * @param spriteHeight The height of each sprite, as determined by bit 2 of the LCDC register.
+     * @return A bitset of the sprite IDs occupying the scanline.
+     */
+    public long getSprites(int ly, int spriteHeight) {
+        if (ly < 0 || ly >= Video.DISPLAY_HEIGHT) {
+            return 0;
+        }
+
+        if (isDirty || spriteHeight != this.spriteHeight) {
+            rebuild(spriteHeight);
+        }
+
+        return scanlines[ly];
+    }
+
+    /**
+     * Rebuilds the index from the current contents of OAM.
+     *
+     * @param spriteHeight The height of each sprite.
+     */
+    private void rebuild(int spriteHeight) {
+        Arrays.fill(scanlines, 0);
+
+        for (var sprite = 0; sprite < MAX_SPRITES; ++sprite) {
+            final var address = AddressUtils.getSpriteAddress(sprite);
+
+            // Sprites with an X coordinate of 0 are never selected during the OAM search period.
+            if (memory.getUnsigned(address + 1) == 0) {
+                continue;
+            }
+
+            // The Y coordinate of a sprite is offset by 16 pixels so that sprites can be partially hidden above the
+            // top edge of the screen.
+            final var top = memory.getUnsigned(address) - 16;
+            final var start = Math.max(top, 0);
+            final var end = Math.min(top + spriteHeight, Video.DISPLAY_HEIGHT);
+
+            final var mask = 1L << sprite;
+            for (var ly = start; ly < end; ++ly) {
+                scanlines[ly] |= mask;
+            }
+        }
+
+        this.spriteHeight = spriteHeight;
+        this.isDirty = false;
+    }
+
+}
@@ -7,17 +7,18 @@ import org.guide.gameboy.processor.interrupts.InterruptController;
 import org.guide.gameboy.processor.interrupts.memory.Memory;
 import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
 import org.guide.gameboy.processor.interrupts.memory.space.AddressSpace;
-import org.guide.gameboy.video.event.VideoModeEvent;
+import org.guide.gameboy.video.event.VideoModeListener;
 import org.guide.gameboy.video.queue.PixelQueue;
+import org.guide.gameboy.video.queue.PixelQueueEntry;
 import org.guide.gameboy.video.queue.PixelSource;
+import org.guide.gameboy.video.render.DeferredRenderer;
+import org.guide.gameboy.video.render.TileDecoder;
 import org.guide.util.AddressUtils;
 import org.guide.util.BitUtils;
-import org.guide.util.delegate.EventDispatcher;
-import org.guide.util.delegate.EventDispatcherHandle;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.PriorityQueue;
-import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -63,11 +64,6 @@ public class Video extends AddressSpace implements SerializableComponent {
      */
     private static final int OAM_SEARCH_CYCLES = 80;
 
-    /**
-     * The number of sprites that can be loaded into OAM memory.
-     */
-    private static final int MAX_SPRITES = 40;
-
     /**
      * The number of sprites that can be rendered per scanline.
      */
@@ -118,11 +114,26 @@ public class Video extends AddressSpace implements SerializableComponent {
      */
     private final PixelQueue pixelQueue = new PixelQueue();
 
+    /**
+     * The decoder used to convert rows of tile data into color indices.
+     */
+    private final TileDecoder tileDecoder = TileDecoder.getInstance();
+
+    /**
+     * The color indices of the most recently fetched row of tile data.
+     */
+    private final int[] tilePixels = new int[TileDecoder.TILE_WIDTH];
+
     /**
      * The list of sprites to be rendered on the current scanline.
      */
     private final PriorityQueue<Integer> visibleSprites;
 
+    /**
+     * The index of which sprites occupy each scanline.
+     */
+    private final SpriteIndex spriteIndex;
+
     /**
      * The number of clock cycles that have elapsed on the current scanline.
      */
@@ -133,6 +144,13 @@ public class Video extends AddressSpace implements SerializableComponent {
      */
     private int overflowCycles;
 
+    /**
+     * The scanline cycle count at which the video hardware next has observable work to do. While the LCD is disabled
+     * or in v-blank, nothing happens until the next scanline or frame boundary, so ticks before this point only need
+     * to count cycles. A value of 0 means the hardware must be ticked normally.
+     */
+    private int idleUntilCycles;
+
     /**
      * The value of the windowX register at the start of the current scanline.
      */
@@ -194,15 +212,53 @@ public class Video extends AddressSpace implements SerializableComponent {
      */
     private boolean isLCDEnabling;
 
+    /**
+     * The number of frames to skip rendering between each rendered frame. A value of 0 renders every frame.
+     */
+    private int frameSkip;
+
+    /**
+     * The number of frames that have been skipped since the last rendered frame.
+     */
+    private int skippedFrames;
+
+    /**
+     * Whether rendering is suppressed for upcoming frames regardless of the frame skip ratio.
+     */
+    private boolean isRenderSuppressed;
+
+    /**
+     * Whether pixel output is produced for the current frame. Skipped frames still run the pixel transfer period so
+     * that timing, STAT, and LY behavior are unaffected, but nothing is written to the framebuffer.
+     */
+    private boolean isRenderingFrame;
+
+    /**
+     * The renderer that rasterizes frames on a worker thread, or null if frames are rendered inline by the pixel FIFO.
+     */
+    private DeferredRenderer deferredRenderer;
+
+    /**
+     * Whether VRAM, OAM, or the color palettes have changed since video memory was last captured for the deferred
+     * renderer.
+     */
+    private boolean isVideoMemoryDirty;
+
+    /**
+     * The pages of each VRAM bank that have been written since video memory was last captured for the deferred
+     * renderer, with one bit per page.
+     */
+    private final long[] dirtyVideoPages = new long[2];
+
     /**
      * The address space for video RAM.
      */
     private final MemoryBank vram;
 
     /**
-     * The dispatcher for video mode events.
+     * The listeners to notify when the LCD mode changes.
      */
-    private final EventDispatcher<VideoModeEvent> videoModeEventDispatcher = new EventDispatcher<>();
+    private VideoModeListener[] modeListeners = new VideoModeListener[0];
 
     /**
      * Creates a new {@code Video} instance that uses the specified memory and interrupt controller.
@@ -216,6 +272,7 @@ public class Video extends AddressSpace implements SerializableComponent {
         this.vram = new MemoryBank(memory, true, true, AddressUtils.VRAM_ADDRESS_START, 2, 0x2000);
 
         this.visibleSprites = new PriorityQueue<>(MAX_VISIBLE_SPRITES, this::compareVisibleSprites);
+        this.spriteIndex = new SpriteIndex(memory);
 
         // Initialize the color palettes.
         for (var palette = 0; palette < NUM_CGB_PALETTES; ++palette) {
@@ -243,6 +300,7 @@ public class Video extends AddressSpace implements SerializableComponent {
         memory.setAddressSpace(this, AddressUtils.OCPD);
 
         memory.setAddressSpace(this, AddressUtils.VRAM_ADDRESS_START, AddressUtils.VRAM_ADDRESS_END);
+        memory.setAddressSpace(this, AddressUtils.OAM_ADDRESS_START, AddressUtils.OAM_ADDRESS_END);
         memory.setAddressSpace(this, AddressUtils.VBK);
     }
 
@@ -267,10 +325,15 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         this.currentScanlineCycles = 0;
         this.overflowCycles = 0;
+        this.idleUntilCycles = 0;
         this.isFetchingSprite = false;
         this.isFetchingWindow = false;
         this.isLCDEnabled = true;
         this.isLCDEnabling = false;
+        this.isRenderingFrame = true;
+        this.skippedFrames = 0;
+        invalidateVideoMemory();
+        spriteIndex.invalidate();
 
         pixelQueue.clear();
         visibleSprites.clear();
@@ -297,8 +360,18 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         super.write(address, value);
 
+        if (AddressUtils.isAddressVRAM(address)) {
+            markVideoMemoryDirty(address, 1);
+        } else if (AddressUtils.isAddressOAM(address)) {
+            this.isVideoMemoryDirty = true;
+            spriteIndex.onWrite(address);
+        }
+
         switch (address) {
-            case AddressUtils.STAT -> updateStatInterruptSignal();
+            case AddressUtils.STAT -> {
+                updateStatInterruptSignal();
+                this.idleUntilCycles = 0;
+            }
             case AddressUtils.LYC -> updateLYCompareBit();
             case AddressUtils.BCPD -> writeColorPalette(AddressUtils.BCPS, value, cgbBackgroundPalettes);
             case AddressUtils.OCPD -> writeColorPalette(AddressUtils.OCPS, value, cgbSpritePalettes);
@@ -321,6 +394,15 @@ public class Video extends AddressSpace implements SerializableComponent {
         return super.read(address);
     }
 
+    @Override
+    public int serializedSize() {
+        // Each section is followed by an integrity check.
+        return 5 * 4 + 13
+                + NUM_CGB_PALETTES * NUM_PALETTE_COLORS * 4
+                + 1 + visibleSprites.size()
+                + pixelQueue.serializedSize();
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         SerializableComponent.writeIntegrityCheck(out);
@@ -350,11 +432,6 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         SerializableComponent.writeIntegrityCheck(out);
 
-        // Write the current framebuffer state.
-        out.put(framebuffer.getPixels().asReadOnlyBuffer());
-
-        SerializableComponent.writeIntegrityCheck(out);
-
         // Write the current sprite queue elements. The order of the elements is not sorted.
         out.put((byte) visibleSprites.size());
         visibleSprites.forEach(sprite -> out.put((byte) sprite.intValue()));
@@ -365,11 +442,6 @@ public class Video extends AddressSpace implements SerializableComponent {
         pixelQueue.serialize(out);
 
         SerializableComponent.writeIntegrityCheck(out);
-
-        // Write the video ram state.
-        vram.serialize(out);
-
-        SerializableComponent.writeIntegrityCheck(out);
     }
 
     @Override
@@ -379,6 +451,7 @@ public class Video extends AddressSpace implements SerializableComponent {
         this.currentScanlineCycles = in.getShort() & 0xFFFF;
         this.irqSignal = (in.get() & 0xFF) == 1;
         this.overflowCycles = in.get() & 0xFF;
+        this.idleUntilCycles = 0;
         this.scx = in.get() & 0xFF;
         this.scy = in.get() & 0xFF;
         this.wx = in.get() & 0xFF;
@@ -400,19 +473,9 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         SerializableComponent.verifyIntegrityCheck(in, "Video::Palette");
 
-        // TODO Maybe move this into the framebuffer class.
-        {
-            final var data = new byte[framebuffer.getWidth() * framebuffer.getHeight() * 3];
-            in.get(data);
-
-            final var fb = framebuffer.getPixels();
-            fb.clear().put(data).clear();
-        }
-
-        SerializableComponent.verifyIntegrityCheck(in, "Video::Framebuffer");
-
         // Read the list of visible sprites.
         final var numSprites = in.get() & 0xFF;
+        visibleSprites.clear();
         for (var i = 0; i < numSprites; ++i) {
             visibleSprites.add(in.get() & 0xFF);
         }
@@ -422,12 +485,11 @@ public class Video extends AddressSpace implements SerializableComponent {
         // Deserialize the pixel queue.
         pixelQueue.deserialize(in);
 
-        SerializableComponent.verifyIntegrityCheck(in, "Video::PixelQueue");
-
-        // Deserialize the video ram.
-        vram.deserialize(in);
+        // The video ram is restored separately, so any decoded video memory must be refreshed.
+        invalidateVideoMemory();
+        spriteIndex.invalidate();
 
-        SerializableComponent.verifyIntegrityCheck(in, "Video::VRAM");
+        SerializableComponent.verifyIntegrityCheck(in, "Video::PixelQueue");
     }
 
     /**
@@ -481,6 +543,7 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         // Update the color palette data.
         final var color = palettes[paletteNum][dataNum];
+        this.isVideoMemoryDirty = true;
         if (BitUtils.isSet(spec, 0)) {
             color.setHigh(data);
         } else {
@@ -535,6 +598,11 @@ public class Video extends AddressSpace implements SerializableComponent {
         // Update the number of cycles that have elapsed for the current scanline.
         this.currentScanlineCycles += elapsedCycles;
 
+        // Nothing observable happens until the next scanline or frame boundary while the LCD is idle.
+        if (currentScanlineCycles < idleUntilCycles) {
+            return false;
+        }
+
         if (isLCDEnabled) {
             final var mode = LCDMode.get(memory.get(AddressUtils.STAT));
             switch (mode) {
@@ -553,6 +621,7 @@ public class Video extends AddressSpace implements SerializableComponent {
                     throw new IllegalStateException("Unexpected LCDMode: " + mode);
             }
         } else {
+            this.idleUntilCycles = NUM_FRAME_CYCLES;
             if (currentScanlineCycles >= NUM_FRAME_CYCLES) {
                 currentScanlineCycles -= NUM_FRAME_CYCLES;
                 return true;
@@ -571,23 +640,14 @@ public class Video extends AddressSpace implements SerializableComponent {
 
             final var lcdc = memory.getUnsigned(AddressUtils.LCDC);
             if (BitUtils.isSet(lcdc, 1)) {
-                final var ly = memory.getUnsigned(AddressUtils.LY) + 16;
+                final var ly = memory.getUnsigned(AddressUtils.LY);
                 final var spriteHeight = BitUtils.isSet(lcdc, 2) ? 16 : 8;
 
-                // Search through OAM and select which sprites should be
-                // drawn on the current scanline.
-                for (var sprite = 0; sprite < MAX_SPRITES; ++sprite) {
-                    final var address = AddressUtils.getSpriteAddress(sprite);
-
-                    final var spriteY = memory.getUnsigned(address);
-                    final var spriteX = memory.getUnsigned(address + 1);
-
-                    if (spriteX != 0 && ly >= spriteY && ly < spriteY + spriteHeight) {
-                        visibleSprites.add(sprite);
-                        if (visibleSprites.size() >= MAX_VISIBLE_SPRITES) {
-                            break;
-                        }
-                    }
+                // Select the first sprites in OAM order that occupy the current scanline.
+                var sprites = spriteIndex.getSprites(ly, spriteHeight);
+                while (sprites != 0 && visibleSprites.size() < MAX_VISIBLE_SPRITES) {
+                    visibleSprites.add(Long.numberOfTrailingZeros(sprites));
+                    sprites &= sprites - 1;
                 }
             }
 
@@ -612,6 +672,9 @@ public class Video extends AddressSpace implements SerializableComponent {
 
         for (var currentCycle = 0; currentCycle < elapsedCycles; ++currentCycle) {
             if (!tickPixelFIFO(lcdc, ly, bgp, obp0, obp1)) {
+                // Any pixels left in the queue are never displayed. Discarding them keeps the saved state the same
+                // whether or not the pixels were drawn.
+                pixelQueue.clear();
                 setStatusMode(LCDMode.HBLANK, elapsedCycles - currentCycle - 1);
                 break;
             }
@@ -645,41 +708,65 @@ public class Video extends AddressSpace implements SerializableComponent {
         if (entry.getSource() == PixelSource.BACKGROUND && numPixelsToDiscard > 0) {
             numPixelsToDiscard--;
         } else {
-            PaletteColor color;
-            if (isCGB) {
-                if (entry.getSource() == PixelSource.SPRITE) {
-                    color = cgbSpritePalettes[entry.getPalette()][entry.getColor()];
-                } else {
-                    color = cgbBackgroundPalettes[entry.getPalette()][entry.getColor()];
-                }
-            } else {
-                var colorIndex = entry.getColor();
-                switch (entry.getSource()) {
-                    case BACKGROUND:
-                    case WINDOW:
-                        colorIndex = (bgp >> (colorIndex << 1)) & 0x3;
-                        break;
-                    case SPRITE:
-                        if (entry.getPalette() == 0) {
-                            colorIndex = (obp0 >> (colorIndex << 1)) & 0x3;
-                        } else {
-                            colorIndex = (obp1 >> (colorIndex << 1)) & 0x3;
-                        }
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Unexpected pixel source: " + entry.getSource());
-                }
-
-                color = PaletteColor.DEFAULT_PALETTE[colorIndex];
+            if (isDrawingPixels()) {
+                framebuffer.setPixel(lx, ly, getPixelColor(entry, bgp, obp0, obp1));
             }
 
-            framebuffer.setPixel(lx, ly, color);
             setLX(lx + 1);
         }
 
         return lx < DISPLAY_WIDTH;
     }
 
+    /**
+     * Gets whether the pixel FIFO writes pixels to the framebuffer. Pixels are only written if the current frame is
+     * going to be displayed and is not being rendered on a worker thread. Otherwise, the FIFO only needs to track how
+     * many pixels it holds, since that alone determines how long the pixel transfer lasts.
+     *
+     * @return Whether the pixel FIFO writes pixels to the framebuffer.
+     */
+    private boolean isDrawingPixels() {
+        return isRenderingFrame && deferredRenderer == null;
+    }
+
+    /**
+     * Resolves the color of a pixel that was popped from the pixel FIFO.
+     *
+     * @param entry The pixel queue entry.
+     * @param bgp   The value of the BGP register.
+     * @param obp0  The value of the OBP0 register.
+     * @param obp1  The value of the OBP1 register.
+     * @return The color of the pixel.
+     */
+    private PaletteColor getPixelColor(PixelQueueEntry entry, int bgp, int obp0, int obp1) {
+        if (isCGB) {
+            if (entry.getSource() == PixelSource.SPRITE) {
+                return cgbSpritePalettes[entry.getPalette()][entry.getColor()];
+            } else {
+                return cgbBackgroundPalettes[entry.getPalette()][entry.getColor()];
+            }
+        } else {
+            var colorIndex = entry.getColor();
+            switch (entry.getSource()) {
+                case BACKGROUND:
+                case WINDOW:
+                    colorIndex = (bgp >> (colorIndex << 1)) & 0x3;
+                    break;
+                case SPRITE:
+                    if (entry.getPalette() == 0) {
+                        colorIndex = (obp0 >> (colorIndex << 1)) & 0x3;
+                    } else {
+                        colorIndex = (obp1 >> (colorIndex << 1)) & 0x3;
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unexpected pixel source: " + entry.getSource());
+            }
+
+            return PaletteColor.DEFAULT_PALETTE[colorIndex];
+        }
+    }
+
     /**
      * Simulates a single tick of the tile fetcher which is responsible for loading data from memory and inserting it
      * into the pixel queue.
@@ -717,6 +804,16 @@ public class Video extends AddressSpace implements SerializableComponent {
      * @param ly   The LY register value.
      */
     private void fetchBackground(int lcdc, int ly) {
+        final var source = isFetchingWindow ? PixelSource.WINDOW : PixelSource.BACKGROUND;
+
+        // The tile data isn't needed when the pixels are not drawn, as the transfer takes the same time regardless.
+        if (!isDrawingPixels()) {
+            for (var i = 0; i < 8; ++i) {
+                pixelQueue.push(source, 0, 0, false);
+            }
+            return;
+        }
+
         // Determine the pixel coordinate of the tile to fetch from the 256x256 tile map.
         int mapX;
         int mapY;
@@ -764,7 +861,6 @@ public class Video extends AddressSpace implements SerializableComponent {
             dataAddress = 0x9000 + (vram.get(0, mapAddress) * 16) + (tileRow * 2);
         }
 
-        final var source = isFetchingWindow ? PixelSource.WINDOW : PixelSource.BACKGROUND;
         fetchTile(source, dataAddress, bank, palette, 0, 0, 0, flipH, hasPriority);
     }
 
@@ -776,6 +872,13 @@ public class Video extends AddressSpace implements SerializableComponent {
      */
     private void fetchSprite(int lcdc, int ly) {
         final int spriteID = requireNonNull(visibleSprites.poll());
+
+        // Sprites only change the colors of the pixels in the queue, so they can be ignored when the pixels are not
+        // drawn.
+        if (!isDrawingPixels()) {
+            return;
+        }
+
         final var address = AddressUtils.getSpriteAddress(spriteID);
 
         final var spriteY = memory.getUnsigned(address);
@@ -838,17 +941,14 @@ public class Video extends AddressSpace implements SerializableComponent {
         // and the second byte contains the high bit for each pixel.
         final var dataLow = vram.getUnsigned(bank, address);
         final var dataHigh = vram.getUnsigned(bank, address + 1);
-
-        final var step = flipH ? 1 : -1;
-        var bit = (flipH ? 0 : 7) + clipX * step;
+        tileDecoder.decodeRow(dataLow, dataHigh, tilePixels);
 
         // FIXME
         //  Super Mario Land: Figure out why Mario's sprite reverses when it clips off the left edge of the screen.
 
         final var width = 8 - clipX;
         for (var i = 0; i < width; ++i) {
-            final var color = (BitUtils.getBit(dataHigh, bit) << 1) | BitUtils.getBit(dataLow, bit);
-            bit += step;
+            final var color = tilePixels[flipH ? 7 - (clipX + i) : clipX + i];
 
             // Background pixels are inserted at the end of the pixel queue, while Sprite pixels are drawn on top of the
             // pixels that are already present in the pixel queue based on their priority.
@@ -919,10 +1019,29 @@ public class Video extends AddressSpace implements SerializableComponent {
             var ly = memory.getUnsigned(AddressUtils.LY) + 1;
             if (ly == VBLANK_END_SCANLINE) {
                 ly = 0;
+                updateFrameRendering();
                 setStatusMode(LCDMode.SEARCH, 0);
             }
             setLY(ly);
         }
+
+        // The hardware stays idle until the next scanline as long as it is still in v-blank.
+        if (LCDMode.get(memory.get(AddressUtils.STAT)) == LCDMode.VBLANK) {
+            this.idleUntilCycles = SCANLINE_CYCLES;
+        }
+    }
+
+    /**
+     * Determines whether pixel output should be produced for the frame that is about to start.
+     */
+    private void updateFrameRendering() {
+        if (!isRenderSuppressed && skippedFrames >= frameSkip) {
+            this.isRenderingFrame = true;
+            this.skippedFrames = 0;
+        } else {
+            this.isRenderingFrame = false;
+            this.skippedFrames++;
+        }
     }
 
     /**
@@ -937,6 +1056,7 @@ public class Video extends AddressSpace implements SerializableComponent {
         memory.set(AddressUtils.STAT, (stat & 0xFC) | mode.ordinal());
 
         this.overflowCycles = overflowCycles;
+        this.idleUntilCycles = 0;
 
         // The status mode changed so check the signal.
         updateStatInterruptSignal();
@@ -947,6 +1067,13 @@ public class Video extends AddressSpace implements SerializableComponent {
                 if (isLCDEnabling) {
                     this.isLCDEnabling = false;
                     framebuffer.fill(0xFFFFFF);
+
+                    if (deferredRenderer != null) {
+                        deferredRenderer.getRecordingLog().setBlank();
+                        deferredRenderer.submit();
+                    }
+                } else if (isRenderingFrame && deferredRenderer != null) {
+                    deferredRenderer.submit();
                 }
                 break;
             case HBLANK:
@@ -969,11 +1096,38 @@ public class Video extends AddressSpace implements SerializableComponent {
                 pixelQueue.clear();
                 setLX(0);
 
+                if (isRenderingFrame && deferredRenderer != null) {
+                    recordScanline();
+                }
                 break;
         }
 
         // Notify the world that the mode changed.
-        videoModeEventDispatcher.broadcast(new VideoModeEvent(this, mode));
+        for (final var listener : modeListeners) {
+            listener.onModeChanged(mode, currentScanlineCycles);
+        }
+    }
+
+    /**
+     * Records the register state of the current scanline for the deferred renderer. Video memory is only captured
+     * when it has changed since the last scanline was recorded.
+     */
+    private void recordScanline() {
+        final var log = deferredRenderer.getRecordingLog();
+        if (isVideoMemoryDirty || !log.hasSnapshot()) {
+            this.isVideoMemoryDirty = false;
+            log.captureSnapshot(vram, dirtyVideoPages, memory, cgbBackgroundPalettes, cgbSpritePalettes, isCGB);
+            Arrays.fill(dirtyVideoPages, 0);
+        }
+
+        log.record(
+                memory.getUnsigned(AddressUtils.LY),
+                memory.getUnsigned(AddressUtils.LCDC),
+                scx, scy, wx, wy,
+                memory.getUnsigned(AddressUtils.BGP),
+                memory.getUnsigned(AddressUtils.OBP0),
+                memory.getUnsigned(AddressUtils.OBP1)
+        );
     }
 
     /**
@@ -1083,6 +1237,7 @@ public class Video extends AddressSpace implements SerializableComponent {
 
             this.currentScanlineCycles = 0;
             this.overflowCycles = 0;
+            this.idleUntilCycles = 0;
             this.isFetchingSprite = false;
             this.isFetchingWindow = false;
 
@@ -1099,22 +1254,183 @@ public class Video extends AddressSpace implements SerializableComponent {
     }
 
     /**
-     * Registers a callback to be executed whenever a cartridge is loaded.
+     * Registers a listener to be notified whenever the LCD mode changes.
+     *
+     * @param listener The listener to register.
+     */
+    public void addModeListener(VideoModeListener listener) {
+        requireNonNull(listener);
+
+        final var listeners = Arrays.copyOf(modeListeners, modeListeners.length + 1);
+        listeners[modeListeners.length] = listener;
+        this.modeListeners = listeners;
+    }
+
+    /**
+     * Unregisters a listener that was previously registered with {@link #addModeListener(VideoModeListener)}.
+     *
+     * @param listener The listener to unregister.
+     */
+    public void removeModeListener(VideoModeListener listener) {
+        for (var i = 0; i < modeListeners.length; ++i) {
+            if (modeListeners[i] == listener) {
+                final var listeners = new VideoModeListener[modeListeners.length - 1];
+                System.arraycopy(modeListeners, 0, listeners, 0, i);
+                System.arraycopy(modeListeners, i + 1, listeners, i, listeners.length - i);
+                this.modeListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the number of frames to skip rendering between each rendered frame. Skipped frames are still fully
+     * emulated, but no pixel data is written to the framebuffer. The new ratio takes effect on the next frame.
+     *
+     * @param frameSkip The number of frames to skip. A value of 0 renders every frame.
+     */
+    public void setFrameSkip(int frameSkip) {
+        if (frameSkip < 0) {
+            throw new IllegalArgumentException("Invalid frame skip: " + frameSkip);
+        }
+        this.frameSkip = frameSkip;
+    }
+
+    /**
+     * Gets the number of frames skipped between each rendered frame.
+     *
+     * @return The number of frames to skip.
+     */
+    public int getFrameSkip() {
+        return frameSkip;
+    }
+
+    /**
+     * Sets whether rendering is suppressed for upcoming frames. This is useful when the caller knows that a frame will
+     * never be displayed, such as when catching up after falling behind. The new value takes effect on the next frame.
+     *
+     * @param suppressed Whether rendering is suppressed.
+     */
+    public void setRenderSuppressed(boolean suppressed) {
+        this.isRenderSuppressed = suppressed;
+    }
+
+    /**
+     * Gets whether pixel output is being produced for the current frame.
+     *
+     * @return Whether the current frame is being rendered.
+     */
+    public boolean isRenderingFrame() {
+        return isRenderingFrame;
+    }
+
+    /**
+     * Sets whether frames are rasterized on a worker thread. When enabled, the register state of each scanline is
+     * recorded during the pixel transfer period, and the completed frame is rasterized while the next frame is being
+     * emulated. Displayed frames lag one frame behind the emulated hardware.
+     *
+     * @param enabled Whether deferred rendering is enabled.
+     */
+    public void setDeferredRendering(boolean enabled) {
+        if (enabled && deferredRenderer == null) {
+            setDeferredRendering(1, 1);
+        } else if (!enabled && deferredRenderer != null) {
+            deferredRenderer.close();
+            this.deferredRenderer = null;
+        }
+    }
+
+    /**
+     * Enables deferred rendering with upscaled output. Scanlines are rasterized in bands across several threads when
+     * the parallelism is greater than one. Any previously enabled deferred renderer is replaced.
+     *
+     * @param scale       The factor to upscale frames by. Must be between 1 and {@link DeferredRenderer#MAX_SCALE}.
+     * @param parallelism The number of threads to rasterize each frame with.
+     */
+    public void setDeferredRendering(int scale, int parallelism) {
+        final var renderer = new DeferredRenderer(scale, parallelism);
+        if (deferredRenderer != null) {
+            deferredRenderer.close();
+        }
+
+        this.deferredRenderer = renderer;
+        invalidateVideoMemory();
+    }
+
+    /**
+     * Gets whether frames are rasterized on a worker thread.
+     *
+     * @return Whether deferred rendering is enabled.
+     */
+    public boolean isDeferredRendering() {
+        return deferredRenderer != null;
+    }
+
+    /**
+     * Copies a range of data into the currently selected VRAM bank. Hardware components that write to VRAM without
+     * going through {@link Video#write(int, int)} must use this so the change is visible to the deferred renderer.
+     *
+     * @param address The VRAM address to start writing data to.
+     * @param data    The data source.
+     * @param offset  The offset into the data source to start copying from.
+     * @param length  The number of bytes to copy.
+     */
+    public void writeVideoMemory(int address, byte[] data, int offset, int length) {
+        vram.setBytes(vram.getActiveBank(), address, data, offset, length);
+        markVideoMemoryDirty(address, length);
+    }
+
+    /**
+     * Marks a range of the currently selected VRAM bank as changed since video memory was last captured.
      *
-     * @param callback The callback to register.
-     * @return The callback handle.
+     * @param address The VRAM address the range starts at.
+     * @param length  The length of the range.
+     */
+    private void markVideoMemoryDirty(int address, int length) {
+        final var bank = vram.getActiveBank();
+        final var firstPage = (address - AddressUtils.VRAM_ADDRESS_START) / Memory.PAGE_SIZE;
+        final var lastPage = (address - AddressUtils.VRAM_ADDRESS_START + length - 1) / Memory.PAGE_SIZE;
+        for (var page = firstPage; page <= lastPage; ++page) {
+            dirtyVideoPages[bank] |= 1L << page;
+        }
+        this.isVideoMemoryDirty = true;
+    }
+
+    /**
+     * Marks all of video memory as changed since it was last captured, so the next capture copies everything.
      */
-    public EventDispatcherHandle<VideoModeEvent> bindVideoModeEvent(Consumer<VideoModeEvent> callback) {
-        return videoModeEventDispatcher.bind(callback);
+    private void invalidateVideoMemory() {
+        Arrays.fill(dirtyVideoPages, -1L);
+        this.isVideoMemoryDirty = true;
     }
 
     /**
-     * Gets the Framebuffer the video hardware renders pixels to.
+     * Gets the Framebuffer the video hardware renders pixels to. When deferred rendering is enabled, this is the
+     * framebuffer containing the most recently completed frame.
      *
      * @return The framebuffer.
      */
     public Framebuffer getFramebuffer() {
+        return deferredRenderer != null ? deferredRenderer.getFramebuffer() : framebuffer;
+    }
+
+    /**
+     * Gets the Framebuffer that pixels are transferred to as the LCD is emulated. Unlike {@link #getFramebuffer()},
+     * this is always part of the emulated state, and is serialized separately from the rest of the video hardware.
+     *
+     * @return The framebuffer.
+     */
+    public Framebuffer getLCDFramebuffer() {
         return framebuffer;
     }
 
+    /**
+     * Gets the video ram banks. These are serialized separately from the rest of the video hardware.
+     *
+     * @return The video ram banks.
+     */
+    public MemoryBank getVideoMemory() {
+        return vram;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package org.guide.gameboy.video.event;
+
+import org.guide.gameboy.video.LCDMode;
+
+/**
+ * A listener that is notified whenever the video hardware's LCD mode changes. Mode changes happen several times per
+ * scanline, so listeners are invoked directly with primitive arguments rather than through an event object.
+ *
+ * @author Brendan Jones
+ */
+@FunctionalInterface
+public interface VideoModeListener {
+
+    /**
+     * Invoked when the LCD mode changes.
+     *
+     * @param mode  The new mode.
+     * @param cycle The number of cycles that had elapsed on the current scanline when the mode changed.
+     */
+    void onModeChanged(LCDMode mode, int cycle);
+
+}
@@ -47,6 +47,15 @@ public class PixelQueue implements SerializableComponent {
         clear();
     }
 
+    @Override
+    public int serializedSize() {
+        var total = 1;
+        for (var i = 0; i < size; ++i) {
+            total += get(i).serializedSize();
+        }
+        return total;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.put((byte) size);
@@ -61,6 +70,7 @@ public class PixelQueue implements SerializableComponent {
         for (var i = 0; i < size; ++i) {
             get(i).deserialize(in);
         }
+        this.rear = (front + size) % queue.length;
     }
 
     /**
@@ -53,6 +53,11 @@ public class PixelQueueEntry implements SerializableComponent {
         this.hasPriority = false;
     }
 
+    @Override
+    public int serializedSize() {
+        return source == PixelSource.SPRITE ? 6 : 4;
+    }
+
     @Override
     public void serialize(ByteBuffer out) {
         out.put((byte) source.ordinal());
@@ -0,0 +1,341 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.gameboy.video.Framebuffer;
+import org.guide.gameboy.video.Video;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasterizes frames on a worker thread. The video hardware records each frame into a {@link ScanlineLog}, and once
+ * the frame is complete, the log is handed to the worker thread to be rasterized while the emulator moves on to the
+ * next frame.
+ * <p>
+ * Logs and framebuffers are double-buffered. The emulation thread records into one log while the worker reads the
+ * other, and the worker renders into the back framebuffer while the front framebuffer is displayed. Submitting a
+ * frame waits for the previous frame to finish rendering, so the worker is never more than one frame behind.
+ * <p>
+ * Frames can optionally be upscaled by an integer factor. Every scanline can be rasterized independently once its
+ * register state is known, so when the parallelism is greater than one, the frame is split into bands of scanlines that
+ * are rasterized and scaled in parallel on a {@link ForkJoinPool}. The output is identical to the serial path.
+ *
+ * @author Brendan Jones
+ */
+public class DeferredRenderer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeferredRenderer.class);
+
+    /**
+     * The largest supported scale factor.
+     */
+    public static final int MAX_SCALE = 8;
+
+    /**
+     * The smallest number of scanlines that will be rasterized by a single parallel task. Splitting the frame any
+     * further costs more in task overhead than it saves.
+     */
+    private static final int MIN_BAND_HEIGHT = 8;
+
+    /**
+     * The factor that frames are upscaled by.
+     */
+    private final int scale;
+
+    /**
+     * The pool that rasterizes bands of scanlines in parallel, or null if frames are rasterized serially.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The framebuffers that frames are rendered into.
+     */
+    private final Framebuffer[] framebuffers;
+
+    /**
+     * The scanline logs that frames are recorded into.
+     */
+    private final ScanlineLog[] logs = {new ScanlineLog(), new ScanlineLog()};
+
+    /**
+     * The band renderer of each thread that rasterizes scanlines.
+     */
+    private final ThreadLocal<BandRenderer> renderers;
+
+    /**
+     * The worker thread.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "Video Renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The index of the framebuffer containing the most recently completed frame.
+     */
+    private volatile int front;
+
+    /**
+     * The index of the log that is currently being recorded into.
+     */
+    private int recording;
+
+    /**
+     * The frame that is currently being rendered, or null if the worker is idle.
+     */
+    private Future<?> pending;
+
+    /**
+     * Creates a new DeferredRenderer instance that rasterizes frames serially at their native resolution.
+     */
+    public DeferredRenderer() {
+        this(1, 1);
+    }
+
+    /**
+     * Creates a new DeferredRenderer instance.
+     *
+     * @param scale       The factor to upscale frames by. Must be between 1 and {@link #MAX_SCALE}.
+     * @param parallelism The number of threads to rasterize each frame with. Frames are rasterized serially on the
+     *                    worker thread when this is 1.
+     */
+    public DeferredRenderer(int scale, int parallelism) {
+        if (scale < 1 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale must be between 1 and " + MAX_SCALE + ": " + scale);
+        }
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        final var width = Video.DISPLAY_WIDTH * scale;
+        final var height = Video.DISPLAY_HEIGHT * scale;
+
+        this.scale = scale;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.framebuffers = new Framebuffer[]{new Framebuffer(width, height), new Framebuffer(width, height)};
+        this.renderers = ThreadLocal.withInitial(() -> new BandRenderer(scale));
+        this.front = 0;
+        this.recording = 0;
+        this.pending = null;
+    }
+
+    /**
+     * Gets the log that the current frame should be recorded into.
+     *
+     * @return The scanline log.
+     */
+    public ScanlineLog getRecordingLog() {
+        return logs[recording];
+    }
+
+    /**
+     * Submits the recorded frame to the worker thread. This waits for the previously submitted frame to finish
+     * rendering before returning.
+     */
+    public void submit() {
+        awaitPending();
+
+        final var log = logs[recording];
+        final var back = 1 - front;
+
+        this.recording = 1 - recording;
+        logs[recording].clear();
+
+        this.pending = executor.submit(() -> {
+            render(log, framebuffers[back]);
+            this.front = back;
+        });
+    }
+
+    /**
+     * Rasterizes a recorded frame into a framebuffer.
+     *
+     * @param log         The log to rasterize.
+     * @param framebuffer The framebuffer to render into.
+     */
+    protected void render(ScanlineLog log, Framebuffer framebuffer) {
+        if (pool != null) {
+            pool.invoke(new RenderBandTask(log, framebuffer, 0, Video.DISPLAY_HEIGHT));
+        } else {
+            renderers.get().render(log, framebuffer, 0, Video.DISPLAY_HEIGHT);
+        }
+    }
+
+    /**
+     * Waits for the frame that is currently being rendered to finish.
+     */
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("Error occurred while rendering frame", e.getCause());
+        }
+        this.pending = null;
+    }
+
+    /**
+     * Gets the framebuffer containing the most recently completed frame.
+     *
+     * @return The framebuffer.
+     */
+    public Framebuffer getFramebuffer() {
+        return framebuffers[front];
+    }
+
+    /**
+     * Gets the factor that frames are upscaled by.
+     *
+     * @return The scale factor.
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    @Override
+    public void close() {
+        awaitPending();
+        executor.shutdown();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Rasterizes and scales a contiguous band of scanlines. Each instance holds its own scratch buffers, so a band
+     * renderer must only be used by one thread at a time.
+     */
+    private static class BandRenderer {
+
+        /**
+         * The factor that scanlines are upscaled by.
+         */
+        private final int scale;
+
+        /**
+         * The renderer used to rasterize each scanline.
+         */
+        private final ScanlineRenderer renderer = new ScanlineRenderer();
+
+        /**
+         * The pixel colors of the scanline being rendered at its native resolution.
+         */
+        private final int[] scanline = new int[Video.DISPLAY_WIDTH];
+
+        /**
+         * The pixel colors of the scanline being rendered after it has been scaled horizontally.
+         */
+        private final int[] scaledScanline;
+
+        /**
+         * Creates a new BandRenderer instance.
+         *
+         * @param scale The factor that scanlines are upscaled by.
+         */
+        BandRenderer(int scale) {
+            this.scale = scale;
+            this.scaledScanline = scale > 1 ? new int[Video.DISPLAY_WIDTH * scale] : scanline;
+        }
+
+        /**
+         * Rasterizes a band of scanlines into a framebuffer.
+         *
+         * @param log         The log to rasterize.
+         * @param framebuffer The framebuffer to render into.
+         * @param start       The first scanline of the band.
+         * @param end         The scanline after the last scanline of the band.
+         */
+        void render(ScanlineLog log, Framebuffer framebuffer, int start, int end) {
+            for (var ly = start; ly < end; ++ly) {
+                if (!renderer.render(log, ly, scanline)) {
+                    continue;
+                }
+
+                // Each pixel is repeated horizontally, then the scaled row is repeated vertically.
+                if (scale > 1) {
+                    for (var x = 0; x < Video.DISPLAY_WIDTH; ++x) {
+                        Arrays.fill(scaledScanline, x * scale, (x + 1) * scale, scanline[x]);
+                    }
+                }
+
+                for (var row = ly * scale; row < (ly + 1) * scale; ++row) {
+                    framebuffer.setRow(row, scaledScanline);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A task that rasterizes a band of scanlines, splitting it in half until the bands are small enough to render
+     * directly.
+     */
+    private class RenderBandTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 4417063290518245117L;
+
+        /**
+         * The log to rasterize.
+         */
+        private final ScanlineLog log;
+
+        /**
+         * The framebuffer to render into.
+         */
+        private final Framebuffer framebuffer;
+
+        /**
+         * The first scanline of the band.
+         */
+        private final int start;
+
+        /**
+         * The scanline after the last scanline of the band.
+         */
+        private final int end;
+
+        /**
+         * Creates a new RenderBandTask instance.
+         *
+         * @param log         The log to rasterize.
+         * @param framebuffer The framebuffer to render into.
+         * @param start       The first scanline of the band.
+         * @param end         The scanline after the last scanline of the band.
+         */
+        RenderBandTask(ScanlineLog log, Framebuffer framebuffer, int start, int end) {
+            this.log = log;
+            this.framebuffer = framebuffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MIN_BAND_HEIGHT) {
+                renderers.get().render(log, framebuffer, start, end);
+                return;
+            }
+
+            final var middle = (start + end) >>> 1;
+            invokeAll(new RenderBandTask(log, framebuffer, start, middle),
+                    new RenderBandTask(log, framebuffer, middle, end));
+        }
+
+    }
+
+}
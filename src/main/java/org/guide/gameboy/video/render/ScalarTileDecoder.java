@@ -0,0 +1,27 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.util.BitUtils;
+
+/**
+ * Decodes tile data one pixel at a time. This is used when the Vector API is unavailable.
+ *
+ * @author Brendan Jones
+ */
+class ScalarTileDecoder implements TileDecoder {
+
+    @Override
+    public void decodeRow(int low, int high, int[] dest) {
+        for (var column = 0; column < TILE_WIDTH; ++column) {
+            final var bit = 7 - column;
+            dest[column] = (BitUtils.getBit(high, bit) << 1) | BitUtils.getBit(low, bit);
+        }
+    }
+
+    @Override
+    public void mapColors(int[] colorIndices, int palette, int[] colors, int[] dest, int length) {
+        for (var i = 0; i < length; ++i) {
+            dest[i] = colors[(palette >> (colorIndices[i] << 1)) & 0x3];
+        }
+    }
+
+}
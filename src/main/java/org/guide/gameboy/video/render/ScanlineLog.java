@@ -0,0 +1,204 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
+import org.guide.gameboy.video.PaletteColor;
+import org.guide.gameboy.video.Video;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the state of the LCD registers at the start of each visible scanline of a frame, along with snapshots of
+ * video memory whenever it changes. This is enough information to rasterize the frame independently of the emulated
+ * hardware.
+ *
+ * @author Brendan Jones
+ */
+public class ScanlineLog {
+
+    /**
+     * The value of the LCDC register for each scanline.
+     */
+    final int[] lcdc = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the SCX register for each scanline.
+     */
+    final int[] scx = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the SCY register for each scanline.
+     */
+    final int[] scy = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The x coordinate of the window for each scanline. This is the value of the WX register minus 7.
+     */
+    final int[] wx = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the WY register for each scanline.
+     */
+    final int[] wy = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the BGP register for each scanline.
+     */
+    final int[] bgp = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the OBP0 register for each scanline.
+     */
+    final int[] obp0 = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The value of the OBP1 register for each scanline.
+     */
+    final int[] obp1 = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The index of the video memory snapshot that was active for each scanline.
+     */
+    final int[] snapshotIndex = new int[Video.DISPLAY_HEIGHT];
+
+    /**
+     * Whether each scanline was recorded during this frame.
+     */
+    final boolean[] isRecorded = new boolean[Video.DISPLAY_HEIGHT];
+
+    /**
+     * The pool of video memory snapshots. Snapshots are reused between frames to avoid allocations.
+     */
+    private final List<VideoMemorySnapshot> snapshots = new ArrayList<>();
+
+    /**
+     * The number of snapshots captured during this frame.
+     */
+    private int numSnapshots;
+
+    /**
+     * The pool of pages that the snapshots copy VRAM into. Pages are reused between frames to avoid allocations.
+     */
+    private final List<byte[]> pages = new ArrayList<>();
+
+    /**
+     * The number of pages used during this frame.
+     */
+    private int numPages;
+
+    /**
+     * Whether the frame was recorded in CGB mode.
+     */
+    boolean isCGB;
+
+    /**
+     * Whether the frame should be displayed as a blank screen.
+     */
+    boolean isBlank;
+
+    /**
+     * Clears the log so that a new frame can be recorded.
+     */
+    public void clear() {
+        this.numSnapshots = 0;
+        this.numPages = 0;
+        this.isBlank = false;
+
+        Arrays.fill(isRecorded, false);
+    }
+
+    /**
+     * Captures a snapshot of video memory. All scanlines recorded after this call will be rasterized using the
+     * captured snapshot. Only the VRAM pages that were written since the previous snapshot of the frame are copied.
+     *
+     * @param vram               The VRAM banks.
+     * @param dirtyPages         The pages of each VRAM bank that have been written since the previous snapshot was
+     *                           captured, with one bit per page.
+     * @param memory             The memory component.
+     * @param backgroundPalettes The CGB background palettes.
+     * @param spritePalettes     The CGB sprite palettes.
+     * @param isCGB              Whether the hardware is running in CGB mode.
+     */
+    public void captureSnapshot(MemoryBank vram, long[] dirtyPages, Memory memory, PaletteColor[][] backgroundPalettes,
+                                PaletteColor[][] spritePalettes, boolean isCGB) {
+        if (numSnapshots == snapshots.size()) {
+            snapshots.add(new VideoMemorySnapshot());
+        }
+
+        final var previous = numSnapshots > 0 ? snapshots.get(numSnapshots - 1) : null;
+        snapshots.get(numSnapshots++).capture(this, previous, vram, dirtyPages, memory, backgroundPalettes,
+                spritePalettes, isCGB);
+        this.isCGB = isCGB;
+    }
+
+    /**
+     * Gets an unused page for a snapshot to copy VRAM into.
+     *
+     * @return The page.
+     */
+    byte[] allocatePage() {
+        if (numPages == pages.size()) {
+            pages.add(new byte[Memory.PAGE_SIZE]);
+        }
+        return pages.get(numPages++);
+    }
+
+    /**
+     * Records the register state for a single scanline.
+     *
+     * @param ly   The scanline.
+     * @param lcdc The value of the LCDC register.
+     * @param scx  The value of the SCX register.
+     * @param scy  The value of the SCY register.
+     * @param wx   The x coordinate of the window.
+     * @param wy   The value of the WY register.
+     * @param bgp  The value of the BGP register.
+     * @param obp0 The value of the OBP0 register.
+     * @param obp1 The value of the OBP1 register.
+     */
+    public void record(int ly, int lcdc, int scx, int scy, int wx, int wy, int bgp, int obp0, int obp1) {
+        if (numSnapshots == 0) {
+            throw new IllegalStateException("Attempted to record a scanline before capturing video memory.");
+        }
+
+        this.lcdc[ly] = lcdc;
+        this.scx[ly] = scx;
+        this.scy[ly] = scy;
+        this.wx[ly] = wx;
+        this.wy[ly] = wy;
+        this.bgp[ly] = bgp;
+        this.obp0[ly] = obp0;
+        this.obp1[ly] = obp1;
+        this.snapshotIndex[ly] = numSnapshots - 1;
+        this.isRecorded[ly] = true;
+    }
+
+    /**
+     * Gets whether a video memory snapshot has been captured for the current frame.
+     *
+     * @return Whether a snapshot exists.
+     */
+    public boolean hasSnapshot() {
+        return numSnapshots > 0;
+    }
+
+    /**
+     * Marks the frame as blank. Blank frames are displayed as a white screen regardless of the recorded scanlines.
+     */
+    public void setBlank() {
+        this.isBlank = true;
+    }
+
+    /**
+     * Gets the video memory snapshot that was active for the specified scanline.
+     *
+     * @param ly The scanline.
+     * @return The snapshot.
+     */
+    VideoMemorySnapshot getSnapshot(int ly) {
+        return snapshots.get(snapshotIndex[ly]);
+    }
+
+}
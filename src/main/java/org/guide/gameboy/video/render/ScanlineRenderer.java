@@ -0,0 +1,310 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.gameboy.video.PaletteColor;
+import org.guide.gameboy.video.Video;
+import org.guide.util.BitUtils;
+
+import java.util.Arrays;
+
+/**
+ * Rasterizes individual scanlines from a {@link ScanlineLog}. Unlike the pixel FIFO in {@link Video}, this renderer
+ * does not emulate any timing, so every scanline can be produced independently once its register state is known.
+ * <p>
+ * Instances hold scratch buffers and are not thread-safe. Each thread rendering scanlines needs its own renderer.
+ *
+ * @author Brendan Jones
+ */
+public class ScanlineRenderer {
+
+    /**
+     * The number of sprites that can be loaded into OAM memory.
+     */
+    private static final int MAX_SPRITES = 40;
+
+    /**
+     * The number of sprites that can be rendered per scanline.
+     */
+    private static final int MAX_VISIBLE_SPRITES = 10;
+
+    /**
+     * The offset of the first tile map from the start of VRAM.
+     */
+    private static final int TILE_MAP_0 = 0x1800;
+
+    /**
+     * The offset of the second tile map from the start of VRAM.
+     */
+    private static final int TILE_MAP_1 = 0x1C00;
+
+    /**
+     * The 24-bit colors of the default DMG palette.
+     */
+    private static final int[] DMG_COLORS = new int[PaletteColor.DEFAULT_PALETTE.length];
+
+    static {
+        for (var i = 0; i < DMG_COLORS.length; ++i) {
+            DMG_COLORS[i] = PaletteColor.DEFAULT_PALETTE[i].getColor24();
+        }
+    }
+
+    /**
+     * The background color index of each pixel on the scanline.
+     */
+    private final int[] backgroundColors = new int[Video.DISPLAY_WIDTH];
+
+    /**
+     * The CGB palette of each background pixel on the scanline.
+     */
+    private final int[] backgroundPalettes = new int[Video.DISPLAY_WIDTH];
+
+    /**
+     * Whether each background pixel on the scanline has priority over sprites.
+     */
+    private final boolean[] backgroundPriorities = new boolean[Video.DISPLAY_WIDTH];
+
+    /**
+     * The IDs of the sprites that are visible on the scanline.
+     */
+    private final int[] visibleSprites = new int[MAX_VISIBLE_SPRITES];
+
+    /**
+     * The color indices of the most recently decoded row of background tile data.
+     */
+    private final int[] tilePixels = new int[TileDecoder.TILE_WIDTH];
+
+    /**
+     * The decoder used to decode tile data and map DMG palettes.
+     */
+    private final TileDecoder decoder = TileDecoder.getInstance();
+
+    /**
+     * Rasterizes a single scanline.
+     *
+     * @param log The log containing the state of the scanline.
+     * @param ly  The scanline to rasterize.
+     * @param out The buffer to write the 24-bit pixel colors to. Must hold at least {@link Video#DISPLAY_WIDTH}
+     *            elements.
+     * @return Whether the scanline was rasterized. Scanlines that were not recorded are left unchanged.
+     */
+    public boolean render(ScanlineLog log, int ly, int[] out) {
+        if (log.isBlank) {
+            Arrays.fill(out, 0, Video.DISPLAY_WIDTH, 0xFFFFFF);
+            return true;
+        }
+
+        if (!log.isRecorded[ly]) {
+            return false;
+        }
+
+        final var snapshot = log.getSnapshot(ly);
+        final var lcdc = log.lcdc[ly];
+
+        renderBackground(log, snapshot, ly);
+
+        // Resolve the colors of the background and window pixels.
+        if (log.isCGB) {
+            for (var x = 0; x < Video.DISPLAY_WIDTH; ++x) {
+                out[x] = snapshot.backgroundPalettes[(backgroundPalettes[x] * 4) + backgroundColors[x]];
+            }
+        } else {
+            decoder.mapColors(backgroundColors, log.bgp[ly], DMG_COLORS, out, Video.DISPLAY_WIDTH);
+        }
+
+        if (BitUtils.isSet(lcdc, 1)) {
+            renderSprites(log, snapshot, ly, out);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the background and window pixels for a scanline into the scratch buffers.
+     *
+     * @param log      The scanline log.
+     * @param snapshot The video memory snapshot for the scanline.
+     * @param ly       The scanline.
+     */
+    private void renderBackground(ScanlineLog log, VideoMemorySnapshot snapshot, int ly) {
+        final var lcdc = log.lcdc[ly];
+        final var wx = log.wx[ly];
+        final var wy = log.wy[ly];
+        final var isWindowEnabled = BitUtils.isSet(lcdc, 5) && ly >= wy;
+
+        // Consecutive pixels usually come from the same row of tile data, so each row is only decoded once.
+        var decodedBank = -1;
+        var decodedOffset = -1;
+
+        for (var x = 0; x < Video.DISPLAY_WIDTH; ++x) {
+            // Determine the pixel coordinate to fetch from the 256x256 tile map.
+            final var isWindow = isWindowEnabled && x >= wx;
+
+            int mapX;
+            int mapY;
+            int mapBase;
+            if (isWindow) {
+                mapX = (x - wx) & 0xFF;
+                mapY = (ly - wy) & 0xFF;
+                mapBase = BitUtils.isSet(lcdc, 6) ? TILE_MAP_1 : TILE_MAP_0;
+            } else {
+                mapX = (log.scx[ly] + x) & 0xFF;
+                mapY = (log.scy[ly] + ly) & 0xFF;
+                mapBase = BitUtils.isSet(lcdc, 3) ? TILE_MAP_1 : TILE_MAP_0;
+            }
+
+            final var mapIndex = mapBase + ((mapY / 8) * 32) + (mapX / 8);
+
+            var tileRow = mapY % 8;
+            var tileColumn = mapX % 8;
+            var palette = 0;
+            var bank = 0;
+            var hasPriority = false;
+            if (log.isCGB) {
+                final var flags = snapshot.getVideoMemory(1, mapIndex);
+
+                palette = flags & 0x7;
+                bank = BitUtils.getBit(flags, 3);
+                hasPriority = BitUtils.isSet(flags, 7);
+
+                if (BitUtils.isSet(flags, 5)) {
+                    tileColumn = 7 - tileColumn;
+                }
+                if (BitUtils.isSet(flags, 6)) {
+                    tileRow = 7 - tileRow;
+                }
+            }
+
+            // Calculate the offset of the tile data.
+            int dataOffset;
+            if (BitUtils.isSet(lcdc, 4)) {
+                dataOffset = ((snapshot.getVideoMemory(0, mapIndex) & 0xFF) * 16) + (tileRow * 2);
+            } else {
+                dataOffset = 0x1000 + (snapshot.getVideoMemory(0, mapIndex) * 16) + (tileRow * 2);
+            }
+
+            if (bank != decodedBank || dataOffset != decodedOffset) {
+                final var low = snapshot.getVideoMemory(bank, dataOffset) & 0xFF;
+                final var high = snapshot.getVideoMemory(bank, dataOffset + 1) & 0xFF;
+                decoder.decodeRow(low, high, tilePixels);
+
+                decodedBank = bank;
+                decodedOffset = dataOffset;
+            }
+
+            backgroundColors[x] = tilePixels[tileColumn];
+            backgroundPalettes[x] = palette;
+            backgroundPriorities[x] = hasPriority;
+        }
+    }
+
+    /**
+     * Draws the sprites that are visible on a scanline over the background pixels.
+     *
+     * @param log      The scanline log.
+     * @param snapshot The video memory snapshot for the scanline.
+     * @param ly       The scanline.
+     * @param out      The 24-bit pixel colors of the scanline.
+     */
+    private void renderSprites(ScanlineLog log, VideoMemorySnapshot snapshot, int ly, int[] out) {
+        final var oam = snapshot.oam;
+        final var spriteHeight = BitUtils.isSet(log.lcdc[ly], 2) ? 16 : 8;
+
+        // Select up to 10 sprites in OAM order, just like the OAM search period.
+        var numVisible = 0;
+        for (var sprite = 0; sprite < MAX_SPRITES && numVisible < MAX_VISIBLE_SPRITES; ++sprite) {
+            final var spriteY = oam[sprite * 4] & 0xFF;
+            final var spriteX = oam[(sprite * 4) + 1] & 0xFF;
+
+            if (spriteX != 0 && ly + 16 >= spriteY && ly + 16 < spriteY + spriteHeight) {
+                visibleSprites[numVisible++] = sprite;
+            }
+        }
+
+        for (var x = 0; x < Video.DISPLAY_WIDTH; ++x) {
+            var winner = -1;
+            var winnerX = 0;
+            var winnerColor = 0;
+            var winnerFlags = 0;
+
+            for (var i = 0; i < numVisible; ++i) {
+                final var sprite = visibleSprites[i];
+                final var spriteX = oam[(sprite * 4) + 1] & 0xFF;
+
+                var column = x - (spriteX - 8);
+                if (column < 0 || column >= 8) {
+                    continue;
+                }
+
+                final var spriteY = oam[sprite * 4] & 0xFF;
+                var tileID = oam[(sprite * 4) + 2] & 0xFF;
+                final var flags = oam[(sprite * 4) + 3] & 0xFF;
+
+                var tileRow = ly - (spriteY - 16);
+                if (BitUtils.isSet(flags, 6)) {
+                    tileRow = spriteHeight - tileRow - 1;
+                }
+
+                if (spriteHeight == 16) {
+                    if (tileRow >= 8) {
+                        tileID |= 0x1; // Lower tile
+                        tileRow -= 8;
+                    } else {
+                        tileID &= 0xFE; // Upper tile
+                    }
+                }
+
+                if (BitUtils.isSet(flags, 5)) {
+                    column = 7 - column;
+                }
+
+                final var bank = log.isCGB ? BitUtils.getBit(flags, 3) : 0;
+                final var dataOffset = (tileID * 16) + (tileRow * 2);
+
+                // Sprite pixels with color 0 are always transparent.
+                final var color = getTilePixel(snapshot.getVideoMemory(bank, dataOffset),
+                        snapshot.getVideoMemory(bank, dataOffset + 1), column);
+                if (color == 0) {
+                    continue;
+                }
+
+                // When two sprites overlap in DMG mode, the one with the smaller X coordinate gets higher priority. In
+                // CGB mode (or when the overlapping sprites have the same X coordinate in DMG mode), the sprite with
+                // the smallest ID gets higher priority. Sprites are visited in ID order, so ties are already resolved.
+                if (winner == -1 || (!log.isCGB && spriteX < winnerX)) {
+                    winner = sprite;
+                    winnerX = spriteX;
+                    winnerColor = color;
+                    winnerFlags = flags;
+                }
+            }
+
+            if (winner == -1) {
+                continue;
+            }
+
+            // Sprites with priority will always draw over background pixels unless the background pixels also have
+            // priority. Sprites will always draw over background pixels with a color of 0.
+            final var hasPriority = !BitUtils.isSet(winnerFlags, 7);
+            if ((!backgroundPriorities[x] && hasPriority) || backgroundColors[x] == 0) {
+                if (log.isCGB) {
+                    out[x] = snapshot.spritePalettes[((winnerFlags & 0x7) * 4) + winnerColor];
+                } else {
+                    final var obp = BitUtils.isSet(winnerFlags, 4) ? log.obp1[ly] : log.obp0[ly];
+                    out[x] = DMG_COLORS[(obp >> (winnerColor << 1)) & 0x3];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the color index of a single pixel within a row of tile data.
+     *
+     * @param low    The byte containing the low bit of each pixel.
+     * @param high   The byte containing the high bit of each pixel.
+     * @param column The column of the pixel within the tile, where 0 is the leftmost pixel.
+     * @return The color index of the pixel.
+     */
+    private static int getTilePixel(int low, int high, int column) {
+        final var bit = 7 - column;
+        return (BitUtils.getBit(high, bit) << 1) | BitUtils.getBit(low, bit);
+    }
+
+}
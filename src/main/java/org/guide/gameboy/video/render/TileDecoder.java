@@ -0,0 +1,99 @@
+package org.guide.gameboy.video.render;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Decodes 2bpp tile data into color indices and maps color indices through DMG palette registers. A SIMD
+ * implementation backed by the {@code jdk.incubator.vector} module is used when it was built with the
+ * {@code vectorApi} build property, the module is available at runtime and the host supports 256-bit vectors
+ * natively. Otherwise a scalar implementation is used.
+ *
+ * @author Brendan Jones
+ */
+public interface TileDecoder {
+
+    /**
+     * The number of pixels in a single row of a tile.
+     */
+    int TILE_WIDTH = 8;
+
+    /**
+     * Decodes a single row of tile data into color indices.
+     *
+     * @param low  The byte containing the low bit of each pixel.
+     * @param high The byte containing the high bit of each pixel.
+     * @param dest The array to write the color indices to, starting with the leftmost pixel. Must hold at least
+     *             {@link #TILE_WIDTH} elements.
+     */
+    void decodeRow(int low, int high, int[] dest);
+
+    /**
+     * Maps color indices through a DMG palette register.
+     *
+     * @param colorIndices The color indices to map.
+     * @param palette      The value of the palette register (BGP, OBP0, or OBP1).
+     * @param colors       The 24-bit colors of the four shades.
+     * @param dest         The array to write the 24-bit colors to.
+     * @param length       The number of color indices to map.
+     */
+    void mapColors(int[] colorIndices, int palette, int[] colors, int[] dest, int length);
+
+    /**
+     * Gets the tile decoder best suited to the current runtime.
+     *
+     * @return The tile decoder.
+     */
+    static TileDecoder getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Lazily selects the tile decoder implementation the first time it is requested.
+     */
+    final class Holder {
+
+        private static final Logger LOGGER = LoggerFactory.getLogger(TileDecoder.class);
+
+        /**
+         * The name of the module that provides the Vector API.
+         */
+        private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+        /**
+         * The tile decoder instance.
+         */
+        private static final TileDecoder INSTANCE = create();
+
+        private Holder() {
+        }
+
+        /**
+         * Creates the tile decoder. The vector implementation is loaded reflectively so that its dependencies on the
+         * incubator module are never linked when the module is absent.
+         *
+         * @return The tile decoder.
+         */
+        private static TileDecoder create() {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+                try {
+                    final var type = Class.forName(TileDecoder.class.getPackageName() + ".VectorTileDecoder");
+                    return (TileDecoder) type.getDeclaredConstructor().newInstance();
+                } catch (ClassNotFoundException e) {
+                    LOGGER.info("Vector tile decoder was not built, using scalar decoder");
+                } catch (InvocationTargetException e) {
+                    LOGGER.info("Vector tile decoder is not supported, using scalar decoder: "
+                            + e.getCause().getMessage());
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    LOGGER.warn("Failed to initialize vector tile decoder, falling back to scalar decoder", e);
+                }
+            }
+
+            return new ScalarTileDecoder();
+        }
+
+    }
+
+}
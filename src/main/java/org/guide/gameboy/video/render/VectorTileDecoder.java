@@ -0,0 +1,76 @@
+package org.guide.gameboy.video.render;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Decodes tile data using the Vector API. A whole row of tile data is decoded at once with one pixel per lane, and
+ * palette mapping selects between the four shades with lane masks instead of table lookups.
+ * <p>
+ * This class must only be loaded when the {@code jdk.incubator.vector} module is present. Use
+ * {@link TileDecoder#getInstance()} rather than referencing it directly. It can only be created on hosts that support
+ * 256-bit vectors natively, since the Vector API emulates wider vectors in software, which is far slower than decoding
+ * one pixel at a time.
+ *
+ * @author Brendan Jones
+ */
+class VectorTileDecoder implements TileDecoder {
+
+    /**
+     * The vector species holding exactly one row of tile pixels.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+
+    /**
+     * The bit of each tile data byte that holds each lane's pixel. The leftmost pixel is stored in bit 7.
+     */
+    private static final IntVector PIXEL_BITS = IntVector.fromArray(SPECIES, new int[]{7, 6, 5, 4, 3, 2, 1, 0}, 0);
+
+    /**
+     * Creates a new VectorTileDecoder instance.
+     *
+     * @throws UnsupportedOperationException If the host does not support 256-bit vectors natively.
+     */
+    VectorTileDecoder() {
+        if (IntVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize()) {
+            throw new UnsupportedOperationException("Host does not support " + SPECIES.vectorBitSize() + "-bit vectors");
+        }
+    }
+
+    @Override
+    public void decodeRow(int low, int high, int[] dest) {
+        final var lowBits = IntVector.broadcast(SPECIES, low).lanewise(VectorOperators.LSHR, PIXEL_BITS).and(1);
+        final var highBits = IntVector.broadcast(SPECIES, high).lanewise(VectorOperators.LSHR, PIXEL_BITS).and(1);
+
+        highBits.lanewise(VectorOperators.LSHL, 1).or(lowBits).intoArray(dest, 0);
+    }
+
+    @Override
+    public void mapColors(int[] colorIndices, int palette, int[] colors, int[] dest, int length) {
+        final var shades = IntVector.broadcast(SPECIES, palette);
+        final var color0 = IntVector.broadcast(SPECIES, colors[0]);
+        final var color1 = IntVector.broadcast(SPECIES, colors[1]);
+        final var color2 = IntVector.broadcast(SPECIES, colors[2]);
+        final var color3 = IntVector.broadcast(SPECIES, colors[3]);
+
+        final var bound = SPECIES.loopBound(length);
+
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            // Each color index selects a 2-bit shade from the palette register.
+            final var shift = IntVector.fromArray(SPECIES, colorIndices, i).lanewise(VectorOperators.LSHL, 1);
+            final var shade = shades.lanewise(VectorOperators.LSHR, shift).and(0x3);
+
+            color0.blend(color1, shade.eq(1))
+                    .blend(color2, shade.eq(2))
+                    .blend(color3, shade.eq(3))
+                    .intoArray(dest, i);
+        }
+
+        for (; i < length; ++i) {
+            dest[i] = colors[(palette >> (colorIndices[i] << 1)) & 0x3];
+        }
+    }
+
+}
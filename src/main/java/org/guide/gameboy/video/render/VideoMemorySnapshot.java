@@ -0,0 +1,129 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
+import org.guide.gameboy.video.PaletteColor;
+import org.guide.util.AddressUtils;
+
+/**
+ * A copy of the video memory (VRAM, OAM, and color palettes) that was visible to the LCD controller at a specific
+ * point in time. Snapshots allow a frame to be rasterized after the emulated hardware has moved on.
+ * <p>
+ * VRAM is held in pages of {@link Memory#PAGE_SIZE} bytes. Games often write a few bytes of VRAM on every scanline, so
+ * each snapshot after the first in a frame only copies the pages that were written since the previous snapshot, and
+ * shares the rest of its pages with it.
+ *
+ * @author Brendan Jones
+ */
+public class VideoMemorySnapshot {
+
+    /**
+     * The number of VRAM banks.
+     */
+    private static final int NUM_VRAM_BANKS = 2;
+
+    /**
+     * The size of each VRAM bank.
+     */
+    private static final int VRAM_BANK_SIZE = 0x2000;
+
+    /**
+     * The number of pages in each VRAM bank.
+     */
+    private static final int PAGES_PER_BANK = VRAM_BANK_SIZE / Memory.PAGE_SIZE;
+
+    /**
+     * The size of OAM memory.
+     */
+    private static final int OAM_SIZE = AddressUtils.OAM_ADDRESS_END - AddressUtils.OAM_ADDRESS_START + 1;
+
+    /**
+     * The number of colors across all palettes of a single palette group.
+     */
+    private static final int NUM_PALETTE_COLORS = 32;
+
+    /**
+     * The pages of each VRAM bank, indexed by bank and then by page. Pages can be shared with other snapshots of the
+     * same frame, so they must never be modified once captured.
+     */
+    private final byte[][][] vram = new byte[NUM_VRAM_BANKS][PAGES_PER_BANK][];
+
+    /**
+     * The contents of OAM memory.
+     */
+    final byte[] oam = new byte[OAM_SIZE];
+
+    /**
+     * The 24-bit colors of the CGB background palettes, indexed by {@code (palette * 4) + color}.
+     */
+    final int[] backgroundPalettes = new int[NUM_PALETTE_COLORS];
+
+    /**
+     * The 24-bit colors of the CGB sprite palettes, indexed by {@code (palette * 4) + color}.
+     */
+    final int[] spritePalettes = new int[NUM_PALETTE_COLORS];
+
+    /**
+     * Captures the current state of video memory.
+     *
+     * @param log                The log the snapshot belongs to, which provides the pages that VRAM is copied into.
+     * @param previous           The previous snapshot of the frame, or {@code null} if this is the first snapshot.
+     * @param vram               The VRAM banks.
+     * @param dirtyPages         The pages of each VRAM bank that have been written since the previous snapshot, with
+     *                           one bit per page. These are ignored for the first snapshot of a frame, which copies
+     *                           every page.
+     * @param memory             The memory component.
+     * @param backgroundPalettes The CGB background palettes.
+     * @param spritePalettes     The CGB sprite palettes.
+     * @param isCGB              Whether the hardware is running in CGB mode. Bank 1 and the color palettes are only
+     *                           captured in CGB mode.
+     */
+    void capture(ScanlineLog log, VideoMemorySnapshot previous, MemoryBank vram, long[] dirtyPages, Memory memory,
+                 PaletteColor[][] backgroundPalettes, PaletteColor[][] spritePalettes, boolean isCGB) {
+        final var numBanks = isCGB ? NUM_VRAM_BANKS : 1;
+        for (var bank = 0; bank < numBanks; ++bank) {
+            final var pages = this.vram[bank];
+            for (var page = 0; page < PAGES_PER_BANK; ++page) {
+                if (previous == null || (dirtyPages[bank] & (1L << page)) != 0) {
+                    pages[page] = log.allocatePage();
+                    vram.copyBankData(bank, page * Memory.PAGE_SIZE, pages[page], Memory.PAGE_SIZE);
+                } else {
+                    pages[page] = previous.vram[bank][page];
+                }
+            }
+        }
+
+        memory.getBytes(AddressUtils.OAM_ADDRESS_START, oam);
+
+        if (isCGB) {
+            capturePalettes(backgroundPalettes, this.backgroundPalettes);
+            capturePalettes(spritePalettes, this.spritePalettes);
+        }
+    }
+
+    /**
+     * Gets a byte of VRAM.
+     *
+     * @param bank    The VRAM bank.
+     * @param address The address within the bank.
+     * @return The signed value of the byte.
+     */
+    byte getVideoMemory(int bank, int address) {
+        return vram[bank][address / Memory.PAGE_SIZE][address % Memory.PAGE_SIZE];
+    }
+
+    /**
+     * Copies a group of color palettes into a flat array of 24-bit colors.
+     *
+     * @param palettes The palettes to copy.
+     * @param dest     The array to copy the colors into.
+     */
+    private static void capturePalettes(PaletteColor[][] palettes, int[] dest) {
+        for (var palette = 0; palette < palettes.length; ++palette) {
+            for (var color = 0; color < palettes[palette].length; ++color) {
+                dest[(palette * 4) + color] = palettes[palette][color].getColor24();
+            }
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
@@ -11,17 +12,24 @@ import org.controlsfx.control.StatusBar;
 import org.guide.emulator.Emulator;
 import org.guide.emulator.event.CartridgeLoadedEvent;
 import org.guide.emulator.event.CartridgeUnloadedEvent;
+import org.guide.emulator.library.RomLibraryEntry;
 import org.guide.gameboy.cartridge.CartridgeException;
 import org.guide.gui.controllers.about.AboutController;
 import org.guide.gui.controllers.settings.SettingsController;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The controller implementation for the "Home" screen.
@@ -55,6 +63,36 @@ public class HomeSceneController extends AbstractController {
      */
     private final FileChooser fileChooser = new FileChooser();
 
+    /**
+     * The directory chooser used for adding directories to the ROM library.
+     */
+    private final DirectoryChooser directoryChooser = new DirectoryChooser();
+
+    /**
+     * The executor that loads and refreshes the ROM library in the background, one request at a time.
+     */
+    private final ExecutorService romLibraryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "ROM Library");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The order that ROMs are listed in within the "ROM library" menu. Entries with the same name are ordered by their
+     * location, so that the order is the same every time the library is listed.
+     */
+    private static final Comparator<RomLibraryEntry> ROM_LIBRARY_ORDER = Comparator
+            .comparing(HomeSceneController::getRomLibraryEntryName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(RomLibraryEntry::path)
+            .thenComparing(RomLibraryEntry::member, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * The ROMs shown in the "ROM library" menu, grouped by the first character of their names. This is only accessed
+     * by the ROM library executor, which compares it with the library after each load and refresh so that the menu is
+     * only rebuilt when the library changed.
+     */
+    private Map<String, List<RomLibraryEntry>> shownRomLibraryGroups = Map.of();
+
     @FXML
     private CheckMenuItem chkPauseResume;
 
@@ -64,6 +102,9 @@ public class HomeSceneController extends AbstractController {
     @FXML
     private Menu mnuRecentROMs;
 
+    @FXML
+    private Menu mnuRomLibrary;
+
     @FXML
     private Menu mnuQuickSlots;
 
@@ -92,10 +133,13 @@ public class HomeSceneController extends AbstractController {
         stage.setOnCloseRequest(this::onCloseRequested);
 
         fileChooser.setInitialDirectory(new File("."));
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("ROMs", "*.gb", "*.gbc"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("ROMs", "*.gb", "*.gbc", "*.zip", "*.gz"));
         fileChooser.setTitle("Select ROM");
+        directoryChooser.setTitle("Select ROM Directory");
 
         updateRecentROMsMenu();
+        updateRomLibraryMenu(Map.of());
+        refreshRomLibrary(true);
         onQuickSlotChanged();
 
         stage.setTitle("GameBoy Emulator");
@@ -178,6 +222,113 @@ public class HomeSceneController extends AbstractController {
         }
     }
 
+    /**
+     * Updates the "ROM library" menu. Each group of ROMs gets its own submenu, whose items are only created when it is
+     * first opened, so that large libraries do not create thousands of menu items up front.
+     *
+     * @param groups The ROMs to list, grouped by the first character of their names.
+     */
+    private void updateRomLibraryMenu(Map<String, List<RomLibraryEntry>> groups) {
+        final var items = mnuRomLibrary.getItems();
+        items.clear();
+
+        // Populate the "ROM Library" menu.
+        for (final var group : groups.entrySet()) {
+            final var entries = group.getValue();
+            final var menu = new Menu(group.getKey() + " (" + entries.size() + ")");
+
+            // A submenu needs an item to open, so hold its place until the ROMs are listed.
+            menu.getItems().add(new MenuItem());
+            menu.setOnShowing(e -> {
+                final var romItems = new ArrayList<MenuItem>(entries.size());
+                for (final var entry : entries) {
+                    final var item = new MenuItem(getRomLibraryEntryName(entry));
+                    item.setOnAction(event -> requestLoadROM(entry.path(), entry.member()));
+                    romItems.add(item);
+                }
+                menu.getItems().setAll(romItems);
+                menu.setOnShowing(null);
+            });
+            items.add(menu);
+        }
+
+        if (!groups.isEmpty()) {
+            items.add(new SeparatorMenuItem());
+        }
+
+        final var addItem = new MenuItem("Add Directory...");
+        addItem.setOnAction(e -> onAddRomDirectoryClicked());
+        items.add(addItem);
+
+        final var refreshItem = new MenuItem("Refresh Library");
+        refreshItem.setOnAction(e -> refreshRomLibrary(false));
+        items.add(refreshItem);
+    }
+
+    /**
+     * Sorts the ROMs in the library and groups them by the first character of their names, and updates the "ROM
+     * library" menu if they differ from the ROMs it shows. This must only be called by the ROM library executor.
+     *
+     * @param entries The entries of the ROMs in the library.
+     */
+    private void showRomLibrary(List<RomLibraryEntry> entries) {
+        entries.sort(ROM_LIBRARY_ORDER);
+
+        final var groups = new TreeMap<String, List<RomLibraryEntry>>();
+        for (final var entry : entries) {
+            final var first = getRomLibraryEntryName(entry).charAt(0);
+            final var group = Character.isLetter(first) ? String.valueOf(Character.toUpperCase(first)) : "#";
+            groups.computeIfAbsent(group, key -> new ArrayList<>()).add(entry);
+        }
+
+        if (!groups.equals(shownRomLibraryGroups)) {
+            this.shownRomLibraryGroups = groups;
+            Platform.runLater(() -> updateRomLibraryMenu(groups));
+        }
+    }
+
+    /**
+     * Gets the name a ROM is listed under in the "ROM library" menu. This is the title from its cartridge header, or
+     * the name of its file if the header has no title.
+     *
+     * @param entry The library entry of the ROM.
+     * @return The name of the ROM.
+     */
+    private static String getRomLibraryEntryName(RomLibraryEntry entry) {
+        if (!entry.title().isBlank()) {
+            return entry.title();
+        }
+        return Paths.get(entry.member() != null ? entry.member() : entry.path().toString()).getFileName().toString();
+    }
+
+    /**
+     * Brings the ROM library up to date on a background thread, as walking the library directories can take a long
+     * time, and then updates the "ROM library" menu if the library changed.
+     *
+     * @param load Whether the library should be loaded from its index file before it is refreshed.
+     */
+    private void refreshRomLibrary(boolean load) {
+        final var library = emulator.getRomLibrary();
+        romLibraryExecutor.execute(() -> {
+            // The index is shown as soon as it is loaded. A missing or unreadable index is rebuilt by the refresh.
+            if (load) {
+                try {
+                    library.load();
+                    showRomLibrary(library.getEntries());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            try {
+                library.refresh();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            showRomLibrary(library.getEntries());
+        });
+    }
+
     /**
      * Updates the cartridge header menu.
      */
@@ -291,6 +442,17 @@ public class HomeSceneController extends AbstractController {
         stbStatus.setText("Running Cartridge: " + path.getFileName().toString());
     }
 
+    /**
+     * Attempts to load a ROM from the specified path into the emulator.
+     *
+     * @param path   The ROM path.
+     * @param member The name of the ROM in its zip archive, or {@code null} if the ROM is not in a zip archive.
+     */
+    public void requestLoadROM(Path path, String member) {
+        emulator.setCartridge(path, member);
+        stbStatus.setText("Running Cartridge: " + path.getFileName().toString());
+    }
+
     @FXML
     void onLoadROMClicked(ActionEvent event) {
         // Pause the emulator while the user selects a ROM.
@@ -307,6 +469,24 @@ public class HomeSceneController extends AbstractController {
         emulator.setPaused(wasPaused);
     }
 
+    /**
+     * Callback to run when the user chooses to add a directory to the ROM library.
+     */
+    private void onAddRomDirectoryClicked() {
+        // Pause the emulator while the user selects a directory.
+        boolean wasPaused = emulator.isPaused();
+        emulator.setPaused(true);
+
+        final var directory = directoryChooser.showDialog(stage);
+        if (directory != null) {
+            emulator.getRomLibrary().addDirectory(directory.toPath());
+            refreshRomLibrary(false);
+        }
+
+        // Restore the previous pause state.
+        emulator.setPaused(wasPaused);
+    }
+
     @FXML
     void onQuickSaveClicked(ActionEvent event) {
         emulator.requestQuickSave();
@@ -46,6 +46,16 @@ public class EventDispatcher<T> {
         }
     }
 
+    /**
+     * Gets whether any callbacks are registered to this dispatcher. Frequently broadcast events can check this before
+     * constructing their event data.
+     *
+     * @return Whether any callbacks are registered.
+     */
+    public boolean hasCallbacks() {
+        return !handles.isEmpty();
+    }
+
     /**
      * Registers a new callback to this dispatcher.
      *
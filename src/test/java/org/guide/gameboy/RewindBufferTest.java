@@ -0,0 +1,182 @@
+package org.guide.gameboy;
+
+import org.guide.gameboy.input.GameboyButton;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the rewind buffer restores exactly the states it captured, including once the arena has wrapped around
+ * and evicted its oldest snapshots.
+ *
+ * @author Brendan Jones
+ */
+class RewindBufferTest {
+
+    /**
+     * The number of snapshots between keyframes. Snapshot {@code i} is a keyframe when {@code i} is a multiple of
+     * {@code KEYFRAME_INTERVAL + 1}, as long as nothing has been rewound.
+     */
+    private static final int KEYFRAME_INTERVAL = 4;
+
+    /**
+     * A budget that is large enough to hold every snapshot captured by these tests.
+     */
+    private static final int LARGE_BUDGET = 16 * 1024 * 1024;
+
+    /**
+     * The number of states captured into an arena that is too small to hold them all.
+     */
+    private static final int NUM_WRAPPING_FRAMES = 60;
+
+    @Test
+    void rewindRestoresEveryCapturedState() throws Exception {
+        final var gameboy = createGameBoy();
+        final var buffer = new RewindBuffer(gameboy, LARGE_BUDGET, 1, KEYFRAME_INTERVAL);
+
+        final var states = new ArrayList<byte[]>();
+        run(gameboy, buffer, states, 23, 0);
+
+        assertRewindsTo(gameboy, buffer, states, states.size());
+        assertTrue(buffer.isEmpty(), "Buffer is empty after rewinding every state");
+        assertEquals(0, buffer.getUsedBytes(), "Used bytes of an empty buffer");
+        assertFalse(buffer.rewind(), "Rewinding an empty buffer");
+    }
+
+    @Test
+    void wrappingEvictsKeyframesWithTheirDeltas() throws Exception {
+        final var gameboy = createGameBoy();
+        final var states = new ArrayList<byte[]>();
+        run(gameboy, new RewindBuffer(gameboy, LARGE_BUDGET, 1, KEYFRAME_INTERVAL), states, NUM_WRAPPING_FRAMES, 0);
+
+        // Size the arena to hold the snapshots of a few keyframe intervals.
+        final var probe = new RewindBuffer(gameboy, LARGE_BUDGET, 1, KEYFRAME_INTERVAL);
+        for (var i = 0; i <= KEYFRAME_INTERVAL; ++i) {
+            restore(gameboy, states.get(i));
+            probe.capture();
+        }
+        final var budget = probe.getUsedBytes() * 7 / 2;
+
+        // Entries are only evicted when the space is needed, so check every point at which the arena can be rewound.
+        var evicted = false;
+        for (var numCaptured = 1; numCaptured <= states.size(); ++numCaptured) {
+            final var buffer = new RewindBuffer(gameboy, budget, 1, KEYFRAME_INTERVAL);
+            for (var i = 0; i < numCaptured; ++i) {
+                restore(gameboy, states.get(i));
+                assertTrue(buffer.capture(), "Capturing state " + i);
+                assertTrue(buffer.getUsedBytes() <= budget, "Used bytes within the budget at state " + i);
+            }
+
+            var oldest = numCaptured;
+            while (!buffer.isEmpty()) {
+                assertTrue(buffer.rewind(), "Rewinding to state " + (oldest - 1));
+                --oldest;
+                assertArrayEquals(states.get(oldest), serialize(gameboy), "State " + oldest + " of " + numCaptured);
+            }
+
+            // Whole keyframes are evicted with the deltas that depend on them, so the oldest snapshot left is one.
+            assertEquals(0, oldest % (KEYFRAME_INTERVAL + 1), "Oldest state left of " + numCaptured);
+            assertTrue(numCaptured - oldest >= Math.min(numCaptured, KEYFRAME_INTERVAL + 1),
+                    "A keyframe interval is left of " + numCaptured);
+            evicted |= oldest > 0;
+        }
+        assertTrue(evicted, "Snapshots were evicted");
+    }
+
+    @Test
+    void captureAfterRewindContinuesFromTheRestoredState() throws Exception {
+        // Rewinding to a keyframe and rewinding to a delta leave the buffer in different states.
+        for (final var rewinds : new int[]{5, 3}) {
+            final var gameboy = createGameBoy();
+            final var buffer = new RewindBuffer(gameboy, LARGE_BUDGET, 1, KEYFRAME_INTERVAL);
+
+            final var states = new ArrayList<byte[]>();
+            run(gameboy, buffer, states, 20, 0);
+            assertRewindsTo(gameboy, buffer, states, rewinds);
+
+            // Continue with different input, so that the new snapshots differ from the discarded ones.
+            run(gameboy, buffer, states, 8, 1000);
+            assertRewindsTo(gameboy, buffer, states, states.size());
+            assertTrue(buffer.isEmpty(), "Buffer is empty after rewinding every state");
+        }
+    }
+
+    /**
+     * Runs frames with changing input, capturing a snapshot after each one.
+     *
+     * @param gameboy    The Game Boy.
+     * @param buffer     The rewind buffer.
+     * @param states     The list that the state after each frame is added to.
+     * @param numFrames  The number of frames to run.
+     * @param firstFrame The number used to pick the input of the first frame.
+     */
+    private static void run(GameBoy gameboy, RewindBuffer buffer, List<byte[]> states, int numFrames, int firstFrame) {
+        for (var frame = firstFrame; frame < firstFrame + numFrames; ++frame) {
+            gameboy.getInput().setButton(GameboyButton.RIGHT, (frame / 3) % 2 == 0);
+            gameboy.getInput().setButton(GameboyButton.UP, frame % 5 == 0);
+            gameboy.runFrame();
+
+            assertTrue(buffer.onFrame(), "Capturing frame " + frame);
+            states.add(serialize(gameboy));
+        }
+    }
+
+    /**
+     * Rewinds a number of snapshots, checking that each restores the most recent state that has not been rewound.
+     * The rewound states are removed from the list.
+     *
+     * @param gameboy The Game Boy.
+     * @param buffer  The rewind buffer.
+     * @param states  The captured states, oldest first.
+     * @param count   The number of snapshots to rewind.
+     */
+    private static void assertRewindsTo(GameBoy gameboy, RewindBuffer buffer, List<byte[]> states, int count) {
+        for (var i = 0; i < count; ++i) {
+            assertTrue(buffer.rewind(), "Rewinding to state " + (states.size() - 1));
+            assertArrayEquals(states.remove(states.size() - 1), serialize(gameboy),
+                    "State " + states.size() + " after rewinding");
+        }
+    }
+
+    /**
+     * Creates a Game Boy running a program whose state changes with its input every frame.
+     *
+     * @return The Game Boy.
+     * @throws Exception If the ROM could not be loaded.
+     */
+    private static GameBoy createGameBoy() throws Exception {
+        final var gameboy = new GameBoy();
+        gameboy.loadCartridge(TestRoms.create(false, TestRoms.JOYPAD_SOUND));
+        return gameboy;
+    }
+
+    /**
+     * Restores a state that was serialized with {@link #serialize(GameBoy)}.
+     *
+     * @param gameboy The Game Boy.
+     * @param state   The state.
+     */
+    private static void restore(GameBoy gameboy, byte[] state) {
+        gameboy.deserialize(ByteBuffer.wrap(state));
+    }
+
+    /**
+     * Serializes the state of a Game Boy.
+     *
+     * @param gameboy The Game Boy.
+     * @return The state.
+     */
+    private static byte[] serialize(GameBoy gameboy) {
+        final var state = ByteBuffer.allocate(gameboy.serializedSize());
+        gameboy.serialize(state);
+        return state.array();
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.guide.gameboy;
+
+/**
+ * Builds small ROM images for tests, so that tests do not depend on commercial ROMs.
+ *
+ * @author Brendan Jones
+ */
+public final class TestRoms {
+
+    /**
+     * The address that the program of each test ROM is placed at, just past the cartridge header.
+     */
+    private static final int PROGRAM_ADDRESS = 0x150;
+
+    /**
+     * A program that turns on the LCD and the background, and then loops forever.
+     */
+    public static final int[] LCD_LOOP = {
+            0x3E, 0x91,       // LD A, $91
+            0xE0, 0x40,       // LDH (LCDC), A
+            0x18, 0xFE,       // JR -2
+    };
+
+    /**
+     * A program that plays a square wave and, once per frame, reads the directional buttons. The buttons change the
+     * pitch of the wave and the horizontal scroll of the background, and holding right restarts the wave.
+     */
+    public static final int[] JOYPAD_SOUND = {
+            0x3E, 0x80, 0xE0, 0x26, // LD A, $80; LDH (NR52), A
+            0x3E, 0x77, 0xE0, 0x24, // LD A, $77; LDH (NR50), A
+            0x3E, 0xFF, 0xE0, 0x25, // LD A, $FF; LDH (NR51), A
+            0x3E, 0x80, 0xE0, 0x11, // LD A, $80; LDH (NR11), A
+            0x3E, 0xF0, 0xE0, 0x12, // LD A, $F0; LDH (NR12), A
+            0x3E, 0x00, 0xE0, 0x13, // LD A, $00; LDH (NR13), A
+            0x3E, 0x87, 0xE0, 0x14, // LD A, $87; LDH (NR14), A
+            0x3E, 0x91, 0xE0, 0x40, // LD A, $91; LDH (LCDC), A
+            // Wait for vertical blank.
+            0xF0, 0x44, 0xFE, 0x90, 0x20, 0xFA,
+            // B = the directional buttons.
+            0x3E, 0x20, 0xE0, 0x00, 0xF0, 0x00, 0xF0, 0x00, 0xE6, 0x0F, 0x47,
+            // Increment a frame counter, and add the buttons to it to get the pitch and scroll.
+            0xF0, 0x80, 0x3C, 0xE0, 0x80, 0x80, 0xE0, 0x13, 0xE0, 0x43,
+            // Restart the wave if right is held.
+            0x78, 0xE6, 0x01, 0x20, 0x04, 0x3E, 0x87, 0xE0, 0x14,
+            // Wait for vertical blank to end, and loop.
+            0xF0, 0x44, 0xFE, 0x90, 0x28, 0xFA, 0x18, 0xD4,
+    };
+
+    private TestRoms() {
+    }
+
+    /**
+     * Creates a 32 KB ROM with no memory bank controller that runs a program.
+     *
+     * @param cgb     Whether the ROM supports Game Boy Color features.
+     * @param program The machine code of the program, which is run from the entry point.
+     * @return The ROM image.
+     */
+    public static byte[] create(boolean cgb, int[] program) {
+        final var rom = new byte[0x8000];
+
+        // The entry point jumps straight to the program.
+        rom[0x100] = 0x00;
+        rom[0x101] = (byte) 0xC3;
+        rom[0x102] = (byte) PROGRAM_ADDRESS;
+        rom[0x103] = (byte) (PROGRAM_ADDRESS >> 8);
+        rom[0x143] = (byte) (cgb ? 0x80 : 0x00);
+
+        for (var i = 0; i < program.length; ++i) {
+            rom[PROGRAM_ADDRESS + i] = (byte) program[i];
+        }
+        return rom;
+    }
+
+}
@@ -0,0 +1,292 @@
+package org.guide.gameboy.cartridge.hardware;
+
+import org.guide.gameboy.cartridge.hardware.RealTimeClock.TimeSource;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the real time clock counts time like the clock in a real cartridge. Apart from where host time is being
+ * tested, the clock counts emulated time driven by a fake cycle counter, so the results are exact.
+ *
+ * @author Brendan Jones
+ */
+class RealTimeClockTest {
+
+    /**
+     * The number of cycles the emulated system runs per second.
+     */
+    private static final long CYCLES_PER_SECOND = 4194304;
+
+    /**
+     * The number of seconds in a day.
+     */
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /**
+     * The halt bit of the flags register.
+     */
+    private static final int HALT = 0x40;
+
+    /**
+     * The day counter carry bit of the flags register.
+     */
+    private static final int CARRY = 0x80;
+
+    /**
+     * The offset of the host timestamp in the save file footer.
+     */
+    private static final int FOOTER_TIMESTAMP_OFFSET = RealTimeClock.FOOTER_SIZE - Long.BYTES;
+
+    /**
+     * The number of cycles the fake emulated system has run for.
+     */
+    private long cycles;
+
+    @Test
+    void countsWholeSeconds() {
+        final var clock = createClock();
+
+        run(CYCLES_PER_SECOND - 1);
+        assertTime(clock, 0, 0, 0, 0, 0);
+
+        run(1);
+        assertTime(clock, 0, 0, 0, 1, 0);
+
+        run((2 * SECONDS_PER_DAY + 3 * 3600 + 4 * 60 + 5) * CYCLES_PER_SECOND);
+        assertTime(clock, 2, 3, 4, 6, 0);
+    }
+
+    @Test
+    void haltKeepsProgressTowardsTheNextSecond() {
+        final var clock = createClock();
+
+        run(CYCLES_PER_SECOND * 3 / 4);
+        clock.write(0x0C, HALT);
+        run(10 * CYCLES_PER_SECOND);
+        assertTime(clock, 0, 0, 0, 0, HALT);
+
+        // Resuming carries on from three quarters of the way through the second.
+        clock.write(0x0C, 0);
+        run(CYCLES_PER_SECOND / 4 - 1);
+        assertTime(clock, 0, 0, 0, 0, 0);
+
+        run(1);
+        assertTime(clock, 0, 0, 0, 1, 0);
+    }
+
+    @Test
+    void writingSecondsResetsProgressTowardsTheNextSecond() {
+        final var clock = createClock();
+
+        run(CYCLES_PER_SECOND / 2);
+        clock.write(0x08, 30);
+        run(CYCLES_PER_SECOND - 1);
+        assertTime(clock, 0, 0, 0, 30, 0);
+
+        run(1);
+        assertTime(clock, 0, 0, 0, 31, 0);
+    }
+
+    @Test
+    void dayCounterOverflowSetsStickyCarry() {
+        final var clock = createClock();
+        setTime(clock, 0x1FF, 23, 59, 59);
+
+        run(CYCLES_PER_SECOND);
+        assertTime(clock, 0, 0, 0, 0, CARRY);
+
+        // The carry stays set as the clock keeps counting, until software clears it.
+        run(SECONDS_PER_DAY * CYCLES_PER_SECOND);
+        assertTime(clock, 1, 0, 0, 0, CARRY);
+
+        clock.write(0x0C, 0);
+        assertTime(clock, 1, 0, 0, 0, 0);
+
+        // Overflowing while the clock is counted in one go sets the carry too.
+        run((0x200 * SECONDS_PER_DAY + 1) * CYCLES_PER_SECOND);
+        assertTime(clock, 1, 0, 0, 1, CARRY);
+    }
+
+    @Test
+    void outOfRangeRegistersWrapWithoutCarry() {
+        final var clock = createClock();
+
+        // The seconds count up to the limit of their bits and wrap to 0 without incrementing the minutes. The rest of
+        // the time is then counted as usual.
+        setTime(clock, 0, 0, 0, 62);
+        run(62 * CYCLES_PER_SECOND);
+        assertTime(clock, 0, 0, 1, 0, 0);
+
+        setTime(clock, 0, 0, 63, 59);
+        run(CYCLES_PER_SECOND);
+        assertTime(clock, 0, 0, 0, 0, 0);
+
+        setTime(clock, 0, 31, 59, 59);
+        run(CYCLES_PER_SECOND);
+        assertTime(clock, 0, 0, 0, 0, 0);
+
+        // Writes are masked to the bits that are implemented.
+        setTime(clock, 0, 0xFF, 0xFF, 0xFF);
+        assertTime(clock, 0, 0x1F, 0x3F, 0x3F, 0);
+    }
+
+    @Test
+    void footerRoundTrips() {
+        final var clock = createClock();
+        setTime(clock, 0x1A5, 13, 37, 42);
+        latch(clock);
+        clock.write(0x0C, HALT | CARRY | 0x1);
+        run(5 * CYCLES_PER_SECOND);
+
+        final var footer = ByteBuffer.allocate(RealTimeClock.FOOTER_SIZE);
+        clock.serializeFooter(footer);
+        assertEquals(RealTimeClock.FOOTER_SIZE, footer.position(), "Footer bytes written");
+
+        final var restored = createClock();
+        restored.deserializeFooter(footer.flip());
+        assertEquals(RealTimeClock.FOOTER_SIZE, footer.position(), "Footer bytes read");
+
+        // The registers that were latched before the footer was written are restored as they were.
+        assertArrayEquals(readRegisters(clock), readRegisters(restored), "Latched registers");
+
+        latch(clock);
+        latch(restored);
+        assertArrayEquals(readRegisters(clock), readRegisters(restored), "Current registers");
+        assertTime(restored, 0x1A5, 13, 37, 42, HALT | CARRY);
+    }
+
+    @Test
+    void footerCountsHostTimeWhileClosed() {
+        final var clock = createClock();
+        final var footer = ByteBuffer.allocate(RealTimeClock.FOOTER_SIZE);
+        clock.serializeFooter(footer);
+
+        // Pretend that the footer was written an hour ago.
+        footer.order(ByteOrder.LITTLE_ENDIAN);
+        footer.putLong(FOOTER_TIMESTAMP_OFFSET, footer.getLong(FOOTER_TIMESTAMP_OFFSET) - 3600);
+
+        final var emulated = createClock();
+        emulated.deserializeFooter(footer.flip());
+        assertTime(emulated, 0, 0, 0, 0, 0);
+
+        final var host = new RealTimeClock(() -> cycles, TimeSource.HOST);
+        host.deserializeFooter(footer.flip());
+        latch(host);
+
+        // A second boundary may pass on the host while the footer is being read.
+        assertEquals(1, host.read(0x0A), "Hours counted while closed");
+        assertEquals(0, host.read(0x09), "Minutes counted while closed");
+        assertTrue(host.read(0x08) <= 1, "Seconds counted while closed");
+    }
+
+    @Test
+    void switchingTimeSourceKeepsProgressTowardsTheNextSecond() {
+        final var clock = createClock();
+
+        // While halted, the progress is converted between the sources exactly.
+        run(CYCLES_PER_SECOND * 3 / 4);
+        clock.write(0x0C, HALT);
+        clock.setTimeSource(TimeSource.HOST);
+        assertEquals(TimeSource.HOST, clock.getTimeSource(), "Time source");
+        clock.setTimeSource(TimeSource.EMULATED);
+        assertEquals(TimeSource.EMULATED, clock.getTimeSource(), "Time source");
+        clock.write(0x0C, 0);
+
+        run(CYCLES_PER_SECOND / 4 - 1);
+        assertTime(clock, 0, 0, 0, 0, 0);
+        run(1);
+        assertTime(clock, 0, 0, 0, 1, 0);
+
+        // While running, a little host time passes in between, so the progress can only have grown.
+        run(CYCLES_PER_SECOND / 2);
+        clock.setTimeSource(TimeSource.HOST);
+        clock.setTimeSource(TimeSource.EMULATED);
+        run(CYCLES_PER_SECOND / 2);
+        assertTime(clock, 0, 0, 0, 2, 0);
+    }
+
+    /**
+     * Creates a clock that counts emulated time.
+     *
+     * @return The clock.
+     */
+    private RealTimeClock createClock() {
+        return new RealTimeClock(() -> cycles, TimeSource.EMULATED);
+    }
+
+    /**
+     * Runs the fake emulated system.
+     *
+     * @param numCycles The number of cycles to run for.
+     */
+    private void run(long numCycles) {
+        this.cycles += numCycles;
+    }
+
+    /**
+     * Writes the time registers of a clock, leaving it running with no carry.
+     *
+     * @param clock   The clock.
+     * @param day     The day, from 0 to 511.
+     * @param hours   The value written to the hours register.
+     * @param minutes The value written to the minutes register.
+     * @param seconds The value written to the seconds register.
+     */
+    private static void setTime(RealTimeClock clock, int day, int hours, int minutes, int seconds) {
+        clock.write(0x0C, day >> 8);
+        clock.write(0x0B, day & 0xFF);
+        clock.write(0x0A, hours);
+        clock.write(0x09, minutes);
+        clock.write(0x08, seconds);
+    }
+
+    /**
+     * Latches the current time of a clock into the registers that software reads.
+     *
+     * @param clock The clock.
+     */
+    private static void latch(RealTimeClock clock) {
+        clock.latch(0x00);
+        clock.latch(0x01);
+    }
+
+    /**
+     * Reads the latched registers of a clock.
+     *
+     * @param clock The clock.
+     * @return The values of the registers, in register order.
+     */
+    private static int[] readRegisters(RealTimeClock clock) {
+        final var registers = new int[RealTimeClock.LAST_REGISTER - RealTimeClock.FIRST_REGISTER + 1];
+        for (var i = 0; i < registers.length; ++i) {
+            registers[i] = clock.read(RealTimeClock.FIRST_REGISTER + i);
+        }
+        return registers;
+    }
+
+    /**
+     * Latches the current time of a clock and checks it.
+     *
+     * @param clock   The clock.
+     * @param day     The expected day, from 0 to 511.
+     * @param hours   The expected hours.
+     * @param minutes The expected minutes.
+     * @param seconds The expected seconds.
+     * @param flags   The expected halt and carry bits of the flags register.
+     */
+    private static void assertTime(RealTimeClock clock, int day, int hours, int minutes, int seconds, int flags) {
+        latch(clock);
+        assertEquals(seconds, clock.read(0x08), "Seconds");
+        assertEquals(minutes, clock.read(0x09), "Minutes");
+        assertEquals(hours, clock.read(0x0A), "Hours");
+        assertEquals(day, clock.read(0x0B) | (clock.read(0x0C) & 0x1) << 8, "Day");
+        assertEquals(flags, clock.read(0x0C) & (HALT | CARRY), "Flags");
+    }
+
+}
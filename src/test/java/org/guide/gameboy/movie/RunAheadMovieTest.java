@@ -0,0 +1,87 @@
+package org.guide.gameboy.movie;
+
+import org.guide.gameboy.GameBoy;
+import org.guide.gameboy.TestRoms;
+import org.guide.gameboy.input.GameboyButton;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that a movie recorded while running ahead, which rolls the system back after every frame, replays to exactly
+ * the same state as it was recorded with.
+ *
+ * @author Brendan Jones
+ */
+class RunAheadMovieTest {
+
+    /**
+     * The hash the movie is recorded under. The player only checks that it matches.
+     */
+    private static final String ROM_HASH = "0123456789abcdef";
+
+    /**
+     * The number of frames recorded.
+     */
+    private static final int NUM_FRAMES = 300;
+
+    /**
+     * The number of frames run ahead of each recorded frame.
+     */
+    private static final int RUN_AHEAD_FRAMES = 2;
+
+    @Test
+    void movieRecordedWhileRunningAheadReplaysExactly() throws Exception {
+        final var rom = TestRoms.create(false, TestRoms.JOYPAD_SOUND);
+
+        final var gameboy = new GameBoy();
+        gameboy.loadCartridge(rom);
+        final var recorder = new MovieRecorder(gameboy, ROM_HASH);
+
+        var snapshot = ByteBuffer.allocate(0);
+        for (var frame = 0; frame < NUM_FRAMES; ++frame) {
+            recorder.setButton(GameboyButton.RIGHT, (frame / 7) % 2 == 0);
+            recorder.setButton(GameboyButton.UP, (frame / 11) % 3 == 0);
+            gameboy.runFrame();
+            recorder.onFrame();
+
+            // Run ahead and roll back, as the emulator does after each displayed frame.
+            final var size = gameboy.serializedSize();
+            if (snapshot.capacity() < size) {
+                snapshot = ByteBuffer.allocate(size);
+            }
+
+            final var elapsedCycles = gameboy.getElapsedCycles();
+            snapshot.clear();
+            gameboy.serialize(snapshot);
+            gameboy.getAudio().suspendOutput();
+            for (var ahead = 0; ahead < RUN_AHEAD_FRAMES; ++ahead) {
+                gameboy.runFrame();
+            }
+            snapshot.flip();
+            gameboy.restoreSnapshot(snapshot, elapsedCycles);
+            gameboy.getAudio().resumeOutput();
+        }
+
+        final var replay = new GameBoy();
+        replay.loadCartridge(rom);
+        new MoviePlayer(replay, recorder.toMovie(), ROM_HASH).play();
+
+        assertArrayEquals(serialize(gameboy), serialize(replay), "Replayed state differs from recorded state");
+    }
+
+    /**
+     * Saves the state of a system.
+     *
+     * @param gameboy The Game Boy.
+     * @return The save state.
+     */
+    private static byte[] serialize(GameBoy gameboy) {
+        final var state = ByteBuffer.allocate(gameboy.serializedSize());
+        gameboy.serialize(state);
+        return state.array();
+    }
+
+}
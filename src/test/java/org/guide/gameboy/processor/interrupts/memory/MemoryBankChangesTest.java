@@ -0,0 +1,152 @@
+package org.guide.gameboy.processor.interrupts.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the changes serialized by a memory bank restore the same state as a full snapshot, while banks are
+ * switched and written to between snapshots.
+ *
+ * @author Brendan Jones
+ */
+class MemoryBankChangesTest {
+
+    /**
+     * The seed of the random bank switches and writes, so that failures can be reproduced.
+     */
+    private static final long SEED = 0x5EED_0041L;
+
+    /**
+     * The number of sets of changes serialized after the base state.
+     */
+    private static final int NUM_ROUNDS = 50;
+
+    /**
+     * The largest number of bank switches and writes made between snapshots.
+     */
+    private static final int MAX_OPERATIONS = 40;
+
+    @Test
+    void changesRestoreUnifiedBanks() {
+        checkChanges(true, 0xA000, 4, 0x2000);
+    }
+
+    @Test
+    void changesRestoreNonUnifiedBanks() {
+        checkChanges(false, 0xC000, 8, 0x1000);
+    }
+
+    @Test
+    void dirtyPagesSpanningWordsRoundTrip() {
+        final var random = new Random(SEED);
+        final var memory = new Memory();
+
+        // Ranges starting from page 0x3F cross from the first word of the bit set into the second.
+        for (var i = 0; i < 1000; ++i) {
+            final var address = random.nextInt(0xC0) * Memory.PAGE_SIZE;
+            final var length = (1 + random.nextInt(64)) * Memory.PAGE_SIZE;
+            final var pages = random.nextLong();
+            final var mask = length == 64 * Memory.PAGE_SIZE ? -1L : (1L << (length / Memory.PAGE_SIZE)) - 1;
+
+            memory.setDirtyPages(address, length, pages);
+            assertEquals(pages & mask, memory.getDirtyPages(address, length), "Pages at " + address);
+        }
+
+        memory.setDirtyPages(0x3000, 0x2000, 0);
+        memory.setBytes(0x3FFF, new byte[2]);
+        assertEquals(0x18000L, memory.getDirtyPages(0x3000, 0x2000), "Pages written across the word boundary");
+    }
+
+    /**
+     * Makes random bank switches and writes, and checks that applying each set of changes to a copy of the base state
+     * gives the same state as a full snapshot.
+     *
+     * @param isUnified   Whether the banks are unified.
+     * @param baseAddress The base address of the banks.
+     * @param numBanks    The number of banks.
+     * @param bankSize    The size of each bank.
+     */
+    private static void checkChanges(boolean isUnified, int baseAddress, int numBanks, int bankSize) {
+        final var random = new Random(SEED);
+
+        final var memory = new Memory();
+        final var banks = new MemoryBank(memory, isUnified, true, baseAddress, numBanks, bankSize);
+        banks.reset(null);
+        modify(random, memory, banks, isUnified, baseAddress, bankSize);
+
+        final var restoredMemory = new Memory();
+        final var restored = new MemoryBank(restoredMemory, isUnified, true, baseAddress, numBanks, bankSize);
+        restored.reset(null);
+        restored.deserialize(serialize(banks));
+        banks.markBase();
+        restored.markBase();
+
+        for (var round = 0; round < NUM_ROUNDS; ++round) {
+            modify(random, memory, banks, isUnified, baseAddress, bankSize);
+
+            final var changes = ByteBuffer.allocate(banks.changesSize());
+            banks.serializeChanges(changes);
+            assertEquals(changes.capacity(), changes.position(), "Changes size in round " + round);
+
+            restored.deserializeChanges(changes.flip());
+            assertArrayEquals(serialize(banks).array(), serialize(restored).array(), "State in round " + round);
+
+            // The restored banks must track the same changes, so that they can be serialized again.
+            final var restoredChanges = ByteBuffer.allocate(restored.changesSize());
+            restored.serializeChanges(restoredChanges);
+            assertArrayEquals(changes.array(), restoredChanges.array(), "Changes in round " + round);
+
+            // Every few rounds, start again from a new base, as the rewind buffer does at each keyframe.
+            if (round % 10 == 9) {
+                banks.markBase();
+                restored.markBase();
+            }
+        }
+    }
+
+    /**
+     * Makes a random number of bank switches and writes to the mapped banks.
+     *
+     * @param random      The source of randomness.
+     * @param memory      The memory the banks are mapped into.
+     * @param banks       The banks.
+     * @param isUnified   Whether the banks are unified.
+     * @param baseAddress The base address of the banks.
+     * @param bankSize    The size of each bank.
+     */
+    private static void modify(Random random, Memory memory, MemoryBank banks, boolean isUnified, int baseAddress,
+                               int bankSize) {
+        final var firstBank = isUnified ? 0 : 1;
+        final var mappedSize = isUnified ? bankSize : bankSize * 2;
+
+        final var operations = random.nextInt(MAX_OPERATIONS);
+        for (var i = 0; i < operations; ++i) {
+            if (random.nextInt(4) == 0) {
+                banks.setActiveBank(firstBank + random.nextInt(banks.getNumBanks() - firstBank));
+            } else {
+                final var offset = random.nextInt(mappedSize);
+                final var data = new byte[1 + random.nextInt(Math.min(Memory.PAGE_SIZE * 3, mappedSize - offset))];
+                random.nextBytes(data);
+                memory.setBytes(baseAddress + offset, data);
+            }
+        }
+    }
+
+    /**
+     * Serializes the full state of the banks.
+     *
+     * @param banks The banks.
+     * @return The state, ready to be read.
+     */
+    private static ByteBuffer serialize(MemoryBank banks) {
+        final var state = ByteBuffer.allocate(banks.serializedSize());
+        banks.serialize(state);
+        return state.flip();
+    }
+
+}
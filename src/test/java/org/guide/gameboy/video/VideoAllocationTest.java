@@ -0,0 +1,63 @@
+package org.guide.gameboy.video;
+
+import com.sun.management.ThreadMXBean;
+import org.guide.gameboy.GameBoy;
+import org.guide.gameboy.TestRoms;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that emulating a frame, including the LCD mode changes that the HDMA controller listens to, does not
+ * allocate.
+ * <p>
+ * Whether an allocation is eliminated can depend on what the JIT compiler has done by the time the frames are
+ * measured, so a few stray bytes are tolerated. Anything allocated once per frame or more still fails the test.
+ *
+ * @author Brendan Jones
+ */
+class VideoAllocationTest {
+
+    /**
+     * The number of frames run before measuring, so that every code path has been taken and compiled.
+     */
+    private static final int WARM_UP_FRAMES = 600;
+
+    /**
+     * The number of frames measured.
+     */
+    private static final int MEASURED_FRAMES = 60;
+
+    /**
+     * The average number of bytes a frame may allocate. This is the size of the smallest possible object, so an
+     * allocation made every frame always exceeds it.
+     */
+    private static final long MAX_BYTES_PER_FRAME = 16;
+
+    @Test
+    void runFrameDoesNotAllocate() throws Exception {
+        for (final var cgb : new boolean[]{false, true}) {
+            final var gameboy = new GameBoy();
+            gameboy.loadCartridge(TestRoms.create(cgb, TestRoms.LCD_LOOP));
+            for (var frame = 0; frame < WARM_UP_FRAMES; ++frame) {
+                gameboy.runFrame();
+            }
+
+            final var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            final var thread = Thread.currentThread().getId();
+
+            final var before = threads.getThreadAllocatedBytes(thread);
+            for (var frame = 0; frame < MEASURED_FRAMES; ++frame) {
+                gameboy.runFrame();
+            }
+            final var after = threads.getThreadAllocatedBytes(thread);
+
+            final var allocated = after - before;
+            assertTrue(allocated < MAX_BYTES_PER_FRAME * MEASURED_FRAMES,
+                    allocated + " bytes allocated over " + MEASURED_FRAMES + " frames (CGB: " + cgb + ")");
+        }
+    }
+
+}
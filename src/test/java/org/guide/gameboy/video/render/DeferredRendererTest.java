@@ -0,0 +1,143 @@
+package org.guide.gameboy.video.render;
+
+import org.guide.gameboy.processor.interrupts.memory.Memory;
+import org.guide.gameboy.processor.interrupts.memory.MemoryBank;
+import org.guide.gameboy.video.Framebuffer;
+import org.guide.gameboy.video.PaletteColor;
+import org.guide.gameboy.video.Video;
+import org.guide.util.AddressUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that rasterizing a frame in parallel bands produces exactly the same pixels as rasterizing it serially, at
+ * every scale.
+ *
+ * @author Brendan Jones
+ */
+class DeferredRendererTest {
+
+    /**
+     * The seed of the random video memory and registers, so that failures can be reproduced.
+     */
+    private static final long SEED = 0x5EED_0028L;
+
+    /**
+     * The number of threads the parallel renderer rasterizes with. This splits the frame into bands even on machines
+     * with fewer processors.
+     */
+    private static final int PARALLELISM = 4;
+
+    /**
+     * The scanline that video memory is changed before, so that the frame is rasterized from two snapshots.
+     */
+    private static final int SECOND_SNAPSHOT_LINE = 77;
+
+    @Test
+    void parallelRenderingMatchesSerialRendering() {
+        for (final var isCGB : new boolean[]{false, true}) {
+            final var log = createLog(new Random(SEED), isCGB);
+
+            for (var scale = 1; scale <= DeferredRenderer.MAX_SCALE; ++scale) {
+                final var serial = render(log, scale, 1);
+                final var parallel = render(log, scale, PARALLELISM);
+
+                assertTrue(serial.getPixels().equals(parallel.getPixels()),
+                        "Framebuffers differ at scale " + scale + " (CGB: " + isCGB + ")");
+            }
+        }
+    }
+
+    @Test
+    void frameIsNotUniform() {
+        // Guards against the comparison above passing because the random frame rendered to a single color.
+        final var pixels = render(createLog(new Random(SEED), false), 1, 1).getPixels();
+
+        var differing = 0;
+        for (var i = 0; i < pixels.limit(); ++i) {
+            if (pixels.get(i) != pixels.get(i % 3)) {
+                ++differing;
+            }
+        }
+        assertTrue(differing > 0, "Frame has more than one color");
+    }
+
+    /**
+     * Rasterizes a log into a new framebuffer.
+     *
+     * @param log         The log.
+     * @param scale       The factor to upscale the frame by.
+     * @param parallelism The number of threads to rasterize with.
+     * @return The framebuffer.
+     */
+    private static Framebuffer render(ScanlineLog log, int scale, int parallelism) {
+        final var framebuffer = new Framebuffer(Video.DISPLAY_WIDTH * scale, Video.DISPLAY_HEIGHT * scale);
+        try (final var renderer = new DeferredRenderer(scale, parallelism)) {
+            renderer.render(log, framebuffer);
+        }
+        return framebuffer;
+    }
+
+    /**
+     * Records a frame with random video memory, sprites, palettes and registers. Video memory is changed part way
+     * through the frame, and every scanline has different registers.
+     *
+     * @param random The source of randomness.
+     * @param isCGB  Whether the frame is recorded in CGB mode.
+     * @return The log.
+     */
+    private static ScanlineLog createLog(Random random, boolean isCGB) {
+        final var memory = new Memory();
+        final var vram = new MemoryBank(memory, true, true, AddressUtils.VRAM_ADDRESS_START, 2, 0x2000);
+        final var data = new byte[0x4000];
+        random.nextBytes(data);
+        vram.reset(data);
+
+        final var oam = new byte[0xA0];
+        random.nextBytes(oam);
+        memory.setBytes(AddressUtils.OAM_ADDRESS_START, oam);
+
+        final var backgroundPalettes = createPalettes(random);
+        final var spritePalettes = createPalettes(random);
+
+        final var log = new ScanlineLog();
+        log.captureSnapshot(vram, new long[]{-1L, -1L}, memory, backgroundPalettes, spritePalettes, isCGB);
+        for (var ly = 0; ly < Video.DISPLAY_HEIGHT; ++ly) {
+            if (ly == SECOND_SNAPSHOT_LINE) {
+                // Change a page of tile data and a page of the tile map.
+                final var page = new byte[Memory.PAGE_SIZE];
+                random.nextBytes(page);
+                vram.setBytes(0, 0x8400, page, 0, page.length);
+                vram.setBytes(0, 0x9900, page, 0, page.length);
+                log.captureSnapshot(vram, new long[]{(1L << 0x04) | (1L << 0x19), 0}, memory, backgroundPalettes,
+                        spritePalettes, isCGB);
+            }
+
+            // The LCD and background are always on, and the other LCDC bits change from line to line.
+            log.record(ly, 0x81 | random.nextInt(0x100), random.nextInt(0x100), random.nextInt(0x100),
+                    random.nextInt(0xA8), random.nextInt(0x90), random.nextInt(0x100), random.nextInt(0x100),
+                    random.nextInt(0x100));
+        }
+        return log;
+    }
+
+    /**
+     * Creates a set of CGB palettes with random colors.
+     *
+     * @param random The source of randomness.
+     * @return The palettes.
+     */
+    private static PaletteColor[][] createPalettes(Random random) {
+        final var palettes = new PaletteColor[8][4];
+        for (final var palette : palettes) {
+            for (var color = 0; color < palette.length; ++color) {
+                palette[color] = new PaletteColor(random.nextInt(32), random.nextInt(32), random.nextInt(32));
+            }
+        }
+        return palettes;
+    }
+
+}
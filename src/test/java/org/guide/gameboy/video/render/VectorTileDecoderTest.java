@@ -0,0 +1,77 @@
+package org.guide.gameboy.video.render;
+
+import jdk.incubator.vector.IntVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the vector tile decoder produces exactly the same output as the scalar decoder. This is only built with
+ * {@code -PvectorApi}, and is skipped on hosts that do not support 256-bit vectors.
+ *
+ * @author Brendan Jones
+ */
+class VectorTileDecoderTest {
+
+    /**
+     * The largest number of color indices mapped at once, which covers the scalar tail of the vector loop.
+     */
+    private static final int MAX_LENGTH = 40;
+
+    @Test
+    void decodeRowMatchesScalarForEveryBytePair() {
+        final var vector = createVectorDecoder();
+        final var scalar = new ScalarTileDecoder();
+
+        final var expected = new int[TileDecoder.TILE_WIDTH];
+        final var actual = new int[TileDecoder.TILE_WIDTH];
+        for (var low = 0; low < 0x100; ++low) {
+            for (var high = 0; high < 0x100; ++high) {
+                scalar.decodeRow(low, high, expected);
+                vector.decodeRow(low, high, actual);
+                assertArrayEquals(expected, actual, "Row of low=" + low + ", high=" + high);
+            }
+        }
+    }
+
+    @Test
+    void mapColorsMatchesScalarForEveryPalette() {
+        final var vector = createVectorDecoder();
+        final var scalar = new ScalarTileDecoder();
+
+        final var random = new Random(0);
+        final var colors = new int[]{0xE0F8D0, 0x88C070, 0x346856, 0x081820};
+        final var colorIndices = new int[MAX_LENGTH];
+        for (var i = 0; i < colorIndices.length; ++i) {
+            colorIndices[i] = random.nextInt(4);
+        }
+
+        final var expected = new int[MAX_LENGTH];
+        final var actual = new int[MAX_LENGTH];
+        for (var palette = 0; palette < 0x100; ++palette) {
+            for (var length = 0; length <= MAX_LENGTH; ++length) {
+                Arrays.fill(expected, -1);
+                Arrays.fill(actual, -1);
+                scalar.mapColors(colorIndices, palette, colors, expected, length);
+                vector.mapColors(colorIndices, palette, colors, actual, length);
+                assertArrayEquals(expected, actual, "Colors of palette=" + palette + ", length=" + length);
+            }
+        }
+    }
+
+    /**
+     * Creates the vector decoder, skipping the test if the host does not support it.
+     *
+     * @return The decoder.
+     */
+    private static TileDecoder createVectorDecoder() {
+        assumeTrue(IntVector.SPECIES_PREFERRED.vectorBitSize() >= IntVector.SPECIES_256.vectorBitSize(),
+                "Host does not support 256-bit vectors");
+        return new VectorTileDecoder();
+    }
+
+}